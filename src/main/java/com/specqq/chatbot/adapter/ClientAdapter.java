@@ -50,7 +50,8 @@ public interface ClientAdapter {
      * 发送回复消息
      *
      * @param reply 回复消息DTO
-     * @return CompletableFuture<Boolean> 发送是否成功
+     * @return CompletableFuture<Boolean> 发送是否成功(false表示确定未送达: 对端拒绝或请求未发出, 可安全重试);
+     *         异常完成表示结果未知(如超时), 消息可能已送达, 除非异常为 {@link RequestNotSentException}
      */
     CompletableFuture<Boolean> sendReply(MessageReplyDTO reply);
 }
@@ -1,5 +1,6 @@
 package com.specqq.chatbot.adapter;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.specqq.chatbot.dto.ApiCallRequestDTO;
 import com.specqq.chatbot.dto.ApiCallResponseDTO;
@@ -8,16 +9,29 @@ import com.specqq.chatbot.dto.MessageReplyDTO;
 import com.specqq.chatbot.dto.NapCatMessageDTO;
 import com.specqq.chatbot.entity.ChatClient;
 import com.specqq.chatbot.enums.ProtocolType;
+import com.specqq.chatbot.parser.MessageSegments;
 import com.specqq.chatbot.websocket.NapCatWebSocketHandler;
+import com.specqq.chatbot.websocket.WebSocketSessionManager;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
 import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
 import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.ConnectTimeoutException;
 import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
 import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -27,12 +41,20 @@ import org.springframework.web.socket.WebSocketSession;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * NapCat适配器 (OneBot 11协议)
@@ -55,44 +77,215 @@ public class NapCatAdapter implements ClientAdapter {
     @Value("${napcat.http.timeout:10000}")
     private int httpTimeout;
 
+    @Value("${napcat.http.connection-pool.max-total:50}")
+    private int httpPoolMaxTotal = 50;
+
+    @Value("${napcat.http.connection-pool.max-per-route:20}")
+    private int httpPoolMaxPerRoute = 20;
+
+    @Value("${napcat.http.connection-pool.connect-timeout:5s}")
+    private Duration httpConnectTimeout = Duration.ofSeconds(5);
+
+    @Value("${napcat.http.connection-pool.socket-timeout:5s}")
+    private Duration httpSocketTimeout = Duration.ofSeconds(5);
+
+    @Value("${napcat.http.connection-pool.connection-request-timeout:2s}")
+    private Duration httpConnectionRequestTimeout = Duration.ofSeconds(2);
+
+    @Value("${napcat.http.connection-pool.io-threads:0}")
+    private int httpIoThreads = 0;
+
+    @Value("${napcat.http.connection-pool.keep-alive:30s}")
+    private Duration httpKeepAlive = Duration.ofSeconds(30);
+
+    @Value("${napcat.http.connection-pool.time-to-live:10m}")
+    private Duration httpConnectionTimeToLive = Duration.ofMinutes(10);
+
+    @Value("${napcat.http.connection-pool.validate-after-inactivity:2s}")
+    private Duration httpValidateAfterInactivity = Duration.ofSeconds(2);
+
+    @Value("${napcat.http.connection-pool.evict-idle-after:60s}")
+    private Duration httpEvictIdleAfter = Duration.ofSeconds(60);
+
+    @Value("${napcat.metrics.log-sample-rate:0.01}")
+    private double logSampleRate = 0.01;
+
+    @Value("${napcat.correlator.tick-ms:10}")
+    private long correlatorTickMs = 10;
+
+    @Value("${napcat.correlator.wheel-size:512}")
+    private int correlatorWheelSize = 512;
+
+    @Value("${napcat.hedging.enabled:false}")
+    private boolean hedgingEnabled = false;
+
+    @Value("${napcat.hedging.percentile:0.95}")
+    private double hedgingPercentile = 0.95;
+
+    @Value("${napcat.hedging.min-delay-ms:20}")
+    private long hedgingMinDelayMs = 20;
+
+    @Value("${napcat.hedging.initial-delay-ms:500}")
+    private long hedgingInitialDelayMs = 500;
+
+    @Value("${napcat.metadata-cache.enabled:true}")
+    private boolean metadataCacheEnabled = true;
+
+    @Value("${napcat.metadata-cache.maximum-size:10000}")
+    private long metadataCacheMaximumSize = 10000;
+
+    @Value("${napcat.metadata-cache.refresh-ahead-ratio:0.8}")
+    private double metadataCacheRefreshAheadRatio = 0.8;
+
+    @Value("${napcat.metadata-cache.ttl.group-info:300s}")
+    private Duration groupInfoTtl = Duration.ofMinutes(5);
+
+    @Value("${napcat.metadata-cache.ttl.group-member-info:120s}")
+    private Duration groupMemberInfoTtl = Duration.ofMinutes(2);
+
+    @Value("${napcat.metadata-cache.ttl.group-member-list:120s}")
+    private Duration groupMemberListTtl = Duration.ofMinutes(2);
+
+    @Value("${napcat.metadata-cache.ttl.login-info:3600s}")
+    private Duration loginInfoTtl = Duration.ofHours(1);
+
+    @Value("${napcat.metadata-cache.ttl.group-list:300s}")
+    private Duration groupListTtl = Duration.ofMinutes(5);
+
     private CloseableHttpAsyncClient httpClient;
 
+    // HTTP endpoint from napcat.http.url (set in init) and per-client endpoints from chat_client
+    private HttpEndpoint defaultHttpEndpoint;
+    private final Map<Long, HttpEndpoint> clientHttpEndpoints = new ConcurrentHashMap<>();
+
     // WebSocket handler (optional - may be null if WebSocket not configured)
     @Autowired(required = false)
     private NapCatWebSocketHandler webSocketHandler;
 
-    // Request-response correlation map for API calls
-    private final Map<String, CompletableFuture<ApiCallResponseDTO>> pendingRequests = new ConcurrentHashMap<>();
+    // Session manager (optional) - resolves the bot owning a group for per-client HTTP routing
+    @Autowired(required = false)
+    private WebSocketSessionManager sessionManager;
+
+    // Metrics registry (optional - may be null in unit tests)
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    // Request-response correlation for HTTP and WebSocket API calls (monotonic IDs + shared timeout wheel)
+    private NapCatRequestCorrelator correlator;
 
-    // WebSocket response handler map (requestId -> CompletableFuture)
-    private final Map<String, CompletableFuture<ApiCallResponseDTO>> webSocketPendingRequests = new ConcurrentHashMap<>();
+    // Read-through cache for metadata APIs (null when disabled)
+    private NapCatMetadataCache metadataCache;
 
-    // T104: Metrics for API call performance
-    private final java.util.concurrent.atomic.AtomicLong totalApiCalls = new java.util.concurrent.atomic.AtomicLong(0);
-    private final java.util.concurrent.atomic.AtomicLong successfulApiCalls = new java.util.concurrent.atomic.AtomicLong(0);
-    private final java.util.concurrent.atomic.AtomicLong failedApiCalls = new java.util.concurrent.atomic.AtomicLong(0);
-    private final java.util.concurrent.atomic.AtomicLong timeoutApiCalls = new java.util.concurrent.atomic.AtomicLong(0);
-    private final java.util.concurrent.atomic.AtomicLong totalExecutionTime = new java.util.concurrent.atomic.AtomicLong(0);
+    // T104: Metrics for API call performance (per action/transport/outcome timers + health summary)
+    private NapCatApiMetrics apiMetrics = new NapCatApiMetrics(0.01);
+    private final AtomicLong fallbackApiCalls = new AtomicLong(0);
+    private final AtomicLong hedgedApiCalls = new AtomicLong(0);
+    private final AtomicLong hedgeWins = new AtomicLong(0);
+
+    // Recent WebSocket latencies, used to derive the hedging delay
+    private final LatencyWindow webSocketLatency = new LatencyWindow(256);
 
     @PostConstruct
     public void init() {
+        correlator = new NapCatRequestCorrelator(correlatorTickMs, correlatorWheelSize);
+        apiMetrics = new NapCatApiMetrics(logSampleRate);
+        if (meterRegistry != null) {
+            correlator.bindMetrics(meterRegistry);
+            apiMetrics.bindTo(meterRegistry);
+        }
+
+        if (metadataCacheEnabled) {
+            Map<String, Duration> ttlByAction = new HashMap<>();
+            ttlByAction.put(NapCatMetadataCache.GET_GROUP_INFO, groupInfoTtl);
+            ttlByAction.put(NapCatMetadataCache.GET_GROUP_MEMBER_INFO, groupMemberInfoTtl);
+            ttlByAction.put(NapCatMetadataCache.GET_GROUP_MEMBER_LIST, groupMemberListTtl);
+            ttlByAction.put(NapCatMetadataCache.GET_LOGIN_INFO, loginInfoTtl);
+            ttlByAction.put(NapCatMetadataCache.GET_GROUP_LIST, groupListTtl);
+            metadataCache = new NapCatMetadataCache(ttlByAction, metadataCacheRefreshAheadRatio,
+                metadataCacheMaximumSize, this::loadMetadata);
+            if (meterRegistry != null) {
+                metadataCache.bindMetrics(meterRegistry);
+            }
+        }
+
+        defaultHttpEndpoint = new HttpEndpoint(napCatHttpUrl, accessToken);
+        clientHttpEndpoints.clear();
+
         // 创建HTTP异步客户端(连接池配置)
         // HttpClient 5 使用 PoolingAsyncClientConnectionManager 配置连接池
-        org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager connectionManager =
-            org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder.create()
-                .setMaxConnTotal(50)           // 最大连接数
-                .setMaxConnPerRoute(20)        // 每个路由最大连接数
-                .build();
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(httpPoolMaxTotal)
+            .setMaxConnPerRoute(httpPoolMaxPerRoute)
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(toTimeout(httpConnectTimeout))
+                .setSocketTimeout(toTimeout(httpSocketTimeout))
+                .setTimeToLive(TimeValue.ofMilliseconds(httpConnectionTimeToLive.toMillis()))
+                .setValidateAfterInactivity(TimeValue.ofMilliseconds(httpValidateAfterInactivity.toMillis()))
+                .build())
+            .build();
+
+        IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom()
+            .setSoKeepAlive(true)
+            .setTcpNoDelay(true);
+        if (httpIoThreads > 0) {
+            ioReactorConfig.setIoThreadCount(httpIoThreads);
+        }
 
         httpClient = HttpAsyncClients.custom()
             .setConnectionManager(connectionManager)
+            .setIOReactorConfig(ioReactorConfig.build())
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(toTimeout(httpConnectionRequestTimeout))
+                .setResponseTimeout(Timeout.ofMilliseconds(httpTimeout > 0 ? httpTimeout : 10000))
+                .setConnectionKeepAlive(TimeValue.ofMilliseconds(httpKeepAlive.toMillis()))
+                .build())
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofMilliseconds(httpEvictIdleAfter.toMillis()))
             .build();
         httpClient.start();
-        log.info("NapCat HTTP client initialized: url={}", napCatHttpUrl);
+
+        if (meterRegistry != null) {
+            bindPoolMetrics(connectionManager, meterRegistry);
+        }
+        log.info("NapCat HTTP client initialized: url={}, maxTotal={}, maxPerRoute={}, ioThreads={}, connectTimeout={}, keepAlive={}",
+            napCatHttpUrl, httpPoolMaxTotal, httpPoolMaxPerRoute,
+            httpIoThreads > 0 ? httpIoThreads : Runtime.getRuntime().availableProcessors(),
+            httpConnectTimeout, httpKeepAlive);
+    }
+
+    /**
+     * Export HTTP connection pool stats (leased / pending / available / max) as gauges
+     */
+    private static void bindPoolMetrics(PoolingAsyncClientConnectionManager connectionManager, MeterRegistry registry) {
+        Gauge.builder("napcat_http_pool_connections", connectionManager, cm -> cm.getTotalStats().getLeased())
+            .description("NapCat HTTP连接池连接数")
+            .tag("component", "napcat-adapter")
+            .tag("state", "leased")
+            .register(registry);
+        Gauge.builder("napcat_http_pool_connections", connectionManager, cm -> cm.getTotalStats().getAvailable())
+            .description("NapCat HTTP连接池连接数")
+            .tag("component", "napcat-adapter")
+            .tag("state", "available")
+            .register(registry);
+        Gauge.builder("napcat_http_pool_pending_requests", connectionManager, cm -> cm.getTotalStats().getPending())
+            .description("等待租用连接的请求数(持续大于0说明连接池不足)")
+            .tag("component", "napcat-adapter")
+            .register(registry);
+        Gauge.builder("napcat_http_pool_max_connections", connectionManager, cm -> cm.getTotalStats().getMax())
+            .description("NapCat HTTP连接池最大连接数")
+            .tag("component", "napcat-adapter")
+            .register(registry);
+    }
+
+    private static Timeout toTimeout(Duration duration) {
+        return Timeout.ofMilliseconds(duration.toMillis());
     }
 
     @PreDestroy
     public void destroy() {
+        if (correlator != null) {
+            correlator.close();
+        }
         try {
             if (httpClient != null) {
                 httpClient.close();
@@ -138,6 +331,15 @@ public class NapCatAdapter implements ClientAdapter {
             return false;
         }
 
+        // 反向WebSocket: 由NapCat主动连接, 只需机器人QQ号用于匹配
+        if ("reverse_websocket".equalsIgnoreCase(client.getProtocolType())) {
+            if (config.getSelfId() == null || config.getSelfId() <= 0) {
+                log.warn("Self ID is required for reverse WebSocket protocol");
+                return false;
+            }
+            return true;
+        }
+
         // 验证主机地址
         if (!StringUtils.hasText(config.getHost())) {
             log.warn("Host is required");
@@ -183,11 +385,12 @@ public class NapCatAdapter implements ClientAdapter {
 
             // 构造MessageReceiveDTO
             return MessageReceiveDTO.builder()
-                .messageId(String.valueOf(napCatMessage.getMessageId()))
+                .messageId(napCatMessage.getMessageId() != null ? String.valueOf(napCatMessage.getMessageId()) : null)
                 .groupId(String.valueOf(napCatMessage.getGroupId()))
                 .userId(String.valueOf(napCatMessage.getUserId()))
                 .userNickname(napCatMessage.getDisplayName())
                 .messageContent(napCatMessage.getRawMessage())
+                .segments(napCatMessage.getMessage() instanceof List<?> array ? MessageSegments.fromArray(array) : null)
                 .timestamp(LocalDateTime.now())
                 .build();
 
@@ -218,8 +421,14 @@ public class NapCatAdapter implements ClientAdapter {
                 }
             })
             .exceptionally(ex -> {
-                log.error("Failed to send reply via unified API: groupId={}", reply.getGroupId(), ex);
-                return false;
+                if (RequestNotSentException.isNotSent(ex)) {
+                    log.error("Reply not sent via unified API: groupId={}", reply.getGroupId(), ex);
+                    return false;
+                }
+                // Unknown outcome (e.g. timeout after the request was written): NapCat may already
+                // have delivered it, so propagate instead of reporting a failure the caller would retry
+                log.error("Reply outcome unknown via unified API: groupId={}", reply.getGroupId(), ex);
+                throw ex instanceof CompletionException ce ? ce : new CompletionException(ex);
             });
     }
 
@@ -229,41 +438,61 @@ public class NapCatAdapter implements ClientAdapter {
      * <p>T094-T098: JSON-RPC 2.0 implementation with request-response correlation</p>
      * <p>Note: This is the HTTP implementation. Use callApiWithFallback() for WebSocket-first strategy.</p>
      *
-     * @param action NapCat API action (e.g., "get_group_info")
-     * @param params API parameters
+     * @param action   NapCat API action (e.g., "get_group_info")
+     * @param params   API parameters
+     * @param endpoint HTTP endpoint of the owning bot, resolved by the caller (null when the owner has none)
      * @return API response
      * @throws TimeoutException if request times out after 10 seconds
      */
-    private CompletableFuture<ApiCallResponseDTO> callApiViaHttp(String action, Map<String, Object> params) {
+    private CompletableFuture<ApiCallResponseDTO> callApiViaHttp(String action, Map<String, Object> params,
+                                                                HttpEndpoint endpoint) {
         long startTime = System.currentTimeMillis();
-        String requestId = UUID.randomUUID().toString();
+        long startNanos = System.nanoTime();
+        long requestId = correlator.nextId();
+        boolean sampled = log.isDebugEnabled() && apiMetrics.shouldLog();
 
-        // T104: Increment total API calls counter
-        totalApiCalls.incrementAndGet();
-
-        // T105: Structured logging - API call initiated
-        log.info("NapCat API call initiated: requestId={}, action={}, params={}",
-                requestId, action, params);
+        // T105: Structured logging - API call initiated (sampled)
+        if (sampled) {
+            log.debug("NapCat API call initiated: requestId={}, action={}, params={}", requestId, action, params);
+        }
 
-        CompletableFuture<ApiCallResponseDTO> future = new CompletableFuture<>();
-        pendingRequests.put(requestId, future);
+        CompletableFuture<ApiCallResponseDTO> future = correlator.register(requestId, action, httpTimeout);
+        if (endpoint == null) {
+            // The owning bot has no HTTP endpoint: another account's endpoint would reply from the wrong QQ
+            String errorMessage = String.format("No HTTP endpoint configured for the bot owning group %s (action '%s')",
+                    routeGroupId(params), action);
+            log.warn("NapCat HTTP call skipped: requestId={}, {}", requestId, errorMessage);
+            correlator.completeExceptionally(requestId, new RequestNotSentException(errorMessage, null));
+            return future;
+        }
+        future.whenComplete((response, throwable) -> {
+            // T104: Record per-action metrics
+            NapCatApiMetrics.Outcome outcome = NapCatApiMetrics.Outcome.of(response, throwable);
+            apiMetrics.record(action, NapCatApiMetrics.Transport.HTTP, outcome, System.nanoTime() - startNanos);
+
+            if (outcome == NapCatApiMetrics.Outcome.TIMEOUT) {
+                // T103: Enhanced error handling with meaningful error message
+                log.error("NapCat API timeout: requestId={}, action={}, timeout={}ms, executionTime={}ms",
+                        requestId, action, httpTimeout, System.currentTimeMillis() - startTime);
+            } else if (sampled) {
+                log.debug("NapCat API call completed: requestId={}, action={}, outcome={}, retcode={}, executionTime={}ms",
+                        requestId, action, outcome, response != null ? response.getRetcode() : null,
+                        System.currentTimeMillis() - startTime);
+            }
+        });
 
         try {
             // Build JSON-RPC 2.0 request
-            ApiCallRequestDTO request = new ApiCallRequestDTO();
-            request.setJsonrpc("2.0");
-            request.setId(requestId);
-            request.setAction(action);
-            request.setParams(params != null ? params : new HashMap<>());
-
-            String jsonBody = objectMapper.writeValueAsString(request);
+            String jsonBody = encodeRequest(requestId, action, params);
 
             // Build HTTP POST request
-            SimpleHttpRequest httpRequest = SimpleRequestBuilder.post(napCatHttpUrl + "/" + action)
-                    .setHeader("Authorization", "Bearer " + accessToken)
+            SimpleRequestBuilder requestBuilder = SimpleRequestBuilder.post(endpoint.actionUrl(action))
                     .setHeader("Content-Type", "application/json")
-                    .setBody(jsonBody, ContentType.APPLICATION_JSON)
-                    .build();
+                    .setBody(jsonBody, ContentType.APPLICATION_JSON);
+            if (endpoint.authorization != null) {
+                requestBuilder.setHeader("Authorization", endpoint.authorization);
+            }
+            SimpleHttpRequest httpRequest = requestBuilder.build();
 
             // Send async HTTP request
             httpClient.execute(httpRequest, new FutureCallback<SimpleHttpResponse>() {
@@ -271,25 +500,13 @@ public class NapCatAdapter implements ClientAdapter {
                 public void completed(SimpleHttpResponse response) {
                     try {
                         long executionTime = System.currentTimeMillis() - startTime;
-                        String responseBody = response.getBodyText();
-                        int statusCode = response.getCode();
-
-                        // Parse response
-                        ApiCallResponseDTO apiResponse = parseApiResponse(responseBody, requestId, executionTime);
 
-                        // T104: Record metrics for successful API call
-                        successfulApiCalls.incrementAndGet();
-                        totalExecutionTime.addAndGet(executionTime);
+                        // Parse response; without a JSON body the HTTP status is the only answer
+                        ApiCallResponseDTO apiResponse = isJsonBody(response.getBodyText())
+                                ? parseApiResponse(response.getBodyText(), String.valueOf(requestId), executionTime)
+                                : statusOnlyResponse(response, String.valueOf(requestId), executionTime);
 
-                        // T105: Structured logging - API call completed
-                        log.info("NapCat API call completed: requestId={}, action={}, status={}, retcode={}, executionTime={}ms, httpStatus={}, successRate={}%",
-                                requestId, action, apiResponse.getStatus(), apiResponse.getRetcode(), executionTime, statusCode,
-                                getSuccessRate());
-
-                        CompletableFuture<ApiCallResponseDTO> pending = pendingRequests.remove(requestId);
-                        if (pending != null) {
-                            pending.complete(apiResponse);
-                        }
+                        correlator.complete(requestId, apiResponse);
                     } catch (Exception e) {
                         long executionTime = System.currentTimeMillis() - startTime;
                         // T103: Enhanced error handling with meaningful error message
@@ -298,10 +515,7 @@ public class NapCatAdapter implements ClientAdapter {
                         log.error("NapCat API parse error: requestId={}, action={}, executionTime={}ms, error={}",
                                 requestId, action, executionTime, errorMessage, e);
 
-                        CompletableFuture<ApiCallResponseDTO> pending = pendingRequests.remove(requestId);
-                        if (pending != null) {
-                            pending.completeExceptionally(new RuntimeException(errorMessage, e));
-                        }
+                        correlator.completeExceptionally(requestId, new RuntimeException(errorMessage, e));
                     }
                 }
 
@@ -309,21 +523,17 @@ public class NapCatAdapter implements ClientAdapter {
                 public void failed(Exception ex) {
                     long executionTime = System.currentTimeMillis() - startTime;
 
-                    // T104: Record metrics for failed API call
-                    failedApiCalls.incrementAndGet();
-                    totalExecutionTime.addAndGet(executionTime);
-
                     // T103: Enhanced error handling with meaningful error message
                     String errorMessage = String.format("NapCat API call failed for action '%s': %s. " +
                             "Please check NapCat server connectivity and configuration.",
                             action, ex.getMessage());
-                    log.error("NapCat API call failed: requestId={}, action={}, executionTime={}ms, error={}, successRate={}%",
-                            requestId, action, executionTime, errorMessage, getSuccessRate(), ex);
+                    log.error("NapCat API call failed: requestId={}, action={}, executionTime={}ms, error={}",
+                            requestId, action, executionTime, errorMessage, ex);
 
-                    CompletableFuture<ApiCallResponseDTO> pending = pendingRequests.remove(requestId);
-                    if (pending != null) {
-                        pending.completeExceptionally(new RuntimeException(errorMessage, ex));
-                    }
+                    // No connection was established: the request never reached NapCat
+                    correlator.completeExceptionally(requestId, isConnectFailure(ex)
+                            ? new RequestNotSentException(errorMessage, ex)
+                            : new RuntimeException(errorMessage, ex));
                 }
 
                 @Override
@@ -334,35 +544,10 @@ public class NapCatAdapter implements ClientAdapter {
                     log.warn("NapCat API call cancelled: requestId={}, action={}, executionTime={}ms",
                             requestId, action, executionTime);
 
-                    CompletableFuture<ApiCallResponseDTO> pending = pendingRequests.remove(requestId);
-                    if (pending != null) {
-                        pending.cancel(true);
-                    }
+                    correlator.completeExceptionally(requestId, new CancellationException(errorMessage));
                 }
             });
 
-            // Set timeout
-            future.orTimeout(httpTimeout, TimeUnit.MILLISECONDS)
-                    .exceptionally(throwable -> {
-                        long executionTime = System.currentTimeMillis() - startTime;
-                        pendingRequests.remove(requestId);
-
-                        if (throwable instanceof java.util.concurrent.TimeoutException) {
-                            // T104: Record metrics for timeout
-                            timeoutApiCalls.incrementAndGet();
-                            failedApiCalls.incrementAndGet();
-                            totalExecutionTime.addAndGet(executionTime);
-
-                            // T103: Enhanced error handling with meaningful error message
-                            String errorMessage = String.format("NapCat API call timeout for action '%s' after %dms. " +
-                                    "Consider increasing napcat.http.timeout or checking server performance.",
-                                    action, httpTimeout);
-                            log.error("NapCat API timeout: requestId={}, action={}, timeout={}ms, executionTime={}ms, timeoutRate={}%",
-                                    requestId, action, httpTimeout, executionTime, getTimeoutRate());
-                        }
-                        return null;
-                    });
-
         } catch (Exception e) {
             long executionTime = System.currentTimeMillis() - startTime;
             // T103: Enhanced error handling with meaningful error message
@@ -371,13 +556,87 @@ public class NapCatAdapter implements ClientAdapter {
             log.error("NapCat API request error: requestId={}, action={}, executionTime={}ms, error={}",
                     requestId, action, executionTime, errorMessage, e);
 
-            pendingRequests.remove(requestId);
-            future.completeExceptionally(new RuntimeException(errorMessage, e));
+            correlator.completeExceptionally(requestId, new RuntimeException(errorMessage, e));
         }
 
         return future;
     }
 
+    private static boolean isJsonBody(String body) {
+        return body != null && body.stripLeading().startsWith("{");
+    }
+
+    /**
+     * Map a response without a JSON body (empty 200, a proxy's 500 page) to an API response:
+     * 2xx is ok, anything else fails with the HTTP status as retcode
+     */
+    private static ApiCallResponseDTO statusOnlyResponse(SimpleHttpResponse httpResponse, String requestId, long executionTime) {
+        boolean ok = httpResponse.getCode() >= 200 && httpResponse.getCode() < 300;
+        ApiCallResponseDTO response = new ApiCallResponseDTO();
+        response.setId(requestId);
+        response.setStatus(ok ? "ok" : "failed");
+        response.setRetcode(ok ? 0 : httpResponse.getCode());
+        response.setMessage("HTTP " + httpResponse.getCode() + " " + httpResponse.getReasonPhrase());
+        response.setExecutionTimeMs(executionTime);
+        return response;
+    }
+
+    /**
+     * HTTP failures that happen before any request byte is written
+     * (refused/timed-out connect, unresolvable host, no pooled connection available)
+     */
+    private static boolean isConnectFailure(Throwable ex) {
+        return ex instanceof ConnectException
+            || ex instanceof ConnectTimeoutException
+            || ex instanceof ConnectionRequestTimeoutException
+            || ex instanceof UnknownHostException;
+    }
+
+    /**
+     * Encode a JSON-RPC request: allocation-light encoder for hot actions, ObjectMapper otherwise
+     */
+    private String encodeRequest(long requestId, String action, Map<String, Object> params) throws JsonProcessingException {
+        String json = NapCatRequestEncoder.encode(requestId, action, params);
+        if (json != null) {
+            return json;
+        }
+        ApiCallRequestDTO request = new ApiCallRequestDTO(
+                String.valueOf(requestId), action, params != null ? params : new HashMap<>());
+        return objectMapper.writeValueAsString(request);
+    }
+
+    /**
+     * HTTP endpoint of the bot owning the target group
+     *
+     * <p>A group owned by a chat_client entry uses that client's own host/httpPort/accessToken.
+     * Calls without a known owner (single-account setups, group-less calls) and the default
+     * connection use napcat.http.url. A known owner without an HTTP port gets no endpoint:
+     * the caller fails instead of sending from another account.</p>
+     *
+     * @return endpoint, or null when the owning client has no HTTP endpoint
+     */
+    private HttpEndpoint resolveHttpEndpoint(Map<String, Object> params) {
+        if (sessionManager == null) {
+            return defaultHttpEndpoint;
+        }
+        Long owner = sessionManager.resolveClientId(routeGroupId(params));
+        if (owner == null || WebSocketSessionManager.DEFAULT_CLIENT_ID.equals(owner)) {
+            return defaultHttpEndpoint;
+        }
+        ChatClient client = sessionManager.getClient(owner);
+        ChatClient.ConnectionConfig config = client != null ? client.getConnectionConfig() : null;
+        if (config == null || !StringUtils.hasText(config.getHost())
+                || config.getHttpPort() == null || config.getHttpPort() <= 0) {
+            return null;
+        }
+        HttpEndpoint endpoint = clientHttpEndpoints.get(owner);
+        if (endpoint == null || !endpoint.matches(config)) {
+            endpoint = new HttpEndpoint(config);
+            clientHttpEndpoints.put(owner, endpoint);
+        }
+        return endpoint;
+    }
+
     /**
      * Parse API response from JSON
      *
@@ -402,49 +661,179 @@ public class NapCatAdapter implements ClientAdapter {
      *
      * <p>This is the unified entry point for all NapCat API calls.</p>
      * <p>Strategy: WebSocket (if available) → HTTP (fallback)</p>
+     * <p>Fallback is composed asynchronously: the thread completing the WebSocket future
+     * (response reader or timeout wheel) only issues the HTTP request and never waits for it.</p>
+     * <p>Non-idempotent actions (e.g. send_group_msg) only fall back when the WebSocket request
+     * was never written; after a timeout NapCat may already have executed it, and resending
+     * would deliver the message twice.</p>
+     * <p>The HTTP endpoint is resolved here, on the calling thread: resolving it may query the
+     * database, which must not happen on the response reader or the shared timeout wheel.</p>
+     * <p>With {@code napcat.hedging.enabled}, idempotent actions additionally issue the HTTP
+     * request once the WebSocket call exceeds the configured latency percentile, and the
+     * first successful response wins.</p>
      *
      * @param action NapCat API action (e.g., "get_group_info", "send_group_msg")
      * @param params API parameters
      * @return API response wrapped in CompletableFuture
      */
     public CompletableFuture<ApiCallResponseDTO> callApiWithFallback(String action, Map<String, Object> params) {
+        HttpEndpoint endpoint = resolveHttpEndpoint(params);
+
         // Try WebSocket first if available
-        if (isWebSocketAvailable()) {
-            return callApiViaWebSocket(action, params)
-                .exceptionally(wsError -> {
-                    log.warn("WebSocket call failed for action '{}', falling back to HTTP: {}",
-                            action, wsError.getMessage());
-                    // Fallback to HTTP on WebSocket failure
-                    try {
-                        return callApiViaHttp(action, params).join();
-                    } catch (Exception httpError) {
-                        log.error("HTTP fallback also failed for action '{}'", action, httpError);
-                        throw new RuntimeException("Both WebSocket and HTTP failed for action: " + action, httpError);
-                    }
-                });
+        if (isWebSocketAvailable(params)) {
+            CompletableFuture<ApiCallResponseDTO> webSocketCall = callApiViaWebSocket(action, params);
+
+            if (hedgingEnabled && isIdempotentAction(action)) {
+                return callApiHedged(action, params, endpoint, webSocketCall);
+            }
+
+            return webSocketCall
+                .handle((response, wsError) -> wsError == null
+                    ? CompletableFuture.completedFuture(response)
+                    : fallbackToHttp(action, params, endpoint, wsError))
+                .thenCompose(Function.identity());
         }
 
         // Use HTTP directly if WebSocket not available
         log.debug("WebSocket not available for action '{}', using HTTP directly", action);
-        return callApiViaHttp(action, params);
+        return callApiViaHttp(action, params, endpoint);
+    }
+
+    /**
+     * HTTP fallback after a WebSocket failure (non-blocking)
+     */
+    private CompletableFuture<ApiCallResponseDTO> fallbackToHttp(String action, Map<String, Object> params,
+                                                                HttpEndpoint endpoint, Throwable wsError) {
+        Throwable cause = unwrap(wsError);
+        if (!isIdempotentAction(action) && !(cause instanceof RequestNotSentException)) {
+            log.warn("WebSocket call failed for non-idempotent action '{}', HTTP fallback skipped to avoid duplicate delivery: {}",
+                    action, cause.getMessage());
+            return CompletableFuture.failedFuture(cause);
+        }
+
+        log.warn("WebSocket call failed for action '{}', falling back to HTTP: {}", action, cause.getMessage());
+        fallbackApiCalls.incrementAndGet();
+
+        return callApiViaHttp(action, params, endpoint)
+            .handle((response, httpError) -> {
+                if (httpError != null) {
+                    log.error("HTTP fallback also failed for action '{}'", action, httpError);
+                    throw new CompletionException(new RuntimeException(
+                        "Both WebSocket and HTTP failed for action: " + action, unwrap(httpError)));
+                }
+                return response;
+            });
+    }
+
+    /**
+     * Hedged call: WebSocket first, HTTP in parallel once the WebSocket call is slower than the
+     * configured latency percentile (or immediately when WebSocket fails). First success wins.
+     */
+    private CompletableFuture<ApiCallResponseDTO> callApiHedged(String action, Map<String, Object> params,
+                                                               HttpEndpoint endpoint,
+                                                               CompletableFuture<ApiCallResponseDTO> webSocketCall) {
+        CompletableFuture<ApiCallResponseDTO> result = new CompletableFuture<>();
+        AtomicBoolean httpIssued = new AtomicBoolean(false);
+        AtomicInteger openLegs = new AtomicInteger(1);
+
+        Runnable issueHttp = () -> {
+            if (result.isDone() || !httpIssued.compareAndSet(false, true)) {
+                return;
+            }
+            openLegs.incrementAndGet();
+            hedgedApiCalls.incrementAndGet();
+            log.debug("Hedging API call via HTTP: action={}", action);
+
+            callApiViaHttp(action, params, endpoint).whenComplete((response, httpError) -> {
+                if (httpError == null) {
+                    if (result.complete(response)) {
+                        hedgeWins.incrementAndGet();
+                        webSocketCall.cancel(false);
+                    }
+                } else if (openLegs.decrementAndGet() == 0) {
+                    result.completeExceptionally(new RuntimeException(
+                        "Both WebSocket and HTTP failed for action: " + action, unwrap(httpError)));
+                }
+            });
+        };
+
+        NapCatRequestCorrelator.Timeout hedgeTimer = correlator.schedule(hedgeDelayMs(), issueHttp);
+
+        webSocketCall.whenComplete((response, wsError) -> {
+            hedgeTimer.cancel();
+            if (wsError == null) {
+                result.complete(response);
+                return;
+            }
+            if (result.isDone()) {
+                return;
+            }
+            // WebSocket failed: issue HTTP now if the hedge has not fired yet
+            issueHttp.run();
+            if (openLegs.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(wsError));
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Current hedging delay: WebSocket latency percentile, bounded by min delay and request timeout
+     */
+    private long hedgeDelayMs() {
+        long delay = webSocketLatency.percentile(hedgingPercentile, hedgingInitialDelayMs);
+        return Math.min(Math.max(delay, hedgingMinDelayMs), Math.max(httpTimeout, hedgingMinDelayMs));
+    }
+
+    /**
+     * Actions that are safe to send twice (reads, and deletes that are no-ops on repeat)
+     */
+    private static boolean isIdempotentAction(String action) {
+        return action.startsWith("get_") || action.startsWith("can_") || "delete_msg".equals(action);
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause()
+            : throwable;
     }
 
     /**
-     * Check if WebSocket is available and connected
+     * Check if the WebSocket session of the bot owning the target group is connected
      *
+     * @param params API parameters (group_id selects the session)
      * @return true if WebSocket session exists and is open
      */
-    private boolean isWebSocketAvailable() {
+    private boolean isWebSocketAvailable(Map<String, Object> params) {
         if (webSocketHandler == null) {
             log.debug("WebSocket handler not configured");
             return false;
         }
 
-        boolean connected = webSocketHandler.isConnected();
+        boolean connected = webSocketHandler.isConnected(routeGroupId(params));
         log.debug("WebSocket availability check: connected={}", connected);
         return connected;
     }
 
+    /**
+     * Group used to pick the outbound session (null for calls without a group)
+     */
+    private static Long routeGroupId(Map<String, Object> params) {
+        Object groupId = params != null ? params.get("group_id") : null;
+        if (groupId instanceof Number number) {
+            return number.longValue();
+        }
+        if (groupId instanceof String text) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
     /**
      * Call API via WebSocket
      *
@@ -456,51 +845,43 @@ public class NapCatAdapter implements ClientAdapter {
      */
     private CompletableFuture<ApiCallResponseDTO> callApiViaWebSocket(String action, Map<String, Object> params) {
         long startTime = System.currentTimeMillis();
-        String requestId = UUID.randomUUID().toString();
+        long startNanos = System.nanoTime();
+        long requestId = correlator.nextId();
+        boolean sampled = log.isDebugEnabled() && apiMetrics.shouldLog();
 
-        log.debug("WebSocket API call initiated: requestId={}, action={}", requestId, action);
+        if (sampled) {
+            log.debug("WebSocket API call initiated: requestId={}, action={}", requestId, action);
+        }
 
-        CompletableFuture<ApiCallResponseDTO> future = new CompletableFuture<>();
+        // 1. Register pending request (timeout handled by the shared correlator wheel)
+        CompletableFuture<ApiCallResponseDTO> future = correlator.register(requestId, action, httpTimeout);
+        future.whenComplete((response, throwable) -> {
+            NapCatApiMetrics.Outcome outcome = NapCatApiMetrics.Outcome.of(response, throwable);
+            apiMetrics.record(action, NapCatApiMetrics.Transport.WEBSOCKET, outcome, System.nanoTime() - startNanos);
+
+            if (throwable == null) {
+                webSocketLatency.record(System.currentTimeMillis() - startTime);
+                if (sampled) {
+                    log.debug("WebSocket API call completed: requestId={}, action={}, outcome={}, executionTime={}ms",
+                        requestId, action, outcome, System.currentTimeMillis() - startTime);
+                }
+            } else if (outcome == NapCatApiMetrics.Outcome.TIMEOUT) {
+                log.warn("WebSocket timeout: requestId={}, action={}, timeout={}ms",
+                    requestId, action, httpTimeout);
+            }
+        });
 
+        boolean encoded = false;
         try {
-            // 1. Create JSON-RPC 2.0 request
-            ApiCallRequestDTO request = new ApiCallRequestDTO();
-            request.setJsonrpc("2.0");
-            request.setId(requestId);
-            request.setAction(action);
-            request.setParams(params != null ? params : new HashMap<>());
-
-            String jsonMessage = objectMapper.writeValueAsString(request);
-
-            // 2. Register CompletableFuture in pending requests map
-            webSocketPendingRequests.put(requestId, future);
+            // 2. Create JSON-RPC 2.0 request
+            String jsonMessage = encodeRequest(requestId, action, params);
+            encoded = true;
 
             // 3. Send request via WebSocket
-            webSocketHandler.sendMessage(jsonMessage);
-
-            log.debug("WebSocket message sent: requestId={}, action={}", requestId, action);
-
-            // 4. Set timeout to auto-complete exceptionally if no response
-            future.orTimeout(httpTimeout, TimeUnit.MILLISECONDS)
-                .exceptionally(throwable -> {
-                    long executionTime = System.currentTimeMillis() - startTime;
-                    webSocketPendingRequests.remove(requestId);
-
-                    if (throwable instanceof java.util.concurrent.TimeoutException) {
-                        String errorMessage = String.format(
-                            "WebSocket API call timeout for action '%s' after %dms",
-                            action, httpTimeout);
-                        log.warn("WebSocket timeout: requestId={}, action={}, timeout={}ms",
-                            requestId, action, httpTimeout);
-                        throw new RuntimeException(errorMessage, throwable);
-                    }
-
-                    throw new RuntimeException("WebSocket API call failed: " + action, throwable);
-                });
+            webSocketHandler.sendMessage(routeGroupId(params), jsonMessage, String.valueOf(requestId));
 
         } catch (Exception e) {
             long executionTime = System.currentTimeMillis() - startTime;
-            webSocketPendingRequests.remove(requestId);
 
             String errorMessage = String.format(
                 "Failed to send WebSocket API request for action '%s': %s",
@@ -508,12 +889,32 @@ public class NapCatAdapter implements ClientAdapter {
             log.error("WebSocket API request error: requestId={}, action={}, executionTime={}ms",
                 requestId, action, executionTime, e);
 
-            future.completeExceptionally(new RuntimeException(errorMessage, e));
+            // Not sent: encoding failed, the session manager refused the frame (IllegalStateException),
+            // or withdrew it before any byte was written. Any other write failure may have reached NapCat.
+            boolean notSent = !encoded || e instanceof IllegalStateException || RequestNotSentException.isNotSent(e);
+            correlator.completeExceptionally(requestId, notSent
+                ? new RequestNotSentException(errorMessage, e)
+                : new RuntimeException(errorMessage, e));
         }
 
         return future;
     }
 
+    /**
+     * Handle a WebSocket API request dropped from the outbound buffer
+     *
+     * <p>Called when a request buffered during a reconnect overflows or expires before it was written,
+     * so it provably never reached NapCat and the caller may safely resend it elsewhere.</p>
+     *
+     * @param requestId Request ID of the dropped request
+     */
+    public void handleWebSocketRequestDiscarded(String requestId) {
+        if (correlator.completeExceptionally(requestId, new RequestNotSentException(
+                "WebSocket request dropped from the outbound buffer before it was sent: requestId=" + requestId, null))) {
+            log.warn("WebSocket request dropped before send: requestId={}", requestId);
+        }
+    }
+
     /**
      * Handle WebSocket API response
      *
@@ -523,14 +924,12 @@ public class NapCatAdapter implements ClientAdapter {
      * @param response  API response data
      */
     public void handleWebSocketResponse(String requestId, ApiCallResponseDTO response) {
-        CompletableFuture<ApiCallResponseDTO> future = webSocketPendingRequests.remove(requestId);
-
-        if (future != null) {
+        if (correlator.complete(requestId, response)) {
             log.debug("WebSocket response received: requestId={}, retcode={}",
                 requestId, response.getRetcode());
-            future.complete(response);
         } else {
-            log.warn("Received WebSocket response for unknown requestId: {}", requestId);
+            // Late response after timeout, or the losing leg of a hedged call
+            log.debug("Received WebSocket response for unknown requestId: {}", requestId);
         }
     }
 
@@ -540,9 +939,7 @@ public class NapCatAdapter implements ClientAdapter {
      * <p>T106: Call get_group_info API</p>
      */
     public CompletableFuture<ApiCallResponseDTO> getGroupInfo(Long groupId) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("group_id", groupId);
-        return callApiWithFallback("get_group_info", params);
+        return cachedMetadata(NapCatMetadataCache.GET_GROUP_INFO, metadataKey(groupId, 0L));
     }
 
     /**
@@ -551,10 +948,7 @@ public class NapCatAdapter implements ClientAdapter {
      * <p>T107: Call get_group_member_info API</p>
      */
     public CompletableFuture<ApiCallResponseDTO> getGroupMemberInfo(Long groupId, Long userId) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("group_id", groupId);
-        params.put("user_id", userId);
-        return callApiWithFallback("get_group_member_info", params);
+        return cachedMetadata(NapCatMetadataCache.GET_GROUP_MEMBER_INFO, metadataKey(groupId, userId));
     }
 
     /**
@@ -563,9 +957,7 @@ public class NapCatAdapter implements ClientAdapter {
      * <p>T108: Call get_group_member_list API</p>
      */
     public CompletableFuture<ApiCallResponseDTO> getGroupMemberList(Long groupId) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("group_id", groupId);
-        return callApiWithFallback("get_group_member_list", params);
+        return cachedMetadata(NapCatMetadataCache.GET_GROUP_MEMBER_LIST, metadataKey(groupId, 0L));
     }
 
     /**
@@ -599,7 +991,7 @@ public class NapCatAdapter implements ClientAdapter {
      * @return API response containing user_id (bot's QQ ID), nickname, etc.
      */
     public CompletableFuture<ApiCallResponseDTO> getLoginInfo() {
-        return callApiWithFallback("get_login_info", Collections.emptyMap());
+        return cachedMetadata(NapCatMetadataCache.GET_LOGIN_INFO, metadataKey(null, 0L));
     }
 
     /**
@@ -610,7 +1002,67 @@ public class NapCatAdapter implements ClientAdapter {
      * @return API response containing list of groups with group_id, group_name, member_count
      */
     public CompletableFuture<ApiCallResponseDTO> getGroupList() {
-        return callApiWithFallback("get_group_list", Collections.emptyMap());
+        return cachedMetadata(NapCatMetadataCache.GET_GROUP_LIST, metadataKey(null, 0L));
+    }
+
+    /**
+     * Invalidate cached metadata of a group (group info, member list, member info)
+     *
+     * @param groupId Platform group ID
+     */
+    public void invalidateGroupMetadata(Long groupId) {
+        if (metadataCache != null && groupId != null) {
+            metadataCache.invalidateGroup(groupId);
+        }
+    }
+
+    /**
+     * Handle OneBot notice event (post_type=notice)
+     *
+     * <p>Invalidates cached metadata affected by member/admin/card/group-name changes.</p>
+     *
+     * @param event Notice event JSON
+     */
+    public void handleNoticeEvent(Map<String, Object> event) {
+        if (metadataCache != null) {
+            metadataCache.onNotice(event);
+        }
+    }
+
+    /**
+     * Cache key scoped to the client the call will be routed to, so one bot's login info or
+     * group list is never served for another bot's account
+     */
+    private NapCatMetadataCache.Key metadataKey(Long groupId, Long userId) {
+        Long clientId = sessionManager != null ? sessionManager.resolveRouteClientId(groupId) : null;
+        return new NapCatMetadataCache.Key(
+            clientId != null ? clientId : NapCatMetadataCache.Key.DEFAULT_CLIENT,
+            groupId != null ? groupId : 0L,
+            userId != null ? userId : 0L);
+    }
+
+    /**
+     * Read metadata through the cache (or directly when caching is disabled)
+     */
+    private CompletableFuture<ApiCallResponseDTO> cachedMetadata(String action, NapCatMetadataCache.Key key) {
+        if (metadataCache == null) {
+            return loadMetadata(action, key);
+        }
+        return metadataCache.get(action, key, () -> loadMetadata(action, key));
+    }
+
+    /**
+     * Call metadata API, building params from the cache key
+     */
+    private CompletableFuture<ApiCallResponseDTO> loadMetadata(String action, NapCatMetadataCache.Key key) {
+        Map<String, Object> params = new HashMap<>();
+        if (key.groupId() != 0) {
+            params.put("group_id", key.groupId());
+        }
+        if (key.userId() != 0) {
+            params.put("user_id", key.userId());
+        }
+        return callApiWithFallback(action, params);
     }
 
     /**
@@ -635,50 +1087,92 @@ public class NapCatAdapter implements ClientAdapter {
      * @return Map containing performance metrics
      */
     public Map<String, Object> getApiMetrics() {
-        long total = totalApiCalls.get();
-        long successful = successfulApiCalls.get();
-        long failed = failedApiCalls.get();
-        long timeout = timeoutApiCalls.get();
-        long totalTime = totalExecutionTime.get();
-
-        Map<String, Object> metrics = new HashMap<>();
-        metrics.put("totalCalls", total);
-        metrics.put("successfulCalls", successful);
-        metrics.put("failedCalls", failed);
-        metrics.put("timeoutCalls", timeout);
-        metrics.put("successRate", getSuccessRate());
-        metrics.put("failureRate", getFailureRate());
-        metrics.put("timeoutRate", getTimeoutRate());
-        metrics.put("averageExecutionTime", total > 0 ? totalTime / total : 0);
-        metrics.put("totalExecutionTime", totalTime);
+        Map<String, Object> metrics = apiMetrics.summary();
+        metrics.put("fallbackCalls", fallbackApiCalls.get());
+        metrics.put("hedgedCalls", hedgedApiCalls.get());
+        metrics.put("hedgeWins", hedgeWins.get());
+        if (correlator != null) {
+            metrics.put("inFlightRequests", correlator.inFlight());
+            metrics.put("timeoutsByAction", correlator.timeoutsByAction());
+        }
 
         return metrics;
     }
 
     /**
-     * T104: Calculate success rate
+     * NapCat HTTP endpoint: base URL, precomputed Authorization header and per-action URLs
      */
-    private double getSuccessRate() {
-        long total = totalApiCalls.get();
-        if (total == 0) return 0.0;
-        return (successfulApiCalls.get() * 100.0) / total;
-    }
+    private static final class HttpEndpoint {
+        private final String host;
+        private final Integer port;
+        private final String token;
+        private final String baseUrl;
+        private final String authorization;
+        private final Map<String, String> actionUrls = new ConcurrentHashMap<>();
+
+        HttpEndpoint(String baseUrl, String token) {
+            this.host = null;
+            this.port = null;
+            this.token = token;
+            this.baseUrl = baseUrl;
+            this.authorization = StringUtils.hasText(token) ? "Bearer " + token : null;
+        }
 
-    /**
-     * T104: Calculate failure rate
-     */
-    private double getFailureRate() {
-        long total = totalApiCalls.get();
-        if (total == 0) return 0.0;
-        return (failedApiCalls.get() * 100.0) / total;
+        HttpEndpoint(ChatClient.ConnectionConfig config) {
+            this.host = config.getHost();
+            this.port = config.getHttpPort();
+            this.token = config.getAccessToken();
+            this.baseUrl = (host.contains("://") ? host : "http://" + host) + ":" + port;
+            this.authorization = StringUtils.hasText(token) ? "Bearer " + token : null;
+        }
+
+        boolean matches(ChatClient.ConnectionConfig config) {
+            return Objects.equals(host, config.getHost()) && Objects.equals(port, config.getHttpPort())
+                && Objects.equals(token, config.getAccessToken());
+        }
+
+        String actionUrl(String action) {
+            return actionUrls.computeIfAbsent(action, a -> baseUrl + "/" + a);
+        }
     }
 
     /**
-     * T104: Calculate timeout rate
+     * Fixed-size ring of recent latencies with a percentile cached for one second
      */
-    private double getTimeoutRate() {
-        long total = totalApiCalls.get();
-        if (total == 0) return 0.0;
-        return (timeoutApiCalls.get() * 100.0) / total;
+    private static final class LatencyWindow {
+        private static final int MIN_SAMPLES = 20;
+        private static final long RECOMPUTE_INTERVAL_MS = 1000;
+
+        private final long[] samples;
+        private final AtomicLong cursor = new AtomicLong(0);
+        private volatile long cachedPercentile = -1;
+        private volatile long computedAt;
+
+        LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        void record(long latencyMs) {
+            samples[(int) (cursor.getAndIncrement() % samples.length)] = latencyMs;
+        }
+
+        long percentile(double percentile, long defaultValue) {
+            long count = Math.min(cursor.get(), samples.length);
+            if (count < MIN_SAMPLES) {
+                return defaultValue;
+            }
+
+            long now = System.currentTimeMillis();
+            if (cachedPercentile >= 0 && now - computedAt < RECOMPUTE_INTERVAL_MS) {
+                return cachedPercentile;
+            }
+
+            long[] sorted = Arrays.copyOf(samples, (int) count);
+            Arrays.sort(sorted);
+            int index = (int) Math.min(count - 1, Math.max(0, Math.ceil(percentile * count) - 1));
+            cachedPercentile = sorted[index];
+            computedAt = now;
+            return cachedPercentile;
+        }
     }
 }
@@ -0,0 +1,199 @@
+package com.specqq.chatbot.adapter;
+
+import com.specqq.chatbot.dto.ApiCallResponseDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * NapCat API调用指标
+ *
+ * - napcat_api_call_duration_seconds{action, transport, outcome}: 耗时直方图(含p50/p95/p99), 其count即调用次数
+ * - 全局累计值(总数/成功/失败/超时/耗时), 供健康检查汇总使用
+ * - 逐次调用日志采样判定
+ *
+ * @author Chatbot Router System
+ */
+public class NapCatApiMetrics {
+
+    /**
+     * 传输方式
+     */
+    public enum Transport {
+        HTTP("http"),
+        WEBSOCKET("websocket");
+
+        private final String tag;
+
+        Transport(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * 调用结果
+     */
+    public enum Outcome {
+        /**
+         * retcode=0
+         */
+        SUCCESS("success"),
+
+        /**
+         * NapCat已响应但retcode≠0
+         */
+        ERROR("error"),
+
+        /**
+         * 传输失败(连接、解析、发送失败)
+         */
+        FAILURE("failure"),
+
+        /**
+         * 超时
+         */
+        TIMEOUT("timeout"),
+
+        /**
+         * 被取消(如对冲请求中落败的一方)
+         */
+        CANCELLED("cancelled");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+
+        /**
+         * 根据Future完成结果判定
+         */
+        public static Outcome of(ApiCallResponseDTO response, Throwable throwable) {
+            if (throwable == null) {
+                return response != null && response.getRetcode() != null && response.getRetcode() == 0
+                    ? SUCCESS
+                    : ERROR;
+            }
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+            if (cause instanceof TimeoutException) {
+                return TIMEOUT;
+            }
+            if (cause instanceof CancellationException) {
+                return CANCELLED;
+            }
+            return FAILURE;
+        }
+    }
+
+    private record TimerKey(String action, Transport transport, Outcome outcome) {
+    }
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+    private final double logSampleRate;
+    private volatile MeterRegistry registry;
+
+    private final LongAdder totalCalls = new LongAdder();
+    private final LongAdder successfulCalls = new LongAdder();
+    private final LongAdder failedCalls = new LongAdder();
+    private final LongAdder timeoutCalls = new LongAdder();
+    private final LongAdder totalExecutionTimeMs = new LongAdder();
+
+    /**
+     * @param logSampleRate 逐次调用调试日志采样率(0~1)
+     */
+    public NapCatApiMetrics(double logSampleRate) {
+        this.logSampleRate = logSampleRate;
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 记录一次API调用
+     *
+     * @param action       API action
+     * @param transport    传输方式
+     * @param outcome      调用结果
+     * @param elapsedNanos 耗时(纳秒)
+     */
+    public void record(String action, Transport transport, Outcome outcome, long elapsedNanos) {
+        totalCalls.increment();
+        totalExecutionTimeMs.add(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        switch (outcome) {
+            case SUCCESS, ERROR -> successfulCalls.increment();
+            case TIMEOUT -> {
+                timeoutCalls.increment();
+                failedCalls.increment();
+            }
+            case FAILURE -> failedCalls.increment();
+            default -> {
+                // 取消不计入成功/失败
+            }
+        }
+
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry != null) {
+            timers.computeIfAbsent(new TimerKey(action, transport, outcome), key -> Timer.builder("napcat_api_call_duration_seconds")
+                    .description("NapCat API调用耗时(秒)")
+                    .tag("component", "napcat-adapter")
+                    .tag("action", key.action())
+                    .tag("transport", key.transport().tag)
+                    .tag("outcome", key.outcome().tag)
+                    .publishPercentiles(PERCENTILES)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(meterRegistry))
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 是否输出本次调用的调试日志(按采样率)
+     */
+    public boolean shouldLog() {
+        return logSampleRate > 0 && (logSampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < logSampleRate);
+    }
+
+    /**
+     * 全局汇总(健康检查使用)
+     */
+    public Map<String, Object> summary() {
+        long total = totalCalls.sum();
+        long successful = successfulCalls.sum();
+        long failed = failedCalls.sum();
+        long timeout = timeoutCalls.sum();
+        long totalTime = totalExecutionTimeMs.sum();
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("totalCalls", total);
+        metrics.put("successfulCalls", successful);
+        metrics.put("failedCalls", failed);
+        metrics.put("timeoutCalls", timeout);
+        metrics.put("successRate", rate(successful, total));
+        metrics.put("failureRate", rate(failed, total));
+        metrics.put("timeoutRate", rate(timeout, total));
+        metrics.put("averageExecutionTime", total > 0 ? totalTime / total : 0);
+        metrics.put("totalExecutionTime", totalTime);
+        return metrics;
+    }
+
+    private static double rate(long count, long total) {
+        return total == 0 ? 0.0 : (count * 100.0) / total;
+    }
+}
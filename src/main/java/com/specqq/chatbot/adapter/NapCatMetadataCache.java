@@ -0,0 +1,282 @@
+package com.specqq.chatbot.adapter;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.specqq.chatbot.dto.ApiCallResponseDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * NapCat元数据读穿缓存
+ *
+ * 覆盖 get_group_info / get_group_member_info / get_group_member_list / get_login_info / get_group_list:
+ * - 按action独立TTL(expireAfterWrite)
+ * - 提前刷新: 超过TTL×refresh-ahead-ratio后的访问触发后台刷新, 刷新期间返回旧值
+ * - 单飞: 同一key的并发请求合并为一次NapCat调用(Caffeine异步加载语义)
+ * - 失败或retcode≠0的响应不缓存
+ * - 通知事件失效: 群成员增减、管理员变更、群名片/群名变更
+ * - 按客户端(机器人账号)分别缓存, 多账号时登录信息/群列表互不串用
+ *
+ * @author Chatbot Router System
+ */
+@Slf4j
+public class NapCatMetadataCache {
+
+    public static final String GET_GROUP_INFO = "get_group_info";
+    public static final String GET_GROUP_MEMBER_INFO = "get_group_member_info";
+    public static final String GET_GROUP_MEMBER_LIST = "get_group_member_list";
+    public static final String GET_LOGIN_INFO = "get_login_info";
+    public static final String GET_GROUP_LIST = "get_group_list";
+
+    /**
+     * 缓存键(无群/用户维度时为0)
+     *
+     * clientId为应答该请求的chat_client: get_login_info / get_group_list 等按机器人账号区分,
+     * 多账号时不同机器人的结果不能共用; 单账号时为0(默认客户端)
+     */
+    public record Key(long clientId, long groupId, long userId) {
+        public static final long DEFAULT_CLIENT = 0;
+        public static final Key GLOBAL = global(DEFAULT_CLIENT);
+
+        public Key(long groupId, long userId) {
+            this(DEFAULT_CLIENT, groupId, userId);
+        }
+
+        public static Key global(long clientId) {
+            return new Key(clientId, 0, 0);
+        }
+
+        public static Key group(long groupId) {
+            return group(DEFAULT_CLIENT, groupId);
+        }
+
+        public static Key group(long clientId, long groupId) {
+            return new Key(clientId, groupId, 0);
+        }
+    }
+
+    private final Map<String, AsyncLoadingCache<Key, ApiCallResponseDTO>> caches = new HashMap<>();
+
+    /**
+     * 已加载过元数据的客户端ID(数量等于机器人账号数), 通知失效时据此推导各客户端的缓存键
+     */
+    private final Set<Long> clientIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param ttlByAction       各action的TTL(未配置的action不缓存)
+     * @param refreshAheadRatio 提前刷新比例(0~1, ≤0表示不提前刷新)
+     * @param maximumSize       每个action缓存的最大条目数
+     * @param loader            实际调用NapCat的加载函数
+     */
+    public NapCatMetadataCache(Map<String, Duration> ttlByAction,
+                               double refreshAheadRatio,
+                               long maximumSize,
+                               BiFunction<String, Key, CompletableFuture<ApiCallResponseDTO>> loader) {
+        ttlByAction.forEach((action, ttl) -> {
+            if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+                return;
+            }
+
+            Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats();
+            if (refreshAheadRatio > 0 && refreshAheadRatio < 1) {
+                builder.refreshAfterWrite(Duration.ofMillis(Math.max(1, (long) (ttl.toMillis() * refreshAheadRatio))));
+            }
+
+            caches.put(action, builder.buildAsync((key, executor) -> {
+                clientIds.add(key.clientId());
+                return loader.apply(action, key).thenCompose(response -> isCacheable(response)
+                    ? CompletableFuture.completedFuture(response)
+                    : CompletableFuture.failedFuture(new UncacheableResponseException(response)));
+            }));
+        });
+    }
+
+    /**
+     * 读取元数据(未命中时加载, 并发加载合并)
+     *
+     * @param action API action
+     * @param key    缓存键
+     * @param direct action未启用缓存时的直接调用
+     * @return API响应(失败响应原样返回, 但不缓存)
+     */
+    public CompletableFuture<ApiCallResponseDTO> get(String action, Key key,
+                                                     Supplier<CompletableFuture<ApiCallResponseDTO>> direct) {
+        AsyncLoadingCache<Key, ApiCallResponseDTO> cache = caches.get(action);
+        if (cache == null) {
+            return direct.get();
+        }
+
+        return cache.get(key).exceptionallyCompose(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+            return cause instanceof UncacheableResponseException uncacheable
+                ? CompletableFuture.completedFuture(uncacheable.response)
+                : CompletableFuture.failedFuture(cause);
+        });
+    }
+
+    /**
+     * 失效指定群的所有元数据(群信息、成员列表、该群下的成员信息), 覆盖所有客户端
+     *
+     * <p>成员信息的键无法由群推导, 需遍历该action的缓存; 仅在管理端同步群或机器人自身退群时调用,
+     * 不在逐条通知事件的路径上。</p>
+     */
+    public void invalidateGroup(long groupId) {
+        invalidateGroupScoped(GET_GROUP_INFO, groupId, 0);
+        invalidateGroupScoped(GET_GROUP_MEMBER_LIST, groupId, 0);
+        AsyncLoadingCache<Key, ApiCallResponseDTO> members = caches.get(GET_GROUP_MEMBER_INFO);
+        if (members != null) {
+            members.synchronous().asMap().keySet().removeIf(key -> key.groupId() == groupId);
+        }
+    }
+
+    /**
+     * 失效单个缓存项
+     */
+    public void invalidate(String action, Key key) {
+        AsyncLoadingCache<Key, ApiCallResponseDTO> cache = caches.get(action);
+        if (cache != null) {
+            cache.synchronous().invalidate(key);
+        }
+    }
+
+    /**
+     * 失效指定action的全部缓存
+     */
+    public void invalidateAll(String action) {
+        AsyncLoadingCache<Key, ApiCallResponseDTO> cache = caches.get(action);
+        if (cache != null) {
+            cache.synchronous().invalidateAll();
+        }
+    }
+
+    /**
+     * 根据OneBot通知事件失效相关缓存
+     *
+     * @param event 事件JSON(post_type=notice)
+     */
+    public void onNotice(Map<String, Object> event) {
+        String noticeType = (String) event.get("notice_type");
+        if (noticeType == null) {
+            return;
+        }
+
+        long groupId = toLong(event.get("group_id"));
+        long userId = toLong(event.get("user_id"));
+        long selfId = toLong(event.get("self_id"));
+
+        switch (noticeType) {
+            case "group_increase", "group_decrease" -> {
+                // 成员数变化影响群信息; 机器人自身进/退群影响群列表
+                if (groupId != 0) {
+                    invalidateGroupScoped(GET_GROUP_INFO, groupId, 0);
+                    invalidateGroupScoped(GET_GROUP_MEMBER_LIST, groupId, 0);
+                    invalidateGroupScoped(GET_GROUP_MEMBER_INFO, groupId, userId);
+                }
+                if (userId != 0 && userId == selfId) {
+                    invalidateAll(GET_GROUP_LIST);
+                    if (groupId != 0) {
+                        invalidateGroup(groupId);
+                    }
+                }
+            }
+            case "group_admin", "group_card", "group_title" -> {
+                if (groupId != 0) {
+                    invalidateGroupScoped(GET_GROUP_MEMBER_LIST, groupId, 0);
+                    invalidateGroupScoped(GET_GROUP_MEMBER_INFO, groupId, userId);
+                }
+            }
+            case "group_name" -> invalidateGroupName(groupId);
+            case "notify" -> {
+                Object subType = event.get("sub_type");
+                if ("group_name".equals(subType)) {
+                    invalidateGroupName(groupId);
+                } else if ("title".equals(subType) && groupId != 0) {
+                    invalidateGroupScoped(GET_GROUP_MEMBER_INFO, groupId, userId);
+                    invalidateGroupScoped(GET_GROUP_MEMBER_LIST, groupId, 0);
+                }
+            }
+            default -> {
+                // 其他通知不影响元数据
+            }
+        }
+    }
+
+    /**
+     * 注册Caffeine缓存指标
+     */
+    public void bindMetrics(MeterRegistry registry) {
+        caches.forEach((action, cache) ->
+            CaffeineCacheMetrics.monitor(registry, cache, "napcat_metadata", "action", action));
+    }
+
+    /**
+     * 失效群维度的缓存项(群信息/成员由群决定, 与哪个机器人查询无关, 因此覆盖所有客户端)
+     *
+     * <p>按已知客户端推导缓存键逐个失效, 开销与机器人账号数成正比, 与缓存大小无关。</p>
+     *
+     * @param userId 成员ID, 0表示群级条目
+     */
+    private void invalidateGroupScoped(String action, long groupId, long userId) {
+        AsyncLoadingCache<Key, ApiCallResponseDTO> cache = caches.get(action);
+        if (cache != null) {
+            List<Key> keys = clientIds.stream()
+                .map(clientId -> new Key(clientId, groupId, userId))
+                .toList();
+            cache.synchronous().invalidateAll(keys);
+        }
+    }
+
+    private void invalidateGroupName(long groupId) {
+        if (groupId != 0) {
+            invalidateGroupScoped(GET_GROUP_INFO, groupId, 0);
+        }
+        invalidateAll(GET_GROUP_LIST);
+    }
+
+    private static boolean isCacheable(ApiCallResponseDTO response) {
+        return response != null && response.getRetcode() != null && response.getRetcode() == 0;
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof String text && !text.isEmpty()) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 加载成功但不可缓存的响应(retcode≠0), 用于让Caffeine丢弃该条目同时把响应交还调用方
+     */
+    private static final class UncacheableResponseException extends RuntimeException {
+        private final transient ApiCallResponseDTO response;
+
+        UncacheableResponseException(ApiCallResponseDTO response) {
+            super(null, null, false, false);
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,556 @@
+package com.specqq.chatbot.adapter;
+
+import com.specqq.chatbot.dto.ApiCallResponseDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * NapCat API请求关联器
+ *
+ * 负责请求ID分配、请求/响应关联与超时管理:
+ * - 请求ID: 单调递增long(替代UUID.randomUUID())
+ * - 挂起表: 分段开放寻址的long键哈希表(无装箱, 无Entry对象)
+ * - 超时: 所有请求共享一个时间轮(替代每个Future各自的orTimeout定时任务)
+ * - 指标: 在途请求数、按action统计的超时次数
+ *
+ * @author Chatbot Router System
+ */
+@Slf4j
+public class NapCatRequestCorrelator {
+
+    private static final int STRIPES = 16;
+    private static final int INITIAL_STRIPE_CAPACITY = 64;
+
+    private final AtomicLong idSequence = new AtomicLong(0);
+    private final PendingTable pendingTable = new PendingTable(STRIPES, INITIAL_STRIPE_CAPACITY);
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final Map<String, LongAdder> timeoutsByAction = new ConcurrentHashMap<>();
+    private final WheelTimer timer;
+
+    private volatile MeterRegistry meterRegistry;
+
+    /**
+     * @param tickMs    时间轮刻度(毫秒), 超时精度约为一个刻度
+     * @param wheelSize 时间轮槽数(向上取整为2的幂)
+     */
+    public NapCatRequestCorrelator(long tickMs, int wheelSize) {
+        this.timer = new WheelTimer(Math.max(1, tickMs), wheelSize);
+        this.timer.start();
+    }
+
+    /**
+     * 分配新的请求ID(从1开始, 0保留为挂起表空槽标记)
+     */
+    public long nextId() {
+        return idSequence.incrementAndGet();
+    }
+
+    /**
+     * 注册挂起请求并启动超时计时
+     *
+     * <p>超时后Future以{@link TimeoutException}异常完成。</p>
+     *
+     * @param requestId 请求ID
+     * @param action    API action(用于超时统计)
+     * @param timeoutMs 超时时间(毫秒)
+     * @return 响应Future
+     */
+    public CompletableFuture<ApiCallResponseDTO> register(long requestId, String action, long timeoutMs) {
+        Pending pending = new Pending(requestId, action, timeoutMs,
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMs)));
+        pendingTable.put(requestId, pending);
+        inFlight.incrementAndGet();
+        timer.schedule(pending);
+        return pending.future;
+    }
+
+    /**
+     * 以响应完成挂起请求
+     *
+     * @return false表示请求ID未知(已超时或已完成)
+     */
+    public boolean complete(long requestId, ApiCallResponseDTO response) {
+        Pending pending = remove(requestId);
+        return pending != null && pending.future.complete(response);
+    }
+
+    /**
+     * 以字符串形式的请求ID完成挂起请求(WebSocket响应中的id字段)
+     *
+     * @return false表示请求ID未知或格式不合法
+     */
+    public boolean complete(String requestId, ApiCallResponseDTO response) {
+        if (requestId == null) {
+            return false;
+        }
+        try {
+            return complete(Long.parseLong(requestId), response);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 以异常完成挂起请求
+     *
+     * @return false表示请求ID未知(已超时或已完成)
+     */
+    public boolean completeExceptionally(long requestId, Throwable error) {
+        Pending pending = remove(requestId);
+        return pending != null && pending.future.completeExceptionally(error);
+    }
+
+    /**
+     * 以字符串形式的请求ID异常完成挂起请求
+     *
+     * @return false表示请求ID未知或格式不合法
+     */
+    public boolean completeExceptionally(String requestId, Throwable error) {
+        if (requestId == null) {
+            return false;
+        }
+        try {
+            return completeExceptionally(Long.parseLong(requestId), error);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 当前在途请求数
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 按action统计的超时次数快照
+     */
+    public Map<String, Long> timeoutsByAction() {
+        Map<String, Long> snapshot = new HashMap<>();
+        timeoutsByAction.forEach((action, count) -> snapshot.put(action, count.sum()));
+        return snapshot;
+    }
+
+    /**
+     * 注册Micrometer指标
+     */
+    public void bindMetrics(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        Gauge.builder("napcat_api_inflight_requests", inFlight, AtomicInteger::get)
+            .description("NapCat API在途请求数")
+            .tag("component", "napcat-adapter")
+            .register(registry);
+        timeoutsByAction.forEach((action, count) -> registerTimeoutCounter(registry, action, count));
+    }
+
+    /**
+     * 停止时间轮并以异常完成所有挂起请求
+     */
+    public void close() {
+        timer.stop();
+        List<Pending> remaining = pendingTable.removeAll();
+        for (Pending pending : remaining) {
+            inFlight.decrementAndGet();
+            pending.future.completeExceptionally(
+                new IllegalStateException("NapCat request correlator closed: action=" + pending.action));
+        }
+        if (!remaining.isEmpty()) {
+            log.warn("NapCat request correlator closed with {} pending requests", remaining.size());
+        }
+    }
+
+    private Pending remove(long requestId) {
+        Pending pending = pendingTable.remove(requestId, null);
+        if (pending != null) {
+            inFlight.decrementAndGet();
+        }
+        return pending;
+    }
+
+    /**
+     * 时间轮线程回调: 仅当请求仍在挂起表中时才判定超时
+     *
+     * <p>调用方已自行取消的Future只从挂起表中清除, 不计为超时。</p>
+     */
+    private void expire(Pending pending) {
+        if (pendingTable.remove(pending.requestId, pending) == null) {
+            return;
+        }
+        inFlight.decrementAndGet();
+        if (pending.future.isDone()) {
+            return;
+        }
+
+        timeoutsByAction.computeIfAbsent(pending.action, action -> {
+            LongAdder count = new LongAdder();
+            MeterRegistry registry = meterRegistry;
+            if (registry != null) {
+                registerTimeoutCounter(registry, action, count);
+            }
+            return count;
+        }).increment();
+
+        pending.future.completeExceptionally(new TimeoutException(String.format(
+            "NapCat API call timeout for action '%s' after %dms", pending.action, pending.timeoutMs)));
+    }
+
+    private static void registerTimeoutCounter(MeterRegistry registry, String action, LongAdder count) {
+        FunctionCounter.builder("napcat_api_timeouts_total", count, LongAdder::sum)
+            .description("NapCat API超时次数")
+            .tag("component", "napcat-adapter")
+            .tag("action", action)
+            .register(registry);
+    }
+
+    /**
+     * 在共享时间轮上调度延迟任务(任务在时间轮线程上执行, 不得阻塞)
+     *
+     * @param delayMs 延迟(毫秒)
+     * @param task    任务
+     * @return 可取消的定时句柄
+     */
+    public Timeout schedule(long delayMs, Runnable task) {
+        ScheduledTask scheduled = new ScheduledTask(
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs)), task);
+        timer.schedule(scheduled);
+        return scheduled;
+    }
+
+    /**
+     * 定时任务句柄
+     */
+    public interface Timeout {
+
+        /**
+         * 取消任务(已执行的任务取消无效果)
+         */
+        void cancel();
+    }
+
+    /**
+     * 时间轮槽链表节点
+     */
+    private abstract static class WheelEntry {
+        final long deadlineNanos;
+
+        // 以下字段仅由时间轮线程访问
+        long remainingRounds;
+        WheelEntry next;
+
+        WheelEntry(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * 是否已无需到期处理(可提前从槽中移除)
+         */
+        abstract boolean isSettled();
+    }
+
+    /**
+     * 挂起请求
+     */
+    private static final class Pending extends WheelEntry {
+        final long requestId;
+        final String action;
+        final long timeoutMs;
+        final CompletableFuture<ApiCallResponseDTO> future = new CompletableFuture<>();
+
+        Pending(long requestId, String action, long timeoutMs, long deadlineNanos) {
+            super(deadlineNanos);
+            this.requestId = requestId;
+            this.action = action;
+            this.timeoutMs = timeoutMs;
+        }
+
+        @Override
+        boolean isSettled() {
+            return future.isDone();
+        }
+    }
+
+    /**
+     * 延迟任务
+     */
+    private static final class ScheduledTask extends WheelEntry implements Timeout {
+        final Runnable task;
+        volatile boolean cancelled;
+
+        ScheduledTask(long deadlineNanos, Runnable task) {
+            super(deadlineNanos);
+            this.task = task;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        boolean isSettled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * 分段long键开放寻址哈希表(线性探测 + 删除后移)
+     *
+     * 键0保留为空槽, 请求ID从1开始分配。
+     */
+    private static final class PendingTable {
+
+        private final Stripe[] stripes;
+        private final int stripeMask;
+
+        PendingTable(int stripeCount, int initialCapacity) {
+            stripes = new Stripe[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new Stripe(initialCapacity);
+            }
+            stripeMask = stripeCount - 1;
+        }
+
+        void put(long key, Pending value) {
+            long hash = mix(key);
+            stripes[(int) (hash >>> 32) & stripeMask].put(key, (int) hash, value);
+        }
+
+        /**
+         * 删除键; expected非null时仅当当前值为expected才删除
+         */
+        Pending remove(long key, Pending expected) {
+            long hash = mix(key);
+            return stripes[(int) (hash >>> 32) & stripeMask].remove(key, (int) hash, expected);
+        }
+
+        List<Pending> removeAll() {
+            List<Pending> all = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                stripe.drainTo(all);
+            }
+            return all;
+        }
+
+        private static long mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return h ^ (h >>> 29);
+        }
+
+        private static final class Stripe {
+            private long[] keys;
+            private Pending[] values;
+            private int size;
+
+            Stripe(int capacity) {
+                keys = new long[capacity];
+                values = new Pending[capacity];
+            }
+
+            synchronized void put(long key, int hash, Pending value) {
+                if ((size + 1) * 2 > keys.length) {
+                    resize();
+                }
+                int mask = keys.length - 1;
+                int slot = hash & mask;
+                while (keys[slot] != 0) {
+                    if (keys[slot] == key) {
+                        values[slot] = value;
+                        return;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+            }
+
+            synchronized Pending remove(long key, int hash, Pending expected) {
+                int mask = keys.length - 1;
+                int slot = hash & mask;
+                while (keys[slot] != 0) {
+                    if (keys[slot] == key) {
+                        Pending value = values[slot];
+                        if (expected != null && value != expected) {
+                            return null;
+                        }
+                        shiftBack(slot, mask);
+                        size--;
+                        return value;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                return null;
+            }
+
+            synchronized void drainTo(List<Pending> target) {
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] != 0) {
+                        target.add(values[i]);
+                        keys[i] = 0;
+                        values[i] = null;
+                    }
+                }
+                size = 0;
+            }
+
+            /**
+             * 删除后将后续探测链上的元素前移, 保持线性探测不变式(无墓碑)
+             */
+            private void shiftBack(int slot, int mask) {
+                int gap = slot;
+                int next = (gap + 1) & mask;
+                while (keys[next] != 0) {
+                    int home = (int) mix(keys[next]) & mask;
+                    // next的理想位置不在(gap, next]区间内时, 可以前移到gap
+                    if (((next - home) & mask) >= ((next - gap) & mask)) {
+                        keys[gap] = keys[next];
+                        values[gap] = values[next];
+                        gap = next;
+                    }
+                    next = (next + 1) & mask;
+                }
+                keys[gap] = 0;
+                values[gap] = null;
+            }
+
+            private void resize() {
+                long[] oldKeys = keys;
+                Pending[] oldValues = values;
+                keys = new long[oldKeys.length * 2];
+                values = new Pending[oldKeys.length * 2];
+                int mask = keys.length - 1;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != 0) {
+                        int slot = (int) mix(oldKeys[i]) & mask;
+                        while (keys[slot] != 0) {
+                            slot = (slot + 1) & mask;
+                        }
+                        keys[slot] = oldKeys[i];
+                        values[slot] = oldValues[i];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 哈希时间轮(单工作线程)
+     *
+     * 新任务先进入无锁队列, 由工作线程在每个刻度转移到对应槽位;
+     * 已完成的请求/已取消的任务不从槽中即时删除, 轮到该槽时再丢弃。
+     */
+    private final class WheelTimer implements Runnable {
+
+        private final long tickNanos;
+        private final WheelEntry[] wheel;
+        private final int mask;
+        private final Queue<WheelEntry> incoming = new ConcurrentLinkedQueue<>();
+        private final Thread worker;
+        private volatile boolean running = true;
+        private long startNanos;
+        private long tick;
+
+        WheelTimer(long tickMs, int wheelSize) {
+            this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+            int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+            this.wheel = new WheelEntry[size];
+            this.mask = size - 1;
+            this.worker = new Thread(this, "napcat-request-timer");
+            this.worker.setDaemon(true);
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+            worker.start();
+        }
+
+        void stop() {
+            running = false;
+            worker.interrupt();
+        }
+
+        void schedule(WheelEntry entry) {
+            incoming.add(entry);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                long deadline = startNanos + tickNanos * (tick + 1);
+                long sleepNanos;
+                while (running && (sleepNanos = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, sleepNanos);
+                }
+                if (!running) {
+                    break;
+                }
+
+                transferIncoming();
+                expireBucket((int) (tick & mask));
+                tick++;
+            }
+        }
+
+        private void transferIncoming() {
+            WheelEntry entry;
+            while ((entry = incoming.poll()) != null) {
+                long calculated = Math.max(0, (entry.deadlineNanos - startNanos) / tickNanos);
+                entry.remainingRounds = Math.max(0, (calculated - tick) / wheel.length);
+                int slot = (int) (Math.max(calculated, tick) & mask);
+                entry.next = wheel[slot];
+                wheel[slot] = entry;
+            }
+        }
+
+        private void expireBucket(int slot) {
+            WheelEntry previous = null;
+            WheelEntry current = wheel[slot];
+            while (current != null) {
+                WheelEntry next = current.next;
+                if (current.remainingRounds <= 0 || current.isSettled()) {
+                    if (previous == null) {
+                        wheel[slot] = next;
+                    } else {
+                        previous.next = next;
+                    }
+                    current.next = null;
+                    fire(current);
+                } else {
+                    current.remainingRounds--;
+                    previous = current;
+                }
+                current = next;
+            }
+        }
+
+        private void fire(WheelEntry entry) {
+            try {
+                if (entry instanceof Pending pending) {
+                    expire(pending);
+                } else if (entry instanceof ScheduledTask scheduled && !scheduled.cancelled) {
+                    scheduled.task.run();
+                }
+            } catch (Throwable t) {
+                log.error("NapCat request timer task failed", t);
+            }
+        }
+    }
+}
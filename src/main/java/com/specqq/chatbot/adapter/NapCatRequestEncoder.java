@@ -0,0 +1,126 @@
+package com.specqq.chatbot.adapter;
+
+import java.util.Map;
+
+/**
+ * NapCat出站请求编码器(热点action专用)
+ *
+ * 针对 send_group_msg / send_group_msg_async / delete_msg, 直接将请求写入线程复用的缓冲区,
+ * 省去 ApiCallRequestDTO 与通用 ObjectMapper 序列化的开销。
+ *
+ * 输出与 objectMapper.writeValueAsString(new ApiCallRequestDTO(id, action, params)) 逐字节一致:
+ * - 字段顺序 jsonrpc, id, action, params; params按Map自身迭代顺序写出(与Jackson一致)
+ * - 字符串转义与Jackson默认规则一致: 引号、反斜杠、\b \t \n \f \r, 其余控制字符写为大写十六进制的 \\u00XX, 非ASCII原样输出
+ * 参数值只支持 String / Long / Integer / Short / Byte / Boolean / null, 其他类型返回null由调用方回退通用序列化。
+ *
+ * @author Chatbot Router System
+ */
+public final class NapCatRequestEncoder {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * 超过该容量的缓冲区不再复用, 避免偶发大消息长期占用内存
+     */
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private NapCatRequestEncoder() {
+    }
+
+    /**
+     * 是否为专用编码器覆盖的action
+     */
+    public static boolean supports(String action) {
+        return "send_group_msg".equals(action)
+            || "send_group_msg_async".equals(action)
+            || "delete_msg".equals(action);
+    }
+
+    /**
+     * 编码请求
+     *
+     * @param id     请求ID
+     * @param action API action
+     * @param params API参数
+     * @return JSON字符串; action不受支持或参数含不支持的值类型时返回null
+     */
+    public static String encode(long id, String action, Map<String, Object> params) {
+        if (!supports(action) || params == null) {
+            return null;
+        }
+
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        out.append("{\"jsonrpc\":\"2.0\",\"id\":\"").append(id)
+            .append("\",\"action\":\"").append(action)
+            .append("\",\"params\":{");
+
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            writeString(out, entry.getKey());
+            out.append(':');
+            if (!writeValue(out, entry.getValue())) {
+                release(out);
+                return null;
+            }
+        }
+        out.append("}}");
+
+        String json = out.toString();
+        release(out);
+        return json;
+    }
+
+    private static boolean writeValue(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String text) {
+            writeString(out, text);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.append(((Number) value).longValue());
+        } else if (value instanceof Boolean bool) {
+            out.append(bool.booleanValue());
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeString(StringBuilder out, String text) {
+        out.append('"');
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.append(text, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\b' -> out.append("\\b");
+                case '\t' -> out.append("\\t");
+                case '\n' -> out.append("\\n");
+                case '\f' -> out.append("\\f");
+                case '\r' -> out.append("\\r");
+                default -> out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        out.append(text, start, length);
+        out.append('"');
+    }
+
+    private static void release(StringBuilder out) {
+        if (out.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.remove();
+        }
+    }
+}
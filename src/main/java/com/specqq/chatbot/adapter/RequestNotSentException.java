@@ -0,0 +1,38 @@
+package com.specqq.chatbot.adapter;
+
+/**
+ * A NapCat API request that provably never reached NapCat
+ *
+ * <p>Raised when the request could not be handed to any transport: the WebSocket frame was
+ * never dequeued for writing, the HTTP connection could not be established, or no endpoint
+ * exists for the target bot. Only such failures are safe to resend for non-idempotent actions
+ * (e.g. send_group_msg); any other failure, including a response timeout, may already have
+ * been executed by NapCat.</p>
+ *
+ * @author Chatbot Router System
+ */
+public class RequestNotSentException extends RuntimeException {
+
+    public RequestNotSentException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Whether a failure (possibly wrapped in CompletionException/ExecutionException) is a
+     * request that was never sent
+     *
+     * @param throwable failure
+     * @return true if a RequestNotSentException is in the cause chain
+     */
+    public static boolean isNotSent(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RequestNotSentException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+}
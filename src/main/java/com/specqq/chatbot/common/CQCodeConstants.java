@@ -154,6 +154,16 @@ public final class CQCodeConstants {
      */
     public static final String CACHE_STATISTICS_RULES = "statisticsRules";
 
+    /**
+     * Memo cache name for CQ parse results (keyed by message content hash)
+     */
+    public static final String CACHE_PARSE_MEMO = "cqCodeParseMemo";
+
+    /**
+     * Memo cache name for message statistics (keyed by message content hash)
+     */
+    public static final String CACHE_STATISTICS_MEMO = "messageStatisticsMemo";
+
     /**
      * Cache TTL in hours for compiled patterns
      */
@@ -190,9 +200,9 @@ public final class CQCodeConstants {
     public static final int TARGET_PARSE_P95_MS = 10;
 
     /**
-     * Target P95 latency for statistics calculation (milliseconds)
+     * Target P95 latency for statistics calculation (microseconds)
      */
-    public static final int TARGET_STATISTICS_P95_MS = 50;
+    public static final int TARGET_STATISTICS_P95_MICROS = 500;
 
     /**
      * Target cache hit rate (percentage)
@@ -4,8 +4,13 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.specqq.chatbot.common.CQCodeConstants;
+import com.specqq.chatbot.parser.ContentHashMemo;
+import com.specqq.chatbot.parser.ParsedMessage;
+import com.specqq.chatbot.service.MessageStatistics;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -18,6 +23,9 @@ import java.util.regex.Pattern;
  * <p>Configures Caffeine cache for compiled CQ code regex patterns.
  * Improves parsing performance by caching compiled patterns with 95%+ hit rate target.</p>
  *
+ * <p>Also provides the content-hash memo caches for CQ parse results and message statistics,
+ * which absorb spam / copy-paste waves that repeat the same raw message.</p>
+ *
  * <p>Performance Targets:
  * <ul>
  *   <li>Cache hit rate: ≥95%</li>
@@ -35,6 +43,21 @@ public class CQCodeCacheConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(CQCodeCacheConfig.class);
 
+    @Value("${caffeine.cqcode-memo.enabled:true}")
+    private boolean memoEnabled = true;
+
+    /**
+     * Total weight per memo (sum of cached message lengths in chars plus per-entry overhead)
+     */
+    @Value("${caffeine.cqcode-memo.max-weight:4194304}")
+    private long memoMaxWeight = 4 * 1024 * 1024;
+
+    @Value("${caffeine.cqcode-memo.max-content-length:8192}")
+    private int memoMaxContentLength = 8192;
+
+    @Value("${caffeine.cqcode-memo.expire-after-access:10m}")
+    private Duration memoExpireAfterAccess = Duration.ofMinutes(10);
+
     /**
      * Create Caffeine cache for compiled CQ code patterns
      *
@@ -85,6 +108,42 @@ public class CQCodeCacheConfig {
         return cache;
     }
 
+    /**
+     * Create memo cache for CQ parse results
+     *
+     * <p>Keyed by a 64-bit hash of the message, verified against the stored content.
+     * Disabled when {@code caffeine.cqcode-memo.enabled=false} (every call parses).</p>
+     *
+     * @param registry Meter registry for hit-rate metrics (cache_gets_total{cache="cqcode_parse"})
+     * @return Memo for parse results
+     */
+    @Bean(name = CQCodeConstants.CACHE_PARSE_MEMO)
+    public ContentHashMemo<ParsedMessage> cqCodeParseMemo(MeterRegistry registry) {
+        return createMemo(registry, "cqcode_parse");
+    }
+
+    /**
+     * Create memo cache for message statistics
+     *
+     * @param registry Meter registry for hit-rate metrics (cache_gets_total{cache="message_statistics"})
+     * @return Memo for statistics results
+     */
+    @Bean(name = CQCodeConstants.CACHE_STATISTICS_MEMO)
+    public ContentHashMemo<MessageStatistics> messageStatisticsMemo(MeterRegistry registry) {
+        return createMemo(registry, "message_statistics");
+    }
+
+    private <V> ContentHashMemo<V> createMemo(MeterRegistry registry, String name) {
+        ContentHashMemo<V> memo = new ContentHashMemo<>(memoEnabled ? memoMaxWeight : 0,
+                memoMaxContentLength, memoExpireAfterAccess);
+        memo.bindMetrics(registry, name);
+
+        logger.info("Initialized memo cache: name={}, enabled={}, maxWeight={}, maxContentLength={}, expireAfterAccess={}",
+                name, memo.isEnabled(), memoMaxWeight, memoMaxContentLength, memoExpireAfterAccess);
+
+        return memo;
+    }
+
     /**
      * Log cache statistics periodically (called by scheduled task)
      *
@@ -1,25 +1,40 @@
 package com.specqq.chatbot.config;
 
+import com.specqq.chatbot.websocket.NapCatHandshakeInterceptor;
+import com.specqq.chatbot.websocket.NapCatReverseWebSocketHandler;
 import com.specqq.chatbot.websocket.NapCatWebSocketHandler;
+import com.specqq.chatbot.websocket.WebSocketSessionManager;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.util.StringUtils;
 import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.server.support.OriginHandshakeInterceptor;
 
 import jakarta.annotation.PostConstruct;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * WebSocket配置类
  *
+ * - 正向WebSocket: 启动时主动连接NapCat
+ * - 反向WebSocket(可选): 暴露服务端端点供多个NapCat实例主动连接
+ *
  * @author Chatbot Router System
  */
 @Slf4j
 @Configuration
-public class WebSocketConfig {
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
 
     @Lazy
     @Autowired
@@ -31,11 +46,68 @@ public class WebSocketConfig {
     @Value("${napcat.websocket.access-token}")
     private String accessToken;
 
+    @Lazy
+    @Autowired
+    private WebSocketSessionManager sessionManager;
+
+    @Lazy
+    @Autowired
+    private NapCatHandshakeInterceptor handshakeInterceptor;
+
+    @Value("${napcat.reverse-websocket.enabled:false}")
+    private boolean reverseWebSocketEnabled;
+
+    @Value("${napcat.reverse-websocket.path:/ws/napcat}")
+    private String reverseWebSocketPath;
+
+    /**
+     * 允许的Origin(默认不允许任何跨域来源; NapCat等非浏览器客户端不带Origin头, 不受影响)
+     */
+    @Value("${napcat.reverse-websocket.allowed-origins:}")
+    private String[] reverseWebSocketAllowedOrigins;
+
+    @Value("${napcat.reverse-websocket.access-token:}")
+    private String reverseWebSocketAccessToken;
+
+    @Value("${napcat.reverse-websocket.allow-anonymous:false}")
+    private boolean reverseWebSocketAllowAnonymous;
+
+    @Value("${napcat.reverse-websocket.max-text-message-size:1048576}")
+    private int reverseWebSocketMaxTextMessageSize;
+
     @Bean
     public WebSocketClient webSocketClient() {
         return new StandardWebSocketClient();
     }
 
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        if (!reverseWebSocketEnabled) {
+            return;
+        }
+
+        // 始终校验Origin: 未配置allowed-origins时只接受同源或不带Origin头的请求
+        List<String> allowedOrigins = Arrays.stream(reverseWebSocketAllowedOrigins)
+            .filter(StringUtils::hasText)
+            .map(String::trim)
+            .toList();
+        OriginHandshakeInterceptor originInterceptor = new OriginHandshakeInterceptor();
+        originInterceptor.setAllowedOriginPatterns(allowedOrigins);
+
+        registry.addHandler(new NapCatReverseWebSocketHandler(
+                    napCatWebSocketHandler, sessionManager, reverseWebSocketMaxTextMessageSize),
+                reverseWebSocketPath)
+            .addInterceptors(originInterceptor, handshakeInterceptor);
+        if (reverseWebSocketAllowAnonymous) {
+            log.warn("NapCat reverse WebSocket allows clients without access token (allow-anonymous=true)");
+        } else if (!StringUtils.hasText(reverseWebSocketAccessToken)) {
+            log.warn("napcat.reverse-websocket.access-token is empty: "
+                + "clients without their own accessToken will be rejected");
+        }
+        log.info("NapCat reverse WebSocket endpoint registered: path={}, allowedOrigins={}",
+            reverseWebSocketPath, allowedOrigins);
+    }
+
     @PostConstruct
     public void connectToNapCat() {
         // 启动时自动连接到NapCat WebSocket
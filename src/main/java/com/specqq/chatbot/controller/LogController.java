@@ -3,6 +3,7 @@ package com.specqq.chatbot.controller;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.specqq.chatbot.common.Result;
 import com.specqq.chatbot.common.ResultCode;
+import com.specqq.chatbot.dto.CursorPage;
 import com.specqq.chatbot.entity.MessageLog;
 import com.specqq.chatbot.service.MessageLogService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -51,13 +52,43 @@ public class LogController {
         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
         @Parameter(description = "结束时间（ISO 8601格式）") @RequestParam(required = false)
         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
-        @Parameter(description = "消息内容（模糊查询）") @RequestParam(required = false) String keyword
+        @Parameter(description = "消息内容（模糊查询）") @RequestParam(required = false) String keyword,
+        @Parameter(description = "是否查询总数（false时跳过COUNT，适合只翻页的场景）") @RequestParam(defaultValue = "true") boolean count
     ) {
         log.info("查询日志列表: page={}, size={}, groupId={}, userId={}, sendStatus={}, startTime={}, endTime={}",
             page, size, groupId, userId, sendStatus, startTime, endTime);
 
         Page<MessageLog> result = messageLogService.listLogs(
-            page, size, groupId, userId, ruleId, sendStatus, startTime, endTime, keyword);
+            page, size, groupId, userId, ruleId, sendStatus, startTime, endTime, keyword, count);
+        return Result.success(result);
+    }
+
+    /**
+     * 游标分页查询日志
+     */
+    @GetMapping("/cursor")
+    @Operation(summary = "游标分页查询日志",
+        description = "按时间倒序，使用上一页返回的nextCursor取下一页；深翻页无OFFSET开销，默认不计数")
+    public Result<CursorPage<MessageLog>> listLogsByCursor(
+        @Parameter(description = "上一页返回的nextCursor，首页不传") @RequestParam(required = false) String cursor,
+        @Parameter(description = "每页数量（最大200）") @RequestParam(defaultValue = "20") Integer size,
+        @Parameter(description = "群聊ID") @RequestParam(required = false) Long groupId,
+        @Parameter(description = "用户ID") @RequestParam(required = false) String userId,
+        @Parameter(description = "规则ID") @RequestParam(required = false) Long ruleId,
+        @Parameter(description = "发送状态：SUCCESS/FAILED/PENDING/SKIPPED") @RequestParam(required = false) String sendStatus,
+        @Parameter(description = "开始时间（ISO 8601格式）") @RequestParam(required = false)
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+        @Parameter(description = "结束时间（ISO 8601格式）") @RequestParam(required = false)
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+        @Parameter(description = "消息内容（模糊查询）") @RequestParam(required = false) String keyword,
+        @Parameter(description = "计数方式：NONE（不计数）/CAPPED（最多计到10000）/EXACT（精确计数）")
+        @RequestParam(defaultValue = "NONE") CursorPage.CountMode count
+    ) {
+        log.info("游标查询日志列表: cursor={}, size={}, groupId={}, userId={}, sendStatus={}, count={}",
+            cursor, size, groupId, userId, sendStatus, count);
+
+        CursorPage<MessageLog> result = messageLogService.listLogsByCursor(
+            cursor, size, groupId, userId, ruleId, sendStatus, startTime, endTime, keyword, count);
         return Result.success(result);
     }
 
@@ -80,10 +111,10 @@ public class LogController {
     }
 
     /**
-     * 导出日志为CSV
+     * 导出日志为CSV(流式分块响应, 可选gzip)
      */
     @GetMapping("/export")
-    @Operation(summary = "导出日志", description = "导出符合条件的日志为CSV文件")
+    @Operation(summary = "导出日志", description = "导出符合条件的日志为CSV文件(不限行数, gzip=true时压缩)")
     public void exportLogs(
         @Parameter(description = "群聊ID") @RequestParam(required = false) Long groupId,
         @Parameter(description = "用户ID") @RequestParam(required = false) String userId,
@@ -93,23 +124,24 @@ public class LogController {
         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
         @Parameter(description = "结束时间") @RequestParam(required = false)
         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+        @Parameter(description = "是否gzip压缩") @RequestParam(defaultValue = "false") boolean gzip,
         HttpServletResponse response
     ) {
-        log.info("导出日志: groupId={}, userId={}, sendStatus={}, startTime={}, endTime={}",
-            groupId, userId, sendStatus, startTime, endTime);
+        log.info("导出日志: groupId={}, userId={}, sendStatus={}, startTime={}, endTime={}, gzip={}",
+            groupId, userId, sendStatus, startTime, endTime, gzip);
 
         try {
-            // 设置响应头
+            // 设置响应头(不设置Content-Length, 以分块传输编码逐块发送)
             String filename = "message_logs_" +
-                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".csv";
-            response.setContentType("text/csv;charset=UTF-8");
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + (gzip ? ".csv.gz" : ".csv");
+            response.setContentType(gzip ? "application/gzip" : "text/csv;charset=UTF-8");
             response.setHeader("Content-Disposition", "attachment; filename=" + filename);
 
-            // 写入CSV数据
-            messageLogService.exportLogsToCSV(
-                groupId, userId, ruleId, sendStatus, startTime, endTime, response.getOutputStream());
+            // 逐行写入CSV数据
+            long rows = messageLogService.exportLogsToCSV(
+                groupId, userId, ruleId, sendStatus, startTime, endTime, response.getOutputStream(), gzip);
 
-            log.info("日志导出成功: filename={}", filename);
+            log.info("日志导出成功: filename={}, rows={}", filename, rows);
         } catch (IOException e) {
             log.error("日志导出失败", e);
             throw new RuntimeException("日志导出失败: " + e.getMessage());
@@ -87,6 +87,14 @@ public class RuleController {
             if (!ruleService.validateRegexPattern(rule.getPattern())) {
                 return Result.error(ResultCode.RULE_PATTERN_INVALID, "正则表达式语法错误");
             }
+        } else if (MessageRule.MatchType.CQCODE.equals(rule.getMatchType())) {
+            if (!ruleService.validateCQCodePattern(rule.getPattern())) {
+                return Result.error(ResultCode.RULE_PATTERN_INVALID, "CQ码匹配条件无效");
+            }
+        } else if (MessageRule.MatchType.COMPOSITE.equals(rule.getMatchType())) {
+            if (!ruleService.validateCompositePattern(rule.getPattern())) {
+                return Result.error(ResultCode.RULE_PATTERN_INVALID, "组合规则条件无效");
+            }
         }
 
         MessageRule created = ruleService.createRule(rule);
@@ -121,6 +129,14 @@ public class RuleController {
             if (!ruleService.validateRegexPattern(rule.getPattern())) {
                 return Result.error(ResultCode.RULE_PATTERN_INVALID, "正则表达式语法错误");
             }
+        } else if (MessageRule.MatchType.CQCODE.equals(rule.getMatchType())) {
+            if (!ruleService.validateCQCodePattern(rule.getPattern())) {
+                return Result.error(ResultCode.RULE_PATTERN_INVALID, "CQ码匹配条件无效");
+            }
+        } else if (MessageRule.MatchType.COMPOSITE.equals(rule.getMatchType())) {
+            if (!ruleService.validateCompositePattern(rule.getPattern())) {
+                return Result.error(ResultCode.RULE_PATTERN_INVALID, "组合规则条件无效");
+            }
         }
 
         rule.setId(id);
@@ -243,6 +259,10 @@ public class RuleController {
             if (!valid) {
                 return Result.error(ResultCode.RULE_PATTERN_INVALID, "正则表达式语法错误");
             }
+        } else if (MessageRule.MatchType.CQCODE.equals(matchType) && !ruleService.validateCQCodePattern(pattern)) {
+            return Result.error(ResultCode.RULE_PATTERN_INVALID, "CQ码匹配条件无效");
+        } else if (MessageRule.MatchType.COMPOSITE.equals(matchType) && !ruleService.validateCompositePattern(pattern)) {
+            return Result.error(ResultCode.RULE_PATTERN_INVALID, "组合规则条件无效");
         }
 
         return Result.success("匹配模式有效", true);
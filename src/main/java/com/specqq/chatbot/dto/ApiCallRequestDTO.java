@@ -37,7 +37,7 @@ public class ApiCallRequestDTO {
     private String jsonrpc = "2.0";
 
     /**
-     * Request ID for correlation (UUID string)
+     * Request ID for correlation (monotonic numeric string assigned by NapCatRequestCorrelator)
      * Used to match responses to requests
      */
     @JsonProperty("id")
@@ -0,0 +1,65 @@
+package com.specqq.chatbot.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页结果(keyset分页, 无OFFSET)
+ *
+ * @author Chatbot Router System
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    /**
+     * 计数方式
+     */
+    public enum CountMode {
+        /**
+         * 不计数(默认, 翻页无额外查询)
+         */
+        NONE,
+
+        /**
+         * 计数到上限为止(超过上限时total为上限且totalCapped=true)
+         */
+        CAPPED,
+
+        /**
+         * 精确计数(大表上较慢)
+         */
+        EXACT
+    }
+
+    /**
+     * 当前页记录
+     */
+    private List<T> records;
+
+    /**
+     * 下一页游标(没有更多记录时为null)
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更多记录
+     */
+    private boolean hasMore;
+
+    /**
+     * 总数(CountMode.NONE时为null)
+     */
+    private Long total;
+
+    /**
+     * total是否为截断后的下限
+     */
+    private boolean totalCapped;
+}
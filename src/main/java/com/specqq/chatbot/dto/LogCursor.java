@@ -0,0 +1,44 @@
+package com.specqq.chatbot.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 消息日志游标: 上一页最后一条记录的 (timestamp, id), 编码为不透明字符串
+ *
+ * @param timestamp 消息时间戳
+ * @param id        日志ID(同一时间戳内的次序)
+ * @author Chatbot Router System
+ */
+public record LogCursor(LocalDateTime timestamp, long id) {
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * 编码为URL安全的字符串
+     */
+    public String encode() {
+        String raw = timestamp.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标
+     *
+     * @param cursor 游标字符串
+     * @return 游标
+     * @throws IllegalArgumentException 游标无效
+     */
+    public static LogCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            return new LogCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("无效的游标: " + cursor);
+        }
+    }
+}
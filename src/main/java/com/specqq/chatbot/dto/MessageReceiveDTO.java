@@ -1,11 +1,15 @@
 package com.specqq.chatbot.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.specqq.chatbot.parser.CQCode;
+import com.specqq.chatbot.parser.MessageSegments;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 接收消息DTO
@@ -39,12 +43,31 @@ public class MessageReceiveDTO {
     private String userNickname;
 
     /**
-     * 消息内容
+     * 消息内容(CQ码字符串; 仅有消息段时首次读取才生成)
      */
     private String messageContent;
 
+    /**
+     * 消息段(OneBot数组格式上报时存在, 供统计与CQ码匹配直接使用)
+     */
+    @JsonIgnore
+    private MessageSegments segments;
+
+    /**
+     * 已解析的CQ码(匹配CQCODE规则时按需解析一次, 同一消息的多条规则共享)
+     */
+    @JsonIgnore
+    private List<CQCode> cqCodes;
+
     /**
      * 消息时间戳
      */
     private LocalDateTime timestamp;
+
+    public String getMessageContent() {
+        if (messageContent == null && segments != null) {
+            messageContent = segments.toCQString();
+        }
+        return messageContent;
+    }
 }
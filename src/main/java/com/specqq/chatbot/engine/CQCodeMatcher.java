@@ -0,0 +1,109 @@
+package com.specqq.chatbot.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.specqq.chatbot.dto.MessageReceiveDTO;
+import com.specqq.chatbot.parser.CQCode;
+import com.specqq.chatbot.parser.CQCodeParser;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 结构化CQ码匹配器(CQCODE)
+ *
+ * 模式为JSON条件(见 {@link CQCodePredicate}), 编译结果按模式缓存;
+ * 基于消息已解析的CQ码列表判断, 同一消息的多条规则共享一次解析结果
+ *
+ * @author Chatbot Router System
+ */
+@Slf4j
+@Component
+public class CQCodeMatcher implements MessageAwareMatcher {
+
+    private final CQCodeParser cqCodeParser;
+    private final ObjectMapper objectMapper;
+
+    private final Cache<String, CQCodePredicate> predicateCache = Caffeine.newBuilder()
+        .maximumSize(1000)
+        .build();
+
+    public CQCodeMatcher(CQCodeParser cqCodeParser, ObjectMapper objectMapper) {
+        this.cqCodeParser = cqCodeParser;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean matches(String message, String pattern) {
+        if (message == null || pattern == null) {
+            return false;
+        }
+        try {
+            return compile(pattern).test(cqCodeParser.parse(message));
+        } catch (IllegalArgumentException e) {
+            log.error("CQ code matching failed: pattern={}", pattern, e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean matchesMessage(MessageReceiveDTO message, String pattern) {
+        if (message == null || pattern == null) {
+            return false;
+        }
+        try {
+            return compile(pattern).test(cqCodes(message));
+        } catch (IllegalArgumentException e) {
+            log.error("CQ code matching failed: pattern={}", pattern, e);
+            return false;
+        }
+    }
+
+    /**
+     * 消息的CQ码列表(首次访问时解析并保存在消息上, 供后续规则复用)
+     *
+     * @param message 接收消息
+     * @return CQ码列表
+     */
+    public List<CQCode> cqCodes(MessageReceiveDTO message) {
+        List<CQCode> cqCodes = message.getCqCodes();
+        if (cqCodes == null) {
+            cqCodes = message.getSegments() != null
+                ? message.getSegments().cqCodes()
+                : cqCodeParser.parse(message.getMessageContent());
+            message.setCqCodes(cqCodes);
+        }
+        return cqCodes;
+    }
+
+    /**
+     * 编译模式(按模式字符串缓存)
+     *
+     * @param pattern JSON条件
+     * @return 编译后的条件
+     * @throws IllegalArgumentException 模式无效
+     */
+    public CQCodePredicate compile(String pattern) {
+        return predicateCache.get(pattern, p -> CQCodePredicate.parse(p, objectMapper));
+    }
+
+    /**
+     * 校验模式是否有效
+     */
+    public boolean isValid(String pattern) {
+        try {
+            compile(pattern);
+            return true;
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid CQ code pattern: {}, error: {}", pattern, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public String getType() {
+        return "CQCODE";
+    }
+}
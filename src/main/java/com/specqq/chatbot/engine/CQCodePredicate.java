@@ -0,0 +1,156 @@
+package com.specqq.chatbot.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.specqq.chatbot.parser.CQCode;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 结构化CQ码匹配条件(CQCODE规则的编译结果)
+ *
+ * 模式为JSON, 所有字段可选:
+ * <pre>
+ * {"type":"at","params":{"qq":"10001"}}              - 存在@10001
+ * {"type":"image","contains":{"url":"example.com"}}   - 图片URL包含example.com
+ * {"type":"face","min":3}                             - 至少3个表情
+ * {"min":1,"max":5}                                   - 任意类型的CQ码1~5个
+ * </pre>
+ * - type: CQ码类型(省略表示任意类型)
+ * - params: 参数等值条件(全部满足)
+ * - contains: 参数包含条件(全部满足)
+ * - min/max: 满足条件的CQ码个数阈值(默认至少1个, 无上限)
+ *
+ * 相比生成的正则 {@code \[CQ:at,.*qq=123.*\]}, 按已解析的CQ码逐个判断参数, 不会跨CQ码误匹配
+ *
+ * @author Chatbot Router System
+ */
+public final class CQCodePredicate {
+
+    private final String type;
+    private final Map<String, String> params;
+    private final Map<String, String> contains;
+    private final int min;
+    private final int max;
+
+    public CQCodePredicate(String type, Map<String, String> params, Map<String, String> contains, int min, int max) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("CQ码个数阈值无效: min=" + min + ", max=" + max);
+        }
+        this.type = type == null || type.isBlank() ? null : type.trim();
+        this.params = params == null ? Collections.emptyMap() : Map.copyOf(params);
+        this.contains = contains == null ? Collections.emptyMap() : Map.copyOf(contains);
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * 解析JSON模式
+     *
+     * @param pattern      JSON模式
+     * @param objectMapper JSON解析器
+     * @return 编译后的条件
+     * @throws IllegalArgumentException 模式无效
+     */
+    public static CQCodePredicate parse(String pattern, ObjectMapper objectMapper) {
+        if (pattern == null || pattern.isBlank()) {
+            throw new IllegalArgumentException("CQ码匹配条件不能为空");
+        }
+        try {
+            return fromJson(objectMapper.readTree(pattern));
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无效的CQ码匹配条件: " + pattern, e);
+        }
+    }
+
+    /**
+     * 从JSON节点构建(组合规则的子条件复用)
+     */
+    public static CQCodePredicate fromJson(JsonNode node) {
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("CQ码匹配条件必须是JSON对象");
+        }
+        return new CQCodePredicate(
+            node.hasNonNull("type") ? node.get("type").asText() : null,
+            toMap(node.get("params")),
+            toMap(node.get("contains")),
+            node.hasNonNull("min") ? node.get("min").asInt() : 1,
+            node.hasNonNull("max") ? node.get("max").asInt() : Integer.MAX_VALUE);
+    }
+
+    /**
+     * 判断CQ码列表是否满足条件
+     *
+     * @param cqCodes 消息中的CQ码(按出现顺序)
+     * @return 是否匹配
+     */
+    public boolean test(List<CQCode> cqCodes) {
+        int count = 0;
+        for (CQCode cqCode : cqCodes) {
+            if (matches(cqCode)) {
+                count++;
+                // 无上限时达到下限即可提前结束
+                if (count >= min && max == Integer.MAX_VALUE) {
+                    return true;
+                }
+                if (count > max) {
+                    return false;
+                }
+            }
+        }
+        return count >= min && count <= max;
+    }
+
+    /**
+     * 单个CQ码是否满足类型与参数条件
+     */
+    public boolean matches(CQCode cqCode) {
+        if (type != null && !type.equals(cqCode.type())) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            if (!entry.getValue().equals(cqCode.getParam(entry.getKey()))) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, String> entry : contains.entrySet()) {
+            String value = cqCode.getParam(entry.getKey());
+            if (value == null || !value.contains(entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    private static Map<String, String> toMap(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("CQ码参数条件必须是JSON对象");
+        }
+        Map<String, String> map = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            map.put(field.getKey(), field.getValue().asText());
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return "CQCodePredicate{type=" + type + ", params=" + params + ", contains=" + contains
+            + ", min=" + min + ", max=" + (max == Integer.MAX_VALUE ? "∞" : max) + "}";
+    }
+}
@@ -0,0 +1,138 @@
+package com.specqq.chatbot.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.specqq.chatbot.dto.MessageReceiveDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 组合规则匹配器(COMPOSITE)
+ *
+ * 模式为JSON条件树(见 {@link CompositeRule}), 每个模式只编译一次并缓存,
+ * 实测代价与子节点顺序随编译结果保留, 规则模式变更后按新模式重新编译;
+ * 叶子条件复用 EXACT/CONTAINS/REGEX/CQCODE 匹配器, 语义与单独规则一致
+ *
+ * @author Chatbot Router System
+ */
+@Slf4j
+@Component
+public class CompositeMatcher implements MessageAwareMatcher {
+
+    private final ExactMatcher exactMatcher;
+    private final ContainsMatcher containsMatcher;
+    private final RegexMatcher regexMatcher;
+    private final CQCodeMatcher cqCodeMatcher;
+    private final ObjectMapper objectMapper;
+
+    private final Cache<String, CompositeRule> ruleCache = Caffeine.newBuilder()
+        .maximumSize(1000)
+        .build();
+
+    public CompositeMatcher(ExactMatcher exactMatcher, ContainsMatcher containsMatcher, RegexMatcher regexMatcher,
+                            CQCodeMatcher cqCodeMatcher, ObjectMapper objectMapper) {
+        this.exactMatcher = exactMatcher;
+        this.containsMatcher = containsMatcher;
+        this.regexMatcher = regexMatcher;
+        this.cqCodeMatcher = cqCodeMatcher;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean matches(String message, String pattern) {
+        if (message == null) {
+            return false;
+        }
+        return matchesMessage(MessageReceiveDTO.builder().messageContent(message).build(), pattern);
+    }
+
+    @Override
+    public boolean matchesMessage(MessageReceiveDTO message, String pattern) {
+        if (message == null || pattern == null) {
+            return false;
+        }
+        try {
+            return compile(pattern).test(message);
+        } catch (IllegalArgumentException e) {
+            log.error("Composite rule matching failed: pattern={}", pattern, e);
+            return false;
+        }
+    }
+
+    /**
+     * 编译条件树(按模式字符串缓存)
+     *
+     * @param pattern JSON条件树
+     * @return 组合规则
+     * @throws IllegalArgumentException 条件树无效
+     */
+    public CompositeRule compile(String pattern) {
+        if (pattern == null || pattern.isBlank()) {
+            throw new IllegalArgumentException("组合规则条件不能为空");
+        }
+        return ruleCache.get(pattern, this::parse);
+    }
+
+    /**
+     * 校验条件树是否有效
+     */
+    public boolean isValid(String pattern) {
+        try {
+            compile(pattern);
+            return true;
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid composite pattern: {}, error: {}", pattern, e.getMessage());
+            return false;
+        }
+    }
+
+    private CompositeRule parse(String pattern) {
+        JsonNode tree;
+        try {
+            tree = objectMapper.readTree(pattern);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无效的组合规则条件: " + pattern, e);
+        }
+        return CompositeRule.compile(tree, this::leaf);
+    }
+
+    private CompositeRule.LeafEvaluator leaf(CompositeRule.LeafType type, JsonNode pattern) {
+        return switch (type) {
+            case EXACT -> textLeaf(exactMatcher, pattern);
+            case CONTAINS -> textLeaf(containsMatcher, pattern);
+            case REGEX -> {
+                String regex = text(pattern);
+                if (!regexMatcher.isValid(regex)) {
+                    throw new IllegalArgumentException("无效的正则表达式: " + regex);
+                }
+                yield textLeaf(regexMatcher, pattern);
+            }
+            case CQ -> {
+                CQCodePredicate predicate = CQCodePredicate.fromJson(pattern);
+                yield message -> predicate.test(cqCodeMatcher.cqCodes(message));
+            }
+        };
+    }
+
+    private static CompositeRule.LeafEvaluator textLeaf(RuleMatcher matcher, JsonNode pattern) {
+        String text = text(pattern);
+        return message -> {
+            String content = message.getMessageContent();
+            return content != null && matcher.matches(content, text);
+        };
+    }
+
+    private static String text(JsonNode pattern) {
+        if (!pattern.isTextual()) {
+            throw new IllegalArgumentException("文本子条件的pattern必须是字符串: " + pattern);
+        }
+        return pattern.asText();
+    }
+
+    @Override
+    public String getType() {
+        return "COMPOSITE";
+    }
+}
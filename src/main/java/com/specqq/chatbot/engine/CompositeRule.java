@@ -0,0 +1,323 @@
+package com.specqq.chatbot.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.specqq.chatbot.dto.MessageReceiveDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 组合规则(COMPOSITE规则的编译结果)
+ *
+ * AND/OR/NOT 条件树, 叶子为 EXACT/CONTAINS/REGEX/CQ 子条件:
+ * <pre>
+ * {"op":"AND","children":[
+ *     {"match":"CONTAINS","pattern":"签到"},
+ *     {"op":"NOT","children":[{"match":"REGEX","pattern":"^/"}]},
+ *     {"match":"CQ","pattern":{"type":"at","params":{"qq":"10001"}}}
+ * ]}
+ * </pre>
+ *
+ * 求值:
+ * - 短路: AND遇false、OR遇true立即返回
+ * - 代价排序: 每个节点采样记录求值耗时(EWMA), 组合节点定期按代价重排子节点, 最便宜的先求值;
+ *   编译时按静态估算排序(EXACT < CONTAINS < CQ < REGEX)
+ *
+ * 替代 {@code (?=.*p1)(?=.*p2)} 形式的前瞻正则(从每个位置重新扫描消息)
+ *
+ * @author Chatbot Router System
+ */
+public final class CompositeRule {
+
+    /**
+     * 最大嵌套深度与节点数(防止超大条件树)
+     */
+    static final int MAX_DEPTH = 8;
+    static final int MAX_NODES = 64;
+
+    /**
+     * 组合运算符
+     */
+    public enum Op {
+        AND,
+        OR,
+        NOT
+    }
+
+    /**
+     * 叶子条件类型(估算代价为纳秒量级, 实测后被替换)
+     */
+    public enum LeafType {
+        EXACT(50),
+        CONTAINS(200),
+        CQ(500),
+        REGEX(2000);
+
+        private final double estimatedCost;
+
+        LeafType(double estimatedCost) {
+            this.estimatedCost = estimatedCost;
+        }
+    }
+
+    /**
+     * 叶子条件求值
+     */
+    @FunctionalInterface
+    public interface LeafEvaluator {
+        boolean test(MessageReceiveDTO message);
+    }
+
+    /**
+     * 由叶子类型和模式创建求值函数(复用现有匹配器)
+     */
+    @FunctionalInterface
+    public interface LeafFactory {
+        LeafEvaluator create(LeafType type, JsonNode pattern);
+    }
+
+    private final Node root;
+
+    private CompositeRule(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * 编译条件树
+     *
+     * @param tree    JSON条件树
+     * @param factory 叶子求值函数工厂
+     * @return 组合规则
+     * @throws IllegalArgumentException 条件树无效
+     */
+    public static CompositeRule compile(JsonNode tree, LeafFactory factory) {
+        int[] nodes = new int[1];
+        return new CompositeRule(compileNode(tree, factory, 1, nodes));
+    }
+
+    /**
+     * 对消息求值
+     */
+    public boolean test(MessageReceiveDTO message) {
+        return root.test(message);
+    }
+
+    /**
+     * 当前求值顺序(调试/测试用), 例: AND(EXACT, CONTAINS, NOT(REGEX))
+     */
+    public String describe() {
+        return root.describe();
+    }
+
+    @Override
+    public String toString() {
+        return "CompositeRule{" + describe() + "}";
+    }
+
+    private static Node compileNode(JsonNode node, LeafFactory factory, int depth, int[] nodes) {
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("组合规则节点必须是JSON对象");
+        }
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("组合规则嵌套过深(最大" + MAX_DEPTH + "层)");
+        }
+        if (++nodes[0] > MAX_NODES) {
+            throw new IllegalArgumentException("组合规则节点过多(最多" + MAX_NODES + "个)");
+        }
+
+        if (node.hasNonNull("op")) {
+            Op op = parseEnum(Op.class, node.get("op").asText(), "运算符");
+            JsonNode children = node.get("children");
+            if (children == null || !children.isArray() || children.isEmpty()) {
+                throw new IllegalArgumentException(op + " 至少需要一个子条件");
+            }
+            if (op == Op.NOT && children.size() != 1) {
+                throw new IllegalArgumentException("NOT 只能有一个子条件");
+            }
+            List<Node> compiled = new ArrayList<>(children.size());
+            for (JsonNode child : children) {
+                compiled.add(compileNode(child, factory, depth + 1, nodes));
+            }
+            return op == Op.NOT ? new Not(compiled.get(0)) : new Group(op, compiled);
+        }
+
+        if (node.hasNonNull("match")) {
+            LeafType type = parseEnum(LeafType.class, node.get("match").asText(), "子条件类型");
+            JsonNode pattern = node.get("pattern");
+            if (pattern == null || pattern.isNull()) {
+                throw new IllegalArgumentException(type + " 子条件缺少pattern");
+            }
+            return new Leaf(type, pattern, factory.create(type, pattern));
+        }
+
+        throw new IllegalArgumentException("组合规则节点需要op或match字段");
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String name) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的" + name + ": " + value);
+        }
+    }
+
+    /**
+     * 条件节点: 采样测量求值耗时
+     */
+    abstract static class Node {
+
+        /**
+         * 每16次求值采样一次耗时
+         */
+        private static final int SAMPLE_MASK = 15;
+
+        private static final double EWMA_ALPHA = 0.2;
+
+        /**
+         * 平均求值耗时(纳秒, 初始为静态估算)
+         */
+        private volatile double cost;
+
+        /**
+         * 求值次数(仅用于采样, 并发下计数不精确可接受)
+         */
+        private int evaluations;
+
+        Node(double estimatedCost) {
+            this.cost = estimatedCost;
+        }
+
+        final boolean test(MessageReceiveDTO message) {
+            if ((++evaluations & SAMPLE_MASK) != 0) {
+                return evaluate(message);
+            }
+            long start = System.nanoTime();
+            boolean result = evaluate(message);
+            long elapsed = System.nanoTime() - start;
+            cost = cost + EWMA_ALPHA * (elapsed - cost);
+            return result;
+        }
+
+        final double cost() {
+            return cost;
+        }
+
+        abstract boolean evaluate(MessageReceiveDTO message);
+
+        abstract String describe();
+    }
+
+    static final class Leaf extends Node {
+
+        private final LeafType type;
+        private final JsonNode pattern;
+        private final LeafEvaluator evaluator;
+
+        Leaf(LeafType type, JsonNode pattern, LeafEvaluator evaluator) {
+            super(type.estimatedCost);
+            this.type = type;
+            this.pattern = pattern;
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        boolean evaluate(MessageReceiveDTO message) {
+            return evaluator.test(message);
+        }
+
+        @Override
+        String describe() {
+            return type.name();
+        }
+
+        @Override
+        public String toString() {
+            return type + ":" + pattern;
+        }
+    }
+
+    static final class Not extends Node {
+
+        private final Node child;
+
+        Not(Node child) {
+            super(child.cost());
+            this.child = child;
+        }
+
+        @Override
+        boolean evaluate(MessageReceiveDTO message) {
+            return !child.test(message);
+        }
+
+        @Override
+        String describe() {
+            return "NOT(" + child.describe() + ")";
+        }
+    }
+
+    static final class Group extends Node {
+
+        /**
+         * 每隔多少次求值按实测代价重排子节点
+         */
+        private static final int REORDER_INTERVAL = 256;
+
+        private static final Comparator<Node> BY_COST = Comparator.comparingDouble(Node::cost);
+
+        private final Op op;
+        private volatile Node[] children;
+        private int sinceReorder;
+
+        Group(Op op, List<Node> children) {
+            super(children.stream().mapToDouble(Node::cost).sum());
+            this.op = op;
+            Node[] sorted = children.toArray(new Node[0]);
+            Arrays.sort(sorted, BY_COST);
+            this.children = sorted;
+        }
+
+        @Override
+        boolean evaluate(MessageReceiveDTO message) {
+            if (++sinceReorder >= REORDER_INTERVAL) {
+                sinceReorder = 0;
+                reorder();
+            }
+            boolean and = op == Op.AND;
+            for (Node child : children) {
+                if (child.test(message) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+
+        /**
+         * 按实测代价重排(写时复制, 求值中的线程继续使用旧数组)
+         */
+        private void reorder() {
+            Node[] current = children;
+            Node[] sorted = current.clone();
+            Arrays.sort(sorted, BY_COST);
+            if (!Arrays.equals(current, sorted)) {
+                children = sorted;
+            }
+        }
+
+        @Override
+        String describe() {
+            StringBuilder out = new StringBuilder(op.name()).append('(');
+            Node[] current = children;
+            for (int i = 0; i < current.length; i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                out.append(current[i].describe());
+            }
+            return out.append(')').toString();
+        }
+    }
+}
@@ -1,22 +1,34 @@
 package com.specqq.chatbot.engine;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
  * 包含匹配器
  * 不区分大小写的子串包含匹配
  *
+ * 开启快速扫描时(默认关闭), 关键词和消息均只含ASCII/无大小写字符(中文、表情等)时由 {@link KeywordScanner}
+ * 直接在原消息上查找, 不再为每条消息和关键词生成小写副本; 含其他大小写字母(如 U+212A、U+0130、希腊字母)
+ * 或关闭开关时使用小写副本比较, 两条路径结果一致
+ *
  * @author Chatbot Router System
  */
 @Component
 public class ContainsMatcher implements RuleMatcher {
 
+    @Value("${rule-engine.contains.fast-scan:false}")
+    private boolean fastScan = false;
+
     @Override
     public boolean matches(String message, String pattern) {
         if (message == null || pattern == null) {
             return false;
         }
 
+        if (fastScan && KeywordScanner.isFoldable(pattern) && KeywordScanner.isFoldable(message)) {
+            return KeywordScanner.containsIgnoreCase(message, pattern);
+        }
+
         // 包含匹配，不区分大小写
         return message.toLowerCase().contains(pattern.toLowerCase());
     }
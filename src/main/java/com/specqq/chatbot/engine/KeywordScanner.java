@@ -0,0 +1,116 @@
+package com.specqq.chatbot.engine;
+
+/**
+ * 关键词扫描(不区分大小写, 无中间字符串)
+ *
+ * 候选位置由 {@link String#indexOf(int, int)} 查找关键词首字符(大小写两种形式各一路),
+ * HotSpot 将其编译为 SIMD 内建函数, 每次比较 16~32 个字符; 只在候选位置逐字符比较剩余部分。
+ *
+ * 仅支持"可折叠"的关键词和文本: 每个码点为 ASCII 或不区分大小写的字符(中文、表情等),
+ * ASCII 字母按 ASCII 规则忽略大小写, 其他字符精确比较。此时结果与 {@code toLowerCase().contains}
+ * 一致; 文本中的非ASCII大小写字母(如 U+212A 开尔文符号小写为 k, U+0130 小写为 i̇)会改变比较结果,
+ * 由调用方回退到小写副本比较(见 {@link ContainsMatcher})。
+ *
+ * @author Chatbot Router System
+ */
+public final class KeywordScanner {
+
+    private KeywordScanner() {
+    }
+
+    /**
+     * 关键词或文本能否使用扫描路径
+     *
+     * @param text 关键词或文本
+     * @return true表示每个码点均为ASCII或不区分大小写
+     */
+    public static boolean isFoldable(String text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            // 按码点判断: 增补平面也有大小写字母(如 U+10400)
+            int codePoint = text.codePointAt(i);
+            if (Character.isLowerCase(codePoint) || Character.isUpperCase(codePoint)
+                    || Character.isTitleCase(codePoint)) {
+                return false;
+            }
+            if (Character.isSupplementaryCodePoint(codePoint)) {
+                i++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 查找关键词(不区分大小写)
+     *
+     * @param text    文本
+     * @param keyword 关键词(须满足 {@link #isFoldable})
+     * @param from    起始位置
+     * @return 首次出现的位置, 未找到返回-1
+     */
+    public static int indexOfIgnoreCase(String text, String keyword, int from) {
+        int length = keyword.length();
+        int last = text.length() - length;
+        if (from < 0) {
+            from = 0;
+        }
+        if (from > last) {
+            return -1;
+        }
+        if (length == 0) {
+            return from;
+        }
+
+        char first = keyword.charAt(0);
+        char lower = toLowerAscii(first);
+        char upper = toUpperAscii(first);
+        int nextLower = text.indexOf(lower, from);
+        int nextUpper = lower == upper ? -1 : text.indexOf(upper, from);
+
+        while (true) {
+            int candidate = nextUpper < 0 || (nextLower >= 0 && nextLower < nextUpper) ? nextLower : nextUpper;
+            if (candidate < 0 || candidate > last) {
+                return -1;
+            }
+            if (regionMatches(text, candidate + 1, keyword, 1, length - 1)) {
+                return candidate;
+            }
+            // 只推进被消费的那一路
+            if (candidate == nextLower) {
+                nextLower = text.indexOf(lower, candidate + 1);
+            } else {
+                nextUpper = text.indexOf(upper, candidate + 1);
+            }
+        }
+    }
+
+    /**
+     * 是否包含关键词(不区分大小写)
+     */
+    public static boolean containsIgnoreCase(String text, String keyword) {
+        return indexOfIgnoreCase(text, keyword, 0) >= 0;
+    }
+
+    private static boolean regionMatches(String text, int offset, String keyword, int keywordOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            char a = text.charAt(offset + i);
+            char b = keyword.charAt(keywordOffset + i);
+            if (a != b && toLowerAscii(a) != toLowerAscii(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char toLowerAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static char toUpperAscii(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+}
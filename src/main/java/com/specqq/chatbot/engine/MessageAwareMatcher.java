@@ -0,0 +1,23 @@
+package com.specqq.chatbot.engine;
+
+import com.specqq.chatbot.dto.MessageReceiveDTO;
+
+/**
+ * 消息感知的规则匹配器
+ *
+ * 直接接收消息对象(含OneBot消息段), 不要求先生成CQ码字符串;
+ * 规则引擎对实现该接口的匹配器优先调用 {@link #matchesMessage}
+ *
+ * @author Chatbot Router System
+ */
+public interface MessageAwareMatcher extends RuleMatcher {
+
+    /**
+     * 判断接收消息是否匹配模式
+     *
+     * @param message 接收消息
+     * @param pattern 匹配模式
+     * @return 是否匹配
+     */
+    boolean matchesMessage(MessageReceiveDTO message, String pattern);
+}
@@ -1,6 +1,7 @@
 package com.specqq.chatbot.engine;
 
 import com.specqq.chatbot.adapter.ClientAdapter;
+import com.specqq.chatbot.adapter.RequestNotSentException;
 import com.specqq.chatbot.dto.MessageReceiveDTO;
 import com.specqq.chatbot.dto.MessageReplyDTO;
 import com.specqq.chatbot.entity.GroupChat;
@@ -8,8 +9,10 @@ import com.specqq.chatbot.entity.MessageLog;
 import com.specqq.chatbot.entity.MessageRule;
 import com.specqq.chatbot.service.GroupService;
 import com.specqq.chatbot.service.MessageLogService;
+import com.specqq.chatbot.service.OutboundRetryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
@@ -36,6 +39,9 @@ public class MessageRouter {
     private final MessageLogService messageLogService;
     private final ClientAdapter clientAdapter;
 
+    @Autowired(required = false)
+    private OutboundRetryService outboundRetryService;
+
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     /**
@@ -85,11 +91,21 @@ public class MessageRouter {
                     if (success) {
                         recordLog(message, rule.getId(), replyContent, startTime, MessageLog.SendStatus.SUCCESS, null);
                     } else {
-                        recordLog(message, rule.getId(), replyContent, startTime, MessageLog.SendStatus.FAILED, "发送失败");
+                        recordLog(message, rule.getId(), replyContent, startTime, MessageLog.SendStatus.FAILED,
+                            enqueueRetry(message, replyContent) ? "发送失败, 已加入重试队列" : "发送失败");
                     }
                 }).exceptionally(ex -> {
                     log.error("Send reply failed: groupId={}, ruleId={}", message.getGroupId(), rule.getId(), ex);
-                    recordLog(message, rule.getId(), replyContent, startTime, MessageLog.SendStatus.FAILED, ex.getMessage());
+                    // 只有确定未发出时才重试; 超时等结果未知的失败可能已送达, 重试会重复发送
+                    String error;
+                    if (!RequestNotSentException.isNotSent(ex)) {
+                        error = "发送结果未知, 未重试: " + ex.getMessage();
+                    } else if (enqueueRetry(message, replyContent)) {
+                        error = "已加入重试队列: " + ex.getMessage();
+                    } else {
+                        error = ex.getMessage();
+                    }
+                    recordLog(message, rule.getId(), replyContent, startTime, MessageLog.SendStatus.FAILED, error);
                     return null;
                 });
 
@@ -140,6 +156,25 @@ public class MessageRouter {
         return reply;
     }
 
+    /**
+     * 发送失败的回复加入持久化重试队列
+     *
+     * @param message      接收消息DTO
+     * @param replyContent 回复内容
+     * @return 是否已入队
+     */
+    private boolean enqueueRetry(MessageReceiveDTO message, String replyContent) {
+        if (outboundRetryService == null) {
+            return false;
+        }
+        try {
+            return outboundRetryService.enqueue(Long.parseLong(message.getGroupId()), message.getMessageId(), replyContent);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid groupId, skip retry enqueue: groupId={}", message.getGroupId());
+            return false;
+        }
+    }
+
     /**
      * 记录消息日志
      */
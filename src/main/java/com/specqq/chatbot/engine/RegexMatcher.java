@@ -32,23 +32,42 @@ public class RegexMatcher implements RuleMatcher {
         }
 
         try {
-            // 从缓存获取或编译Pattern
-            Pattern compiledPattern = patternCache.get(pattern, p -> {
-                try {
-                    return Pattern.compile(p);
-                } catch (PatternSyntaxException e) {
-                    log.error("Invalid regex pattern: {}", p, e);
-                    throw new IllegalArgumentException("无效的正则表达式: " + p, e);
-                }
-            });
-
-            return compiledPattern.matcher(message).find();
+            return compile(pattern).matcher(message).find();
         } catch (Exception e) {
             log.error("Regex matching failed: pattern={}, message={}", pattern, message, e);
             return false;
         }
     }
 
+    /**
+     * 校验正则表达式是否有效(有效时编译结果进入缓存)
+     */
+    public boolean isValid(String pattern) {
+        if (pattern == null) {
+            return false;
+        }
+        try {
+            compile(pattern);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 从缓存获取或编译Pattern
+     */
+    private Pattern compile(String pattern) {
+        return patternCache.get(pattern, p -> {
+            try {
+                return Pattern.compile(p);
+            } catch (PatternSyntaxException e) {
+                log.error("Invalid regex pattern: {}", p, e);
+                throw new IllegalArgumentException("无效的正则表达式: " + p, e);
+            }
+        });
+    }
+
     @Override
     public String getType() {
         return "REGEX";
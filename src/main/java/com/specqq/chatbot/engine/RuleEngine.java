@@ -38,6 +38,8 @@ public class RuleEngine {
     private final ContainsMatcher containsMatcher;
     private final RegexMatcher regexMatcher;
     private final StatisticsMatcher statisticsMatcher;
+    private final CQCodeMatcher cqCodeMatcher;
+    private final CompositeMatcher compositeMatcher;
     private final NapCatAdapter napCatAdapter;
 
     // 匹配器映射
@@ -55,6 +57,8 @@ public class RuleEngine {
         matcherMap.put(MessageRule.MatchType.CONTAINS, containsMatcher);
         matcherMap.put(MessageRule.MatchType.REGEX, regexMatcher);
         matcherMap.put(MessageRule.MatchType.STATISTICS, statisticsMatcher);
+        matcherMap.put(MessageRule.MatchType.CQCODE, cqCodeMatcher);
+        matcherMap.put(MessageRule.MatchType.COMPOSITE, compositeMatcher);
 
         // Note: Bot self-ID will be retrieved via get_login_info API on first message
         // and cached for subsequent message filtering
@@ -104,7 +108,7 @@ public class RuleEngine {
 
             // 3. 短路求值: 按优先级匹配，第一条匹配后立即返回
             for (MessageRule rule : rules) {
-                if (matchRule(message.getMessageContent(), rule)) {
+                if (matchRule(message, rule)) {
                     long elapsedTime = System.currentTimeMillis() - startTime;
                     log.info("Rule matched: ruleId={}, ruleName={}, groupId={}, elapsedMs={}",
                         rule.getId(), rule.getName(), message.getGroupId(), elapsedTime);
@@ -125,12 +129,12 @@ public class RuleEngine {
     /**
      * 匹配单条规则
      *
-     * @param messageContent 消息内容
-     * @param rule           规则
+     * @param message 接收消息
+     * @param rule    规则
      * @return 是否匹配
      */
-    private boolean matchRule(String messageContent, MessageRule rule) {
-        if (messageContent == null || rule == null) {
+    private boolean matchRule(MessageReceiveDTO message, MessageRule rule) {
+        if (message == null || rule == null) {
             return false;
         }
 
@@ -141,7 +145,11 @@ public class RuleEngine {
         }
 
         try {
-            return matcher.matches(messageContent, rule.getPattern());
+            if (matcher instanceof MessageAwareMatcher messageAware) {
+                return messageAware.matchesMessage(message, rule.getPattern());
+            }
+            String content = message.getMessageContent();
+            return content != null && matcher.matches(content, rule.getPattern());
         } catch (Exception e) {
             log.error("Rule matching error: ruleId={}, matchType={}, pattern={}",
                 rule.getId(), rule.getMatchType(), rule.getPattern(), e);
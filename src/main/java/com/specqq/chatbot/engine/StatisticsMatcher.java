@@ -1,5 +1,6 @@
 package com.specqq.chatbot.engine;
 
+import com.specqq.chatbot.dto.MessageReceiveDTO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -22,7 +23,7 @@ import org.springframework.stereotype.Component;
  * @since 2026-02-11
  */
 @Component
-public class StatisticsMatcher implements RuleMatcher {
+public class StatisticsMatcher implements MessageAwareMatcher {
 
     private static final Logger logger = LoggerFactory.getLogger(StatisticsMatcher.class);
 
@@ -43,6 +44,21 @@ public class StatisticsMatcher implements RuleMatcher {
         return true;
     }
 
+    /**
+     * Match received message against statistics rule
+     *
+     * <p>Always true; does not touch message content, so no CQ string is derived for segment messages.</p>
+     *
+     * @param message Received message
+     * @param pattern Pattern (ignored for statistics rules)
+     * @return Always true (matches all messages)
+     */
+    @Override
+    public boolean matchesMessage(MessageReceiveDTO message, String pattern) {
+        logger.debug("Statistics rule matched for message");
+        return true;
+    }
+
     /**
      * Get matcher type
      *
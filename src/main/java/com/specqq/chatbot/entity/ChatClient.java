@@ -35,7 +35,8 @@ public class ChatClient {
     private String clientName;
 
     /**
-     * 通信协议 (websocket/http/both)
+     * 通信协议 (websocket/http/both/reverse_websocket)
+     * reverse_websocket: 由NapCat主动连接本服务的反向WebSocket端点
      */
     @TableField("protocol_type")
     private String protocolType;
@@ -86,5 +87,6 @@ public class ChatClient {
         private Integer httpPort;
         private String accessToken;
         private Integer reconnectInterval;
+        private Long selfId;
     }
 }
@@ -34,13 +34,13 @@ public class MessageRule {
     private String description;
 
     /**
-     * 匹配类型 (exact/contains/regex)
+     * 匹配类型 (exact/contains/regex/statistics/cqcode/composite)
      */
     @TableField("match_type")
     private MatchType matchType;
 
     /**
-     * 匹配模式(关键词或正则表达式)
+     * 匹配模式(关键词、正则表达式或JSON条件)
      */
     @TableField("pattern")
     private String pattern;
@@ -104,6 +104,18 @@ public class MessageRule {
          * 消息统计规则(自动匹配所有消息)
          * 用于CQ码解析和消息统计功能
          */
-        STATISTICS
+        STATISTICS,
+
+        /**
+         * 结构化CQ码匹配(模式为JSON条件: 类型、参数等值/包含、个数阈值)
+         * 例: {"type":"at","params":{"qq":"123456"}}
+         */
+        CQCODE,
+
+        /**
+         * 组合规则(模式为JSON条件树: AND/OR/NOT, 叶子为EXACT/CONTAINS/REGEX/CQ)
+         * 例: {"op":"AND","children":[{"match":"CONTAINS","pattern":"签到"},{"match":"CQ","pattern":{"type":"at"}}]}
+         */
+        COMPOSITE
     }
 }
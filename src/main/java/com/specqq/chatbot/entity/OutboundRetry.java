@@ -0,0 +1,108 @@
+package com.specqq.chatbot.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 出站消息重试实体类
+ *
+ * @author Chatbot Router System
+ * @tableName outbound_retry
+ */
+@Data
+@TableName(value = "outbound_retry")
+public class OutboundRetry {
+
+    /**
+     * 重试记录唯一标识
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 幂等键(唯一, 同一回复只入队一次)
+     */
+    @TableField("idempotency_key")
+    private String idempotencyKey;
+
+    /**
+     * 目标群号(平台ID)
+     */
+    @TableField("group_id")
+    private Long groupId;
+
+    /**
+     * 触发回复的原始消息ID
+     */
+    @TableField("message_id")
+    private String messageId;
+
+    /**
+     * 待发送内容(TEXT类型)
+     */
+    @TableField("content")
+    private String content;
+
+    /**
+     * 已尝试次数
+     */
+    @TableField("attempts")
+    private Integer attempts;
+
+    /**
+     * 重试状态
+     */
+    @TableField("status")
+    private RetryStatus status;
+
+    /**
+     * 下次尝试时间(IN_FLIGHT状态下表示租约到期时间)
+     */
+    @TableField("next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * 最近一次错误信息
+     */
+    @TableField("last_error")
+    private String lastError;
+
+    /**
+     * 创建时间
+     */
+    @TableField(value = "created_at", fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间
+     */
+    @TableField(value = "updated_at", fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+
+    /**
+     * 重试状态枚举
+     */
+    public enum RetryStatus {
+        /**
+         * 等待重试
+         */
+        PENDING,
+
+        /**
+         * 发送中(已被某个节点认领)
+         */
+        IN_FLIGHT,
+
+        /**
+         * 发送成功
+         */
+        SUCCESS,
+
+        /**
+         * 超过最大重试次数, 不再重试
+         */
+        DEAD
+    }
+}
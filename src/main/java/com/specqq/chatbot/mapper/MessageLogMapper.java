@@ -6,8 +6,10 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.specqq.chatbot.entity.MessageLog;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * MessageLog Mapper接口
@@ -32,4 +34,72 @@ public interface MessageLogMapper extends BaseMapper<MessageLog> {
                                          @Param("userId") String userId,
                                          @Param("startTime") LocalDateTime startTime,
                                          @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 多行插入消息日志(单条INSERT ... VALUES (...), (...))
+     *
+     * @param logs 消息日志(非空)
+     * @return 插入行数
+     */
+    int insertBatch(@Param("logs") List<MessageLog> logs);
+
+    /**
+     * 流式查询消息日志(导出用, 逐行回调, 不在内存中保留结果集)
+     *
+     * @param groupId    群聊ID(可选)
+     * @param userId     用户ID(可选)
+     * @param ruleId     规则ID(可选)
+     * @param sendStatus 发送状态(可选)
+     * @param startTime  开始时间(可选)
+     * @param endTime    结束时间(可选)
+     * @param handler    逐行回调
+     */
+    void streamForExport(@Param("groupId") Long groupId,
+                         @Param("userId") String userId,
+                         @Param("ruleId") Long ruleId,
+                         @Param("sendStatus") MessageLog.SendStatus sendStatus,
+                         @Param("startTime") LocalDateTime startTime,
+                         @Param("endTime") LocalDateTime endTime,
+                         ResultHandler<MessageLog> handler);
+
+    /**
+     * 游标分页查询(keyset: timestamp, id 降序), 按群聊筛选时使用 idx_group_timestamp
+     *
+     * @param groupId    群聊ID(可选)
+     * @param userId     用户ID(可选)
+     * @param ruleId     规则ID(可选)
+     * @param sendStatus 发送状态(可选)
+     * @param startTime  开始时间(可选)
+     * @param endTime    结束时间(可选)
+     * @param keyword    消息内容关键词(可选)
+     * @param cursorTime 游标时间戳(可选, 为null时从最新开始)
+     * @param cursorId   游标日志ID
+     * @param limit      返回条数
+     * @return 日志列表
+     */
+    List<MessageLog> selectByCursor(@Param("groupId") Long groupId,
+                                    @Param("userId") String userId,
+                                    @Param("ruleId") Long ruleId,
+                                    @Param("sendStatus") MessageLog.SendStatus sendStatus,
+                                    @Param("startTime") LocalDateTime startTime,
+                                    @Param("endTime") LocalDateTime endTime,
+                                    @Param("keyword") String keyword,
+                                    @Param("cursorTime") LocalDateTime cursorTime,
+                                    @Param("cursorId") Long cursorId,
+                                    @Param("limit") int limit);
+
+    /**
+     * 条件计数(可设上限, 达到上限即停止扫描)
+     *
+     * @param cap 上限(为null时精确计数)
+     * @return 条数(不超过cap)
+     */
+    long countLogs(@Param("groupId") Long groupId,
+                   @Param("userId") String userId,
+                   @Param("ruleId") Long ruleId,
+                   @Param("sendStatus") MessageLog.SendStatus sendStatus,
+                   @Param("startTime") LocalDateTime startTime,
+                   @Param("endTime") LocalDateTime endTime,
+                   @Param("keyword") String keyword,
+                   @Param("cap") Integer cap);
 }
@@ -0,0 +1,66 @@
+package com.specqq.chatbot.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.specqq.chatbot.entity.OutboundRetry;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * OutboundRetry Mapper接口
+ *
+ * @author Chatbot Router System
+ */
+@Mapper
+public interface OutboundRetryMapper extends BaseMapper<OutboundRetry> {
+
+    /**
+     * 插入重试记录(幂等键冲突时忽略)
+     *
+     * @param retry 重试记录
+     * @return 插入行数(0表示幂等键已存在)
+     */
+    int insertIgnore(OutboundRetry retry);
+
+    /**
+     * 重新激活已放弃的重试记录(仅DEAD状态)
+     *
+     * @param idempotencyKey 幂等键
+     * @param now            当前时间
+     * @return 更新行数
+     */
+    int reviveDead(@Param("idempotencyKey") String idempotencyKey,
+                   @Param("now") LocalDateTime now);
+
+    /**
+     * 查询到期的待重试记录(按下次尝试时间升序)
+     *
+     * @param now   当前时间
+     * @param limit 最大返回数量
+     * @return 待重试记录列表
+     */
+    List<OutboundRetry> selectDue(@Param("now") LocalDateTime now,
+                                  @Param("limit") int limit);
+
+    /**
+     * 认领待重试记录(PENDING → IN_FLIGHT, 条件更新保证多节点下只有一个节点认领成功)
+     *
+     * @param id         记录ID
+     * @param leaseUntil 租约到期时间
+     * @return 更新行数(1表示认领成功)
+     */
+    int claim(@Param("id") Long id,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * 将租约已过期的发送中记录标记为DEAD(节点崩溃恢复)
+     *
+     * <p>认领节点可能已将消息写出, 结果未知, 因此不回到PENDING自动重发, 留待人工确认后手动重试。</p>
+     *
+     * @param now 当前时间
+     * @return 标记的记录数
+     */
+    int abandonExpiredLeases(@Param("now") LocalDateTime now);
+}
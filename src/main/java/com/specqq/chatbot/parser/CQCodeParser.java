@@ -6,19 +6,23 @@ import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
-import java.util.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 /**
  * CQ Code Parser
  *
  * <p>Parses CQ codes from OneBot 11 protocol message strings.
- * Uses regex-based parsing with compiled pattern caching for performance.</p>
+ * Uses the single-pass {@link CQCodeTokenizer} (no regex): CQ codes, plain text and
+ * entity-decoded parameters are produced by one scan of the message.</p>
  *
  * <p>Performance Characteristics:
  * <ul>
@@ -38,7 +42,6 @@ public class CQCodeParser {
     private static final Logger logger = LoggerFactory.getLogger(CQCodeParser.class);
 
     private final Cache<String, Pattern> patternCache;
-    private final Pattern cqCodePattern;
 
     // T117: Prometheus metrics
     private final Counter parseCounter;
@@ -47,6 +50,11 @@ public class CQCodeParser {
     private final Counter cacheMissesCounter;
     private final AtomicInteger totalCountGauge;
 
+    /**
+     * Optional memo of parse results keyed by message content (null: always parse)
+     */
+    private ContentHashMemo<ParsedMessage> parseMemo;
+
     /**
      * Constructor with dependency injection
      *
@@ -64,13 +72,22 @@ public class CQCodeParser {
                         @Qualifier("cqCodeCacheMissesCounter") Counter cacheMissesCounter,
                         @Qualifier("cqCodeTotalCount") AtomicInteger totalCountGauge) {
         this.patternCache = patternCache;
-        this.cqCodePattern = Pattern.compile(CQCodeConstants.CQ_CODE_PATTERN);
         this.parseCounter = parseCounter;
         this.parseDurationTimer = parseDurationTimer;
         this.cacheHitsCounter = cacheHitsCounter;
         this.cacheMissesCounter = cacheMissesCounter;
         this.totalCountGauge = totalCountGauge;
-        logger.info("CQCodeParser initialized with pattern: {}", CQCodeConstants.CQ_CODE_PATTERN);
+        logger.info("CQCodeParser initialized (single-pass tokenizer)");
+    }
+
+    /**
+     * Set memo cache for parse results (optional)
+     *
+     * @param parseMemo Memo keyed by message content hash
+     */
+    @Autowired(required = false)
+    public void setParseMemo(@Qualifier(CQCodeConstants.CACHE_PARSE_MEMO) ContentHashMemo<ParsedMessage> parseMemo) {
+        this.parseMemo = parseMemo;
     }
 
     /**
@@ -94,52 +111,168 @@ public class CQCodeParser {
         if (message == null || message.isEmpty()) {
             return Collections.emptyList();
         }
+        return parseMessage(message).cqCodes();
+    }
 
+    /**
+     * Parse CQ codes and plain text in one pass
+     *
+     * <p>Equivalent to {@link #parse(String)} plus {@link #stripCQCodes(String)} without scanning
+     * the message twice. Parameter values and plain text are entity-decoded
+     * ({@code &amp;}, {@code &#91;}, {@code &#93;}, and {@code &#44;} in parameters).</p>
+     *
+     * @param message Message string to parse (may contain CQ codes)
+     * @return CQ codes and plain text
+     */
+    public ParsedMessage parseMessage(String message) {
+        if (message == null || message.isEmpty()) {
+            return ParsedMessage.EMPTY;
+        }
+        // Repeated messages (spam, copy-paste waves) are served from the memo
+        return parseMemo != null ? parseMemo.get(message, this::tokenize) : tokenize(message);
+    }
+
+    private ParsedMessage tokenize(String message) {
         // T117: Record parse operation
         parseCounter.increment();
         long startTime = System.nanoTime();
-        List<CQCode> cqCodes = new ArrayList<>();
 
         try {
-            Matcher matcher = cqCodePattern.matcher(message);
-
-            while (matcher.find()) {
-                String rawText = matcher.group(0);
-                String type = matcher.group(1);
-                String paramsString = matcher.group(2);
-
-                Map<String, String> params = parseParams(paramsString);
-                CQCode cqCode = new CQCode(type, params, rawText);
-                cqCodes.add(cqCode);
-            }
+            ParsedMessage parsed = CQCodeTokenizer.tokenize(message);
+            int count = parsed.cqCodes().size();
 
             // T117: Update total CQ code count gauge
-            totalCountGauge.addAndGet(cqCodes.size());
+            totalCountGauge.addAndGet(count);
 
             // T117: Record parse duration
             long elapsedNanos = System.nanoTime() - startTime;
-            parseDurationTimer.record(elapsedNanos, java.util.concurrent.TimeUnit.NANOSECONDS);
+            parseDurationTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
 
             long elapsedMs = elapsedNanos / 1_000_000;
             if (elapsedMs > CQCodeConstants.TARGET_PARSE_P95_MS) {
                 logger.warn("CQ code parsing exceeded P95 target: {}ms > {}ms (message length: {}, CQ codes: {})",
-                        elapsedMs, CQCodeConstants.TARGET_PARSE_P95_MS, message.length(), cqCodes.size());
+                        elapsedMs, CQCodeConstants.TARGET_PARSE_P95_MS, message.length(), count);
             } else {
-                logger.debug("Parsed {} CQ codes from message in {}ms", cqCodes.size(), elapsedMs);
+                logger.debug("Parsed {} CQ codes from message in {}ms", count, elapsedMs);
             }
+            return parsed;
 
         } catch (Exception e) {
             logger.error("Error parsing CQ codes from message: {}", message, e);
-            // Return empty list on error to avoid crashing the pipeline
+            // Return empty result on error to avoid crashing the pipeline
+            return new ParsedMessage(Collections.emptyList(), message);
         }
+    }
 
-        return cqCodes;
+    /**
+     * Locate CQ codes as flyweight views over the message
+     *
+     * <p>Stores only offsets; type names come from the interned {@link CQCodeTypeTable} and
+     * parameters / raw text are materialized on demand. Use this when only types or counts
+     * are needed (e.g. statistics) to keep parsing nearly allocation-free.</p>
+     *
+     * @param message Message string to parse (may contain CQ codes)
+     * @return CQ code views (empty if none found)
+     */
+    public CQCodeViews parseViews(String message) {
+        if (message == null || message.isEmpty()) {
+            return CQCodeViews.EMPTY;
+        }
+
+        parseCounter.increment();
+        long startTime = System.nanoTime();
+        CQCodeViews views = CQCodeTokenizer.scan(message);
+        totalCountGauge.addAndGet(views.size());
+        parseDurationTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        return views;
+    }
+
+    /**
+     * Count plain-text characters and CQ codes per type in one scan
+     *
+     * <p>Fused path for statistics: no CQ code objects, no stripped string.</p>
+     *
+     * @param message Message string to analyze (may contain CQ codes)
+     * @param tally   Accumulator to add to (callers reset it between messages)
+     */
+    public void tally(String message, CQCodeTally tally) {
+        if (message == null || message.isEmpty()) {
+            return;
+        }
+
+        parseCounter.increment();
+        long startTime = System.nanoTime();
+        int before = tally.total();
+        CQCodeTokenizer.tally(message, tally);
+        totalCountGauge.addAndGet(tally.total() - before);
+        parseDurationTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stream text runs and CQ codes to a visitor while scanning
+     *
+     * <p>For very large messages (forwards, pastes with thousands of CQ codes): nothing is
+     * accumulated, and the visitor can stop early by returning false.</p>
+     *
+     * @param message Message to scan (any CharSequence)
+     * @param visitor Callbacks for text runs and CQ codes
+     * @return true if the whole message was visited, false if the visitor stopped early
+     */
+    public boolean visit(CharSequence message, CQCodeVisitor visitor) {
+        if (message == null || message.isEmpty()) {
+            return true;
+        }
+
+        parseCounter.increment();
+        long startTime = System.nanoTime();
+        int[] codes = new int[1];
+        try {
+            return CQCodeTokenizer.visit(message, new CQCodeVisitor() {
+                @Override
+                public boolean onText(CharSequence source, int start, int end) {
+                    return visitor.onText(source, start, end);
+                }
+
+                @Override
+                public boolean onCode(CQCodeView code) {
+                    codes[0]++;
+                    return visitor.onCode(code);
+                }
+            });
+        } finally {
+            totalCountGauge.addAndGet(codes[0]);
+            parseDurationTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Find the first CQ code matching a condition, stopping the scan there
+     *
+     * <p>Example: {@code findFirst(message, code -> "at".equals(code.type()) && selfId.equals(code.getParam("qq")))}</p>
+     *
+     * @param message   Message to scan (any CharSequence)
+     * @param condition Condition on the CQ code
+     * @return First matching CQ code, or null if none
+     */
+    public CQCodeView findFirst(CharSequence message, Predicate<CQCodeView> condition) {
+        CQCodeView[] found = new CQCodeView[1];
+        visit(message, new CQCodeVisitor() {
+            @Override
+            public boolean onCode(CQCodeView code) {
+                if (condition.test(code)) {
+                    found[0] = code;
+                    return false;
+                }
+                return true;
+            }
+        });
+        return found[0];
     }
 
     /**
      * Strip CQ codes from message and return plain text
      *
-     * <p>Removes all CQ codes from the message, leaving only plain text.
+     * <p>Removes all CQ codes from the message, leaving only plain text (entity-decoded).
      * Useful for character counting and text analysis.</p>
      *
      * <p>Example:
@@ -158,7 +291,7 @@ public class CQCodeParser {
         }
 
         try {
-            return cqCodePattern.matcher(message).replaceAll("");
+            return CQCodeTokenizer.plainText(message);
         } catch (Exception e) {
             logger.error("Error stripping CQ codes from message: {}", message, e);
             return message; // Return original message on error
@@ -183,52 +316,13 @@ public class CQCodeParser {
             return new ValidationResult(false, "CQ code must start with '[CQ:' and end with ']'");
         }
 
-        Matcher matcher = cqCodePattern.matcher(cqCode);
-        if (!matcher.matches()) {
+        if (!CQCodeTokenizer.isCQCode(cqCode)) {
             return new ValidationResult(false, "Invalid CQ code syntax");
         }
 
-        String type = matcher.group(1);
-        if (type == null || type.isBlank()) {
-            return new ValidationResult(false, "CQ code type cannot be empty");
-        }
-
         return new ValidationResult(true, null);
     }
 
-    /**
-     * Parse parameters from CQ code parameter string
-     *
-     * <p>Parses comma-separated key=value pairs into a map.
-     * Example: "id=123,url=https://example.com" → {"id": "123", "url": "https://example.com"}</p>
-     *
-     * @param paramsString Parameter string from CQ code (may be null)
-     * @return Map of parameter key-value pairs (empty map if no params)
-     */
-    private Map<String, String> parseParams(String paramsString) {
-        if (paramsString == null || paramsString.isBlank()) {
-            return Collections.emptyMap();
-        }
-
-        Map<String, String> params = new HashMap<>();
-        String[] pairs = paramsString.split(",");
-
-        for (String pair : pairs) {
-            String[] keyValue = pair.split("=", 2);
-            if (keyValue.length == 2) {
-                String key = keyValue[0].trim();
-                String value = keyValue[1].trim();
-                if (!key.isEmpty()) {
-                    params.put(key, value);
-                }
-            } else {
-                logger.warn("Malformed parameter pair in CQ code: {}", pair);
-            }
-        }
-
-        return params;
-    }
-
     /**
      * Validation Result
      *
@@ -0,0 +1,98 @@
+package com.specqq.chatbot.parser;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * CQ Code Tally
+ *
+ * <p>Mutable, reusable accumulator for {@link CQCodeTokenizer#tally}: plain-text code points and
+ * CQ code counts in a fixed array indexed by {@link CQCodeType#ordinal()}. Non-standard type
+ * names are only tracked when they occur.</p>
+ *
+ * <p>Not thread-safe; callers keep one instance per thread and {@link #reset()} it between messages.</p>
+ *
+ * @author Chatbot Router System
+ */
+public final class CQCodeTally {
+
+    private static final CQCodeType[] TYPES = CQCodeType.values();
+
+    private final int[] typeCounts = new int[TYPES.length];
+
+    private Map<String, Integer> otherCounts;
+    private int characterCount;
+    private int total;
+
+    /**
+     * Clear all counts
+     */
+    public void reset() {
+        Arrays.fill(typeCounts, 0);
+        if (otherCounts != null) {
+            otherCounts.clear();
+        }
+        characterCount = 0;
+        total = 0;
+    }
+
+    /**
+     * @return plain-text length in Unicode code points (CQ codes excluded, entities count as one)
+     */
+    public int characterCount() {
+        return characterCount;
+    }
+
+    /**
+     * @return total number of CQ codes
+     */
+    public int total() {
+        return total;
+    }
+
+    /**
+     * @return count for a standard type ({@link CQCodeType#OTHER} sums all non-standard types)
+     */
+    public int count(CQCodeType type) {
+        return typeCounts[type.ordinal()];
+    }
+
+    void addCharacters(int count) {
+        characterCount += count;
+    }
+
+    void add(CQCodeType type, CharSequence s, int typeFrom, int typeTo) {
+        typeCounts[type.ordinal()]++;
+        total++;
+        if (type == CQCodeType.OTHER) {
+            if (otherCounts == null) {
+                otherCounts = new LinkedHashMap<>();
+            }
+            otherCounts.merge(CQCodeTypeTable.intern(s, typeFrom, typeTo), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Counts by type name: standard types in {@link CQCodeType} order, then other types in order of appearance
+     *
+     * @return new map (empty if no CQ codes)
+     */
+    public Map<String, Integer> toCounts() {
+        if (total == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (CQCodeType type : TYPES) {
+            int count = typeCounts[type.ordinal()];
+            if (count > 0 && type.isStandardType()) {
+                counts.put(type.getCode(), count);
+            }
+        }
+        if (otherCounts != null) {
+            counts.putAll(otherCounts);
+        }
+        return counts;
+    }
+}
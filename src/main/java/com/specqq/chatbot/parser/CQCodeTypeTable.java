@@ -0,0 +1,156 @@
+package com.specqq.chatbot.parser;
+
+import com.specqq.chatbot.common.CQCodeConstants;
+
+/**
+ * CQ Code Type Table
+ *
+ * <p>Interned type names for {@link CQCodeView}: a type name is resolved directly from its
+ * region in the message (hash + region compare), so repeated types such as
+ * {@code face}/{@code image} never allocate a new String. Each entry also caches its
+ * {@link CQCodeType}, avoiding the linear {@link CQCodeType#fromCode} scan per code.</p>
+ *
+ * <p>Standard OneBot 11 types are preloaded. Unknown types are added on first sight up to
+ * {@link #MAX_TYPES}; beyond that they are returned as plain substrings so a flood of
+ * random type names cannot grow the table without bound.</p>
+ *
+ * <p>Lookups are lock-free against an immutable snapshot; insertions copy the table
+ * under a lock (rare: only the first time a type is seen).</p>
+ *
+ * @author Chatbot Router System
+ */
+public final class CQCodeTypeTable {
+
+    /**
+     * Upper bound on interned type names
+     */
+    static final int MAX_TYPES = 256;
+
+    private static final int TABLE_SIZE = MAX_TYPES * 2;
+
+    private static final String[] PRELOADED = {
+        CQCodeConstants.TYPE_FACE, CQCodeConstants.TYPE_IMAGE, CQCodeConstants.TYPE_AT,
+        CQCodeConstants.TYPE_REPLY, CQCodeConstants.TYPE_RECORD, CQCodeConstants.TYPE_VIDEO,
+        "text", "mface", "rps", "dice", "shake", "poke", "anonymous", "share", "contact",
+        "location", "music", "forward", "node", "xml", "json", "file", "markdown"
+    };
+
+    /**
+     * Interned type name with its resolved standard type
+     */
+    private record Entry(String name, CQCodeType codeType) {
+    }
+
+    private static final Object LOCK = new Object();
+
+    private static volatile Entry[] table = new Entry[TABLE_SIZE];
+    private static int size;
+
+    static {
+        for (String type : PRELOADED) {
+            lookup(type, 0, type.length());
+        }
+    }
+
+    private CQCodeTypeTable() {
+    }
+
+    /**
+     * Resolve the type name in {@code [from, to)} to its interned String
+     *
+     * @param s    source
+     * @param from start of the type name
+     * @param to   end of the type name (exclusive)
+     * @return interned type name (a fresh substring once the table is full)
+     */
+    public static String intern(CharSequence s, int from, int to) {
+        return lookup(s, from, to).name();
+    }
+
+    /**
+     * Resolve the type name in {@code [from, to)} to its standard type
+     *
+     * @return standard type, or {@link CQCodeType#OTHER}
+     */
+    public static CQCodeType codeType(CharSequence s, int from, int to) {
+        return lookup(s, from, to).codeType();
+    }
+
+    private static Entry lookup(CharSequence s, int from, int to) {
+        int hash = hash(s, from, to);
+        Entry found = find(table, s, from, to, hash);
+        if (found != null) {
+            return found;
+        }
+
+        synchronized (LOCK) {
+            Entry[] current = table;
+            found = find(current, s, from, to, hash);
+            if (found != null) {
+                return found;
+            }
+            String name = s.subSequence(from, to).toString();
+            Entry entry = new Entry(name, CQCodeType.fromCode(name));
+            if (size >= MAX_TYPES) {
+                return entry;
+            }
+            Entry[] copy = current.clone();
+            copy[probe(copy, hash)] = entry;
+            size++;
+            table = copy;
+            return entry;
+        }
+    }
+
+    /**
+     * Number of interned type names
+     */
+    static int size() {
+        synchronized (LOCK) {
+            return size;
+        }
+    }
+
+    private static Entry find(Entry[] current, CharSequence s, int from, int to, int hash) {
+        int mask = current.length - 1;
+        int length = to - from;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Entry candidate = current[i];
+            if (candidate == null) {
+                return null;
+            }
+            if (candidate.name().length() == length && regionEquals(candidate.name(), s, from, length)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static int probe(Entry[] current, int hash) {
+        int mask = current.length - 1;
+        int i = hash & mask;
+        while (current[i] != null) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static boolean regionEquals(String candidate, CharSequence s, int from, int length) {
+        for (int i = 0; i < length; i++) {
+            if (candidate.charAt(i) != s.charAt(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same value as {@link String#hashCode()} of the region, spread for the power-of-two table
+     */
+    private static int hash(CharSequence s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,100 @@
+package com.specqq.chatbot.parser;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * CQ Code View
+ *
+ * <p>Flyweight over one CQ code in the original message: only offsets are stored, the type name
+ * comes from {@link CQCodeTypeTable}, and raw text / parameters are materialized on first access.</p>
+ *
+ * <p>Example: for {@code "hi[CQ:face,id=1]"} the view holds (start=2, typeEnd=10, end=17);
+ * {@code type()} returns the interned {@code "face"} without allocating.</p>
+ *
+ * @author Chatbot Router System
+ */
+public final class CQCodeView {
+
+    private final CharSequence source;
+    private final int start;
+    private final int typeEnd;
+    private final int end;
+
+    /**
+     * Lazily parsed parameters (benign race: the computed value is deterministic)
+     */
+    private Map<String, String> params;
+
+    CQCodeView(CharSequence source, int start, int typeEnd, int end) {
+        this.source = source;
+        this.start = start;
+        this.typeEnd = typeEnd;
+        this.end = end;
+    }
+
+    /**
+     * @return interned type name (e.g., "face")
+     */
+    public String type() {
+        return CQCodeTypeTable.intern(source, start + CQCodeTokenizer.PREFIX.length(), typeEnd);
+    }
+
+    /**
+     * @return standard type, or {@link CQCodeType#OTHER}
+     */
+    public CQCodeType codeType() {
+        return CQCodeTypeTable.codeType(source, start + CQCodeTokenizer.PREFIX.length(), typeEnd);
+    }
+
+    /**
+     * @return offset of {@code [} in the source message
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * @return offset just past {@code ]} in the source message
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * @return original CQ code text (allocated on each call)
+     */
+    public String rawText() {
+        return source.subSequence(start, end).toString();
+    }
+
+    /**
+     * @return entity-decoded parameters (parsed on first access)
+     */
+    public Map<String, String> params() {
+        Map<String, String> value = params;
+        if (value == null) {
+            value = typeEnd + 1 < end
+                ? Collections.unmodifiableMap(CQCodeTokenizer.parseParams(source, typeEnd + 1, end - 1))
+                : Collections.emptyMap();
+            params = value;
+        }
+        return value;
+    }
+
+    public String getParam(String key) {
+        return params().get(key);
+    }
+
+    /**
+     * Materialize as a standalone {@link CQCode}
+     */
+    public CQCode toCQCode() {
+        return new CQCode(type(), params(), rawText());
+    }
+
+    @Override
+    public String toString() {
+        return "CQCodeView{" + source.subSequence(start, end) + "}";
+    }
+}
@@ -0,0 +1,175 @@
+package com.specqq.chatbot.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CQ Code Views
+ *
+ * <p>Offsets of all CQ codes in a message, packed into one {@code int[]}
+ * (start, type end, end per code). Parsing a message with many faces/images therefore costs
+ * one array instead of a substring, a type string and a HashMap per code; per-code objects
+ * ({@link CQCodeView}, {@link CQCode}) are only created when a caller asks for them.</p>
+ *
+ * @author Chatbot Router System
+ */
+public final class CQCodeViews {
+
+    private static final int STRIDE = 3;
+
+    private static final int[] NO_BOUNDS = new int[0];
+
+    static final CQCodeViews EMPTY = new CQCodeViews("", NO_BOUNDS, 0);
+
+    private final String source;
+    private final int[] bounds;
+    private final int size;
+
+    CQCodeViews(String source, int[] bounds, int size) {
+        this.source = source;
+        this.bounds = bounds;
+        this.size = size;
+    }
+
+    /**
+     * @return original message
+     */
+    public String source() {
+        return source;
+    }
+
+    /**
+     * @return number of CQ codes
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return offset of {@code [} of the i-th CQ code
+     */
+    public int start(int index) {
+        return bounds[checkIndex(index) * STRIDE];
+    }
+
+    /**
+     * @return offset just past {@code ]} of the i-th CQ code
+     */
+    public int end(int index) {
+        return bounds[checkIndex(index) * STRIDE + 2];
+    }
+
+    /**
+     * @return interned type name of the i-th CQ code (no allocation)
+     */
+    public String type(int index) {
+        int base = checkIndex(index) * STRIDE;
+        return CQCodeTypeTable.intern(source, bounds[base] + CQCodeTokenizer.PREFIX.length(), bounds[base + 1]);
+    }
+
+    /**
+     * @return standard type of the i-th CQ code, or {@link CQCodeType#OTHER}
+     */
+    public CQCodeType codeType(int index) {
+        int base = checkIndex(index) * STRIDE;
+        return CQCodeTypeTable.codeType(source, bounds[base] + CQCodeTokenizer.PREFIX.length(), bounds[base + 1]);
+    }
+
+    /**
+     * @return flyweight view of the i-th CQ code
+     */
+    public CQCodeView view(int index) {
+        int base = checkIndex(index) * STRIDE;
+        return new CQCodeView(source, bounds[base], bounds[base + 1], bounds[base + 2]);
+    }
+
+    /**
+     * Materialize all CQ codes (same result as {@link CQCodeParser#parse(String)})
+     */
+    public List<CQCode> toCQCodes() {
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        List<CQCode> cqCodes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            cqCodes.add(view(i).toCQCode());
+        }
+        return cqCodes;
+    }
+
+    /**
+     * Count CQ codes by type name, in order of first appearance
+     *
+     * @return type name → count
+     */
+    public Map<String, Integer> countByType() {
+        if (size == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            counts.merge(type(i), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Plain text between the CQ codes (entity-decoded), built from the stored offsets
+     */
+    public String plainText() {
+        if (size == 0 && source.indexOf('&') < 0) {
+            return source;
+        }
+        StringBuilder text = new StringBuilder(source.length());
+        int textStart = 0;
+        for (int i = 0; i < size; i++) {
+            CQCodeTokenizer.decodeText(source, textStart, bounds[i * STRIDE], text);
+            textStart = bounds[i * STRIDE + 2];
+        }
+        return CQCodeTokenizer.decodeText(source, textStart, source.length(), text).toString();
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("CQ code index " + index + " out of bounds for size " + size);
+        }
+        return index;
+    }
+
+    /**
+     * Append-only builder used by the tokenizer
+     */
+    static final class Builder {
+
+        private final String source;
+        private int[] bounds = NO_BOUNDS;
+        private int size;
+
+        Builder(String source) {
+            this.source = source;
+        }
+
+        void add(int start, int typeEnd, int end) {
+            int base = size * STRIDE;
+            if (base + STRIDE > bounds.length) {
+                bounds = Arrays.copyOf(bounds, Math.max(8 * STRIDE, bounds.length * 2));
+            }
+            bounds[base] = start;
+            bounds[base + 1] = typeEnd;
+            bounds[base + 2] = end;
+            size++;
+        }
+
+        CQCodeViews build() {
+            return size == 0 ? new CQCodeViews(source, NO_BOUNDS, 0) : new CQCodeViews(source, bounds, size);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.specqq.chatbot.parser;
+
+/**
+ * CQ Code Visitor
+ *
+ * <p>Streaming callbacks for {@link CQCodeParser#visit(CharSequence, CQCodeVisitor)}: text runs and
+ * CQ codes are reported in message order while scanning, so memory stays flat regardless of message
+ * size. Returning {@code false} from a callback stops the scan (e.g. after the first {@code at}
+ * that targets the bot).</p>
+ *
+ * <p>Example:
+ * <pre>
+ * parser.visit(message, new CQCodeVisitor() {
+ *     public boolean onCode(CQCodeView code) {
+ *         return !("at".equals(code.type()) &amp;&amp; selfId.equals(code.getParam("qq")));
+ *     }
+ * });
+ * </pre>
+ * </p>
+ *
+ * @author Chatbot Router System
+ */
+public interface CQCodeVisitor {
+
+    /**
+     * Plain text run between CQ codes
+     *
+     * <p>The region is still entity-encoded; use {@link CQCodeTokenizer#unescape(CharSequence, int, int)}
+     * when the decoded text is needed.</p>
+     *
+     * @param source original message
+     * @param start  start of the run (inclusive)
+     * @param end    end of the run (exclusive)
+     * @return true to continue scanning, false to stop
+     */
+    default boolean onText(CharSequence source, int start, int end) {
+        return true;
+    }
+
+    /**
+     * CQ code (flyweight view; parameters are parsed only if accessed)
+     *
+     * @param code CQ code view over the original message
+     * @return true to continue scanning, false to stop
+     */
+    default boolean onCode(CQCodeView code) {
+        return true;
+    }
+}
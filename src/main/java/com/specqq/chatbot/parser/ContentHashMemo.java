@@ -0,0 +1,165 @@
+package com.specqq.chatbot.parser;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Content Hash Memo
+ *
+ * <p>Bounded memo cache for pure functions of a message string (CQ parsing, statistics).
+ * Spam and copy-paste waves repeat the same {@code raw_message} many times a minute; the memo
+ * keys results by a fast 64-bit hash of the content and verifies the stored content on every hit,
+ * so a hash collision costs a recomputation, never a wrong result.</p>
+ *
+ * <p>Limits:
+ * <ul>
+ *   <li>Total weight: sum of cached content lengths (chars) plus a fixed per-entry overhead</li>
+ *   <li>Content length: longer messages bypass the memo (unlikely to repeat, expensive to hold)</li>
+ *   <li>Expire after access: idle entries are dropped</li>
+ * </ul>
+ * A non-positive weight disables the memo (every call computes).</p>
+ *
+ * @param <V> memoized value type (must be immutable)
+ * @author Chatbot Router System
+ */
+public final class ContentHashMemo<V> {
+
+    /**
+     * Weight charged per entry on top of the content length (key, entry and value objects)
+     */
+    static final int ENTRY_OVERHEAD = 64;
+
+    private record Entry<V>(String content, V value) {
+    }
+
+    private final Cache<Long, Entry<V>> cache;
+    private final int maxContentLength;
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    /**
+     * @param maxWeight         total weight limit (≤0 disables the memo)
+     * @param maxContentLength  longest content that is memoized
+     * @param expireAfterAccess idle expiry (null or zero: never)
+     */
+    public ContentHashMemo(long maxWeight, int maxContentLength, Duration expireAfterAccess) {
+        this.maxContentLength = maxContentLength;
+        if (maxWeight <= 0) {
+            this.cache = null;
+            return;
+        }
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .recordStats();
+        if (expireAfterAccess != null && !expireAfterAccess.isZero() && !expireAfterAccess.isNegative()) {
+            builder.expireAfterAccess(expireAfterAccess);
+        }
+        this.cache = builder
+                .<Long, Entry<V>>weigher((key, entry) -> ENTRY_OVERHEAD + entry.content().length())
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Return the memoized value for {@code content}, computing and storing it on a miss
+     *
+     * @param content message content
+     * @param loader  pure function of the content (null results are not memoized)
+     * @return value for the content
+     */
+    public V get(String content, Function<String, V> loader) {
+        if (cache == null || content == null || content.length() > maxContentLength) {
+            if (cache != null) {
+                bypassed.increment();
+            }
+            return loader.apply(content);
+        }
+
+        Long key = hash64(content);
+        Entry<V> entry = cache.getIfPresent(key);
+        if (entry != null) {
+            if (entry.content().equals(content)) {
+                return entry.value();
+            }
+            collisions.increment();
+        }
+
+        V value = loader.apply(content);
+        if (value != null) {
+            cache.put(key, new Entry<>(content, value));
+        }
+        return value;
+    }
+
+    /**
+     * @return approximate number of entries
+     */
+    public long estimatedSize() {
+        return cache != null ? cache.estimatedSize() : 0;
+    }
+
+    /**
+     * @return hit rate since start (0 when disabled or unused)
+     */
+    public double hitRate() {
+        return cache != null ? cache.stats().hitRate() : 0;
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Register cache metrics (gets by result, size, evictions) plus collisions and bypasses
+     *
+     * @param registry meter registry
+     * @param name     cache name tag
+     */
+    public void bindMetrics(MeterRegistry registry, String name) {
+        if (cache == null || registry == null) {
+            return;
+        }
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+        FunctionCounter.builder("cqcode_memo_collisions_total", collisions, LongAdder::sum)
+                .description("Memo lookups whose 64-bit content hash matched a different message")
+                .tag("component", "cqcode-parser")
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("cqcode_memo_bypassed_total", bypassed, LongAdder::sum)
+                .description("Messages longer than the memo content-length limit")
+                .tag("component", "cqcode-parser")
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 chars, finished with the MurmurHash3 fmix64 avalanche
+     *
+     * @param s content
+     * @return 64-bit hash
+     */
+    public static long hash64(CharSequence s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, length = s.length(); i < length; i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,105 @@
+package com.specqq.chatbot.parser;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * OneBot 11 Message Segment
+ *
+ * <p>One element of a message in array format, e.g. {@code {"type":"face","data":{"id":"123"}}}.
+ * Plain text is a segment of type {@code text} with a single {@code text} field.</p>
+ *
+ * @param type segment type (e.g., "text", "face", "image", "at")
+ * @param data segment data (immutable, values kept as strings like CQ code params)
+ * @author Chatbot Router System
+ */
+public record MessageSegment(String type, Map<String, String> data) {
+
+    public static final String TYPE_TEXT = "text";
+
+    public MessageSegment {
+        Objects.requireNonNull(type, "Segment type cannot be null");
+        data = data == null ? Collections.emptyMap() : Collections.unmodifiableMap(data);
+    }
+
+    /**
+     * Create a text segment
+     *
+     * @param text plain text
+     * @return text segment
+     */
+    public static MessageSegment text(String text) {
+        return new MessageSegment(TYPE_TEXT, Collections.singletonMap(TYPE_TEXT, text != null ? text : ""));
+    }
+
+    /**
+     * Check if this is a plain text segment
+     */
+    public boolean isText() {
+        return TYPE_TEXT.equals(type);
+    }
+
+    /**
+     * Text content of a text segment (empty for other types)
+     */
+    public String text() {
+        if (!isText()) {
+            return "";
+        }
+        String text = data.get(TYPE_TEXT);
+        return text != null ? text : "";
+    }
+
+    /**
+     * Get data value by key
+     */
+    public String get(String key) {
+        return data.get(key);
+    }
+
+    /**
+     * Append this segment in CQ string form (text escaped, other types as CQ codes)
+     *
+     * @param out target builder
+     */
+    public void appendCQ(StringBuilder out) {
+        if (isText()) {
+            escape(out, text(), false);
+            return;
+        }
+        out.append("[CQ:").append(type);
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            out.append(',').append(entry.getKey()).append('=');
+            escape(out, entry.getValue() != null ? entry.getValue() : "", true);
+        }
+        out.append(']');
+    }
+
+    /**
+     * Convert a non-text segment to a CQ code
+     *
+     * @return CQ code with the CQ string as raw text
+     */
+    public CQCode toCQCode() {
+        StringBuilder raw = new StringBuilder(16 + type.length());
+        appendCQ(raw);
+        return new CQCode(type, data, raw.toString());
+    }
+
+    /**
+     * OneBot 11 CQ escaping: & [ ] always, and , inside CQ code params
+     */
+    private static void escape(StringBuilder out, String value, boolean param) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '[' -> out.append("&#91;");
+                case ']' -> out.append("&#93;");
+                case ',' -> out.append(param ? "&#44;" : ",");
+                default -> out.append(c);
+            }
+        }
+    }
+}
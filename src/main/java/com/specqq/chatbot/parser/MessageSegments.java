@@ -0,0 +1,176 @@
+package com.specqq.chatbot.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segmented Message
+ *
+ * <p>Immutable message built from the OneBot 11 array format without any regex parsing.
+ * Typed segments serve statistics and CQ-aware matching directly; the raw CQ string is only
+ * derived (once) when a consumer still needs text, e.g. regex/contains rules or message logs.</p>
+ *
+ * <p>Example:
+ * <pre>
+ * [{"type":"text","data":{"text":"Hello"}},{"type":"face","data":{"id":"123"}}]
+ * → segments [text("Hello"), face{id=123}], toCQString() = "Hello[CQ:face,id=123]"
+ * </pre>
+ * </p>
+ *
+ * @author Chatbot Router System
+ */
+public final class MessageSegments {
+
+    private static final MessageSegments EMPTY = new MessageSegments(Collections.emptyList());
+
+    private final List<MessageSegment> segments;
+
+    /**
+     * Lazily derived CQ string (benign race: computed value is deterministic)
+     */
+    private volatile String cqString;
+
+    private MessageSegments(List<MessageSegment> segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Create from parsed segments
+     *
+     * @param segments message segments
+     * @return segmented message
+     */
+    public static MessageSegments of(List<MessageSegment> segments) {
+        if (segments == null || segments.isEmpty()) {
+            return EMPTY;
+        }
+        return new MessageSegments(List.copyOf(segments));
+    }
+
+    /**
+     * Create from the OneBot 11 array format as deserialized by Jackson (list of maps)
+     *
+     * <p>Elements without a type are skipped; data values are converted to strings.</p>
+     *
+     * @param array message array
+     * @return segmented message
+     */
+    public static MessageSegments fromArray(List<?> array) {
+        if (array == null || array.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<MessageSegment> segments = new ArrayList<>(array.size());
+        for (Object element : array) {
+            if (!(element instanceof Map<?, ?> segment) || !(segment.get("type") instanceof String type)) {
+                continue;
+            }
+
+            Map<String, String> data;
+            if (segment.get("data") instanceof Map<?, ?> rawData && !rawData.isEmpty()) {
+                data = new LinkedHashMap<>(rawData.size() * 2);
+                for (Map.Entry<?, ?> entry : rawData.entrySet()) {
+                    if (entry.getKey() != null && entry.getValue() != null) {
+                        data.put(entry.getKey().toString(), entry.getValue().toString());
+                    }
+                }
+            } else {
+                data = Collections.emptyMap();
+            }
+            segments.add(new MessageSegment(type, data));
+        }
+        return segments.isEmpty() ? EMPTY : new MessageSegments(Collections.unmodifiableList(segments));
+    }
+
+    /**
+     * @return all segments in message order
+     */
+    public List<MessageSegment> segments() {
+        return segments;
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * Raw CQ string (derived on first call and cached)
+     *
+     * @return message in CQ code string form
+     */
+    public String toCQString() {
+        String value = cqString;
+        if (value == null) {
+            StringBuilder out = new StringBuilder(64);
+            for (MessageSegment segment : segments) {
+                segment.appendCQ(out);
+            }
+            value = out.toString();
+            cqString = value;
+        }
+        return value;
+    }
+
+    /**
+     * Plain text (text segments only, unescaped)
+     */
+    public String plainText() {
+        if (segments.size() == 1) {
+            return segments.get(0).text();
+        }
+        StringBuilder out = new StringBuilder();
+        for (MessageSegment segment : segments) {
+            if (segment.isText()) {
+                out.append(segment.text());
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Non-text segments as CQ codes
+     */
+    public List<CQCode> cqCodes() {
+        List<CQCode> cqCodes = new ArrayList<>();
+        for (MessageSegment segment : segments) {
+            if (!segment.isText()) {
+                cqCodes.add(segment.toCQCode());
+            }
+        }
+        return cqCodes;
+    }
+
+    /**
+     * Count of non-text segments by type
+     */
+    public Map<String, Integer> countByType() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (MessageSegment segment : segments) {
+            if (!segment.isText()) {
+                counts.merge(segment.type(), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Check if the message contains a segment of the given type
+     */
+    public boolean contains(String type) {
+        for (MessageSegment segment : segments) {
+            if (segment.type().equals(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return toCQString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.specqq.chatbot.parser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed Message
+ *
+ * <p>Result of a single tokenizer pass: the CQ codes in order of appearance and the
+ * entity-decoded plain text with all CQ codes removed.</p>
+ *
+ * @param cqCodes   CQ codes (empty list if none)
+ * @param plainText plain text without CQ codes
+ * @author Chatbot Router System
+ */
+public record ParsedMessage(List<CQCode> cqCodes, String plainText) {
+
+    public static final ParsedMessage EMPTY = new ParsedMessage(Collections.emptyList(), "");
+
+    public boolean hasCQCodes() {
+        return !cqCodes.isEmpty();
+    }
+}
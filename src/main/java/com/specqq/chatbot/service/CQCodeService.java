@@ -126,6 +126,9 @@ public class CQCodeService {
      * </pre>
      * </p>
      *
+     * <p>Note: AND lookaheads rescan the message from every position; prefer a COMPOSITE rule
+     * (native AND/OR/NOT with short-circuit evaluation) for new rules.</p>
+     *
      * @param pattern1 First pattern
      * @param pattern2 Second pattern
      * @param operator Logical operator (AND, OR)
@@ -13,6 +13,7 @@ import com.specqq.chatbot.entity.MessageLog;
 import com.specqq.chatbot.mapper.GroupChatMapper;
 import com.specqq.chatbot.mapper.GroupRuleConfigMapper;
 import com.specqq.chatbot.mapper.MessageLogMapper;
+import com.specqq.chatbot.websocket.WebSocketSessionManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
@@ -41,6 +42,7 @@ public class GroupService extends ServiceImpl<GroupChatMapper, GroupChat> {
     private final GroupRuleConfigMapper groupRuleConfigMapper;
     private final MessageLogMapper messageLogMapper;
     private final NapCatAdapter napCatAdapter;
+    private final WebSocketSessionManager sessionManager;
 
     /**
      * 根据群聊平台ID查询群聊
@@ -401,7 +403,9 @@ public class GroupService extends ServiceImpl<GroupChatMapper, GroupChat> {
 
         try {
             // Call NapCat API to get latest group info
+            // 手动同步需要最新数据, 先失效元数据缓存
             Long platformGroupId = Long.parseLong(group.getGroupId());
+            napCatAdapter.invalidateGroupMetadata(platformGroupId);
             ApiCallResponseDTO response = napCatAdapter.getGroupInfo(platformGroupId)
                 .get(10, TimeUnit.SECONDS);
 
@@ -520,6 +524,7 @@ public class GroupService extends ServiceImpl<GroupChatMapper, GroupChat> {
                         newGroup.setMemberCount(memberCount);
                         newGroup.setEnabled(true);
                         groupChatMapper.insert(newGroup);
+                        sessionManager.invalidateGroupOwner(platformGroupId);
                         imported++;
                         log.debug("Imported group: groupId={}, name={}", platformGroupId, groupName);
                     } else {
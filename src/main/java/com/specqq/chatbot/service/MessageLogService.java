@@ -4,34 +4,34 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.specqq.chatbot.adapter.NapCatAdapter;
-import com.specqq.chatbot.dto.ApiCallResponseDTO;
+import com.specqq.chatbot.dto.CursorPage;
+import com.specqq.chatbot.dto.LogCursor;
 import com.specqq.chatbot.entity.MessageLog;
 import com.specqq.chatbot.mapper.MessageLogMapper;
+import com.specqq.chatbot.util.CsvWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 消息日志服务
  *
  * 批量插入策略:
- * - 100条/秒或1秒间隔自动批量写入
- * - 异步处理，不阻塞主流程
+ * - 满100条或最早一条等待满1秒时, 由单写线程以多行INSERT写入(见 {@link MessageLogWriter})
+ * - 路由线程只做无锁入队，不阻塞主流程
  *
  * @author Chatbot Router System
  */
@@ -41,34 +41,32 @@ import java.util.stream.Collectors;
 public class MessageLogService extends ServiceImpl<MessageLogMapper, MessageLog> {
 
     private final MessageLogMapper messageLogMapper;
-    private final NapCatAdapter napCatAdapter;
+    private final OutboundRetryService outboundRetryService;
+    private final MessageLogWriter messageLogWriter;
 
-    // 批量插入缓冲区
-    private final List<MessageLog> batchBuffer = new ArrayList<>();
-    private final Object bufferLock = new Object();
-    private static final int BATCH_SIZE = 100;
-    private LocalDateTime lastFlushTime = LocalDateTime.now();
+    /**
+     * 导出写缓冲大小(写满后作为一个分块发送)
+     */
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
 
     /**
-     * 异步保存消息日志
+     * 游标分页每页最大条数
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 200;
+
+    /**
+     * CountMode.CAPPED 的计数上限
+     */
+    static final int COUNT_CAP = 10000;
+
+    /**
+     * 保存消息日志(提交给单写线程批量写入, 调用线程不等待数据库)
      *
      * @param log 消息日志
-     * @return CompletableFuture
+     * @return 已完成的Future(积压超限被丢弃时同样返回, 见 {@link MessageLogWriter})
      */
-    @Async
     public CompletableFuture<Void> saveAsync(MessageLog log) {
-        synchronized (bufferLock) {
-            batchBuffer.add(log);
-
-            // 判断是否需要刷新
-            boolean shouldFlush = batchBuffer.size() >= BATCH_SIZE ||
-                java.time.Duration.between(lastFlushTime, LocalDateTime.now()).getSeconds() >= 1;
-
-            if (shouldFlush) {
-                flushBatch();
-            }
-        }
-
+        messageLogWriter.offer(log);
         return CompletableFuture.completedFuture(null);
     }
 
@@ -92,30 +90,6 @@ public class MessageLogService extends ServiceImpl<MessageLogMapper, MessageLog>
         }
     }
 
-    /**
-     * 刷新批量缓冲区
-     */
-    private void flushBatch() {
-        if (batchBuffer.isEmpty()) {
-            return;
-        }
-
-        List<MessageLog> toFlush = new ArrayList<>(batchBuffer);
-        batchBuffer.clear();
-        lastFlushTime = LocalDateTime.now();
-
-        try {
-            saveBatch(toFlush);
-            log.debug("Flushed {} message logs", toFlush.size());
-        } catch (Exception e) {
-            log.error("Failed to flush message logs batch", e);
-            // 失败时重新加入缓冲区
-            synchronized (bufferLock) {
-                batchBuffer.addAll(toFlush);
-            }
-        }
-    }
-
     /**
      * 条件查询消息日志(分页)
      *
@@ -176,13 +150,11 @@ public class MessageLogService extends ServiceImpl<MessageLogMapper, MessageLog>
     }
 
     /**
-     * 强制刷新缓冲区(用于应用关闭时)
+     * 请求立即写出积压的日志(关闭时由 {@link MessageLogWriter} 自行写出剩余日志)
      */
     public void forceFlush() {
-        synchronized (bufferLock) {
-            flushBatch();
-        }
-        log.info("Force flushed message log buffer");
+        messageLogWriter.requestFlush();
+        log.info("Requested message log flush: pending={}", messageLogWriter.getPendingCount());
     }
 
     /**
@@ -197,12 +169,15 @@ public class MessageLogService extends ServiceImpl<MessageLogMapper, MessageLog>
      * @param startTime  开始时间
      * @param endTime    结束时间
      * @param keyword    关键词（消息内容）
+     * @param count      是否查询总数（false时不执行COUNT，total为0）
      * @return 分页结果
      */
+    @Transactional(readOnly = true)
     public Page<MessageLog> listLogs(Integer page, Integer size, Long groupId, String userId,
                                      Long ruleId, String sendStatus, LocalDateTime startTime,
-                                     LocalDateTime endTime, String keyword) {
+                                     LocalDateTime endTime, String keyword, boolean count) {
         Page<MessageLog> pageParam = new Page<>(page, size);
+        pageParam.setSearchCount(count);
         LambdaQueryWrapper<MessageLog> wrapper = new LambdaQueryWrapper<>();
 
         if (groupId != null) {
@@ -243,6 +218,69 @@ public class MessageLogService extends ServiceImpl<MessageLogMapper, MessageLog>
         return messageLogMapper.selectPage(pageParam, wrapper);
     }
 
+    /**
+     * 游标分页查询日志（按 timestamp, id 降序）
+     *
+     * 以上一页最后一条记录的 (timestamp, id) 为起点向后取，不使用OFFSET，翻到任意深度代价相同；
+     * 多取一条判断是否还有下一页，默认不计数
+     *
+     * @param cursor     上一页返回的游标（为空时从最新开始）
+     * @param size       每页数量（1~200）
+     * @param groupId    群聊ID
+     * @param userId     用户ID
+     * @param ruleId     规则ID
+     * @param sendStatus 发送状态
+     * @param startTime  开始时间
+     * @param endTime    结束时间
+     * @param keyword    关键词（消息内容）
+     * @param countMode  计数方式
+     * @return 游标分页结果
+     * @throws IllegalArgumentException 游标无效
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<MessageLog> listLogsByCursor(String cursor, int size, Long groupId, String userId,
+                                                   Long ruleId, String sendStatus, LocalDateTime startTime,
+                                                   LocalDateTime endTime, String keyword,
+                                                   CursorPage.CountMode countMode) {
+        int limit = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        LogCursor after = cursor == null || cursor.isBlank() ? null : LogCursor.decode(cursor);
+        MessageLog.SendStatus status = parseSendStatus(sendStatus);
+        String userFilter = userId == null || userId.isBlank() ? null : userId;
+        String keywordFilter = keyword == null || keyword.isBlank() ? null : keyword;
+
+        List<MessageLog> records = messageLogMapper.selectByCursor(groupId, userFilter, ruleId, status,
+            startTime, endTime, keywordFilter,
+            after == null ? null : after.timestamp(), after == null ? null : after.id(), limit + 1);
+
+        boolean hasMore = records.size() > limit;
+        if (hasMore) {
+            records = new ArrayList<>(records.subList(0, limit));
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            MessageLog last = records.get(records.size() - 1);
+            nextCursor = new LogCursor(last.getTimestamp(), last.getId()).encode();
+        }
+
+        CursorPage<MessageLog> result = CursorPage.<MessageLog>builder()
+            .records(records)
+            .nextCursor(nextCursor)
+            .hasMore(hasMore)
+            .build();
+
+        if (countMode == CursorPage.CountMode.CAPPED) {
+            long total = messageLogMapper.countLogs(groupId, userFilter, ruleId, status,
+                startTime, endTime, keywordFilter, COUNT_CAP);
+            result.setTotal(total);
+            result.setTotalCapped(total >= COUNT_CAP);
+        } else if (countMode == CursorPage.CountMode.EXACT) {
+            result.setTotal(messageLogMapper.countLogs(groupId, userFilter, ruleId, status,
+                startTime, endTime, keywordFilter, null));
+        }
+
+        return result;
+    }
+
     /**
      * 根据ID查询日志
      *
@@ -254,7 +292,10 @@ public class MessageLogService extends ServiceImpl<MessageLogMapper, MessageLog>
     }
 
     /**
-     * 导出日志为CSV
+     * 导出日志为CSV(流式)
+     *
+     * 查询结果逐行读取并写出, 不在内存中保留结果集, 行数不设上限;
+     * 导出期间占用一个数据库连接直到写完
      *
      * @param groupId    群聊ID
      * @param userId     用户ID
@@ -263,88 +304,59 @@ public class MessageLogService extends ServiceImpl<MessageLogMapper, MessageLog>
      * @param startTime  开始时间
      * @param endTime    结束时间
      * @param output     输出流
+     * @param gzip       是否gzip压缩
+     * @return 导出的行数
      */
-    public void exportLogsToCSV(Long groupId, String userId, Long ruleId, String sendStatus,
+    public long exportLogsToCSV(Long groupId, String userId, Long ruleId, String sendStatus,
                                 LocalDateTime startTime, LocalDateTime endTime,
-                                OutputStream output) throws IOException {
-        // 查询数据
-        LambdaQueryWrapper<MessageLog> wrapper = new LambdaQueryWrapper<>();
-
-        if (groupId != null) {
-            wrapper.eq(MessageLog::getGroupId, groupId);
-        }
-
-        if (userId != null && !userId.trim().isEmpty()) {
-            wrapper.eq(MessageLog::getUserId, userId);
-        }
-
-        if (ruleId != null) {
-            wrapper.eq(MessageLog::getMatchedRuleId, ruleId);
-        }
-
-        if (sendStatus != null && !sendStatus.trim().isEmpty()) {
-            try {
-                MessageLog.SendStatus status = MessageLog.SendStatus.valueOf(sendStatus.toUpperCase());
-                wrapper.eq(MessageLog::getSendStatus, status);
-            } catch (IllegalArgumentException e) {
-                log.warn("Invalid send status: {}", sendStatus);
-            }
-        }
-
-        if (startTime != null) {
-            wrapper.ge(MessageLog::getTimestamp, startTime);
-        }
-
-        if (endTime != null) {
-            wrapper.le(MessageLog::getTimestamp, endTime);
-        }
-
-        wrapper.orderByDesc(MessageLog::getTimestamp);
-        wrapper.last("LIMIT 10000"); // 限制最多导出10000条
-
-        List<MessageLog> logs = messageLogMapper.selectList(wrapper);
-
-        // 写入CSV
-        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                                OutputStream output, boolean gzip) throws IOException {
+        MessageLog.SendStatus status = parseSendStatus(sendStatus);
+
+        OutputStream target = gzip ? new GZIPOutputStream(output, EXPORT_BUFFER_SIZE) : output;
+        long[] rows = new long[1];
+        // 写出失败不能从ResultHandler抛出: MyBatis会把异常包装为MyBatisSystemException
+        IOException[] writeFailure = new IOException[1];
+        try (CsvWriter csv = new CsvWriter(new BufferedWriter(
+            new OutputStreamWriter(target, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE))) {
             // 写入BOM以支持Excel正确识别UTF-8
-            writer.write('\ufeff');
+            csv.raw("\ufeff");
 
             // 写入表头
-            writer.println("ID,消息ID,群聊ID,用户ID,用户昵称,消息内容,匹配规则ID,回复内容,处理时间(ms),发送状态,错误信息,时间戳");
+            csv.raw("ID,消息ID,群聊ID,用户ID,用户昵称,消息内容,匹配规则ID,回复内容,处理时间(ms),发送状态,错误信息,时间戳\n");
 
-            // 写入数据
+            // 逐行写入数据(缓冲区写满时作为一个分块发送)
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            for (MessageLog log : logs) {
-                writer.printf("%d,\"%s\",%d,\"%s\",\"%s\",\"%s\",%s,\"%s\",%d,%s,\"%s\",\"%s\"%n",
-                    log.getId(),
-                    escapeCsv(log.getMessageId()),
-                    log.getGroupId(),
-                    escapeCsv(log.getUserId()),
-                    escapeCsv(log.getUserNickname()),
-                    escapeCsv(log.getMessageContent()),
-                    log.getMatchedRuleId() != null ? log.getMatchedRuleId() : "",
-                    escapeCsv(log.getResponseContent()),
-                    log.getProcessingTimeMs() != null ? log.getProcessingTimeMs() : 0,
-                    log.getSendStatus(),
-                    escapeCsv(log.getErrorMessage()),
-                    log.getTimestamp().format(formatter)
-                );
+            messageLogMapper.streamForExport(groupId, userId, ruleId, status, startTime, endTime, context -> {
+                MessageLog row = context.getResultObject();
+                try {
+                    csv.number(row.getId())
+                        .quoted(row.getMessageId())
+                        .number(row.getGroupId())
+                        .quoted(row.getUserId())
+                        .quoted(row.getUserNickname())
+                        .quoted(row.getMessageContent())
+                        .number(row.getMatchedRuleId())
+                        .quoted(row.getResponseContent())
+                        .plain(row.getProcessingTimeMs() != null ? row.getProcessingTimeMs() : 0)
+                        .plain(row.getSendStatus())
+                        .quoted(row.getErrorMessage())
+                        .quoted(row.getTimestamp() != null ? row.getTimestamp().format(formatter) : null)
+                        .endRow();
+                } catch (IOException e) {
+                    // 客户端断开: 停止读取结果集, 查询返回后再抛出
+                    writeFailure[0] = e;
+                    context.stop();
+                    return;
+                }
+                rows[0]++;
+            });
+            if (writeFailure[0] != null) {
+                throw writeFailure[0];
             }
-
-            writer.flush();
-            log.info("Exported {} logs to CSV", logs.size());
         }
-    }
 
-    /**
-     * CSV字段转义
-     */
-    private String escapeCsv(String value) {
-        if (value == null) {
-            return "";
-        }
-        // 替换双引号为两个双引号
-        return value.replace("\"", "\"\"");
+        log.info("Exported {} logs to CSV (gzip={})", rows[0], gzip);
+        return rows[0];
     }
 
     /**
@@ -599,9 +611,11 @@ public class MessageLogService extends ServiceImpl<MessageLogMapper, MessageLog>
     /**
      * 重试失败的消息
      *
+     * <p>加入持久化重试队列后立即返回, 由重试队列按退避策略异步发送,
+     * 不在调用线程上等待发送结果。</p>
+     *
      * @param logId 日志ID
      */
-    @Async
     public void retryFailedMessage(Long logId) {
         MessageLog messageLog = messageLogMapper.selectById(logId);
         if (messageLog == null) {
@@ -617,55 +631,40 @@ public class MessageLogService extends ServiceImpl<MessageLogMapper, MessageLog>
             return;
         }
 
-        try {
-            // Get original message details
-            Long groupId = messageLog.getGroupId();
-            String replyContent = messageLog.getResponseContent();
-
-            if (replyContent == null || replyContent.isEmpty()) {
-                log.warn("No reply content to retry: logId={}", logId);
-                messageLog.setSendStatus(MessageLog.SendStatus.FAILED);
-                messageLog.setErrorMessage("无回复内容可重试");
-                messageLogMapper.updateById(messageLog);
-                return;
-            }
+        String replyContent = messageLog.getResponseContent();
+        if (replyContent == null || replyContent.isEmpty()) {
+            log.warn("No reply content to retry: logId={}", logId);
+            messageLog.setSendStatus(MessageLog.SendStatus.FAILED);
+            messageLog.setErrorMessage("无回复内容可重试");
+            messageLogMapper.updateById(messageLog);
+            return;
+        }
 
-            log.info("Retrying failed message: logId={}, messageId={}, groupId={}",
-                logId, messageLog.getMessageId(), groupId);
+        log.info("Retrying failed message: logId={}, messageId={}, groupId={}",
+            logId, messageLog.getMessageId(), messageLog.getGroupId());
 
-            // Set status to pending before retry
+        if (outboundRetryService.enqueueForLog(messageLog)) {
+            // Set status to pending; the retry queue marks it SUCCESS once delivered
             messageLog.setSendStatus(MessageLog.SendStatus.PENDING);
             messageLog.setErrorMessage(null);
-            messageLogMapper.updateById(messageLog);
-
-            // Retry sending via NapCat API
-            ApiCallResponseDTO response = napCatAdapter.sendGroupMessage(groupId, replyContent)
-                .get(10, TimeUnit.SECONDS);
-
-            if (response != null && response.getRetcode() == 0) {
-                // Success
-                messageLog.setSendStatus(MessageLog.SendStatus.SUCCESS);
-                messageLog.setErrorMessage(null);
-                log.info("Retry message succeeded: logId={}, messageId={}", logId, messageLog.getMessageId());
-            } else {
-                // Failed again
-                messageLog.setSendStatus(MessageLog.SendStatus.FAILED);
-                String errorMsg = String.format("重试失败: retcode=%d, message=%s",
-                    response != null ? response.getRetcode() : -1,
-                    response != null ? response.getMessage() : "null response");
-                messageLog.setErrorMessage(errorMsg);
-                log.warn("Retry message failed: logId={}, messageId={}, error={}",
-                    logId, messageLog.getMessageId(), errorMsg);
-            }
-
-            messageLogMapper.updateById(messageLog);
+        } else {
+            messageLog.setErrorMessage("重试入队失败或已在重试队列中");
+        }
+        messageLogMapper.updateById(messageLog);
+    }
 
-        } catch (Exception e) {
-            messageLog.setSendStatus(MessageLog.SendStatus.FAILED);
-            messageLog.setErrorMessage("重试异常: " + e.getMessage());
-            messageLogMapper.updateById(messageLog);
-            log.error("Retry failed message error: logId={}, messageId={}",
-                logId, messageLog.getMessageId(), e);
+    /**
+     * 解析发送状态筛选条件（为空或无效时返回null，即不筛选）
+     */
+    private MessageLog.SendStatus parseSendStatus(String sendStatus) {
+        if (sendStatus == null || sendStatus.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return MessageLog.SendStatus.valueOf(sendStatus.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid send status: {}", sendStatus);
+            return null;
         }
     }
 }
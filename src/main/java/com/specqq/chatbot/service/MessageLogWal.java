@@ -0,0 +1,499 @@
+package com.specqq.chatbot.service;
+
+import com.specqq.chatbot.entity.MessageLog;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 消息日志本地预写日志(WAL, 内存映射的追加式分段文件)
+ *
+ * 数据库不可用时日志先落盘, 由 {@link MessageLogWriter} 在数据库恢复后按顺序回放:
+ * - 分段: 固定大小的segment文件(segment-{id}.wal), 写满后写入跳转标记并切换到下一段
+ * - 记录: [int 长度][int CRC32][负载], 长度最后写入, 崩溃时残缺记录可被识别
+ * - 检查点: 已回放到数据库的位置(checkpoint文件), 之前的分段在推进后删除
+ * - 崩溃恢复: 从检查点回放; 末段逐条校验CRC找到写入位置, 并清零残缺尾部
+ * - 容量上限: 未回放字节数超过max-bytes时拒绝追加
+ *
+ * 位置为全局偏移 = 分段ID × 分段大小 + 段内偏移。语义为至少一次(写入数据库后、检查点落盘前崩溃会重复回放)。
+ *
+ * 非线程安全, 只由日志写线程访问(积压量可被其他线程读取)
+ *
+ * @author Chatbot Router System
+ */
+@Slf4j
+public final class MessageLogWal implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    /**
+     * 记录头: 长度 + CRC32
+     */
+    private static final int HEADER_BYTES = 8;
+
+    /**
+     * 跳转标记: 本段剩余空间不足, 下一条记录在下一段开头
+     */
+    private static final int SKIP_MARKER = -1;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final long maxBytes;
+    private final boolean sync;
+
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+    private volatile long writePosition;
+    private volatile long checkpoint;
+
+    /**
+     * 最近一次 {@link #readBatch} 读到的位置, {@link #commit} 时成为新的检查点
+     */
+    private long readEnd;
+
+    private long oldestSegmentId;
+    private long writeSegmentId = -1;
+    private MappedByteBuffer writeSegment;
+    private long readSegmentId = -1;
+    private MappedByteBuffer readSegment;
+    private MappedByteBuffer checkpointBuffer;
+
+    private MessageLogWal(Path dir, int segmentSize, long maxBytes, boolean sync) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxBytes = maxBytes;
+        this.sync = sync;
+    }
+
+    /**
+     * 打开(不存在时创建)并恢复WAL
+     *
+     * @param dir         目录
+     * @param segmentSize 分段大小(字节)
+     * @param maxBytes    未回放数据上限(字节)
+     * @param sync        每次追加后是否强制刷盘
+     * @return WAL
+     * @throws IOException 目录或文件无法访问
+     */
+    public static MessageLogWal open(Path dir, int segmentSize, long maxBytes, boolean sync) throws IOException {
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("WAL segment size must be at least 4096 bytes: " + segmentSize);
+        }
+        Files.createDirectories(dir);
+        MessageLogWal wal = new MessageLogWal(dir, segmentSize, maxBytes, sync);
+        wal.recover();
+        return wal;
+    }
+
+    /**
+     * 追加日志(按顺序), 超过单段大小的记录被跳过
+     *
+     * @param logs 消息日志
+     * @return 写入的条数(WAL已满时小于logs.size(), 其后的日志未写入)
+     * @throws IOException 分段文件创建失败
+     */
+    public int append(List<MessageLog> logs) throws IOException {
+        int appended = 0;
+        for (MessageLog messageLog : logs) {
+            int length = encode(messageLog);
+            if (HEADER_BYTES + length > segmentSize) {
+                log.warn("Message log too large for WAL segment, skipped: messageId={}, bytes={}",
+                    messageLog.getMessageId(), length);
+                continue;
+            }
+            int offset = offsetOf(writePosition);
+            int padding = offset + HEADER_BYTES + length > segmentSize ? segmentSize - offset : 0;
+            if (writePosition + padding + HEADER_BYTES + length - checkpoint > maxBytes) {
+                break;
+            }
+            if (padding > 0) {
+                MappedByteBuffer segment = segmentForWrite();
+                if (padding >= Integer.BYTES) {
+                    segment.putInt(offset, SKIP_MARKER);
+                }
+                if (sync) {
+                    segment.force();
+                }
+                writePosition += padding;
+                offset = 0;
+            }
+
+            MappedByteBuffer segment = segmentForWrite();
+            crc.reset();
+            crc.update(scratch.array(), 0, length);
+            segment.put(offset + HEADER_BYTES, scratch.array(), 0, length);
+            segment.putInt(offset + Integer.BYTES, (int) crc.getValue());
+            // 长度最后写入: 恢复时长度有效且CRC匹配才视为完整记录
+            segment.putInt(offset, length);
+            writePosition += HEADER_BYTES + length;
+            appended++;
+        }
+        if (sync && appended > 0 && writeSegment != null) {
+            writeSegment.force();
+        }
+        return appended;
+    }
+
+    /**
+     * 从检查点开始读取(不推进检查点)
+     *
+     * @param max 最多条数
+     * @return 日志(跳过损坏区域时可能为空, 此时仍应 {@link #commit})
+     * @throws IOException 分段文件读取失败
+     */
+    public List<MessageLog> readBatch(int max) throws IOException {
+        List<MessageLog> records = new ArrayList<>(Math.min(max, 128));
+        long position = checkpoint;
+        while (records.size() < max && position < writePosition) {
+            long segmentId = segmentOf(position);
+            int offset = offsetOf(position);
+            long nextSegment = Math.min((segmentId + 1) * segmentSize, writePosition);
+            if (offset + HEADER_BYTES > segmentSize) {
+                position = nextSegment;
+                continue;
+            }
+            ByteBuffer segment = segmentForRead(segmentId);
+            int length = segment.getInt(offset);
+            if (length == SKIP_MARKER) {
+                position = nextSegment;
+                continue;
+            }
+            byte[] payload = length > 0 && offset + HEADER_BYTES + length <= segmentSize ? new byte[length] : null;
+            if (payload != null) {
+                segment.get(offset + HEADER_BYTES, payload);
+                crc.reset();
+                crc.update(payload);
+            }
+            if (payload == null || (int) crc.getValue() != segment.getInt(offset + Integer.BYTES)) {
+                log.error("Corrupted message log WAL record at segment {} offset {}, skipping rest of segment",
+                    segmentId, offset);
+                position = nextSegment;
+                continue;
+            }
+            records.add(decode(ByteBuffer.wrap(payload)));
+            position += HEADER_BYTES + length;
+        }
+        readEnd = position;
+        return records;
+    }
+
+    /**
+     * 最近一次读取的日志已写入数据库: 推进检查点
+     */
+    public void commit() {
+        moveCheckpoint(readEnd);
+    }
+
+    /**
+     * 全部日志已写入数据库(无积压时直接写库成功): 检查点推进到写入位置
+     */
+    public void commitAll() {
+        moveCheckpoint(writePosition);
+    }
+
+    /**
+     * 是否有未回放的日志
+     */
+    public boolean hasBacklog() {
+        return checkpoint < writePosition;
+    }
+
+    /**
+     * 未回放的字节数
+     */
+    public long backlogBytes() {
+        return writePosition - checkpoint;
+    }
+
+    @Override
+    public void close() {
+        if (writeSegment != null) {
+            writeSegment.force();
+        }
+        if (checkpointBuffer != null) {
+            checkpointBuffer.force();
+        }
+        writeSegment = null;
+        readSegment = null;
+        checkpointBuffer = null;
+    }
+
+    // ==================== 恢复 ====================
+
+    private void recover() throws IOException {
+        List<Long> segments = listSegments();
+        long savedCheckpoint = readCheckpoint();
+        if (segments.isEmpty()) {
+            oldestSegmentId = savedCheckpoint >= 0 ? segmentOf(savedCheckpoint) : 0;
+            writePosition = oldestSegmentId * segmentSize;
+            checkpoint = writePosition;
+            readEnd = writePosition;
+            writeCheckpoint(checkpoint);
+            return;
+        }
+
+        oldestSegmentId = segments.get(0);
+        long lastSegmentId = segments.get(segments.size() - 1);
+        writeSegmentId = lastSegmentId;
+        writeSegment = map(lastSegmentId);
+        writePosition = lastSegmentId * segmentSize + scanEnd(writeSegment, lastSegmentId);
+
+        long first = oldestSegmentId * segmentSize;
+        checkpoint = Math.min(Math.max(savedCheckpoint, first), writePosition);
+        readEnd = checkpoint;
+        writeCheckpoint(checkpoint);
+        deleteSegmentsBefore(segmentOf(checkpoint));
+
+        if (hasBacklog()) {
+            log.info("Recovered message log WAL: {} bytes to replay, segments {}..{}",
+                backlogBytes(), oldestSegmentId, lastSegmentId);
+        }
+    }
+
+    /**
+     * 扫描末段, 返回最后一条完整记录之后的段内偏移; 残缺尾部清零
+     */
+    private int scanEnd(MappedByteBuffer segment, long segmentId) {
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segmentSize) {
+            int length = segment.getInt(offset);
+            if (length == SKIP_MARKER) {
+                return segmentSize;
+            }
+            if (length <= 0 || offset + HEADER_BYTES + length > segmentSize) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            segment.get(offset + HEADER_BYTES, payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != segment.getInt(offset + Integer.BYTES)) {
+                break;
+            }
+            offset += HEADER_BYTES + length;
+        }
+        if (offset + Integer.BYTES <= segmentSize && segment.getInt(offset) != 0) {
+            log.warn("Truncating torn message log WAL record at segment {} offset {}", segmentId, offset);
+            for (int i = offset; i < segmentSize; i++) {
+                segment.put(i, (byte) 0);
+            }
+            segment.force();
+        }
+        return offset;
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                .sorted()
+                .toList();
+        }
+    }
+
+    // ==================== 检查点与分段 ====================
+
+    private long readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file) || Files.size(file) != 2L * Long.BYTES) {
+            return -1;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        long position = buffer.getLong(0);
+        return position >= 0 && buffer.getLong(Long.BYTES) == ~position ? position : -1;
+    }
+
+    private void moveCheckpoint(long position) {
+        checkpoint = position;
+        readEnd = position;
+        writeCheckpoint(position);
+        deleteSegmentsBefore(segmentOf(position));
+    }
+
+    private void writeCheckpoint(long position) {
+        try {
+            if (checkpointBuffer == null) {
+                try (FileChannel channel = FileChannel.open(dir.resolve(CHECKPOINT_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    checkpointBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * Long.BYTES);
+                }
+            }
+            checkpointBuffer.putLong(0, position);
+            checkpointBuffer.putLong(Long.BYTES, ~position);
+            if (sync) {
+                checkpointBuffer.force();
+            }
+        } catch (IOException e) {
+            // 检查点未落盘只会导致重启后重复回放
+            log.warn("Failed to write message log WAL checkpoint: {}", e.getMessage());
+        }
+    }
+
+    private void deleteSegmentsBefore(long segmentId) {
+        while (oldestSegmentId < segmentId) {
+            if (readSegmentId == oldestSegmentId) {
+                readSegment = null;
+                readSegmentId = -1;
+            }
+            try {
+                Files.deleteIfExists(segmentPath(oldestSegmentId));
+            } catch (IOException e) {
+                log.warn("Failed to delete message log WAL segment {}: {}", oldestSegmentId, e.getMessage());
+            }
+            oldestSegmentId++;
+        }
+    }
+
+    private MappedByteBuffer segmentForWrite() throws IOException {
+        long segmentId = segmentOf(writePosition);
+        if (segmentId != writeSegmentId) {
+            if (writeSegment != null) {
+                writeSegment.force();
+            }
+            writeSegment = map(segmentId);
+            writeSegmentId = segmentId;
+        }
+        return writeSegment;
+    }
+
+    private ByteBuffer segmentForRead(long segmentId) throws IOException {
+        if (segmentId == writeSegmentId) {
+            return writeSegment;
+        }
+        if (segmentId != readSegmentId) {
+            readSegment = map(segmentId);
+            readSegmentId = segmentId;
+        }
+        return readSegment;
+    }
+
+    private MappedByteBuffer map(long segmentId) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segmentId),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private Path segmentPath(long segmentId) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX));
+    }
+
+    private long segmentOf(long position) {
+        return position / segmentSize;
+    }
+
+    private int offsetOf(long position) {
+        return (int) (position % segmentSize);
+    }
+
+    // ==================== 编解码 ====================
+
+    /**
+     * 编码到scratch, 返回负载长度
+     */
+    private int encode(MessageLog messageLog) {
+        scratch.clear();
+        putString(messageLog.getMessageId());
+        putLong(messageLog.getGroupId());
+        putString(messageLog.getUserId());
+        putString(messageLog.getUserNickname());
+        putString(messageLog.getMessageContent());
+        putLong(messageLog.getMatchedRuleId());
+        putString(messageLog.getResponseContent());
+        ensureCapacity(1 + Integer.BYTES);
+        if (messageLog.getProcessingTimeMs() == null) {
+            scratch.put((byte) 0);
+        } else {
+            scratch.put((byte) 1).putInt(messageLog.getProcessingTimeMs());
+        }
+        putString(messageLog.getSendStatus() != null ? messageLog.getSendStatus().name() : null);
+        putString(messageLog.getErrorMessage());
+        LocalDateTime timestamp = messageLog.getTimestamp();
+        ensureCapacity(1 + Long.BYTES + Integer.BYTES);
+        if (timestamp == null) {
+            scratch.put((byte) 0);
+        } else {
+            scratch.put((byte) 1).putLong(timestamp.toEpochSecond(ZoneOffset.UTC)).putInt(timestamp.getNano());
+        }
+        return scratch.position();
+    }
+
+    private static MessageLog decode(ByteBuffer in) {
+        MessageLog messageLog = new MessageLog();
+        messageLog.setMessageId(getString(in));
+        messageLog.setGroupId(getLong(in));
+        messageLog.setUserId(getString(in));
+        messageLog.setUserNickname(getString(in));
+        messageLog.setMessageContent(getString(in));
+        messageLog.setMatchedRuleId(getLong(in));
+        messageLog.setResponseContent(getString(in));
+        messageLog.setProcessingTimeMs(in.get() == 0 ? null : in.getInt());
+        String sendStatus = getString(in);
+        messageLog.setSendStatus(sendStatus != null ? MessageLog.SendStatus.valueOf(sendStatus) : null);
+        messageLog.setErrorMessage(getString(in));
+        if (in.get() != 0) {
+            messageLog.setTimestamp(LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC));
+        }
+        return messageLog;
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensureCapacity(Integer.BYTES);
+            scratch.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(Integer.BYTES + bytes.length);
+        scratch.putInt(bytes.length).put(bytes);
+    }
+
+    private void putLong(Long value) {
+        ensureCapacity(1 + Long.BYTES);
+        if (value == null) {
+            scratch.put((byte) 0);
+        } else {
+            scratch.put((byte) 1).putLong(value);
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static Long getLong(ByteBuffer in) {
+        return in.get() == 0 ? null : in.getLong();
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+            scratch.flip();
+            scratch = larger.put(scratch);
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package com.specqq.chatbot.service;
+
+import com.specqq.chatbot.entity.MessageLog;
+import com.specqq.chatbot.mapper.MessageLogMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 消息日志写入器(多生产者单消费者)
+ *
+ * - 生产者(路由线程)只做一次CAS计数和无锁入队, 不持锁、不访问数据库
+ * - 单个写线程批量取出, 满batch-size条或最早一条等待满flush-interval时, 以一条多行INSERT写入
+ * - 有界内存: 待写入(队列中 + 写线程持有)超过max-pending时丢弃新日志并计数, 不阻塞生产者
+ * - 写入失败: 保留当前批次, 间隔flush-interval重试, 连续失败max-flush-attempts次后逐条写入,
+ *   数据库拒绝的行(非空约束、超长等, 重试不会成功)跳过并计数, 遇到其他错误时丢弃剩余部分
+ * - 开启WAL时(wal.enabled): 批次先追加到本地 {@link MessageLogWal} 再写库; 写库失败或有积压时
+ *   新批次只落盘, 每隔flush-interval按顺序回放, 内存占用与数据库状态无关;
+ *   回放批次同样在失败max-flush-attempts次后逐条回放, 跳过被拒绝的行, 不会因一行坏数据阻塞整个WAL
+ *
+ * @author Chatbot Router System
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageLogWriter {
+
+    private final MessageLogMapper messageLogMapper;
+
+    @Value("${rule-engine.batch-logging.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${rule-engine.batch-logging.flush-interval-ms:1000}")
+    private long flushIntervalMs = 1000;
+
+    @Value("${rule-engine.batch-logging.max-pending:10000}")
+    private int maxPending = 10000;
+
+    @Value("${rule-engine.batch-logging.max-flush-attempts:3}")
+    private int maxFlushAttempts = 3;
+
+    @Value("${rule-engine.batch-logging.wal.enabled:false}")
+    private boolean walEnabled = false;
+
+    @Value("${rule-engine.batch-logging.wal.dir:data/message-log-wal}")
+    private String walDir = "data/message-log-wal";
+
+    @Value("${rule-engine.batch-logging.wal.segment-size:67108864}")
+    private int walSegmentSize = 64 * 1024 * 1024;
+
+    @Value("${rule-engine.batch-logging.wal.max-bytes:1073741824}")
+    private long walMaxBytes = 1024L * 1024 * 1024;
+
+    @Value("${rule-engine.batch-logging.wal.sync:true}")
+    private boolean walSync = true;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 每轮最多回放的批次数(回放大量积压时仍能及时接收新日志)
+     */
+    private static final int MAX_REPLAY_BATCHES = 10;
+
+    private final ConcurrentLinkedQueue<MessageLog> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 待写入条数(队列中 + 写线程当前批次)
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private MessageLogWal wal;
+    private long nextReplayAt;
+
+    /**
+     * 当前回放批次连续失败次数
+     */
+    private int replayAttempts;
+
+    /**
+     * 逐条回放的剩余条数(回放批次失败max-flush-attempts次后进入)
+     */
+    private int isolatedRemaining;
+
+    /**
+     * 逐条写入结果
+     */
+    private enum RowResult {
+        WRITTEN,
+        /**
+         * 数据库拒绝(约束、超长等), 重试不会成功
+         */
+        REJECTED,
+        /**
+         * 其他失败(数据库不可用等), 可重试
+         */
+        FAILED
+    }
+
+    private Timer flushTimer;
+    private volatile Thread writerThread;
+    private volatile boolean running;
+    private volatile boolean flushRequested;
+
+    @PostConstruct
+    public void init() {
+        if (walEnabled) {
+            try {
+                wal = MessageLogWal.open(Path.of(walDir), walSegmentSize, walMaxBytes, walSync);
+                nextReplayAt = System.nanoTime();
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to open message log WAL at {}, continuing without it", walDir, e);
+            }
+        }
+        if (meterRegistry != null) {
+            bindMetrics(meterRegistry);
+        }
+        running = true;
+        Thread thread = new Thread(this::run, "message-log-writer");
+        thread.setDaemon(true);
+        writerThread = thread;
+        thread.start();
+        log.info("Message log writer started: batchSize={}, flushInterval={}ms, maxPending={}, wal={}",
+            batchSize, flushIntervalMs, maxPending, wal != null ? walDir : "disabled");
+    }
+
+    /**
+     * 停止写线程, 写出剩余日志
+     */
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        Thread thread = writerThread;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("Message log writer did not stop in time, pending={}", pending.get());
+        } else {
+            if (wal != null) {
+                wal.close();
+            }
+            log.info("Message log writer stopped: written={}, dropped={}", written.sum(), dropped.sum());
+        }
+    }
+
+    /**
+     * 提交一条日志(不阻塞)
+     *
+     * @param messageLog 消息日志
+     * @return 是否接收(已停止或超过待写入上限时返回false)
+     */
+    public boolean offer(MessageLog messageLog) {
+        int size = pending.incrementAndGet();
+        if (size > maxPending || !running) {
+            pending.decrementAndGet();
+            dropped.increment();
+            if (dropped.sum() % 1000 == 1) {
+                log.warn("Message log writer backlog full, dropping logs: pending={}, dropped={}",
+                    size - 1, dropped.sum());
+            }
+            return false;
+        }
+        queue.offer(messageLog);
+        // 空闲 → 有日志(开始计时) 或 凑满一批时唤醒写线程
+        if (size == 1 || size == batchSize) {
+            LockSupport.unpark(writerThread);
+        }
+        return true;
+    }
+
+    /**
+     * 请求写线程立即写出当前积压(不等待完成)
+     */
+    public void requestFlush() {
+        flushRequested = true;
+        LockSupport.unpark(writerThread);
+    }
+
+    /**
+     * 待写入条数
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 被数据库拒绝而跳过的日志数
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * WAL中未回放的字节数(未开启WAL时为0)
+     */
+    public long getWalBacklogBytes() {
+        MessageLogWal current = wal;
+        return current != null ? current.backlogBytes() : 0;
+    }
+
+    private void run() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        List<MessageLog> batch = new ArrayList<>(batchSize);
+        long batchStartedAt = 0;
+        long retryAt = 0;
+        int attempts = 0;
+
+        while (true) {
+            boolean stopping = !running;
+            if (batch.isEmpty()) {
+                batchStartedAt = System.nanoTime();
+            }
+            MessageLog next;
+            while (batch.size() < batchSize && (next = queue.poll()) != null) {
+                batch.add(next);
+            }
+
+            long now = System.nanoTime();
+            if (batch.isEmpty()) {
+                if (stopping) {
+                    return;
+                }
+                flushRequested = false;
+                if (!replayIfDue(intervalNanos)) {
+                    LockSupport.parkNanos(this, intervalNanos);
+                }
+                continue;
+            }
+
+            boolean due = batch.size() >= batchSize || flushRequested || stopping
+                || now - batchStartedAt >= intervalNanos;
+            if (!due || (attempts > 0 && now - retryAt < 0 && !stopping)) {
+                long wakeAt = attempts > 0 ? retryAt : batchStartedAt + intervalNanos;
+                LockSupport.parkNanos(this, Math.max(wakeAt - now, 1));
+                continue;
+            }
+
+            flushRequested = false;
+            if (wal != null) {
+                writeThroughWal(batch, intervalNanos);
+                continue;
+            }
+            if (flush(batch)) {
+                attempts = 0;
+            } else if (++attempts >= maxFlushAttempts || stopping) {
+                flushRowByRow(batch, attempts);
+                attempts = 0;
+            } else {
+                retryAt = System.nanoTime() + intervalNanos;
+            }
+        }
+    }
+
+    /**
+     * 批次先追加到WAL; 无积压时直接写库并推进检查点, 否则留给回放
+     */
+    private void writeThroughWal(List<MessageLog> batch, long intervalNanos) {
+        boolean direct = !wal.hasBacklog();
+        int appended;
+        try {
+            appended = wal.append(batch);
+        } catch (IOException e) {
+            log.error("Failed to append {} message logs to WAL", batch.size(), e);
+            appended = 0;
+        }
+        if (direct && flush(batch)) {
+            wal.commitAll();
+        } else {
+            if (direct) {
+                nextReplayAt = System.nanoTime() + intervalNanos;
+            }
+            int lost = batch.size() - appended;
+            if (lost > 0) {
+                dropped.add(lost);
+                log.error("Message log WAL full or unavailable, dropped {} logs (backlog {} bytes)",
+                    lost, wal.backlogBytes());
+            }
+            pending.addAndGet(-batch.size());
+            batch.clear();
+        }
+        replayIfDue(intervalNanos);
+    }
+
+    /**
+     * 按顺序回放WAL积压(失败后间隔flush-interval再试)
+     *
+     * @return 是否仍有可立即回放的积压
+     */
+    private boolean replayIfDue(long intervalNanos) {
+        if (wal == null || !wal.hasBacklog() || System.nanoTime() - nextReplayAt < 0) {
+            return false;
+        }
+        try {
+            for (int i = 0; i < MAX_REPLAY_BATCHES && wal.hasBacklog(); i++) {
+                if (isolatedRemaining > 0) {
+                    // 逐条回放: 每条单独推进检查点, 中途失败重试时不会重复写入已成功的行
+                    List<MessageLog> records = wal.readBatch(1);
+                    if (!records.isEmpty()) {
+                        RowResult result = insertRow(records.get(0));
+                        if (result == RowResult.FAILED) {
+                            nextReplayAt = System.nanoTime() + intervalNanos;
+                            return false;
+                        }
+                        if (result == RowResult.WRITTEN) {
+                            replayed.increment();
+                        }
+                        isolatedRemaining--;
+                    }
+                    wal.commit();
+                    continue;
+                }
+                List<MessageLog> records = wal.readBatch(batchSize);
+                if (!records.isEmpty() && !insert(records)) {
+                    if (++replayAttempts >= maxFlushAttempts) {
+                        log.warn("WAL batch of {} message logs failed {} times, replaying row by row",
+                            records.size(), replayAttempts);
+                        isolatedRemaining = records.size();
+                        replayAttempts = 0;
+                        continue;
+                    }
+                    nextReplayAt = System.nanoTime() + intervalNanos;
+                    return false;
+                }
+                replayAttempts = 0;
+                wal.commit();
+                written.add(records.size());
+                replayed.add(records.size());
+            }
+            if (!wal.hasBacklog()) {
+                isolatedRemaining = 0;
+                log.info("Message log WAL replay caught up: replayed={}", replayed.sum());
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to read message log WAL", e);
+            nextReplayAt = System.nanoTime() + intervalNanos;
+            return false;
+        }
+    }
+
+    /**
+     * 以一条多行INSERT写出批次, 成功后清空批次
+     *
+     * @return 是否成功
+     */
+    private boolean flush(List<MessageLog> batch) {
+        if (!insert(batch)) {
+            return false;
+        }
+        // 先减待写入再计已写入: 已写入数达到预期时待写入数已归零
+        pending.addAndGet(-batch.size());
+        written.add(batch.size());
+        batch.clear();
+        return true;
+    }
+
+    /**
+     * 批次多次写入失败后逐条写入: 跳过被拒绝的行; 遇到其他错误(数据库不可用)时丢弃剩余部分,
+     * 避免对每一行都等待连接超时
+     */
+    private void flushRowByRow(List<MessageLog> batch, int attempts) {
+        int lost = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            pending.decrementAndGet();
+            if (insertRow(batch.get(i)) == RowResult.FAILED) {
+                lost = batch.size() - i;
+                pending.addAndGet(-(lost - 1));
+                break;
+            }
+        }
+        if (lost > 0) {
+            log.error("Dropping {} message logs after {} failed flush attempts", lost, attempts);
+            dropped.add(lost);
+        }
+        batch.clear();
+    }
+
+    private RowResult insertRow(MessageLog row) {
+        try {
+            messageLogMapper.insertBatch(List.of(row));
+            written.increment();
+            return RowResult.WRITTEN;
+        } catch (DataIntegrityViolationException e) {
+            rejected.increment();
+            log.error("Message log rejected by database, skipping: messageId={}, error={}",
+                row.getMessageId(), e.getMessage());
+            return RowResult.REJECTED;
+        } catch (Exception e) {
+            failedFlushes.increment();
+            log.warn("Failed to write message log: messageId={}, error={}", row.getMessageId(), e.getMessage());
+            return RowResult.FAILED;
+        }
+    }
+
+    /**
+     * 多行INSERT(不计入已写入数, 由调用方计数)
+     */
+    private boolean insert(List<MessageLog> logs) {
+        long start = System.nanoTime();
+        try {
+            messageLogMapper.insertBatch(logs);
+            log.debug("Flushed {} message logs in {}ms", logs.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return true;
+        } catch (Exception e) {
+            failedFlushes.increment();
+            log.warn("Failed to flush {} message logs: {}", logs.size(), e.getMessage());
+            return false;
+        } finally {
+            if (flushTimer != null) {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void bindMetrics(MeterRegistry registry) {
+        flushTimer = Timer.builder("message_log_flush_duration_seconds")
+            .description("消息日志批量写入耗时")
+            .tag("component", "message-log")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+        Gauge.builder("message_log_pending", pending, AtomicInteger::get)
+            .description("待写入消息日志数")
+            .tag("component", "message-log")
+            .register(registry);
+        FunctionCounter.builder("message_log_written_total", written, LongAdder::sum)
+            .description("已写入消息日志数")
+            .tag("component", "message-log")
+            .register(registry);
+        FunctionCounter.builder("message_log_dropped_total", dropped, LongAdder::sum)
+            .description("丢弃的消息日志数(积压超限或多次写入失败)")
+            .tag("component", "message-log")
+            .register(registry);
+        FunctionCounter.builder("message_log_flush_failures_total", failedFlushes, LongAdder::sum)
+            .description("消息日志批量写入失败次数")
+            .tag("component", "message-log")
+            .register(registry);
+        FunctionCounter.builder("message_log_rejected_total", rejected, LongAdder::sum)
+            .description("被数据库拒绝而跳过的消息日志数(约束冲突、字段超长等)")
+            .tag("component", "message-log")
+            .register(registry);
+        if (wal != null) {
+            Gauge.builder("message_log_wal_backlog_bytes", this, MessageLogWriter::getWalBacklogBytes)
+                .description("WAL中未回放的字节数")
+                .tag("component", "message-log")
+                .register(registry);
+            FunctionCounter.builder("message_log_wal_replayed_total", replayed, LongAdder::sum)
+                .description("从WAL回放的消息日志数")
+                .tag("component", "message-log")
+                .register(registry);
+        }
+    }
+}
@@ -1,19 +1,20 @@
 package com.specqq.chatbot.service;
 
 import com.specqq.chatbot.common.CQCodeConstants;
-import com.specqq.chatbot.parser.CQCode;
 import com.specqq.chatbot.parser.CQCodeParser;
+import com.specqq.chatbot.parser.CQCodeTally;
 import com.specqq.chatbot.parser.CQCodeType;
+import com.specqq.chatbot.parser.ContentHashMemo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 /**
  * Message Statistics Service
@@ -28,7 +29,7 @@ import java.util.stream.Collectors;
  *
  * <p>Performance Targets:
  * <ul>
- *   <li>Statistics calculation P95: <50ms</li>
+ *   <li>Statistics calculation P95: <0.5ms (single fused scan)</li>
  *   <li>Rate limiting: Max 1 reply per 5 seconds per group</li>
  * </ul>
  * </p>
@@ -41,9 +42,29 @@ public class MessageStatisticsService {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageStatisticsService.class);
 
+    /**
+     * Formatted replies larger than this are not retained for reuse
+     */
+    private static final int MAX_RETAINED_CAPACITY = 4 * 1024;
+
+    private static final String SEPARATOR = ", ";
+
+    private static final CQCodeType[] DISPLAY_ORDER = {
+            CQCodeType.FACE, CQCodeType.IMAGE, CQCodeType.AT, CQCodeType.REPLY, CQCodeType.RECORD, CQCodeType.VIDEO
+    };
+
+    private static final ThreadLocal<CQCodeTally> TALLY = ThreadLocal.withInitial(CQCodeTally::new);
+
+    private static final ThreadLocal<StringBuilder> FORMAT_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
     private final CQCodeParser cqCodeParser;
     private final StringRedisTemplate redisTemplate;
 
+    /**
+     * Optional memo of statistics keyed by message content (null: always calculate)
+     */
+    private ContentHashMemo<MessageStatistics> statisticsMemo;
+
     /**
      * Constructor with dependency injection
      *
@@ -55,6 +76,17 @@ public class MessageStatisticsService {
         this.redisTemplate = redisTemplate;
     }
 
+    /**
+     * Set memo cache for statistics (optional)
+     *
+     * @param statisticsMemo Memo keyed by message content hash
+     */
+    @Autowired(required = false)
+    public void setStatisticsMemo(
+            @Qualifier(CQCodeConstants.CACHE_STATISTICS_MEMO) ContentHashMemo<MessageStatistics> statisticsMemo) {
+        this.statisticsMemo = statisticsMemo;
+    }
+
     /**
      * Calculate message statistics
      *
@@ -74,37 +106,30 @@ public class MessageStatisticsService {
         if (message == null || message.isEmpty()) {
             return new MessageStatistics(0, Map.of());
         }
+        // Repeated messages (spam, copy-paste waves) are served from the memo
+        return statisticsMemo != null ? statisticsMemo.get(message, this::compute) : compute(message);
+    }
 
+    private MessageStatistics compute(String message) {
         long startTime = System.nanoTime();
 
         try {
-            // Parse CQ codes
-            List<CQCode> cqCodes = cqCodeParser.parse(message);
-
-            // Strip CQ codes to get plain text
-            String plainText = cqCodeParser.stripCQCodes(message);
-
-            // Count characters using Unicode code points (not String.length())
-            // This correctly counts multi-byte characters like Chinese, emojis
-            int characterCount = plainText.codePointCount(0, plainText.length());
-
-            // Group CQ codes by type and count
-            Map<String, Integer> cqCodeCounts = cqCodes.stream()
-                    .collect(Collectors.groupingBy(
-                            CQCode::type,
-                            Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
-                    ));
-
-            long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
-            if (elapsedMs > CQCodeConstants.TARGET_STATISTICS_P95_MS) {
-                logger.warn("Statistics calculation exceeded P95 target: {}ms > {}ms (message length: {}, CQ codes: {})",
-                        elapsedMs, CQCodeConstants.TARGET_STATISTICS_P95_MS, message.length(), cqCodes.size());
+            // One fused scan: code points of the plain text (Chinese, emojis count as one)
+            // and CQ code counts in a fixed array indexed by CQCodeType
+            CQCodeTally tally = TALLY.get();
+            tally.reset();
+            cqCodeParser.tally(message, tally);
+
+            long elapsedMicros = (System.nanoTime() - startTime) / 1_000;
+            if (elapsedMicros > CQCodeConstants.TARGET_STATISTICS_P95_MICROS) {
+                logger.warn("Statistics calculation exceeded P95 target: {}us > {}us (message length: {}, CQ codes: {})",
+                        elapsedMicros, CQCodeConstants.TARGET_STATISTICS_P95_MICROS, message.length(), tally.total());
             } else {
-                logger.debug("Calculated statistics in {}ms: {} chars, {} CQ codes",
-                        elapsedMs, characterCount, cqCodes.size());
+                logger.debug("Calculated statistics in {}us: {} chars, {} CQ codes",
+                        elapsedMicros, tally.characterCount(), tally.total());
             }
 
-            return new MessageStatistics(characterCount, cqCodeCounts);
+            return new MessageStatistics(tally.characterCount(), tally.toCounts());
 
         } catch (Exception e) {
             logger.error("Error calculating statistics for message: {}", message, e);
@@ -136,23 +161,21 @@ public class MessageStatisticsService {
             return "";
         }
 
-        List<String> parts = new java.util.ArrayList<>();
+        StringBuilder out = FORMAT_BUFFER.get();
+        out.setLength(0);
 
         // Add text character count if > 0
         if (statistics.hasText()) {
-            parts.add(String.format("%s: %d%s",
-                    CQCodeConstants.LABEL_TEXT,
-                    statistics.characterCount(),
-                    CQCodeConstants.UNIT_TEXT));
+            appendPart(out, CQCodeConstants.LABEL_TEXT, statistics.characterCount(), CQCodeConstants.UNIT_TEXT);
         }
 
         // Add CQ code counts in standard order (only non-zero)
-        addCQCodeCountIfNonZero(parts, statistics, CQCodeType.FACE);
-        addCQCodeCountIfNonZero(parts, statistics, CQCodeType.IMAGE);
-        addCQCodeCountIfNonZero(parts, statistics, CQCodeType.AT);
-        addCQCodeCountIfNonZero(parts, statistics, CQCodeType.REPLY);
-        addCQCodeCountIfNonZero(parts, statistics, CQCodeType.RECORD);
-        addCQCodeCountIfNonZero(parts, statistics, CQCodeType.VIDEO);
+        for (CQCodeType type : DISPLAY_ORDER) {
+            int count = statistics.getCountForType(type.getCode());
+            if (count > 0) {
+                appendPart(out, type.getLabel(), count, type.getUnit());
+            }
+        }
 
         // Add "other" types if present
         for (Map.Entry<String, Integer> entry : statistics.cqCodeCounts().entrySet()) {
@@ -161,26 +184,30 @@ public class MessageStatisticsService {
 
             // Skip standard types (already added above) and zero counts
             if (count > 0 && CQCodeType.fromCode(type) == CQCodeType.OTHER) {
-                parts.add(String.format("%s: %d%s",
-                        type, count, CQCodeType.OTHER.getUnit()));
+                appendPart(out, type, count, CQCodeType.OTHER.getUnit());
             }
         }
 
-        return String.join(", ", parts);
+        String formatted = out.toString();
+        if (out.capacity() > MAX_RETAINED_CAPACITY) {
+            FORMAT_BUFFER.remove();
+        }
+        return formatted;
     }
 
     /**
-     * Add CQ code count to parts list if count > 0
+     * Append "label: countunit", separated from the previous part by ", "
      *
-     * @param parts      List to add formatted count to
-     * @param statistics Statistics containing counts
-     * @param type       CQ code type to check
+     * @param out   Reusable buffer
+     * @param label Display label
+     * @param count Count (> 0)
+     * @param unit  Unit suffix
      */
-    private void addCQCodeCountIfNonZero(List<String> parts, MessageStatistics statistics, CQCodeType type) {
-        int count = statistics.getCountForType(type.getCode());
-        if (count > 0) {
-            parts.add(String.format("%s: %d%s", type.getLabel(), count, type.getUnit()));
+    private static void appendPart(StringBuilder out, String label, int count, String unit) {
+        if (out.length() > 0) {
+            out.append(SEPARATOR);
         }
+        out.append(label).append(": ").append(count).append(unit);
     }
 
     /**
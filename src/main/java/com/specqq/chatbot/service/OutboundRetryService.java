@@ -0,0 +1,443 @@
+package com.specqq.chatbot.service;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.specqq.chatbot.adapter.NapCatAdapter;
+import com.specqq.chatbot.adapter.RequestNotSentException;
+import com.specqq.chatbot.dto.ApiCallResponseDTO;
+import com.specqq.chatbot.entity.GroupChat;
+import com.specqq.chatbot.entity.MessageLog;
+import com.specqq.chatbot.entity.OutboundRetry;
+import com.specqq.chatbot.mapper.GroupChatMapper;
+import com.specqq.chatbot.mapper.MessageLogMapper;
+import com.specqq.chatbot.mapper.OutboundRetryMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 出站消息重试服务
+ *
+ * 持久化重试队列(outbound_retry表):
+ * - 幂等键去重: 同一回复只入队一次, 成功后不会重复发送
+ * - 指数退避: base × 2^(attempts-1), 上限 max-delay, ±20%抖动
+ * - 群级别重试预算: 每个群每分钟最多重试N次, 避免故障群挤占整体发送能力
+ * - 非阻塞发送: 通过回调处理发送结果, 任何线程都不等待Future
+ * - 租约认领: PENDING → IN_FLIGHT 条件更新, 结果回写限定 IN_FLIGHT 且尝试次数一致, 迟到的回调不会覆盖其他节点的结果
+ * - 只重试确定未送达的消息: 未写出(RequestNotSentException)或对端明确拒绝(retcode非0);
+ *   结果未知(如超时、租约过期)的记录标记DEAD等待人工确认, 避免重复发送
+ *
+ * @author Chatbot Router System
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OutboundRetryService {
+
+    private final OutboundRetryMapper outboundRetryMapper;
+    private final MessageLogMapper messageLogMapper;
+    private final GroupChatMapper groupChatMapper;
+    private final NapCatAdapter napCatAdapter;
+
+    @Value("${napcat.retry.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${napcat.retry.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${napcat.retry.base-delay-ms:2000}")
+    private long baseDelayMs = 2000;
+
+    @Value("${napcat.retry.max-delay-ms:300000}")
+    private long maxDelayMs = 300000;
+
+    @Value("${napcat.retry.group-budget-per-minute:10}")
+    private int groupBudgetPerMinute = 10;
+
+    @Value("${napcat.retry.batch-size:50}")
+    private int batchSize = 50;
+
+    @Value("${napcat.retry.max-in-flight:20}")
+    private int maxInFlight = 20;
+
+    @Value("${napcat.retry.poll-interval-ms:1000}")
+    private long pollIntervalMs = 1000;
+
+    @Value("${napcat.retry.lease-ms:30000}")
+    private long leaseMs = 30000;
+
+    private static final String KEY_PREFIX = "reply:";
+    private static final int ERROR_MESSAGE_MAX_LENGTH = 500;
+    private static final long BUDGET_WINDOW_MS = 60_000L;
+
+    // 群级别重试预算 (groupId -> 当前窗口)
+    private final Map<Long, RetryBudget> groupBudgets = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private Semaphore inFlightPermits;
+
+    @PostConstruct
+    public void init() {
+        inFlightPermits = new Semaphore(maxInFlight);
+        if (!enabled) {
+            log.info("Outbound retry queue disabled");
+            return;
+        }
+
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                drain();
+            } catch (Exception e) {
+                log.error("Outbound retry drain error", e);
+            }
+        }, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+
+        log.info("Outbound retry queue started: maxAttempts={}, baseDelay={}ms, maxDelay={}ms, groupBudget={}/min, maxInFlight={}",
+            maxAttempts, baseDelayMs, maxDelayMs, groupBudgetPerMinute, maxInFlight);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            scheduler.shutdownNow();
+        }
+        log.info("Outbound retry queue shutdown");
+    }
+
+    /**
+     * 生成回复幂等键
+     *
+     * @param groupId   群号(平台ID)
+     * @param messageId 原始消息ID
+     * @return 幂等键
+     * @throws IllegalArgumentException 消息ID为空(否则无关的回复会共用同一个键而被当作重复丢弃)
+     */
+    public static String idempotencyKey(Long groupId, String messageId) {
+        if (!StringUtils.hasText(messageId)) {
+            throw new IllegalArgumentException("messageId is required for a reply idempotency key");
+        }
+        return KEY_PREFIX + groupId + ":" + messageId;
+    }
+
+    /**
+     * 将发送失败的回复加入重试队列
+     *
+     * @param groupId   群号(平台ID)
+     * @param messageId 原始消息ID(为空时生成一次性幂等键, 不与其他回复去重)
+     * @param content   回复内容
+     * @return 是否新入队(幂等键已存在时返回false)
+     */
+    public boolean enqueue(Long groupId, String messageId, String content) {
+        if (!enabled || groupId == null || content == null || content.isEmpty()) {
+            return false;
+        }
+
+        OutboundRetry retry = new OutboundRetry();
+        retry.setIdempotencyKey(StringUtils.hasText(messageId)
+            ? idempotencyKey(groupId, messageId)
+            : KEY_PREFIX + groupId + ":gen-" + UUID.randomUUID());
+        retry.setGroupId(groupId);
+        retry.setMessageId(messageId);
+        retry.setContent(content);
+        retry.setNextAttemptAt(LocalDateTime.now().plus(baseDelayMs, ChronoUnit.MILLIS));
+
+        try {
+            boolean inserted = outboundRetryMapper.insertIgnore(retry) > 0;
+            if (inserted) {
+                log.info("Reply enqueued for retry: groupId={}, messageId={}", groupId, messageId);
+            } else {
+                log.debug("Reply already in retry queue: key={}", retry.getIdempotencyKey());
+            }
+            return inserted;
+        } catch (Exception e) {
+            log.error("Failed to enqueue reply for retry: groupId={}, messageId={}", groupId, messageId, e);
+            return false;
+        }
+    }
+
+    /**
+     * 将失败的消息日志重新加入重试队列(手动重试)
+     *
+     * <p>已在队列中的记录不会重复入队; 已放弃(DEAD)的记录会被重新激活。</p>
+     *
+     * @param messageLog 消息日志
+     * @return 是否已进入待重试状态
+     */
+    public boolean enqueueForLog(MessageLog messageLog) {
+        GroupChat group = groupChatMapper.selectById(messageLog.getGroupId());
+        if (group == null) {
+            log.warn("Cannot enqueue retry, group not found: logId={}, groupId={}",
+                messageLog.getId(), messageLog.getGroupId());
+            return false;
+        }
+
+        Long platformGroupId = Long.parseLong(group.getGroupId());
+        if (enqueue(platformGroupId, messageLog.getMessageId(), messageLog.getResponseContent())) {
+            return true;
+        }
+        if (!StringUtils.hasText(messageLog.getMessageId())) {
+            return false;
+        }
+
+        String key = idempotencyKey(platformGroupId, messageLog.getMessageId());
+        return outboundRetryMapper.reviveDead(key, LocalDateTime.now()) > 0;
+    }
+
+    /**
+     * 处理到期的重试记录
+     *
+     * <p>由调度线程周期调用。发送结果通过回调处理, 本方法不会等待任何发送完成。</p>
+     */
+    public void drain() {
+        LocalDateTime now = LocalDateTime.now();
+
+        int abandoned = outboundRetryMapper.abandonExpiredLeases(now);
+        if (abandoned > 0) {
+            log.warn("Marked {} retries with expired leases as DEAD (outcome unknown, needs manual review)", abandoned);
+        }
+
+        if (inFlightPermits.availablePermits() == 0) {
+            return;
+        }
+
+        List<OutboundRetry> due = outboundRetryMapper.selectDue(now, batchSize);
+        for (OutboundRetry retry : due) {
+            if (!inFlightPermits.tryAcquire()) {
+                break;
+            }
+
+            if (!tryConsumeBudget(retry.getGroupId())) {
+                // 预算耗尽: 推迟到下一个预算窗口, 避免反复被选中挤占其他群
+                inFlightPermits.release();
+                postpone(retry, budgetWindowEnd(retry.getGroupId()));
+                continue;
+            }
+
+            LocalDateTime leaseUntil = now.plus(leaseMs, ChronoUnit.MILLIS);
+            if (outboundRetryMapper.claim(retry.getId(), leaseUntil) == 0) {
+                // 已被其他节点认领
+                inFlightPermits.release();
+                continue;
+            }
+
+            int attempt = (retry.getAttempts() != null ? retry.getAttempts() : 0) + 1;
+            send(retry, attempt);
+        }
+    }
+
+    /**
+     * 异步发送并注册结果回调
+     */
+    private void send(OutboundRetry retry, int attempt) {
+        log.debug("Retrying reply: id={}, groupId={}, attempt={}/{}",
+            retry.getId(), retry.getGroupId(), attempt, maxAttempts);
+
+        try {
+            napCatAdapter.sendGroupMessage(retry.getGroupId(), retry.getContent())
+                .whenCompleteAsync((response, error) -> {
+                    try {
+                        onSendComplete(retry, attempt, response, error);
+                    } finally {
+                        inFlightPermits.release();
+                    }
+                }, scheduler);
+        } catch (Exception e) {
+            try {
+                onSendComplete(retry, attempt, null, e);
+            } finally {
+                inFlightPermits.release();
+            }
+        }
+    }
+
+    /**
+     * 处理发送结果
+     *
+     * <ul>
+     *   <li>成功: 标记SUCCESS并回写消息日志</li>
+     *   <li>确定未送达(未写出或retcode非0): 按退避重新调度, 次数耗尽则放弃</li>
+     *   <li>结果未知(超时等): 消息可能已送达, 标记DEAD等待人工确认, 不自动重发</li>
+     * </ul>
+     */
+    void onSendComplete(OutboundRetry retry, int attempt, ApiCallResponseDTO response, Throwable error) {
+        OutboundRetry update = new OutboundRetry();
+
+        if (error == null && response != null && response.getRetcode() != null && response.getRetcode() == 0) {
+            update.setStatus(OutboundRetry.RetryStatus.SUCCESS);
+            if (!updateClaimed(retry, attempt, update)) {
+                return;
+            }
+            markLogSucceeded(retry);
+            log.info("Retry succeeded: id={}, groupId={}, messageId={}, attempt={}",
+                retry.getId(), retry.getGroupId(), retry.getMessageId(), attempt);
+            return;
+        }
+
+        boolean notSent = error != null
+            ? RequestNotSentException.isNotSent(error)
+            : response != null && response.getRetcode() != null;
+
+        if (!notSent) {
+            String errorMessage = error != null
+                ? "发送结果未知, 未重试(需人工确认): " + error.getMessage()
+                : "发送结果未知, 未重试(需人工确认): null response";
+            update.setLastError(truncate(errorMessage));
+            update.setStatus(OutboundRetry.RetryStatus.DEAD);
+            if (updateClaimed(retry, attempt, update)) {
+                log.error("Retry outcome unknown, not resending: id={}, groupId={}, messageId={}, attempt={}, error={}",
+                    retry.getId(), retry.getGroupId(), retry.getMessageId(), attempt, errorMessage);
+            }
+            return;
+        }
+
+        String errorMessage = error != null
+            ? "重试异常: " + error.getMessage()
+            : String.format("重试失败: retcode=%s, message=%s", response.getRetcode(), response.getMessage());
+        update.setLastError(truncate(errorMessage));
+
+        if (attempt >= maxAttempts) {
+            update.setStatus(OutboundRetry.RetryStatus.DEAD);
+            if (updateClaimed(retry, attempt, update)) {
+                log.error("Retry exhausted, giving up: id={}, groupId={}, messageId={}, attempts={}, lastError={}",
+                    retry.getId(), retry.getGroupId(), retry.getMessageId(), attempt, errorMessage);
+            }
+            return;
+        }
+
+        long delayMs = computeBackoffMs(attempt);
+        update.setStatus(OutboundRetry.RetryStatus.PENDING);
+        update.setNextAttemptAt(LocalDateTime.now().plus(delayMs, ChronoUnit.MILLIS));
+        if (updateClaimed(retry, attempt, update)) {
+            log.warn("Retry failed, rescheduled: id={}, groupId={}, attempt={}/{}, nextDelay={}ms, error={}",
+                retry.getId(), retry.getGroupId(), attempt, maxAttempts, delayMs, errorMessage);
+        }
+    }
+
+    /**
+     * 回写本节点认领的记录: 仅当记录仍为IN_FLIGHT且尝试次数等于本次认领时更新
+     *
+     * @return 是否更新成功(false表示租约已过期或记录已被其他节点处理)
+     */
+    private boolean updateClaimed(OutboundRetry retry, int attempt, OutboundRetry update) {
+        LambdaUpdateWrapper<OutboundRetry> wrapper = new LambdaUpdateWrapper<>();
+        wrapper.eq(OutboundRetry::getId, retry.getId())
+            .eq(OutboundRetry::getStatus, OutboundRetry.RetryStatus.IN_FLIGHT)
+            .eq(OutboundRetry::getAttempts, attempt);
+        if (outboundRetryMapper.update(update, wrapper) > 0) {
+            return true;
+        }
+        log.warn("Retry result discarded, lease no longer held: id={}, groupId={}, attempt={}, status={}",
+            retry.getId(), retry.getGroupId(), attempt, update.getStatus());
+        return false;
+    }
+
+    /**
+     * 计算退避时间: base × 2^(attempt-1), 上限maxDelay, ±20%抖动
+     *
+     * @param attempt 已完成的尝试次数(从1开始)
+     * @return 退避毫秒数
+     */
+    long computeBackoffMs(int attempt) {
+        int exponent = Math.min(Math.max(attempt - 1, 0), 30);
+        long delay = Math.min(maxDelayMs, baseDelayMs << exponent);
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return Math.max(1L, (long) (delay * jitter));
+    }
+
+    /**
+     * 重试成功后回写消息日志状态
+     */
+    private void markLogSucceeded(OutboundRetry retry) {
+        if (retry.getMessageId() == null) {
+            return;
+        }
+
+        try {
+            LambdaUpdateWrapper<MessageLog> wrapper = new LambdaUpdateWrapper<>();
+            wrapper.eq(MessageLog::getMessageId, retry.getMessageId())
+                .ne(MessageLog::getSendStatus, MessageLog.SendStatus.SUCCESS)
+                .isNotNull(MessageLog::getResponseContent);
+            if (retry.getCreatedAt() != null) {
+                // 限定分区与idx_timestamp范围, 避免全表扫描
+                wrapper.ge(MessageLog::getTimestamp, retry.getCreatedAt().minusMinutes(10));
+            }
+            wrapper.set(MessageLog::getSendStatus, MessageLog.SendStatus.SUCCESS)
+                .set(MessageLog::getErrorMessage, null);
+            messageLogMapper.update(null, wrapper);
+        } catch (Exception e) {
+            log.warn("Failed to update message log after retry: messageId={}", retry.getMessageId(), e);
+        }
+    }
+
+    private void postpone(OutboundRetry retry, LocalDateTime nextAttemptAt) {
+        OutboundRetry update = new OutboundRetry();
+        update.setNextAttemptAt(nextAttemptAt);
+        LambdaUpdateWrapper<OutboundRetry> wrapper = new LambdaUpdateWrapper<>();
+        wrapper.eq(OutboundRetry::getId, retry.getId())
+            .eq(OutboundRetry::getStatus, OutboundRetry.RetryStatus.PENDING);
+        outboundRetryMapper.update(update, wrapper);
+        log.debug("Group retry budget exhausted, postponed: id={}, groupId={}, until={}",
+            retry.getId(), retry.getGroupId(), nextAttemptAt);
+    }
+
+    private boolean tryConsumeBudget(Long groupId) {
+        return groupBudgets.computeIfAbsent(groupId, id -> new RetryBudget())
+            .tryConsume(System.currentTimeMillis(), groupBudgetPerMinute);
+    }
+
+    private LocalDateTime budgetWindowEnd(Long groupId) {
+        RetryBudget budget = groupBudgets.get(groupId);
+        long remainingMs = budget != null
+            ? Math.max(0, budget.windowStart + BUDGET_WINDOW_MS - System.currentTimeMillis())
+            : 0;
+        return LocalDateTime.now().plus(remainingMs, ChronoUnit.MILLIS);
+    }
+
+    private String truncate(String message) {
+        if (message == null || message.length() <= ERROR_MESSAGE_MAX_LENGTH) {
+            return message;
+        }
+        return message.substring(0, ERROR_MESSAGE_MAX_LENGTH);
+    }
+
+    /**
+     * 群级别重试预算(固定窗口计数)
+     */
+    private static final class RetryBudget {
+        private long windowStart;
+        private int used;
+
+        synchronized boolean tryConsume(long nowMs, int limit) {
+            if (nowMs - windowStart >= BUDGET_WINDOW_MS) {
+                windowStart = nowMs;
+                used = 0;
+            }
+            if (used >= limit) {
+                return false;
+            }
+            used++;
+            return true;
+        }
+    }
+}
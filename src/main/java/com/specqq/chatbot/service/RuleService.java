@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.specqq.chatbot.engine.CQCodeMatcher;
+import com.specqq.chatbot.engine.CompositeMatcher;
 import com.specqq.chatbot.engine.ContainsMatcher;
 import com.specqq.chatbot.engine.ExactMatcher;
 import com.specqq.chatbot.engine.RegexMatcher;
@@ -40,6 +42,8 @@ public class RuleService extends ServiceImpl<MessageRuleMapper, MessageRule> {
     private final ContainsMatcher containsMatcher;
     private final RegexMatcher regexMatcher;
     private final StatisticsMatcher statisticsMatcher;
+    private final CQCodeMatcher cqCodeMatcher;
+    private final CompositeMatcher compositeMatcher;
 
     /**
      * 查询群聊启用的规则列表(按优先级排序)
@@ -252,6 +256,26 @@ public class RuleService extends ServiceImpl<MessageRuleMapper, MessageRule> {
         }
     }
 
+    /**
+     * 验证CQ码匹配条件
+     *
+     * @param pattern JSON条件
+     * @return true表示有效
+     */
+    public boolean validateCQCodePattern(String pattern) {
+        return cqCodeMatcher.isValid(pattern);
+    }
+
+    /**
+     * 验证组合规则条件树
+     *
+     * @param pattern JSON条件树
+     * @return true表示有效
+     */
+    public boolean validateCompositePattern(String pattern) {
+        return compositeMatcher.isValid(pattern);
+    }
+
     /**
      * 检查规则是否正在被使用
      *
@@ -325,6 +349,8 @@ public class RuleService extends ServiceImpl<MessageRuleMapper, MessageRule> {
             case CONTAINS -> containsMatcher;
             case REGEX -> regexMatcher;
             case STATISTICS -> statisticsMatcher;
+            case CQCODE -> cqCodeMatcher;
+            case COMPOSITE -> compositeMatcher;
         };
 
         return matcher.matches(message, pattern);
@@ -0,0 +1,106 @@
+package com.specqq.chatbot.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 逐行写出CSV(不缓存行, 不生成中间字符串)
+ *
+ * 字符串字段始终加双引号, 仅当值中含双引号时逐字符转义; 数值字段不加引号, null写为空字段
+ *
+ * @author Chatbot Router System
+ */
+public final class CsvWriter implements Closeable, Flushable {
+
+    private final Writer out;
+    private boolean rowStarted;
+
+    /**
+     * @param out 目标(调用方负责缓冲)
+     */
+    public CsvWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * 写出一个带引号的字符串字段
+     */
+    public CsvWriter quoted(String value) throws IOException {
+        separator();
+        out.write('"');
+        if (value != null) {
+            int quote = value.indexOf('"');
+            if (quote < 0) {
+                out.write(value);
+            } else {
+                // 双引号转义为两个双引号
+                int start = 0;
+                do {
+                    out.write(value, start, quote + 1 - start);
+                    out.write('"');
+                    start = quote + 1;
+                    quote = value.indexOf('"', start);
+                } while (quote >= 0);
+                out.write(value, start, value.length() - start);
+            }
+        }
+        out.write('"');
+        return this;
+    }
+
+    /**
+     * 写出一个不带引号的字段(数值、枚举等不含分隔符的值)
+     */
+    public CsvWriter plain(Object value) throws IOException {
+        separator();
+        if (value != null) {
+            out.write(value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * 写出一个整数字段(null写为空字段)
+     */
+    public CsvWriter number(Long value) throws IOException {
+        separator();
+        if (value != null) {
+            out.write(Long.toString(value));
+        }
+        return this;
+    }
+
+    /**
+     * 结束当前行
+     */
+    public void endRow() throws IOException {
+        out.write('\n');
+        rowStarted = false;
+    }
+
+    /**
+     * 写出原始文本(表头等)
+     */
+    public void raw(String text) throws IOException {
+        out.write(text);
+    }
+
+    private void separator() throws IOException {
+        if (rowStarted) {
+            out.write(',');
+        }
+        rowStarted = true;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
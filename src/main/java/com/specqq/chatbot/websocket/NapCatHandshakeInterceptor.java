@@ -0,0 +1,137 @@
+package com.specqq.chatbot.websocket;
+
+import com.specqq.chatbot.entity.ChatClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * NapCat反向WebSocket握手拦截器
+ *
+ * - 按请求头 X-Self-ID 匹配 chat_client(protocol_type=reverse_websocket, connection_config.selfId)
+ * - 校验访问令牌: Authorization: Bearer/Token xxx 或 ?access_token=xxx;
+ *   优先使用客户端配置的accessToken, 未配置时使用 napcat.reverse-websocket.access-token;
+ *   两者均未配置时拒绝连接, 除非显式开启 napcat.reverse-websocket.allow-anonymous
+ * - 校验通过后将客户端信息写入会话属性
+ *
+ * @author Chatbot Router System
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NapCatHandshakeInterceptor implements HandshakeInterceptor {
+
+    /**
+     * 会话属性: 客户端配置
+     */
+    public static final String CLIENT_ATTRIBUTE = "napcat.client";
+
+    private final WebSocketSessionManager sessionManager;
+
+    @Value("${napcat.reverse-websocket.access-token:}")
+    private String defaultAccessToken;
+
+    /**
+     * 未配置任何令牌时是否允许连接(仅限可信内网调试)
+     */
+    @Value("${napcat.reverse-websocket.allow-anonymous:false}")
+    private boolean allowAnonymous = false;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        Long selfId = parseSelfId(request.getHeaders().getFirst("X-Self-ID"));
+        if (selfId == null) {
+            log.warn("Reverse WebSocket rejected: missing X-Self-ID, remote={}", request.getRemoteAddress());
+            response.setStatusCode(HttpStatus.BAD_REQUEST);
+            return false;
+        }
+
+        ChatClient client;
+        try {
+            client = sessionManager.findReverseClient(selfId);
+        } catch (Exception e) {
+            log.error("Reverse WebSocket rejected: failed to load client, selfId={}", selfId, e);
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            return false;
+        }
+        if (client == null) {
+            log.warn("Reverse WebSocket rejected: no client configured, selfId={}, remote={}",
+                selfId, request.getRemoteAddress());
+            response.setStatusCode(HttpStatus.FORBIDDEN);
+            return false;
+        }
+
+        String expectedToken = client.getConnectionConfig() != null
+            && StringUtils.hasText(client.getConnectionConfig().getAccessToken())
+            ? client.getConnectionConfig().getAccessToken()
+            : defaultAccessToken;
+        if (!StringUtils.hasText(expectedToken)) {
+            if (!allowAnonymous) {
+                log.warn("Reverse WebSocket rejected: no access token configured, selfId={}, remote={}",
+                    selfId, request.getRemoteAddress());
+                response.setStatusCode(HttpStatus.UNAUTHORIZED);
+                return false;
+            }
+            log.warn("Reverse WebSocket accepted without access token (allow-anonymous), selfId={}, remote={}",
+                selfId, request.getRemoteAddress());
+        } else if (!tokenMatches(expectedToken, extractToken(request))) {
+            log.warn("Reverse WebSocket rejected: invalid access token, selfId={}, remote={}",
+                selfId, request.getRemoteAddress());
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+
+        attributes.put(NapCatWebSocketHandler.CLIENT_ID_ATTRIBUTE, client.getId());
+        attributes.put(CLIENT_ATTRIBUTE, client);
+        log.info("Reverse WebSocket handshake accepted: selfId={}, clientId={}, remote={}",
+            selfId, client.getId(), request.getRemoteAddress());
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+        // no-op
+    }
+
+    /**
+     * 提取访问令牌(OneBot 11: Authorization头或access_token查询参数)
+     */
+    private static String extractToken(ServerHttpRequest request) {
+        String authorization = request.getHeaders().getFirst("Authorization");
+        if (StringUtils.hasText(authorization)) {
+            int space = authorization.indexOf(' ');
+            return space > 0 ? authorization.substring(space + 1).trim() : authorization.trim();
+        }
+        return UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("access_token");
+    }
+
+    private static boolean tokenMatches(String expected, String actual) {
+        return actual != null && MessageDigest.isEqual(
+            expected.getBytes(StandardCharsets.UTF_8), actual.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Long parseSelfId(String value) {
+        if (!StringUtils.hasText(value)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
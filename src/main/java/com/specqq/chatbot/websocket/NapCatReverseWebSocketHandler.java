@@ -0,0 +1,51 @@
+package com.specqq.chatbot.websocket;
+
+import com.specqq.chatbot.entity.ChatClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+/**
+ * NapCat反向WebSocket处理器
+ *
+ * 由NapCat实例主动连接(握手阶段已由 {@link NapCatHandshakeInterceptor} 完成鉴权与客户端匹配),
+ * 会话登记到 {@link WebSocketSessionManager} 后与正向连接共用同一处理流程(事件路由、API响应、出站调用)。
+ *
+ * @author Chatbot Router System
+ */
+@Slf4j
+public class NapCatReverseWebSocketHandler extends WebSocketHandlerDecorator {
+
+    private final WebSocketSessionManager sessionManager;
+    private final int textMessageSizeLimit;
+
+    /**
+     * @param delegate             NapCat消息处理器
+     * @param sessionManager       会话管理器
+     * @param textMessageSizeLimit 单条文本消息大小上限(字节, 群成员列表等响应可能较大)
+     */
+    public NapCatReverseWebSocketHandler(WebSocketHandler delegate, WebSocketSessionManager sessionManager,
+                                         int textMessageSizeLimit) {
+        super(delegate);
+        this.sessionManager = sessionManager;
+        this.textMessageSizeLimit = textMessageSizeLimit;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        Long clientId = (Long) session.getAttributes().get(NapCatWebSocketHandler.CLIENT_ID_ATTRIBUTE);
+        ChatClient client = (ChatClient) session.getAttributes().get(NapCatHandshakeInterceptor.CLIENT_ATTRIBUTE);
+        if (clientId == null || client == null) {
+            log.warn("Reverse WebSocket session without client, closing: sessionId={}", session.getId());
+            session.close();
+            return;
+        }
+
+        if (textMessageSizeLimit > 0) {
+            session.setTextMessageSizeLimit(textMessageSizeLimit);
+        }
+        sessionManager.registerReverseSession(clientId, client, session);
+        super.afterConnectionEstablished(session);
+    }
+}
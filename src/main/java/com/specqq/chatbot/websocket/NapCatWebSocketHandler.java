@@ -6,6 +6,7 @@ import com.specqq.chatbot.adapter.NapCatAdapter;
 import com.specqq.chatbot.dto.ApiCallResponseDTO;
 import com.specqq.chatbot.dto.MessageReceiveDTO;
 import com.specqq.chatbot.engine.MessageRouter;
+import com.specqq.chatbot.entity.ChatClient;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,27 +14,30 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
-import org.springframework.web.socket.WebSocketHandler;
-import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketHttpHeaders;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.client.WebSocketClient;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import java.time.LocalDateTime;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * NapCat WebSocket处理器
  *
  * 功能:
  * - 接收NapCat Forward WebSocket消息
- * - 心跳监控(15秒超时)
- * - 自动重连(指数退避: 1s→2s→4s→8s→16s→60s)
+ * - 多账号: 为每个启用的QQ客户端(chat_client)建立独立连接, 未配置时使用napcat.websocket.url
+ * - 心跳监控、自动重连与断线期间的出站缓冲由 {@link WebSocketSessionManager} 负责
+ * - 出站请求按群归属选择对应机器人的会话
+ * - 通道分离(napcat.websocket.channels.split): 每个客户端连接 /event 接收上报, 另建API连接池连接 /api 承载API调用
  *
  * @author Chatbot Router System
  */
@@ -42,10 +46,21 @@ import java.util.concurrent.atomic.AtomicInteger;
 @RequiredArgsConstructor
 public class NapCatWebSocketHandler extends TextWebSocketHandler {
 
+    /**
+     * 会话属性: 所属客户端ID
+     */
+    public static final String CLIENT_ID_ATTRIBUTE = "napcat.clientId";
+
+    /**
+     * 会话属性: API连接序号(仅通道分离时的API连接)
+     */
+    public static final String API_CHANNEL_ATTRIBUTE = "napcat.apiChannel";
+
     private final WebSocketClient webSocketClient;
     private final ClientAdapter clientAdapter;
     private final MessageRouter messageRouter;
     private final ObjectMapper objectMapper;
+    private final WebSocketSessionManager sessionManager;
 
     // NapCatAdapter for handling API responses (optional - may be null during initialization)
     @Autowired(required = false)
@@ -57,58 +72,152 @@ public class NapCatWebSocketHandler extends TextWebSocketHandler {
     @Value("${napcat.websocket.access-token}")
     private String accessToken;
 
-    private WebSocketSession session;
-    private LocalDateTime lastHeartbeatTime;
-    private final AtomicInteger reconnectAttempts = new AtomicInteger(0);
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private static final int CONNECT_TIMEOUT_SECONDS = 10;
 
-    private static final int MAX_RECONNECT_ATTEMPTS = 3;
-    private static final int HEARTBEAT_TIMEOUT_SECONDS = 15;
-    private static final int[] RECONNECT_DELAYS = {1, 2, 4, 8, 16, 60}; // 指数退避(秒)
+    @PostConstruct
+    public void init() {
+        sessionManager.setReconnector(sessionInfo ->
+            openMissing(sessionInfo).get(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        sessionManager.setDiscardListener(this::handleDiscardedRequest);
+    }
 
     /**
-     * 连接到NapCat WebSocket
+     * 连接到NapCat WebSocket(所有启用的QQ客户端, 并行建立)
      */
     public void connect() {
+        List<ChatClient> clients;
         try {
-            log.info("Connecting to NapCat WebSocket: {}", napCatWebSocketUrl);
+            clients = sessionManager.loadNapCatClients();
+        } catch (Exception e) {
+            log.warn("Failed to load chat clients, using default NapCat connection: {}", e.getMessage());
+            clients = List.of();
+        }
 
-            // 添加Authorization头
-            org.springframework.web.socket.WebSocketHttpHeaders headers =
-                new org.springframework.web.socket.WebSocketHttpHeaders();
-            headers.add("Authorization", "Bearer " + accessToken);
+        if (clients.isEmpty()) {
+            ChatClient defaultClient = new ChatClient();
+            defaultClient.setId(WebSocketSessionManager.DEFAULT_CLIENT_ID);
+            defaultClient.setClientType("qq");
+            defaultClient.setClientName("default");
+            clients = List.of(defaultClient);
+        }
 
-            session = webSocketClient.execute(
-                this,
-                headers,
-                java.net.URI.create(napCatWebSocketUrl)
-            ).get(10, TimeUnit.SECONDS);
+        log.info("Connecting to NapCat WebSocket: clients={}", clients.size());
+        for (ChatClient client : clients) {
+            WebSocketSessionManager.SessionInfo sessionInfo = sessionManager.registerClient(client.getId(), client);
+            openMissing(sessionInfo).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    sessionManager.onConnectFailed(client.getId());
+                }
+            });
+        }
+    }
 
-            lastHeartbeatTime = LocalDateTime.now();
-            reconnectAttempts.set(0);
+    /**
+     * 建立客户端缺失的连接(非阻塞): 事件/通用连接, 以及通道分离时的API连接
+     *
+     * @param sessionInfo 会话信息
+     * @return 全部连接完成的Future
+     */
+    private CompletableFuture<Void> openMissing(WebSocketSessionManager.SessionInfo sessionInfo) {
+        Long clientId = sessionInfo.getClientId();
+        ChatClient client = sessionInfo.getClient();
+        List<CompletableFuture<WebSocketSession>> connecting = new ArrayList<>();
+        if (!sessionInfo.isConnected()) {
+            connecting.add(open(clientId, client, null));
+        }
+        for (Integer index : sessionInfo.getMissingApiChannels()) {
+            connecting.add(open(clientId, client, index));
+        }
+        return CompletableFuture.allOf(connecting.toArray(CompletableFuture[]::new));
+    }
 
-            log.info("Connected to NapCat WebSocket successfully");
+    /**
+     * 建立单条连接(非阻塞)
+     *
+     * @param clientId   客户端ID
+     * @param client     客户端配置
+     * @param apiChannel API连接序号, null表示事件/通用连接
+     * @return 连接完成的Future
+     */
+    private CompletableFuture<WebSocketSession> open(Long clientId, ChatClient client, Integer apiChannel) {
+        String baseUrl = resolveUrl(client);
+        String token = resolveAccessToken(client);
+        if (baseUrl == null) {
+            log.error("NapCat WebSocket url not configured: clientId={}", clientId);
+            return CompletableFuture.failedFuture(new IllegalStateException("WebSocket url not configured"));
+        }
+        String url = sessionManager.isChannelSplit() ? channelUrl(baseUrl, apiChannel != null ? "api" : "event") : baseUrl;
 
-            // 启动心跳监控
-            startHeartbeatMonitor();
+        log.info("Connecting to NapCat WebSocket: clientId={}, channel={}, url={}",
+            clientId, apiChannel != null ? "api-" + apiChannel : "event", url);
 
+        // 添加Authorization头
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        if (token != null && !token.isEmpty()) {
+            headers.add("Authorization", "Bearer " + token);
+        }
+
+        try {
+            return webSocketClient.execute(new ClientSessionHandler(clientId, client, apiChannel), headers, URI.create(url))
+                .orTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .whenComplete((session, error) -> {
+                    if (error != null) {
+                        log.error("Failed to connect to NapCat WebSocket: clientId={}, url={}", clientId, url, error);
+                    } else {
+                        log.info("Connected to NapCat WebSocket successfully: clientId={}", clientId);
+                    }
+                });
         } catch (Exception e) {
-            log.error("Failed to connect to NapCat WebSocket", e);
-            scheduleReconnect();
+            log.error("Failed to connect to NapCat WebSocket: clientId={}, url={}", clientId, url, e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 客户端WebSocket地址: connection_config中的host/wsPort, 默认客户端使用napcat.websocket.url
+     */
+    private String resolveUrl(ChatClient client) {
+        ChatClient.ConnectionConfig config = client.getConnectionConfig();
+        if (config == null || config.getHost() == null || config.getHost().isEmpty()) {
+            return napCatWebSocketUrl;
         }
+        String base = config.getHost().contains("://") ? config.getHost() : "ws://" + config.getHost();
+        return config.getWsPort() != null ? base + ":" + config.getWsPort() : base;
+    }
+
+    /**
+     * OneBot 11正向WebSocket的分通道地址: {base}/event 仅上报事件, {base}/api 仅处理API调用
+     */
+    private static String channelUrl(String url, String channel) {
+        String base = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        return base + "/" + channel;
+    }
+
+    private String resolveAccessToken(ChatClient client) {
+        ChatClient.ConnectionConfig config = client.getConnectionConfig();
+        return config != null && config.getAccessToken() != null ? config.getAccessToken() : accessToken;
+    }
+
+    /**
+     * 会话所属客户端ID
+     */
+    private static Long clientIdOf(WebSocketSession session) {
+        Object clientId = session.getAttributes().get(CLIENT_ID_ATTRIBUTE);
+        return clientId instanceof Long id ? id : WebSocketSessionManager.DEFAULT_CLIENT_ID;
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        log.info("WebSocket connection established: sessionId={}", session.getId());
-        this.session = session;
-        this.lastHeartbeatTime = LocalDateTime.now();
+        log.info("WebSocket connection established: sessionId={}, clientId={}", session.getId(), clientIdOf(session));
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        // 更新心跳时间
-        lastHeartbeatTime = LocalDateTime.now();
+        // 更新心跳时间(API连接不推送心跳, 仅事件/通用连接参与心跳检测)
+        Long clientId = clientIdOf(session);
+        if (!session.getAttributes().containsKey(API_CHANNEL_ATTRIBUTE)) {
+            sessionManager.updateHeartbeat(clientId);
+        }
 
         String payload = message.getPayload();
         log.debug("Received WebSocket message: {}", payload);
@@ -121,8 +230,16 @@ public class NapCatWebSocketHandler extends TextWebSocketHandler {
             if (jsonMap.containsKey("id") && (jsonMap.containsKey("retcode") || jsonMap.containsKey("status"))) {
                 // 这是API调用响应
                 handleApiResponse(payload);
+            } else if ("notice".equals(jsonMap.get("post_type"))) {
+                // 通知事件 (成员增减、群名变更等): 失效元数据缓存
+                if (napCatAdapter != null) {
+                    napCatAdapter.handleNoticeEvent(jsonMap);
+                }
             } else if (jsonMap.containsKey("post_type")) {
-                // 这是事件消息 (群消息、通知等)
+                // 这是事件消息 (群消息等): 群消息所在会话即该群的机器人
+                if (jsonMap.get("group_id") instanceof Number groupId) {
+                    sessionManager.bindGroup(groupId.longValue(), clientId);
+                }
                 handleEventMessage(payload);
             } else {
                 log.debug("Unknown WebSocket message type: {}", payload);
@@ -178,119 +295,120 @@ public class NapCatWebSocketHandler extends TextWebSocketHandler {
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        log.warn("WebSocket connection closed: sessionId={}, status={}", session.getId(), status);
-        this.session = null;
+        Long clientId = clientIdOf(session);
+        log.warn("WebSocket connection closed: sessionId={}, clientId={}, status={}", session.getId(), clientId, status);
 
         // 自动重连
-        scheduleReconnect();
+        sessionManager.onSessionClosed(clientId, session);
     }
 
     /**
-     * 启动心跳监控
+     * 检查WebSocket是否已连接(任一客户端)
+     *
+     * @return true if connected
      */
-    private void startHeartbeatMonitor() {
-        scheduler.scheduleAtFixedRate(() -> {
-            try {
-                if (lastHeartbeatTime == null) {
-                    return;
-                }
-
-                long secondsSinceLastHeartbeat = java.time.Duration.between(
-                    lastHeartbeatTime,
-                    LocalDateTime.now()
-                ).getSeconds();
-
-                if (secondsSinceLastHeartbeat > HEARTBEAT_TIMEOUT_SECONDS) {
-                    log.warn("Heartbeat timeout: {}s, triggering reconnect", secondsSinceLastHeartbeat);
-                    closeAndReconnect();
-                }
-
-            } catch (Exception e) {
-                log.error("Heartbeat monitor error", e);
-            }
-        }, 5, 5, TimeUnit.SECONDS);
+    public boolean isConnected() {
+        return sessionManager.getActiveSessionCount() > 0;
     }
 
     /**
-     * 关闭连接并重连
+     * 检查指定群的机器人会话是否已连接
+     *
+     * @param groupId 群ID(为null时检查任一会话)
+     * @return true if connected
      */
-    private void closeAndReconnect() {
-        try {
-            if (session != null && session.isOpen()) {
-                session.close();
-            }
-        } catch (Exception e) {
-            log.error("Failed to close WebSocket session", e);
-        }
-        scheduleReconnect();
+    public boolean isConnected(Long groupId) {
+        return sessionManager.routeSession(groupId) != null;
     }
 
     /**
-     * 调度重连(指数退避)
+     * 获取当前WebSocket会话(默认客户端或任一已连接会话)
+     *
+     * @return WebSocket session or null if not connected
      */
-    private void scheduleReconnect() {
-        int attempts = reconnectAttempts.getAndIncrement();
-
-        if (attempts >= MAX_RECONNECT_ATTEMPTS) {
-            log.error("Max reconnect attempts ({}) reached, giving up", MAX_RECONNECT_ATTEMPTS);
-            return;
-        }
-
-        int delayIndex = Math.min(attempts, RECONNECT_DELAYS.length - 1);
-        int delaySeconds = RECONNECT_DELAYS[delayIndex];
-
-        log.info("Scheduling reconnect attempt {} in {}s", attempts + 1, delaySeconds);
-
-        scheduler.schedule(() -> {
-            try {
-                connect();
-            } catch (Exception e) {
-                log.error("Reconnect attempt {} failed", attempts + 1, e);
-            }
-        }, delaySeconds, TimeUnit.SECONDS);
+    public WebSocketSession getSession() {
+        return sessionManager.routeSession(null);
     }
 
     /**
-     * 检查WebSocket是否已连接
+     * 发送消息到NapCat(默认会话)
      *
-     * @return true if connected
+     * @param message 消息内容
+     * @throws Exception if send fails
      */
-    public boolean isConnected() {
-        return session != null && session.isOpen();
+    public void sendMessage(String message) throws Exception {
+        sendMessage(null, message);
     }
 
     /**
-     * 获取当前WebSocket会话
+     * 通过群归属机器人的会话发送消息到NapCat
      *
-     * @return WebSocket session or null if not connected
+     * 该机器人断线重连期间消息进入有界缓冲, 重连后按顺序发送
+     *
+     * @param groupId 群ID(为null时使用默认会话)
+     * @param message 消息内容
+     * @throws Exception if send fails, or no client is registered / the outbound buffer rejects the message
      */
-    public WebSocketSession getSession() {
-        return session;
+    public void sendMessage(Long groupId, String message) throws Exception {
+        sessionManager.send(groupId, message);
     }
 
     /**
-     * 发送消息到NapCat
+     * 通过群归属机器人的会话发送API请求到NapCat
      *
-     * @param message 消息内容
-     * @throws Exception if send fails
+     * 请求在断线缓冲中被丢弃时, 以请求ID通知 {@link NapCatAdapter#handleWebSocketRequestDiscarded}
+     *
+     * @param groupId   群ID(为null时使用默认会话)
+     * @param message   请求内容
+     * @param requestId API请求ID
+     * @throws Exception if send fails, or no client is registered / the outbound buffer rejects the message
      */
-    public void sendMessage(String message) throws Exception {
-        if (session == null || !session.isOpen()) {
-            throw new IllegalStateException("WebSocket not connected");
+    public void sendMessage(Long groupId, String message, String requestId) throws Exception {
+        sessionManager.send(groupId, message, requestId);
+    }
+
+    /**
+     * 处理断线缓冲中被丢弃(未发出)的API请求
+     */
+    private void handleDiscardedRequest(String requestId) {
+        if (napCatAdapter != null) {
+            napCatAdapter.handleWebSocketRequestDiscarded(requestId);
         }
-        session.sendMessage(new TextMessage(message));
     }
 
     @PreDestroy
     public void shutdown() {
-        try {
-            if (session != null && session.isOpen()) {
-                session.close();
+        // 会话由WebSocketSessionManager统一关闭
+        sessionManager.setReconnector(null);
+        sessionManager.setDiscardListener(null);
+        log.info("NapCat WebSocket handler shutdown");
+    }
+
+    /**
+     * 客户端会话处理器: 在会话建立时标记所属客户端并登记到会话管理器
+     */
+    private final class ClientSessionHandler extends WebSocketHandlerDecorator {
+        private final Long clientId;
+        private final ChatClient client;
+        private final Integer apiChannel;
+
+        ClientSessionHandler(Long clientId, ChatClient client, Integer apiChannel) {
+            super(NapCatWebSocketHandler.this);
+            this.clientId = clientId;
+            this.client = client;
+            this.apiChannel = apiChannel;
+        }
+
+        @Override
+        public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+            session.getAttributes().put(CLIENT_ID_ATTRIBUTE, clientId);
+            if (apiChannel != null) {
+                session.getAttributes().put(API_CHANNEL_ATTRIBUTE, apiChannel);
+                sessionManager.registerApiSession(clientId, client, apiChannel, session);
+            } else {
+                sessionManager.registerSession(clientId, client, session);
             }
-            scheduler.shutdown();
-            log.info("NapCat WebSocket handler shutdown");
-        } catch (Exception e) {
-            log.error("Failed to shutdown WebSocket handler", e);
+            super.afterConnectionEstablished(session);
         }
     }
 }
@@ -0,0 +1,181 @@
+package com.specqq.chatbot.websocket;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 断线期间的出站缓冲(单个客户端)
+ *
+ * 有界FIFO, 重连后按入队顺序发送:
+ * - 溢出策略: DROP_OLDEST 丢弃最早的消息; REJECT 拒绝新消息(调用方收到异常)
+ * - 过期策略: 入队超过max-age的消息在入队/出队时丢弃, 避免调用方超时放弃后仍被投递
+ * - 丢弃通知: 溢出/过期/清空丢弃的条目确定未发出, 记录其请求ID, 由调用方在锁外通知等待响应的请求
+ *
+ * 非线程安全, 由 {@link WebSocketSessionManager} 在会话信息上加锁访问
+ *
+ * @author Chatbot Router System
+ */
+final class OutboundBuffer {
+
+    /**
+     * 溢出策略
+     */
+    enum OverflowPolicy {
+        DROP_OLDEST,
+        REJECT;
+
+        static OverflowPolicy parse(String value) {
+            return value == null || value.isBlank()
+                ? DROP_OLDEST
+                : valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * 缓冲条目
+     *
+     * @param message    消息内容
+     * @param requestId  API请求ID(可为null)
+     * @param enqueuedAt 入队时间(System.nanoTime)
+     */
+    record Entry(String message, String requestId, long enqueuedAt) {
+    }
+
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private final int capacity;
+    private final long maxAgeNanos;
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * 自上次flush以来丢弃/过期的条目数
+     */
+    private int dropped;
+    private int expired;
+
+    /**
+     * 自上次读取以来未发出即被丢弃的条目请求ID
+     */
+    private List<String> discardedRequestIds = new ArrayList<>();
+
+    OutboundBuffer(int capacity, long maxAgeNanos, OverflowPolicy overflowPolicy) {
+        this.capacity = capacity;
+        this.maxAgeNanos = maxAgeNanos;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * 入队
+     *
+     * @param message   消息内容
+     * @param requestId API请求ID(可为null)
+     * @param now       当前时间(System.nanoTime)
+     * @return 是否入队(缓冲关闭或按REJECT策略拒绝时返回false, 由调用方直接向上报告)
+     */
+    boolean offer(String message, String requestId, long now) {
+        if (capacity <= 0) {
+            return false;
+        }
+        purgeExpired(now);
+        if (queue.size() >= capacity) {
+            if (overflowPolicy == OverflowPolicy.REJECT) {
+                dropped++;
+                return false;
+            }
+            discard(queue.pollFirst());
+            dropped++;
+        }
+        queue.addLast(new Entry(message, requestId, now));
+        return true;
+    }
+
+    /**
+     * 取出最早的未过期条目
+     *
+     * @param now 当前时间(System.nanoTime)
+     * @return 条目, 为空时返回null
+     */
+    Entry poll(long now) {
+        purgeExpired(now);
+        return queue.pollFirst();
+    }
+
+    /**
+     * 发送失败时放回队首(保持顺序)
+     */
+    void pushBack(Entry entry) {
+        queue.addFirst(entry);
+    }
+
+    /**
+     * 丢弃过期条目(队列按入队时间有序, 只需检查队首)
+     */
+    void purgeExpired(long now) {
+        Entry head;
+        while ((head = queue.peekFirst()) != null && now - head.enqueuedAt() > maxAgeNanos) {
+            discard(queue.pollFirst());
+            expired++;
+        }
+    }
+
+    /**
+     * 清空(关闭时)
+     *
+     * @return 被丢弃的条目数
+     */
+    int clear() {
+        int size = queue.size();
+        Entry entry;
+        while ((entry = queue.pollFirst()) != null) {
+            discard(entry);
+        }
+        return size;
+    }
+
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    /**
+     * 读取并重置丢弃计数
+     */
+    int drainDropped() {
+        int value = dropped;
+        dropped = 0;
+        return value;
+    }
+
+    /**
+     * 读取并重置被丢弃条目的请求ID
+     *
+     * @return 请求ID列表(无丢弃时为空列表)
+     */
+    List<String> drainDiscardedRequestIds() {
+        if (discardedRequestIds.isEmpty()) {
+            return List.of();
+        }
+        List<String> value = discardedRequestIds;
+        discardedRequestIds = new ArrayList<>();
+        return value;
+    }
+
+    private void discard(Entry entry) {
+        if (entry.requestId() != null) {
+            discardedRequestIds.add(entry.requestId());
+        }
+    }
+
+    /**
+     * 读取并重置过期计数
+     */
+    int drainExpired() {
+        int value = expired;
+        expired = 0;
+        return value;
+    }
+}
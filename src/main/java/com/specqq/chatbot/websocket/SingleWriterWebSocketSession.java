@@ -0,0 +1,341 @@
+package com.specqq.chatbot.websocket;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单写者WebSocket会话
+ *
+ * 参照 ConcurrentWebSocketSessionDecorator: 任意线程入队, 同一时刻只有一个线程(抢到flushLock的调用方)写出,
+ * 其余调用方入队后立即返回, 不会因慢连接阻塞业务线程。
+ * - 发送超时: 单帧写出超过send-time-limit视为慢消费者, 以SESSION_NOT_RELIABLE终止会话
+ * - 缓冲上限: 待发送字节数超过buffer-size-limit时按溢出策略终止会话(TERMINATE)或丢弃最早的消息(DROP)
+ * - 批量写出: 队列中积压多帧时, 对JSR-356会话开启RemoteEndpoint批处理, 每max-batch帧合并为一次flush
+ *
+ * 入队与写出拆分为 {@link #enqueue} / {@link #flush}, 调用方可在持锁时入队(保证顺序)、释放锁后再写出
+ *
+ * @author Chatbot Router System
+ */
+@Slf4j
+public class SingleWriterWebSocketSession extends WebSocketSessionDecorator {
+
+    /**
+     * 慢消费者原因
+     */
+    public enum SlowConsumerReason {
+        SEND_TIME_LIMIT,
+        BUFFER_OVERFLOW
+    }
+
+    /**
+     * 慢消费者事件监听(用于指标)
+     */
+    @FunctionalInterface
+    public interface SlowConsumerListener {
+        void onSlowConsumer(SlowConsumerReason reason);
+    }
+
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+    private final OverflowStrategy overflowStrategy;
+    private final int maxBatchFrames;
+    private final SlowConsumerListener listener;
+
+    /**
+     * 未写出的消息
+     *
+     * @param payload    文本内容
+     * @param requestId  API请求ID(可为null), 重新缓冲后被丢弃时用于通知调用方
+     * @param enqueuedAt 最初入队时间(System.nanoTime), 重新缓冲时沿用, 过期判断不因重连重置
+     */
+    public record PendingMessage(String payload, String requestId, long enqueuedAt) {
+
+        public PendingMessage(String payload, long enqueuedAt) {
+            this(payload, null, enqueuedAt);
+        }
+    }
+
+    /**
+     * 队列中的帧
+     */
+    private record Frame(WebSocketMessage<?> message, String requestId, long enqueuedAt) {
+    }
+
+    private final Queue<Frame> buffer = new LinkedBlockingQueue<>();
+    private final AtomicInteger bufferSize = new AtomicInteger();
+
+    private volatile long sendStartTime;
+    private volatile boolean limitExceeded;
+
+    private final Lock flushLock = new ReentrantLock();
+    private final Lock closeLock = new ReentrantLock();
+
+    /**
+     * @param delegate         原始会话
+     * @param sendTimeLimit    单帧写出时间上限(毫秒)
+     * @param bufferSizeLimit  待发送字节数上限
+     * @param overflowStrategy 超过缓冲上限时的策略
+     * @param maxBatchFrames   批量写出的最大帧数(小于等于1表示不批量)
+     * @param listener         慢消费者监听(可为null)
+     */
+    public SingleWriterWebSocketSession(WebSocketSession delegate, int sendTimeLimit, int bufferSizeLimit,
+                                        OverflowStrategy overflowStrategy, int maxBatchFrames,
+                                        SlowConsumerListener listener) {
+        super(delegate);
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.overflowStrategy = overflowStrategy;
+        this.maxBatchFrames = maxBatchFrames;
+        this.listener = listener;
+    }
+
+    /**
+     * 待发送帧数
+     */
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    /**
+     * 待发送字节数
+     */
+    public int getBufferSize() {
+        return bufferSize.get();
+    }
+
+    /**
+     * 当前帧已写出的时长(毫秒), 未在写出时为0
+     */
+    public long getTimeSinceSendStarted() {
+        long start = sendStartTime;
+        return start > 0 ? System.currentTimeMillis() - start : 0;
+    }
+
+    public boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+
+    /**
+     * 入队(不写出)
+     *
+     * @param message 消息
+     * @return 是否入队(会话已超限或已关闭时返回false)
+     */
+    public boolean enqueue(WebSocketMessage<?> message) {
+        return enqueue(message, System.nanoTime());
+    }
+
+    /**
+     * 入队(不写出), 沿用消息最初的入队时间
+     *
+     * @param message    消息
+     * @param enqueuedAt 最初入队时间(System.nanoTime)
+     * @return 是否入队(会话已超限或已关闭时返回false)
+     */
+    public boolean enqueue(WebSocketMessage<?> message, long enqueuedAt) {
+        return enqueue(message, null, enqueuedAt);
+    }
+
+    /**
+     * 入队(不写出), 记录API请求ID并沿用消息最初的入队时间
+     *
+     * @param message    消息
+     * @param requestId  API请求ID(可为null)
+     * @param enqueuedAt 最初入队时间(System.nanoTime)
+     * @return 是否入队(会话已超限或已关闭时返回false)
+     */
+    public boolean enqueue(WebSocketMessage<?> message, String requestId, long enqueuedAt) {
+        if (limitExceeded || !isOpen()) {
+            return false;
+        }
+        buffer.add(new Frame(message, requestId, enqueuedAt));
+        bufferSize.addAndGet(message.getPayloadLength());
+        return true;
+    }
+
+    /**
+     * 写出队列: 抢到写锁的线程负责写出全部积压, 否则检查慢消费者限制后返回
+     *
+     * @throws IOException                   写出失败
+     * @throws SessionLimitExceededException 发送超时或缓冲超限(TERMINATE), 调用方应关闭会话
+     */
+    public void flush() throws IOException {
+        do {
+            if (!tryFlushMessageBuffer()) {
+                checkSessionLimits();
+                break;
+            }
+        } while (!buffer.isEmpty() && !limitExceeded);
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (enqueue(message)) {
+            flush();
+        }
+    }
+
+    /**
+     * 撤回尚未被写出线程取出的消息(按对象身份匹配)
+     *
+     * @param message 已入队的消息
+     * @return true 已撤回, 该帧确定未写出; false 已被取出(写出中/已写出)或已被取回重新缓冲
+     */
+    public boolean withdraw(WebSocketMessage<?> message) {
+        boolean removed = buffer.removeIf(frame -> frame.message() == message);
+        if (removed) {
+            bufferSize.addAndGet(-message.getPayloadLength());
+        }
+        return removed;
+    }
+
+    /**
+     * 取出尚未写出的文本消息内容
+     *
+     * @return 按入队顺序的消息内容
+     */
+    public List<String> drainPending() {
+        return drainPendingMessages().stream().map(PendingMessage::payload).toList();
+    }
+
+    /**
+     * 取出尚未写出的文本消息及其请求ID、入队时间(会话关闭后重新缓冲, 重连后发送)
+     *
+     * @return 按入队顺序的消息
+     */
+    public List<PendingMessage> drainPendingMessages() {
+        List<PendingMessage> pending = new ArrayList<>(buffer.size());
+        Frame frame;
+        while ((frame = buffer.poll()) != null) {
+            bufferSize.addAndGet(-frame.message().getPayloadLength());
+            if (frame.message() instanceof TextMessage text) {
+                pending.add(new PendingMessage(text.getPayload(), frame.requestId(), frame.enqueuedAt()));
+            }
+        }
+        return pending;
+    }
+
+    private boolean tryFlushMessageBuffer() throws IOException {
+        if (!flushLock.tryLock()) {
+            return false;
+        }
+        RemoteEndpoint.Basic batchRemote = maxBatchFrames > 1 && buffer.size() > 1 ? batchRemote() : null;
+        try {
+            if (batchRemote != null) {
+                batchRemote.setBatchingAllowed(true);
+            }
+            int frames = 0;
+            Frame frame;
+            while (!limitExceeded && (frame = buffer.poll()) != null) {
+                bufferSize.addAndGet(-frame.message().getPayloadLength());
+                sendStartTime = System.currentTimeMillis();
+                getDelegate().sendMessage(frame.message());
+                sendStartTime = 0;
+                if (batchRemote != null && ++frames % maxBatchFrames == 0) {
+                    batchRemote.flushBatch();
+                }
+            }
+            if (batchRemote != null) {
+                batchRemote.flushBatch();
+            }
+        } finally {
+            sendStartTime = 0;
+            if (batchRemote != null) {
+                try {
+                    batchRemote.setBatchingAllowed(false);
+                } catch (IOException e) {
+                    log.debug("Failed to disable batching: sessionId={}", getId(), e);
+                }
+            }
+            flushLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * JSR-356会话的RemoteEndpoint(用于批处理), 其他实现返回null
+     */
+    private RemoteEndpoint.Basic batchRemote() {
+        WebSocketSession last = WebSocketSessionDecorator.unwrap(getDelegate());
+        if (last instanceof NativeWebSocketSession nativeSession) {
+            Session session = nativeSession.getNativeSession(Session.class);
+            if (session != null && session.isOpen()) {
+                return session.getBasicRemote();
+            }
+        }
+        return null;
+    }
+
+    private void checkSessionLimits() {
+        if (limitExceeded || !closeLock.tryLock()) {
+            return;
+        }
+        try {
+            long sendTime = getTimeSinceSendStarted();
+            if (sendTime > sendTimeLimit) {
+                limitExceeded(SlowConsumerReason.SEND_TIME_LIMIT, String.format(
+                    "Send time %d (ms) for session '%s' exceeded the allowed limit %d", sendTime, getId(), sendTimeLimit));
+            } else if (getBufferSize() > bufferSizeLimit) {
+                if (overflowStrategy == OverflowStrategy.TERMINATE) {
+                    limitExceeded(SlowConsumerReason.BUFFER_OVERFLOW, String.format(
+                        "Buffer size %d bytes for session '%s' exceeds the allowed limit %d",
+                        getBufferSize(), getId(), bufferSizeLimit));
+                }
+                int dropped = 0;
+                while (getBufferSize() > bufferSizeLimit) {
+                    Frame frame = buffer.poll();
+                    if (frame == null) {
+                        break;
+                    }
+                    bufferSize.addAndGet(-frame.message().getPayloadLength());
+                    dropped++;
+                }
+                notifySlowConsumer(SlowConsumerReason.BUFFER_OVERFLOW);
+                log.warn("Dropped {} outbound messages, buffer size: {}, sessionId={}", dropped, getBufferSize(), getId());
+            }
+        } finally {
+            closeLock.unlock();
+        }
+    }
+
+    private void limitExceeded(SlowConsumerReason reason, String message) {
+        limitExceeded = true;
+        notifySlowConsumer(reason);
+        throw new SessionLimitExceededException(message, CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    private void notifySlowConsumer(SlowConsumerReason reason) {
+        if (listener != null) {
+            listener.onSlowConsumer(reason);
+        }
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        super.close(limitExceeded && !status.equals(CloseStatus.SESSION_NOT_RELIABLE)
+            ? CloseStatus.SESSION_NOT_RELIABLE : status);
+    }
+
+    @Override
+    public String toString() {
+        return getDelegate().toString();
+    }
+}
@@ -1,20 +1,59 @@
 package com.specqq.chatbot.websocket;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.specqq.chatbot.adapter.RequestNotSentException;
 import com.specqq.chatbot.entity.ChatClient;
+import com.specqq.chatbot.entity.GroupChat;
+import com.specqq.chatbot.mapper.ChatClientMapper;
+import com.specqq.chatbot.mapper.GroupChatMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * WebSocket会话管理器
  * 管理多客户端WebSocket连接,支持心跳检测和自动重连
  *
+ * 多账号: 每个启用的QQ客户端(ChatClient)一个会话, 出站调用按群归属(groupId -> clientId)选择会话。
+ * 群归属来自入站群消息事件, 未知时回查group_chat表。
+ *
+ * 断线恢复:
+ * - 重连不设次数上限, 指数退避(initial-delay × 2^n, 上限max-delay)并加抖动, 避免多实例同时重连
+ * - 全局只有一个心跳检测任务, 与连接次数无关
+ * - 断线期间出站消息进入该客户端的有界缓冲, 重连后按顺序发送(溢出/过期策略见 {@link OutboundBuffer})
+ *
+ * 出站写入: 每个会话由 {@link SingleWriterWebSocketSession} 串行写出(单写者队列, 发送超时/缓冲上限保护),
+ * 慢消费者会话被终止后, 未写出的消息回到断线缓冲并在重连后发送
+ *
+ * 通道分离(napcat.websocket.channels.split): 每个客户端一条事件连接(/event, 承载心跳与上报)
+ * 加若干API连接(/api), API调用按群ID哈希分配到API连接(同群保序, 不同群分摊), 群消息突发不再拖慢API响应
+ *
  * @author Chatbot Router System
  */
 @Slf4j
@@ -27,7 +66,51 @@ public class WebSocketSessionManager {
     private final Map<Long, SessionInfo> sessions = new ConcurrentHashMap<>();
 
     /**
-     * 心跳检测定时器
+     * 群归属映射 (groupId -> clientId), 由入站事件绑定
+     */
+    private final Map<Long, Long> groupOwners = new ConcurrentHashMap<>();
+
+    /**
+     * group_chat表中的群归属(含未命中), 归属未由入站事件绑定时使用, 避免每次发送都查库
+     */
+    private Cache<Long, Optional<Long>> storedGroupOwners = newLookupCache(Duration.ofSeconds(60));
+
+    /**
+     * 未建立会话的客户端配置(含未命中), 如仅HTTP的客户端
+     */
+    private Cache<Long, Optional<ChatClient>> storedClients = newLookupCache(Duration.ofSeconds(60));
+
+    /**
+     * 反向WebSocket客户端映射 (selfId -> ChatClient)
+     */
+    private final Map<Long, ChatClient> selfIdClients = new ConcurrentHashMap<>();
+
+    /**
+     * 默认客户端ID(未在chat_client表配置时, 使用napcat.websocket.url的单连接)
+     */
+    public static final Long DEFAULT_CLIENT_ID = 0L;
+
+    @Autowired(required = false)
+    private ChatClientMapper chatClientMapper;
+
+    @Autowired(required = false)
+    private GroupChatMapper groupChatMapper;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 重连执行者(由WebSocket处理器注册)
+     */
+    private volatile Reconnector reconnector;
+
+    /**
+     * 缓冲消息丢弃监听(由NapCat适配器注册, 以未发送结束等待响应的请求)
+     */
+    private volatile DiscardListener discardListener;
+
+    /**
+     * 心跳检测与重连调度定时器
      */
     private final ScheduledExecutorService heartbeatScheduler = Executors.newScheduledThreadPool(2);
 
@@ -37,24 +120,123 @@ public class WebSocketSessionManager {
     private final ExecutorService reconnectExecutor = Executors.newFixedThreadPool(5);
 
     /**
-     * 心跳间隔(秒)
+     * 心跳检测任务是否已启动(全局唯一)
+     */
+    private final AtomicBoolean heartbeatStarted = new AtomicBoolean(false);
+
+    private volatile boolean shuttingDown;
+
+    @Value("${napcat.websocket.heartbeat-interval:30s}")
+    private Duration heartbeatInterval = Duration.ofSeconds(30);
+
+    @Value("${napcat.websocket.heartbeat-timeout:90s}")
+    private Duration heartbeatTimeout = Duration.ofSeconds(90);
+
+    @Value("${napcat.websocket.reconnect.enabled:true}")
+    private boolean reconnectEnabled = true;
+
+    @Value("${napcat.websocket.reconnect.initial-delay:1s}")
+    private Duration reconnectInitialDelay = Duration.ofSeconds(1);
+
+    @Value("${napcat.websocket.reconnect.max-delay:60s}")
+    private Duration reconnectMaxDelay = Duration.ofSeconds(60);
+
+    @Value("${napcat.websocket.reconnect.jitter:0.5}")
+    private double reconnectJitter = 0.5;
+
+    @Value("${napcat.websocket.outbound-buffer.capacity:500}")
+    private int outboundBufferCapacity = 500;
+
+    @Value("${napcat.websocket.outbound-buffer.max-age:5s}")
+    private Duration outboundBufferMaxAge = Duration.ofSeconds(5);
+
+    @Value("${napcat.websocket.outbound-buffer.overflow:drop-oldest}")
+    private String outboundBufferOverflow = "drop-oldest";
+
+    private OutboundBuffer.OverflowPolicy overflowPolicy = OutboundBuffer.OverflowPolicy.DROP_OLDEST;
+
+    @Value("${napcat.websocket.send.send-time-limit:10s}")
+    private Duration sendTimeLimit = Duration.ofSeconds(10);
+
+    @Value("${napcat.websocket.send.buffer-size-limit:512KB}")
+    private DataSize sendBufferSizeLimit = DataSize.ofKilobytes(512);
+
+    @Value("${napcat.websocket.send.overflow:terminate}")
+    private String sendOverflow = "terminate";
+
+    @Value("${napcat.websocket.send.batching.enabled:false}")
+    private boolean sendBatchingEnabled = false;
+
+    @Value("${napcat.websocket.send.batching.max-frames:32}")
+    private int sendBatchMaxFrames = 32;
+
+    @Value("${napcat.websocket.channels.split:false}")
+    private boolean channelSplit = false;
+
+    @Value("${napcat.websocket.channels.api-pool-size:2}")
+    private int apiPoolSize = 2;
+
+    @Value("${napcat.websocket.owner-cache-ttl:60s}")
+    private Duration ownerCacheTtl = Duration.ofSeconds(60);
+
+    /**
+     * 无群维度API调用的轮询计数
      */
-    private static final int HEARTBEAT_INTERVAL = 30;
+    private final AtomicInteger apiRoundRobin = new AtomicInteger();
 
     /**
-     * 心跳超时阈值(秒)
+     * 重连执行者
      */
-    private static final int HEARTBEAT_TIMEOUT = 90;
+    @FunctionalInterface
+    public interface Reconnector {
+        /**
+         * 重新建立客户端缺失的连接(事件连接及通道分离时的API连接),
+         * 成功后需调用 {@link #registerSession} / {@link #registerApiSession}
+         *
+         * @param sessionInfo 会话信息
+         * @throws Exception 连接失败
+         */
+        void reconnect(SessionInfo sessionInfo) throws Exception;
+    }
 
     /**
-     * 最大重连次数
+     * 缓冲消息丢弃监听
      */
-    private static final int MAX_RECONNECT_ATTEMPTS = 5;
+    @FunctionalInterface
+    public interface DiscardListener {
+        /**
+         * 携带请求ID的消息在断线缓冲中被丢弃(溢出/过期/注销), 确定未发出; 在会话锁外调用
+         *
+         * @param requestId API请求ID
+         */
+        void onDiscarded(String requestId);
+    }
 
     /**
-     * 重连延迟(秒)
+     * API专用连接(通道分离时)
      */
-    private static final int RECONNECT_DELAY = 5;
+    public static final class ApiChannel {
+        private final int index;
+        private volatile WebSocketSession session;
+        private volatile SingleWriterWebSocketSession writer;
+
+        ApiChannel(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public WebSocketSession getSession() {
+            return session;
+        }
+
+        public boolean isConnected() {
+            WebSocketSession current = session;
+            return current != null && current.isOpen();
+        }
+    }
 
     /**
      * 会话信息
@@ -62,18 +244,90 @@ public class WebSocketSessionManager {
     public static class SessionInfo {
         private final Long clientId;
         private final ChatClient client;
-        private WebSocketSession session;
-        private LocalDateTime lastHeartbeat;
-        private int reconnectAttempts;
+        private volatile WebSocketSession session;
+        private volatile LocalDateTime lastHeartbeat;
+        private volatile int reconnectAttempts;
         private volatile boolean shouldReconnect;
+        private final AtomicBoolean reconnectPending = new AtomicBoolean(false);
+
+        /**
+         * 断线期间的出站缓冲(访问时锁定this)
+         */
+        private final OutboundBuffer outbound;
+
+        /**
+         * 当前会话的单写者队列(未连接时为null)
+         */
+        private volatile SingleWriterWebSocketSession writer;
+
+        /**
+         * API专用连接(未分离时为空)
+         */
+        private final ApiChannel[] apiChannels;
+
+        private final LongAdder sendTimeLimitExceeded = new LongAdder();
+        private final LongAdder sendBufferOverflows = new LongAdder();
 
         public SessionInfo(Long clientId, ChatClient client, WebSocketSession session) {
+            this(clientId, client, session,
+                new OutboundBuffer(0, 0, OutboundBuffer.OverflowPolicy.DROP_OLDEST), 0);
+        }
+
+        SessionInfo(Long clientId, ChatClient client, WebSocketSession session, OutboundBuffer outbound,
+                    int apiChannelCount) {
             this.clientId = clientId;
             this.client = client;
             this.session = session;
             this.lastHeartbeat = LocalDateTime.now();
             this.reconnectAttempts = 0;
             this.shouldReconnect = true;
+            this.outbound = outbound;
+            this.apiChannels = new ApiChannel[Math.max(apiChannelCount, 0)];
+            for (int i = 0; i < apiChannels.length; i++) {
+                apiChannels[i] = new ApiChannel(i);
+            }
+        }
+
+        /**
+         * 是否使用独立的API连接
+         */
+        public boolean hasApiChannels() {
+            return apiChannels.length > 0;
+        }
+
+        /**
+         * 未连接的API连接序号
+         */
+        public List<Integer> getMissingApiChannels() {
+            List<Integer> missing = new ArrayList<>();
+            for (ApiChannel channel : apiChannels) {
+                if (!channel.isConnected()) {
+                    missing.add(channel.index);
+                }
+            }
+            return missing;
+        }
+
+        /**
+         * 是否可发送API调用: 通道分离时任一API连接可用, 否则事件/通用连接可用
+         */
+        public boolean canSend() {
+            if (apiChannels.length == 0) {
+                return isConnected();
+            }
+            for (ApiChannel channel : apiChannels) {
+                if (channel.isConnected()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 事件连接与全部API连接均已建立
+         */
+        public boolean isFullyConnected() {
+            return isConnected() && getMissingApiChannels().isEmpty();
         }
 
         public Long getClientId() {
@@ -90,6 +344,33 @@ public class WebSocketSessionManager {
 
         public void setSession(WebSocketSession session) {
             this.session = session;
+            this.writer = null;
+        }
+
+        /**
+         * 单写者队列中待发送的帧数
+         */
+        public int getSendQueueDepth() {
+            SingleWriterWebSocketSession current = writer;
+            int depth = current != null ? current.getQueueDepth() : 0;
+            for (ApiChannel channel : apiChannels) {
+                SingleWriterWebSocketSession apiWriter = channel.writer;
+                depth += apiWriter != null ? apiWriter.getQueueDepth() : 0;
+            }
+            return depth;
+        }
+
+        /**
+         * 单写者队列中待发送的字节数
+         */
+        public int getSendBufferSize() {
+            SingleWriterWebSocketSession current = writer;
+            int size = current != null ? current.getBufferSize() : 0;
+            for (ApiChannel channel : apiChannels) {
+                SingleWriterWebSocketSession apiWriter = channel.writer;
+                size += apiWriter != null ? apiWriter.getBufferSize() : 0;
+            }
+            return size;
         }
 
         public LocalDateTime getLastHeartbeat() {
@@ -126,12 +407,128 @@ public class WebSocketSessionManager {
     }
 
     /**
-     * 构造函数 - 启动心跳检测
+     * 启动心跳检测(只启动一次, 重连不会增加心跳任务)
      */
-    public WebSocketSessionManager() {
+    @PostConstruct
+    public void init() {
+        overflowPolicy = OutboundBuffer.OverflowPolicy.parse(outboundBufferOverflow);
+        storedGroupOwners = newLookupCache(ownerCacheTtl);
+        storedClients = newLookupCache(ownerCacheTtl);
         startHeartbeatMonitor();
     }
 
+    private static <V> Cache<Long, V> newLookupCache(Duration ttl) {
+        return Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(ttl)
+            .build();
+    }
+
+    private SessionInfo newSessionInfo(Long clientId, ChatClient client, int apiChannelCount) {
+        SessionInfo sessionInfo = new SessionInfo(clientId, client, null,
+            new OutboundBuffer(outboundBufferCapacity, outboundBufferMaxAge.toNanos(), overflowPolicy),
+            apiChannelCount);
+        if (meterRegistry != null) {
+            bindMetrics(meterRegistry, sessionInfo);
+        }
+        return sessionInfo;
+    }
+
+    /**
+     * 正向连接的API连接数(未启用通道分离时为0)
+     */
+    private int forwardApiChannels() {
+        return channelSplit ? Math.max(apiPoolSize, 1) : 0;
+    }
+
+    /**
+     * 注册客户端出站指标: 写队列深度/字节数, 断线缓冲条数, 慢消费者次数
+     */
+    private void bindMetrics(MeterRegistry registry, SessionInfo sessionInfo) {
+        String client = String.valueOf(sessionInfo.getClientId());
+        Gauge.builder("napcat_websocket_send_queue_depth", sessionInfo, SessionInfo::getSendQueueDepth)
+            .description("WebSocket单写者队列待发送帧数")
+            .tag("component", "napcat-websocket")
+            .tag("client", client)
+            .register(registry);
+        Gauge.builder("napcat_websocket_send_queue_bytes", sessionInfo, SessionInfo::getSendBufferSize)
+            .description("WebSocket单写者队列待发送字节数")
+            .tag("component", "napcat-websocket")
+            .tag("client", client)
+            .register(registry);
+        Gauge.builder("napcat_websocket_outbound_buffered", sessionInfo, info -> getBufferedCount(info.getClientId()))
+            .description("断线期间缓冲的出站消息数")
+            .tag("component", "napcat-websocket")
+            .tag("client", client)
+            .register(registry);
+        FunctionCounter.builder("napcat_websocket_slow_consumer_total", sessionInfo.sendTimeLimitExceeded, LongAdder::sum)
+            .description("WebSocket慢消费者事件次数")
+            .tag("component", "napcat-websocket")
+            .tag("client", client)
+            .tag("reason", "send_time_limit")
+            .register(registry);
+        FunctionCounter.builder("napcat_websocket_slow_consumer_total", sessionInfo.sendBufferOverflows, LongAdder::sum)
+            .description("WebSocket慢消费者事件次数")
+            .tag("component", "napcat-websocket")
+            .tag("client", client)
+            .tag("reason", "buffer_overflow")
+            .register(registry);
+    }
+
+    /**
+     * 绑定新会话: 旧写队列中未写出的消息先回到断线缓冲, 再为新会话创建单写者队列
+     */
+    private void attach(SessionInfo sessionInfo, WebSocketSession session) {
+        synchronized (sessionInfo) {
+            rebufferPending(sessionInfo, sessionInfo.writer);
+            sessionInfo.setSession(session);
+            if (session != null) {
+                sessionInfo.writer = newWriter(sessionInfo, session);
+            }
+        }
+    }
+
+    /**
+     * 绑定API连接(通道分离时)
+     */
+    private void attachApi(SessionInfo sessionInfo, ApiChannel channel, WebSocketSession session) {
+        synchronized (sessionInfo) {
+            rebufferPending(sessionInfo, channel.writer);
+            channel.session = session;
+            channel.writer = session != null ? newWriter(sessionInfo, session) : null;
+        }
+    }
+
+    private SingleWriterWebSocketSession newWriter(SessionInfo sessionInfo, WebSocketSession session) {
+        return new SingleWriterWebSocketSession(session,
+            (int) Math.min(Integer.MAX_VALUE, sendTimeLimit.toMillis()),
+            (int) Math.min(Integer.MAX_VALUE, sendBufferSizeLimit.toBytes()),
+            "drop".equalsIgnoreCase(sendOverflow) ? OverflowStrategy.DROP : OverflowStrategy.TERMINATE,
+            sendBatchingEnabled ? sendBatchMaxFrames : 0,
+            reason -> (reason == SingleWriterWebSocketSession.SlowConsumerReason.SEND_TIME_LIMIT
+                ? sessionInfo.sendTimeLimitExceeded : sessionInfo.sendBufferOverflows).increment());
+    }
+
+    /**
+     * 将写队列中未写出的消息放回断线缓冲队首(保持顺序), 需持有sessionInfo锁
+     */
+    private void rebufferPending(SessionInfo sessionInfo, SingleWriterWebSocketSession writer) {
+        if (writer == null) {
+            return;
+        }
+        // 沿用最初的入队时间: 过期只检查队首, 重置时间会让后面更早的消息逃过max-age
+        List<SingleWriterWebSocketSession.PendingMessage> pending = writer.drainPendingMessages();
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            SingleWriterWebSocketSession.PendingMessage message = pending.get(i);
+            sessionInfo.outbound.pushBack(
+                new OutboundBuffer.Entry(message.payload(), message.requestId(), message.enqueuedAt()));
+        }
+        if (!pending.isEmpty()) {
+            log.info("Unsent messages returned to outbound buffer: clientId={}, messages={}",
+                sessionInfo.getClientId(), pending.size());
+        }
+    }
+
     /**
      * 注册会话
      *
@@ -140,10 +537,538 @@ public class WebSocketSessionManager {
      * @param session  WebSocket会话
      */
     public void registerSession(Long clientId, ChatClient client, WebSocketSession session) {
-        SessionInfo sessionInfo = new SessionInfo(clientId, client, session);
-        sessions.put(clientId, sessionInfo);
+        SessionInfo sessionInfo = sessions.computeIfAbsent(clientId, id -> newSessionInfo(id, client, forwardApiChannels()));
+        attach(sessionInfo, session);
+        sessionInfo.updateHeartbeat();
+        sessionInfo.resetReconnectAttempts();
         log.info("WebSocket session registered: clientId={}, sessionId={}",
             clientId, session.getId());
+        flush(sessionInfo);
+    }
+
+    /**
+     * 登记客户端(尚未建立连接), 首次连接失败时也能参与重连
+     *
+     * @param clientId 客户端ID
+     * @param client   客户端配置
+     * @return 会话信息
+     */
+    public SessionInfo registerClient(Long clientId, ChatClient client) {
+        return sessions.computeIfAbsent(clientId, id -> newSessionInfo(id, client, forwardApiChannels()));
+    }
+
+    /**
+     * 注册API专用连接(通道分离时)
+     *
+     * @param clientId 客户端ID
+     * @param client   客户端配置
+     * @param index    API连接序号
+     * @param session  WebSocket会话
+     */
+    public void registerApiSession(Long clientId, ChatClient client, int index, WebSocketSession session) {
+        SessionInfo sessionInfo = sessions.computeIfAbsent(clientId, id -> newSessionInfo(id, client, forwardApiChannels()));
+        if (index < 0 || index >= sessionInfo.apiChannels.length) {
+            log.warn("Unexpected API channel, closing: clientId={}, index={}", clientId, index);
+            closeSession(session);
+            return;
+        }
+        attachApi(sessionInfo, sessionInfo.apiChannels[index], session);
+        if (sessionInfo.isFullyConnected()) {
+            sessionInfo.resetReconnectAttempts();
+        }
+        log.info("WebSocket API session registered: clientId={}, channel={}, sessionId={}",
+            clientId, index, session.getId());
+        flush(sessionInfo);
+    }
+
+    /**
+     * 是否启用事件/API通道分离
+     */
+    public boolean isChannelSplit() {
+        return channelSplit;
+    }
+
+    /**
+     * 注册反向WebSocket会话(由NapCat主动连接, 断开后等待对端重连, 不主动重连)
+     *
+     * @param clientId 客户端ID
+     * @param client   客户端配置
+     * @param session  WebSocket会话
+     */
+    public void registerReverseSession(Long clientId, ChatClient client, WebSocketSession session) {
+        // 反向连接由NapCat发起, 使用单一通用连接
+        SessionInfo sessionInfo = sessions.computeIfAbsent(clientId, id -> newSessionInfo(id, client, 0));
+        sessionInfo.setShouldReconnect(false);
+        WebSocketSession previous = sessionInfo.getSession();
+        attach(sessionInfo, session);
+        sessionInfo.updateHeartbeat();
+        sessionInfo.resetReconnectAttempts();
+
+        // 同一账号重复连接时以新连接为准
+        if (previous != null && previous != session) {
+            closeSession(previous);
+        }
+        log.info("Reverse WebSocket session registered: clientId={}, sessionId={}", clientId, session.getId());
+        flush(sessionInfo);
+    }
+
+    /**
+     * 按机器人QQ号查找反向WebSocket客户端(已启用, 协议为reverse_websocket)
+     *
+     * @param selfId 机器人QQ号
+     * @return 客户端配置, 未配置时返回null
+     */
+    public ChatClient findReverseClient(Long selfId) {
+        if (selfId == null) {
+            return null;
+        }
+        ChatClient client = selfIdClients.get(selfId);
+        if (client != null || chatClientMapper == null) {
+            return client;
+        }
+
+        // 未命中时重新加载(新增客户端无需重启)
+        LambdaQueryWrapper<ChatClient> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(ChatClient::getEnabled, true)
+            .eq(ChatClient::getClientType, "qq")
+            .eq(ChatClient::getProtocolType, "reverse_websocket");
+        for (ChatClient candidate : chatClientMapper.selectList(queryWrapper)) {
+            if (candidate.getConnectionConfig() != null && candidate.getConnectionConfig().getSelfId() != null) {
+                selfIdClients.put(candidate.getConnectionConfig().getSelfId(), candidate);
+            }
+        }
+        return selfIdClients.get(selfId);
+    }
+
+    /**
+     * 注册重连执行者
+     *
+     * @param reconnector 重连执行者
+     */
+    public void setReconnector(Reconnector reconnector) {
+        this.reconnector = reconnector;
+    }
+
+    /**
+     * 注册缓冲消息丢弃监听
+     *
+     * @param discardListener 丢弃监听(为null时取消)
+     */
+    public void setDiscardListener(DiscardListener discardListener) {
+        this.discardListener = discardListener;
+    }
+
+    /**
+     * 会话关闭回调, 触发该客户端重连
+     *
+     * @param clientId 客户端ID
+     * @param session  已关闭的会话
+     */
+    public void onSessionClosed(Long clientId, WebSocketSession session) {
+        SessionInfo sessionInfo = sessions.get(clientId);
+        if (sessionInfo == null) {
+            return;
+        }
+        synchronized (sessionInfo) {
+            if (sessionInfo.getSession() == session) {
+                attach(sessionInfo, null);
+            }
+            for (ApiChannel channel : sessionInfo.apiChannels) {
+                if (channel.session == session) {
+                    attachApi(sessionInfo, channel, null);
+                }
+            }
+        }
+        scheduleReconnect(sessionInfo);
+    }
+
+    /**
+     * 连接失败回调, 触发该客户端重连
+     *
+     * @param clientId 客户端ID
+     */
+    public void onConnectFailed(Long clientId) {
+        SessionInfo sessionInfo = sessions.get(clientId);
+        if (sessionInfo != null) {
+            scheduleReconnect(sessionInfo);
+        }
+    }
+
+    /**
+     * 加载需要建立WebSocket连接的QQ客户端(已启用, 协议为websocket或both)
+     *
+     * @return 客户端列表
+     */
+    public List<ChatClient> loadNapCatClients() {
+        if (chatClientMapper == null) {
+            return Collections.emptyList();
+        }
+        LambdaQueryWrapper<ChatClient> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(ChatClient::getEnabled, true)
+            .eq(ChatClient::getClientType, "qq")
+            .in(ChatClient::getProtocolType, "websocket", "both");
+        return chatClientMapper.selectList(queryWrapper);
+    }
+
+    /**
+     * 记录群归属(入站群消息事件所在会话即该群的机器人)
+     *
+     * 归属保持不变, 直到当前归属客户端断开: 多个机器人在同一群时不会随每条事件来回切换
+     *
+     * @param groupId  群ID
+     * @param clientId 客户端ID
+     */
+    public void bindGroup(Long groupId, Long clientId) {
+        if (groupId == null || clientId == null || clientId.equals(groupOwners.get(groupId))) {
+            return;
+        }
+        Long owner = groupOwners.compute(groupId, (id, current) -> {
+            if (current == null || current.equals(clientId)) {
+                return clientId;
+            }
+            SessionInfo currentInfo = sessions.get(current);
+            return currentInfo != null && currentInfo.canSend() ? current : clientId;
+        });
+        if (clientId.equals(owner)) {
+            storedGroupOwners.invalidate(groupId);
+            log.debug("Group bound to client: groupId={}, clientId={}", groupId, clientId);
+        }
+    }
+
+    /**
+     * 群归属在group_chat表中变更后清除缓存(新增、导入群等)
+     *
+     * @param groupId 群ID
+     */
+    public void invalidateGroupOwner(Long groupId) {
+        if (groupId != null) {
+            storedGroupOwners.invalidate(groupId);
+        }
+    }
+
+    /**
+     * 解析群归属的客户端ID
+     *
+     * @param groupId 群ID
+     * @return 客户端ID, 未知时返回null
+     */
+    public Long resolveClientId(Long groupId) {
+        if (groupId == null) {
+            return null;
+        }
+        Long clientId = groupOwners.get(groupId);
+        if (clientId != null || groupChatMapper == null) {
+            return clientId;
+        }
+
+        Optional<Long> stored = storedGroupOwners.getIfPresent(groupId);
+        if (stored != null) {
+            return stored.orElse(null);
+        }
+        try {
+            LambdaQueryWrapper<GroupChat> queryWrapper = new LambdaQueryWrapper<>();
+            queryWrapper.eq(GroupChat::getGroupId, String.valueOf(groupId)).last("LIMIT 1");
+            GroupChat group = groupChatMapper.selectOne(queryWrapper);
+            stored = Optional.ofNullable(group != null ? group.getClientId() : null);
+            storedGroupOwners.put(groupId, stored);
+            return stored.orElse(null);
+        } catch (Exception e) {
+            // 查询失败不缓存, 下次重试
+            log.warn("Failed to resolve group owner: groupId={}", groupId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 获取客户端配置: 已登记会话的客户端直接返回, 否则查chat_client表(结果缓存, 含未命中)
+     *
+     * @param clientId 客户端ID
+     * @return 客户端配置, 不存在时返回null
+     */
+    public ChatClient getClient(Long clientId) {
+        if (clientId == null) {
+            return null;
+        }
+        SessionInfo sessionInfo = sessions.get(clientId);
+        if (sessionInfo != null && sessionInfo.getClient() != null) {
+            return sessionInfo.getClient();
+        }
+        if (chatClientMapper == null) {
+            return null;
+        }
+        Optional<ChatClient> stored = storedClients.getIfPresent(clientId);
+        if (stored != null) {
+            return stored.orElse(null);
+        }
+        try {
+            stored = Optional.ofNullable(chatClientMapper.selectById(clientId));
+            storedClients.put(clientId, stored);
+            return stored.orElse(null);
+        } catch (Exception e) {
+            log.warn("Failed to load client: clientId={}", clientId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 出站请求将由哪个客户端处理(与 {@link #send} 的路由一致)
+     *
+     * @param groupId 群ID(可为null)
+     * @return 客户端ID, 无已登记客户端时返回null
+     */
+    public Long resolveRouteClientId(Long groupId) {
+        SessionInfo target = routeTarget(groupId);
+        return target != null ? target.getClientId() : null;
+    }
+
+    /**
+     * 选择出站会话: 群归属客户端的会话; 归属未知(或无群维度)时使用任一已连接会话
+     *
+     * @param groupId 群ID(可为null)
+     * @return 已连接的会话, 无可用会话时返回null
+     */
+    public WebSocketSession routeSession(Long groupId) {
+        SessionInfo target = routeTarget(groupId);
+        if (target == null || !target.canSend()) {
+            return null;
+        }
+        if (!target.hasApiChannels()) {
+            return target.getSession();
+        }
+        ApiChannel channel = selectApiChannel(target, groupId);
+        return channel != null ? channel.getSession() : null;
+    }
+
+    /**
+     * 选择API连接: 按群ID哈希(同群请求保序), 目标连接断开时顺延到下一条可用连接;
+     * 无群维度时轮询
+     *
+     * @return 可用的API连接, 全部断开时返回null
+     */
+    private ApiChannel selectApiChannel(SessionInfo sessionInfo, Long groupId) {
+        ApiChannel[] channels = sessionInfo.apiChannels;
+        int start = groupId != null
+            ? Math.floorMod(Long.hashCode(groupId), channels.length)
+            : Math.floorMod(apiRoundRobin.getAndIncrement(), channels.length);
+        for (int i = 0; i < channels.length; i++) {
+            ApiChannel channel = channels[(start + i) % channels.length];
+            if (channel.isConnected() && channel.writer != null) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 出站写队列: 通道分离时为选中的API连接, 否则为事件/通用连接
+     */
+    private SingleWriterWebSocketSession selectWriter(SessionInfo sessionInfo, Long groupId) {
+        if (!sessionInfo.hasApiChannels()) {
+            return sessionInfo.writer;
+        }
+        ApiChannel channel = selectApiChannel(sessionInfo, groupId);
+        return channel != null ? channel.writer : null;
+    }
+
+    /**
+     * 选择出站客户端: 群归属客户端(无论是否已连接); 否则优先已连接的默认/任一客户端,
+     * 均未连接时返回默认客户端或任一已登记客户端(供断线缓冲)
+     *
+     * @param groupId 群ID(可为null)
+     * @return 会话信息; 归属客户端尚未登记, 或没有任何已登记客户端时返回null
+     */
+    private SessionInfo routeTarget(Long groupId) {
+        Long owner = resolveClientId(groupId);
+        if (owner != null && !DEFAULT_CLIENT_ID.equals(owner)) {
+            // 已知归属: 归属账号未登记(如仍在连接)时不借用其他账号, 否则回复会以错误的QQ发出
+            return sessions.get(owner);
+        }
+
+        SessionInfo fallback = sessions.get(DEFAULT_CLIENT_ID);
+        if (fallback != null && fallback.canSend()) {
+            return fallback;
+        }
+        SessionInfo registered = fallback;
+        for (SessionInfo sessionInfo : sessions.values()) {
+            if (sessionInfo.canSend()) {
+                return sessionInfo;
+            }
+            if (registered == null) {
+                registered = sessionInfo;
+            }
+        }
+        return registered;
+    }
+
+    /**
+     * 发送出站消息: 已连接时交给该会话的单写者队列(先移入此前缓冲的消息以保持顺序), 断线期间进入缓冲
+     *
+     * @param groupId 群ID(可为null)
+     * @param message 消息内容
+     * @return true 已进入写队列; false 已缓冲, 重连后发送
+     * @throws IllegalStateException    没有可用客户端, 或缓冲已满/已关闭(消息未入队)
+     * @throws RequestNotSentException  写出失败, 且该消息尚未被取出写出, 已撤回
+     * @throws IOException              写出失败, 该消息可能已(部分)写出
+     */
+    public boolean send(Long groupId, String message) throws IOException {
+        return send(groupId, message, null);
+    }
+
+    /**
+     * 发送出站API请求; 缓冲后又被丢弃(溢出/过期/注销)时通过 {@link DiscardListener} 以请求ID通知
+     *
+     * @param groupId   群ID(可为null)
+     * @param message   消息内容
+     * @param requestId API请求ID(可为null)
+     * @return true 已进入写队列; false 已缓冲, 重连后发送
+     * @throws IllegalStateException    没有可用客户端, 或缓冲已满/已关闭(消息未入队)
+     * @throws RequestNotSentException  写出失败, 且该消息尚未被取出写出, 已撤回
+     * @throws IOException              写出失败, 该消息可能已(部分)写出
+     */
+    public boolean send(Long groupId, String message, String requestId) throws IOException {
+        SessionInfo target = routeTarget(groupId);
+        if (target == null) {
+            throw new IllegalStateException("WebSocket not connected: no session for the client owning group " + groupId);
+        }
+
+        SingleWriterWebSocketSession writer;
+        TextMessage frame = new TextMessage(message);
+        boolean queued = false;
+        boolean buffered = false;
+        int bufferedCount;
+        List<String> discarded;
+        synchronized (target) {
+            writer = selectWriter(target, groupId);
+            if (writer != null && writer.isOpen()) {
+                moveBuffered(target, writer);
+                queued = target.outbound.isEmpty() && writer.enqueue(frame, requestId, System.nanoTime());
+            }
+            if (!queued) {
+                buffered = !shuttingDown && target.outbound.offer(message, requestId, System.nanoTime());
+            }
+            bufferedCount = target.outbound.size();
+            discarded = target.outbound.drainDiscardedRequestIds();
+        }
+        notifyDiscarded(target, discarded);
+
+        if (!queued) {
+            if (!buffered) {
+                throw new IllegalStateException("WebSocket not connected and outbound buffer unavailable: clientId="
+                    + target.getClientId());
+            }
+            log.debug("Outbound message buffered: clientId={}, buffered={}", target.getClientId(), bufferedCount);
+            return false;
+        }
+
+        // 写出在锁外进行: 慢连接只阻塞抢到写锁的线程
+        try {
+            drain(target, writer);
+        } catch (IOException | RuntimeException e) {
+            // 本帧仍在队列中时撤回: 确定未发出, 调用方可安全改走其他通道; 否则结果未知
+            if (writer.withdraw(frame)) {
+                throw new RequestNotSentException("WebSocket write failed before the message was sent: clientId="
+                    + target.getClientId(), e);
+            }
+            throw e instanceof IOException io ? io : new IOException("WebSocket write failed", e);
+        }
+        return true;
+    }
+
+    /**
+     * 待发送的缓冲消息数
+     *
+     * @param clientId 客户端ID
+     * @return 缓冲消息数
+     */
+    public int getBufferedCount(Long clientId) {
+        SessionInfo sessionInfo = sessions.get(clientId);
+        if (sessionInfo == null) {
+            return 0;
+        }
+        synchronized (sessionInfo) {
+            return sessionInfo.outbound.size();
+        }
+    }
+
+    /**
+     * 重连后按顺序发送缓冲消息
+     */
+    private void flush(SessionInfo sessionInfo) {
+        SingleWriterWebSocketSession writer;
+        List<String> discarded;
+        synchronized (sessionInfo) {
+            writer = selectWriter(sessionInfo, null);
+            if (writer == null || !writer.isOpen()) {
+                return;
+            }
+            moveBuffered(sessionInfo, writer);
+            discarded = sessionInfo.outbound.drainDiscardedRequestIds();
+        }
+        notifyDiscarded(sessionInfo, discarded);
+        try {
+            drain(sessionInfo, writer);
+        } catch (IOException e) {
+            log.warn("Outbound buffer flush interrupted: clientId={}", sessionInfo.getClientId(), e);
+        }
+    }
+
+    /**
+     * 将断线缓冲按顺序移入写队列, 需持有sessionInfo锁
+     */
+    private void moveBuffered(SessionInfo sessionInfo, SingleWriterWebSocketSession writer) {
+        OutboundBuffer buffer = sessionInfo.outbound;
+        if (buffer.isEmpty()) {
+            return;
+        }
+        int queued = 0;
+        OutboundBuffer.Entry entry;
+        while ((entry = buffer.poll(System.nanoTime())) != null) {
+            if (!writer.enqueue(new TextMessage(entry.message()), entry.requestId(), entry.enqueuedAt())) {
+                buffer.pushBack(entry);
+                break;
+            }
+            queued++;
+        }
+        int expired = buffer.drainExpired();
+        int dropped = buffer.drainDropped();
+        if (queued > 0 || expired > 0 || dropped > 0) {
+            log.info("Outbound buffer flushed: clientId={}, sent={}, expired={}, dropped={}",
+                sessionInfo.getClientId(), queued, expired, dropped);
+        }
+    }
+
+    /**
+     * 通知缓冲中未发出即被丢弃的请求, 需在sessionInfo锁外调用(监听可能同步执行调用方的后续处理)
+     */
+    private void notifyDiscarded(SessionInfo sessionInfo, List<String> requestIds) {
+        DiscardListener listener = discardListener;
+        if (requestIds.isEmpty() || listener == null) {
+            return;
+        }
+        for (String requestId : requestIds) {
+            try {
+                listener.onDiscarded(requestId);
+            } catch (RuntimeException e) {
+                log.warn("Discard listener failed: clientId={}, requestId={}", sessionInfo.getClientId(), requestId, e);
+            }
+        }
+    }
+
+    /**
+     * 写出写队列; 慢消费者(发送超时/缓冲超限)时终止会话, 由关闭回调触发重连
+     */
+    private void drain(SessionInfo sessionInfo, SingleWriterWebSocketSession writer) throws IOException {
+        try {
+            writer.flush();
+        } catch (SessionLimitExceededException e) {
+            log.warn("Slow NapCat WebSocket consumer, closing session: clientId={}, reason={}",
+                sessionInfo.getClientId(), e.getMessage());
+            try {
+                writer.close(e.getStatus());
+            } catch (IOException closeError) {
+                log.debug("Failed to close slow session: clientId={}", sessionInfo.getClientId(), closeError);
+            }
+        }
     }
 
     /**
@@ -155,7 +1080,8 @@ public class WebSocketSessionManager {
         SessionInfo sessionInfo = sessions.remove(clientId);
         if (sessionInfo != null) {
             sessionInfo.setShouldReconnect(false);
-            closeSession(sessionInfo.getSession());
+            discardBuffered(sessionInfo);
+            closeAll(sessionInfo);
             log.info("WebSocket session unregistered: clientId={}", clientId);
         }
     }
@@ -220,16 +1146,19 @@ public class WebSocketSessionManager {
      * 启动心跳监控
      */
     private void startHeartbeatMonitor() {
+        if (!heartbeatStarted.compareAndSet(false, true)) {
+            return;
+        }
+        long intervalMs = heartbeatInterval.toMillis();
         heartbeatScheduler.scheduleAtFixedRate(() -> {
             try {
                 checkHeartbeats();
             } catch (Exception e) {
                 log.error("Heartbeat monitor error", e);
             }
-        }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.SECONDS);
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
 
-        log.info("Heartbeat monitor started: interval={}s, timeout={}s",
-            HEARTBEAT_INTERVAL, HEARTBEAT_TIMEOUT);
+        log.info("Heartbeat monitor started: interval={}, timeout={}", heartbeatInterval, heartbeatTimeout);
     }
 
     /**
@@ -239,58 +1168,123 @@ public class WebSocketSessionManager {
         LocalDateTime now = LocalDateTime.now();
 
         for (SessionInfo sessionInfo : sessions.values()) {
+            // 未连接的会话由重连流程负责, 只清理过期的缓冲消息
+            if (sessionInfo.getSession() == null) {
+                List<String> discarded;
+                synchronized (sessionInfo) {
+                    sessionInfo.outbound.purgeExpired(System.nanoTime());
+                    discarded = sessionInfo.outbound.drainDiscardedRequestIds();
+                }
+                notifyDiscarded(sessionInfo, discarded);
+                continue;
+            }
+
             // 检查心跳超时
             LocalDateTime lastHeartbeat = sessionInfo.getLastHeartbeat();
-            long secondsSinceLastHeartbeat = java.time.Duration.between(lastHeartbeat, now).getSeconds();
+            long secondsSinceLastHeartbeat = Duration.between(lastHeartbeat, now).getSeconds();
 
-            if (secondsSinceLastHeartbeat > HEARTBEAT_TIMEOUT) {
+            if (secondsSinceLastHeartbeat > heartbeatTimeout.getSeconds()) {
                 log.warn("Heartbeat timeout detected: clientId={}, lastHeartbeat={}, elapsed={}s",
                     sessionInfo.getClientId(), lastHeartbeat, secondsSinceLastHeartbeat);
 
-                // 关闭超时会话
-                closeSession(sessionInfo.getSession());
-
-                // 触发自动重连
-                if (sessionInfo.shouldReconnect() &&
-                    sessionInfo.getReconnectAttempts() < MAX_RECONNECT_ATTEMPTS) {
-                    scheduleReconnect(sessionInfo);
-                } else {
-                    log.error("Max reconnect attempts reached: clientId={}, attempts={}",
-                        sessionInfo.getClientId(), sessionInfo.getReconnectAttempts());
-                }
+                // 关闭超时会话并触发自动重连
+                WebSocketSession timedOut = sessionInfo.getSession();
+                attach(sessionInfo, null);
+                closeSession(timedOut);
+                scheduleReconnect(sessionInfo);
             }
         }
     }
 
     /**
-     * 调度重连任务
+     * 调度重连任务(同一客户端同时只有一个待执行的重连, 不设次数上限)
      *
      * @param sessionInfo 会话信息
      */
     private void scheduleReconnect(SessionInfo sessionInfo) {
-        reconnectExecutor.submit(() -> {
-            try {
-                sessionInfo.incrementReconnectAttempts();
+        if (!reconnectEnabled || shuttingDown || !sessionInfo.shouldReconnect() || reconnector == null) {
+            return;
+        }
+        if (!sessionInfo.reconnectPending.compareAndSet(false, true)) {
+            return;
+        }
 
-                log.info("Attempting reconnect: clientId={}, attempt={}/{}",
-                    sessionInfo.getClientId(),
-                    sessionInfo.getReconnectAttempts(),
-                    MAX_RECONNECT_ATTEMPTS);
+        long delayMs = computeReconnectDelayMs(sessionInfo.getReconnectAttempts());
+        log.info("Reconnect scheduled: clientId={}, attempt={}, delay={}ms",
+            sessionInfo.getClientId(), sessionInfo.getReconnectAttempts() + 1, delayMs);
 
-                // 延迟重连
-                Thread.sleep(RECONNECT_DELAY * 1000L);
+        try {
+            heartbeatScheduler.schedule(() -> reconnectExecutor.execute(() -> reconnect(sessionInfo)),
+                delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            sessionInfo.reconnectPending.set(false);
+            log.debug("Reconnect rejected during shutdown: clientId={}", sessionInfo.getClientId());
+        }
+    }
 
-                // 重连逻辑(由外部WebSocketHandler实现)
-                // 这里只是标记需要重连,实际重连由WebSocketHandler处理
-                log.info("Reconnect scheduled: clientId={}", sessionInfo.getClientId());
+    /**
+     * 计算重连延迟: initial × 2^attempts, 上限max-delay, 按jitter比例向下随机抖动
+     *
+     * @param attempts 已失败的重连次数
+     * @return 延迟毫秒数
+     */
+    long computeReconnectDelayMs(int attempts) {
+        long initialMs = Math.max(1L, reconnectInitialDelay.toMillis());
+        long maxMs = Math.max(initialMs, reconnectMaxDelay.toMillis());
+        int exponent = Math.min(Math.max(attempts, 0), Long.numberOfLeadingZeros(initialMs) - 1);
+        long delay = Math.min(maxMs, initialMs << exponent);
+        double jitter = 1.0 - ThreadLocalRandom.current().nextDouble() * Math.min(Math.max(reconnectJitter, 0.0), 1.0);
+        return Math.max(1L, (long) (delay * jitter));
+    }
 
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("Reconnect interrupted: clientId={}", sessionInfo.getClientId(), e);
-            } catch (Exception e) {
-                log.error("Reconnect failed: clientId={}", sessionInfo.getClientId(), e);
-            }
-        });
+    /**
+     * 执行重连
+     *
+     * @param sessionInfo 会话信息
+     */
+    private void reconnect(SessionInfo sessionInfo) {
+        sessionInfo.reconnectPending.set(false);
+        if (!sessionInfo.shouldReconnect() || sessionInfo.isFullyConnected()) {
+            return;
+        }
+
+        sessionInfo.incrementReconnectAttempts();
+        log.info("Attempting reconnect: clientId={}, attempt={}",
+            sessionInfo.getClientId(), sessionInfo.getReconnectAttempts());
+
+        try {
+            reconnector.reconnect(sessionInfo);
+        } catch (Exception e) {
+            log.error("Reconnect failed: clientId={}, attempt={}",
+                sessionInfo.getClientId(), sessionInfo.getReconnectAttempts(), e);
+            scheduleReconnect(sessionInfo);
+        }
+    }
+
+    /**
+     * 丢弃缓冲消息(客户端注销/关闭时)
+     */
+    private void discardBuffered(SessionInfo sessionInfo) {
+        int discarded;
+        List<String> requestIds;
+        synchronized (sessionInfo) {
+            discarded = sessionInfo.outbound.clear();
+            requestIds = sessionInfo.outbound.drainDiscardedRequestIds();
+        }
+        if (discarded > 0) {
+            log.warn("Outbound buffer discarded: clientId={}, messages={}", sessionInfo.getClientId(), discarded);
+        }
+        notifyDiscarded(sessionInfo, requestIds);
+    }
+
+    /**
+     * 关闭客户端的全部连接(事件/通用连接及API连接)
+     */
+    private void closeAll(SessionInfo sessionInfo) {
+        closeSession(sessionInfo.getSession());
+        for (ApiChannel channel : sessionInfo.apiChannels) {
+            closeSession(channel.session);
+        }
     }
 
     /**
@@ -315,11 +1309,13 @@ public class WebSocketSessionManager {
     @PreDestroy
     public void destroy() {
         log.info("Shutting down WebSocketSessionManager...");
+        shuttingDown = true;
 
         // 关闭所有会话
         for (SessionInfo sessionInfo : sessions.values()) {
             sessionInfo.setShouldReconnect(false);
-            closeSession(sessionInfo.getSession());
+            discardBuffered(sessionInfo);
+            closeAll(sessionInfo);
         }
         sessions.clear();
 
@@ -0,0 +1,17 @@
+-- 出站消息重试队列表
+CREATE TABLE IF NOT EXISTS `outbound_retry` (
+    `id` BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT '重试记录唯一标识',
+    `idempotency_key` VARCHAR(128) NOT NULL COMMENT '幂等键(reply:{群号}:{消息ID})',
+    `group_id` BIGINT NOT NULL COMMENT '目标群号(平台ID)',
+    `message_id` VARCHAR(50) DEFAULT NULL COMMENT '触发回复的原始消息ID',
+    `content` TEXT NOT NULL COMMENT '待发送内容',
+    `attempts` INT NOT NULL DEFAULT 0 COMMENT '已尝试次数',
+    `status` ENUM('PENDING', 'IN_FLIGHT', 'SUCCESS', 'DEAD') NOT NULL DEFAULT 'PENDING' COMMENT '重试状态',
+    `next_attempt_at` TIMESTAMP NOT NULL COMMENT '下次尝试时间(IN_FLIGHT时为租约到期时间)',
+    `last_error` VARCHAR(500) DEFAULT NULL COMMENT '最近一次错误信息',
+    `created_at` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    UNIQUE KEY `uk_idempotency_key` (`idempotency_key`),
+    INDEX `idx_status_next_attempt` (`status`, `next_attempt_at`),
+    INDEX `idx_group_status` (`group_id`, `status`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='出站消息重试队列表';
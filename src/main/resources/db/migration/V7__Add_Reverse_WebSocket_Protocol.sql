@@ -0,0 +1,3 @@
+-- 聊天客户端支持反向WebSocket(NapCat主动连接), connection_config.selfId 用于按X-Self-ID匹配客户端
+ALTER TABLE `chat_client`
+    MODIFY COLUMN `protocol_type` ENUM('websocket', 'http', 'both', 'reverse_websocket') NOT NULL DEFAULT 'both' COMMENT '通信协议';
@@ -0,0 +1,3 @@
+-- 消息规则支持结构化CQ码匹配(CQCODE, 模式为JSON条件), 同时补齐已有的STATISTICS类型
+ALTER TABLE `message_rule`
+    MODIFY COLUMN `match_type` ENUM('EXACT', 'CONTAINS', 'REGEX', 'STATISTICS', 'CQCODE') NOT NULL COMMENT '匹配类型';
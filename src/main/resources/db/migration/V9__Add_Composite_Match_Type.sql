@@ -0,0 +1,4 @@
+-- 消息规则支持组合条件(COMPOSITE, 模式为JSON条件树), 条件树较长, 模式列扩展到2000字符
+ALTER TABLE `message_rule`
+    MODIFY COLUMN `match_type` ENUM('EXACT', 'CONTAINS', 'REGEX', 'STATISTICS', 'CQCODE', 'COMPOSITE') NOT NULL COMMENT '匹配类型',
+    MODIFY COLUMN `pattern` VARCHAR(2000) NOT NULL COMMENT '匹配模式';
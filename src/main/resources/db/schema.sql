@@ -39,7 +39,7 @@ CREATE TABLE IF NOT EXISTS chat_client (
     id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '客户端唯一标识',
     client_type VARCHAR(50) NOT NULL COMMENT '客户端类型(qq/wechat/dingtalk)',
     client_name VARCHAR(100) NOT NULL COMMENT '客户端名称',
-    protocol_type ENUM('websocket', 'http', 'both') NOT NULL DEFAULT 'both' COMMENT '通信协议',
+    protocol_type ENUM('websocket', 'http', 'both', 'reverse_websocket') NOT NULL DEFAULT 'both' COMMENT '通信协议',
     connection_config JSON NOT NULL COMMENT '连接配置(host/port/token等)',
     connection_status ENUM('connected', 'disconnected', 'connecting', 'error') NOT NULL DEFAULT 'disconnected' COMMENT '连接状态',
     last_heartbeat_time TIMESTAMP NULL DEFAULT NULL COMMENT '最后心跳时间',
@@ -77,8 +77,8 @@ CREATE TABLE IF NOT EXISTS message_rule (
     id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '规则唯一标识',
     name VARCHAR(100) NOT NULL COMMENT '规则名称',
     description VARCHAR(500) DEFAULT NULL COMMENT '规则描述',
-    match_type ENUM('EXACT', 'CONTAINS', 'REGEX') NOT NULL COMMENT '匹配类型',
-    pattern VARCHAR(500) NOT NULL COMMENT '匹配模式',
+    match_type ENUM('EXACT', 'CONTAINS', 'REGEX', 'STATISTICS', 'CQCODE', 'COMPOSITE') NOT NULL COMMENT '匹配类型',
+    pattern VARCHAR(2000) NOT NULL COMMENT '匹配模式',
     response_template VARCHAR(1000) NOT NULL COMMENT '回复模板',
     priority INT NOT NULL DEFAULT 50 COMMENT '优先级(0-100,值越大优先级越高)',
     enabled BOOLEAN NOT NULL DEFAULT TRUE COMMENT '是否启用',
@@ -144,6 +144,27 @@ PARTITION BY RANGE (UNIX_TIMESTAMP(timestamp)) (
     PARTITION p_future VALUES LESS THAN MAXVALUE
 );
 
+-- ============================================================================
+-- Table: outbound_retry (出站消息重试队列)
+-- Note: idempotency_key 唯一约束保证同一回复只入队一次
+-- ============================================================================
+CREATE TABLE IF NOT EXISTS outbound_retry (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '重试记录唯一标识',
+    idempotency_key VARCHAR(128) NOT NULL COMMENT '幂等键(reply:{群号}:{消息ID})',
+    group_id BIGINT NOT NULL COMMENT '目标群号(平台ID)',
+    message_id VARCHAR(50) DEFAULT NULL COMMENT '触发回复的原始消息ID',
+    content TEXT NOT NULL COMMENT '待发送内容',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '已尝试次数',
+    status ENUM('PENDING', 'IN_FLIGHT', 'SUCCESS', 'DEAD') NOT NULL DEFAULT 'PENDING' COMMENT '重试状态',
+    next_attempt_at TIMESTAMP NOT NULL COMMENT '下次尝试时间(IN_FLIGHT时为租约到期时间)',
+    last_error VARCHAR(500) DEFAULT NULL COMMENT '最近一次错误信息',
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    UNIQUE KEY uk_idempotency_key (idempotency_key),
+    INDEX idx_status_next_attempt (status, next_attempt_at),
+    INDEX idx_group_status (group_id, status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='出站消息重试队列表';
+
 -- ============================================================================
 -- Initial Data: Default Admin User
 -- ============================================================================
@@ -4,6 +4,12 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.specqq.chatbot.parser.CQCode;
 import com.specqq.chatbot.parser.CQCodeParser;
+import com.specqq.chatbot.parser.CQCodeTokenizer;
+import com.specqq.chatbot.parser.CQCodeType;
+import com.specqq.chatbot.parser.CQCodeView;
+import com.specqq.chatbot.parser.CQCodeVisitor;
+import com.specqq.chatbot.parser.CQCodeViews;
+import com.specqq.chatbot.parser.ParsedMessage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -242,4 +248,111 @@ class CQCodeParserTest {
         assertThat(cqCodes).hasSize(50);
         assertThat(elapsedMs).isLessThan(10); // P95 target: <10ms
     }
+
+    @Test
+    @DisplayName("should_DecodeEntities_When_ParamContainsEscapedComma")
+    void should_DecodeEntities_When_ParamContainsEscapedComma() {
+        // Given: OneBot escaped parameters and text
+        String message = "a&amp;b &#91;x&#93;[CQ:image,file=p&#44;1.jpg, url = https://e.com/?a=1&amp;b=2 ]&#44;";
+
+        // When: Parsing in a single pass
+        ParsedMessage parsed = parser.parseMessage(message);
+
+        // Then: Escaped comma stays inside the value, entities decoded, text stripped and decoded
+        assertThat(parsed.cqCodes()).hasSize(1);
+        CQCode image = parsed.cqCodes().get(0);
+        assertThat(image.getParam("file")).isEqualTo("p,1.jpg");
+        assertThat(image.getParam("url")).isEqualTo("https://e.com/?a=1&b=2");
+        assertThat(image.rawText()).isEqualTo("[CQ:image,file=p&#44;1.jpg, url = https://e.com/?a=1&amp;b=2 ]");
+        assertThat(parsed.plainText()).isEqualTo("a&b [x]&#44;");
+        assertThat(parser.stripCQCodes(message)).isEqualTo(parsed.plainText());
+        assertThat(parser.parse(message)).isEqualTo(parsed.cqCodes());
+    }
+
+    @Test
+    @DisplayName("should_TreatAsText_When_CQCodeIncomplete")
+    void should_TreatAsText_When_CQCodeIncomplete() {
+        // Given: Brackets that are not CQ codes
+        String message = "[x][CQ:][CQ:Face][CQ:face,][CQ:at,qq=1]end[CQ:face";
+
+        // When: Parsing in a single pass
+        ParsedMessage parsed = parser.parseMessage(message);
+
+        // Then: Only the well-formed CQ code is extracted
+        assertThat(parsed.cqCodes()).extracting(CQCode::type).containsExactly("at");
+        assertThat(parsed.plainText()).isEqualTo("[x][CQ:][CQ:Face][CQ:face,]end[CQ:face");
+        assertThat(parser.parseMessage("plain text").plainText()).isEqualTo("plain text");
+        assertThat(parser.validate("[CQ:face,]").isValid()).isFalse();
+        assertThat(parser.validate("[CQ:face,id=1]x").isValid()).isFalse();
+    }
+
+    @Test
+    @DisplayName("should_ExposeFlyweightViews_When_ParsingViews")
+    void should_ExposeFlyweightViews_When_ParsingViews() {
+        // Given: A message with repeated and unknown CQ code types
+        String message = "Hi[CQ:face,id=1][CQ:face,id=2]&amp;[CQ:image,file=a&#44;b.jpg][CQ:custom_x]";
+
+        // When: Parsing as views
+        CQCodeViews views = parser.parseViews(message);
+
+        // Then: Types are interned, details materialize on demand and match parse()
+        assertThat(views.size()).isEqualTo(4);
+        assertThat(views.type(0)).isSameAs(views.type(1)).isSameAs("face");
+        assertThat(views.type(3)).isSameAs(parser.parseViews("[CQ:custom_x]").type(0));
+        assertThat(views.codeType(2)).isEqualTo(CQCodeType.IMAGE);
+        assertThat(views.codeType(3)).isEqualTo(CQCodeType.OTHER);
+        assertThat(views.view(2).getParam("file")).isEqualTo("a,b.jpg");
+        assertThat(views.countByType()).containsExactly(
+                java.util.Map.entry("face", 2), java.util.Map.entry("image", 1), java.util.Map.entry("custom_x", 1));
+        assertThat(views.plainText()).isEqualTo(parser.stripCQCodes(message)).isEqualTo("Hi&");
+        assertThat(views.toCQCodes()).isEqualTo(parser.parse(message));
+    }
+
+    @Test
+    @DisplayName("should_StreamSegmentsAndStopEarly_When_Visiting")
+    void should_StreamSegmentsAndStopEarly_When_Visiting() {
+        // Given: A large message built in a StringBuilder (CharSequence source)
+        StringBuilder message = new StringBuilder("head&amp;");
+        for (int i = 0; i < 2000; i++) {
+            message.append("[CQ:face,id=").append(i).append("]t");
+        }
+        message.append("[CQ:at,qq=10001]tail");
+
+        // When: Visiting all segments
+        StringBuilder text = new StringBuilder();
+        int[] codes = new int[1];
+        boolean completed = parser.visit(message, new CQCodeVisitor() {
+            @Override
+            public boolean onText(CharSequence source, int start, int end) {
+                text.append(CQCodeTokenizer.unescape(source, start, end));
+                return true;
+            }
+
+            @Override
+            public boolean onCode(CQCodeView code) {
+                codes[0]++;
+                return true;
+            }
+        });
+
+        // Then: Same content as the materializing API
+        assertThat(completed).isTrue();
+        assertThat(codes[0]).isEqualTo(2001);
+        assertThat(text.toString()).isEqualTo(parser.stripCQCodes(message.toString()));
+
+        // When: Stopping at the first mention of the bot
+        CQCodeView at = parser.findFirst(message, code -> "at".equals(code.type()) && "10001".equals(code.getParam("qq")));
+        CQCodeView firstFace = parser.findFirst(message, code -> code.codeType() == CQCodeType.FACE);
+
+        // Then: Found without visiting the rest
+        assertThat(at.rawText()).isEqualTo("[CQ:at,qq=10001]");
+        assertThat(firstFace.getParam("id")).isEqualTo("0");
+        assertThat(parser.findFirst(message, code -> "image".equals(code.type()))).isNull();
+        assertThat(parser.visit(message, new CQCodeVisitor() {
+            @Override
+            public boolean onCode(CQCodeView code) {
+                return false;
+            }
+        })).isFalse();
+    }
 }
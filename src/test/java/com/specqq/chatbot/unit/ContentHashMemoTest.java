@@ -0,0 +1,63 @@
+package com.specqq.chatbot.unit;
+
+import com.specqq.chatbot.parser.ContentHashMemo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ContentHashMemo单元测试(按消息内容哈希的备忘缓存)
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("内容哈希备忘缓存测试")
+class ContentHashMemoTest {
+
+    @Test
+    @DisplayName("重复消息 - 命中缓存不再计算, 命中率计入指标")
+    void testGet_RepeatedContentHits() {
+        ContentHashMemo<String> memo = new ContentHashMemo<>(1024 * 1024, 100, Duration.ofMinutes(1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        memo.bindMetrics(registry, "test");
+        AtomicInteger computed = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(memo.get("刷屏[CQ:face,id=1]", content -> {
+                computed.incrementAndGet();
+                return content.toUpperCase();
+            })).isEqualTo("刷屏[CQ:FACE,ID=1]");
+        }
+        // 内容不同(即使哈希相同也会校验内容)
+        assertThat(memo.get("other", String::toUpperCase)).isEqualTo("OTHER");
+
+        assertThat(computed.get()).isEqualTo(1);
+        assertThat(memo.estimatedSize()).isEqualTo(2);
+        assertThat(memo.hitRate()).isEqualTo(9.0 / 11);
+        assertThat(registry.get("cache.gets").tag("cache", "test").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(9);
+        assertThat(ContentHashMemo.hash64("abc")).isEqualTo(ContentHashMemo.hash64(new StringBuilder("abc")))
+                .isNotEqualTo(ContentHashMemo.hash64("abd"));
+    }
+
+    @Test
+    @DisplayName("长消息与关闭 - 绕过缓存, 每次计算")
+    void testGet_BypassWhenTooLongOrDisabled() {
+        ContentHashMemo<Integer> memo = new ContentHashMemo<>(1024 * 1024, 4, null);
+        ContentHashMemo<Integer> disabled = new ContentHashMemo<>(0, 4, null);
+        AtomicInteger computed = new AtomicInteger();
+
+        memo.get("longer", content -> computed.incrementAndGet());
+        memo.get("longer", content -> computed.incrementAndGet());
+        disabled.get("ab", content -> computed.incrementAndGet());
+        disabled.get("ab", content -> computed.incrementAndGet());
+
+        assertThat(computed.get()).isEqualTo(4);
+        assertThat(memo.estimatedSize()).isZero();
+        assertThat(disabled.isEnabled()).isFalse();
+    }
+}
@@ -0,0 +1,96 @@
+package com.specqq.chatbot.unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.specqq.chatbot.adapter.NapCatAdapter;
+import com.specqq.chatbot.dto.MessageReceiveDTO;
+import com.specqq.chatbot.engine.StatisticsMatcher;
+import com.specqq.chatbot.parser.CQCodeParser;
+import com.specqq.chatbot.parser.MessageSegments;
+import com.specqq.chatbot.service.MessageStatistics;
+import com.specqq.chatbot.service.MessageStatisticsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MessageSegments单元测试(OneBot数组格式消息)
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("消息段测试")
+class MessageSegmentsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private List<?> array(String json) throws Exception {
+        return objectMapper.readValue(json, List.class);
+    }
+
+    @Test
+    @DisplayName("数组格式 - 解析为消息段并按需生成CQ字符串")
+    void testFromArray_ToCQString() throws Exception {
+        MessageSegments segments = MessageSegments.fromArray(array("""
+            [{"type":"text","data":{"text":"a&b [x], y"}},
+             {"type":"face","data":{"id":123}},
+             {"type":"image","data":{"file":"p,1.jpg"}},
+             {"data":{"text":"missing type"}}]
+            """));
+
+        assertThat(segments.segments()).hasSize(3);
+        assertThat(segments.plainText()).isEqualTo("a&b [x], y");
+        assertThat(segments.toCQString())
+            .isEqualTo("a&amp;b &#91;x&#93;, y[CQ:face,id=123][CQ:image,file=p&#44;1.jpg]");
+        assertThat(segments.toCQString()).isSameAs(segments.toCQString());
+        assertThat(segments.contains("image")).isTrue();
+        assertThat(segments.cqCodes()).extracting(c -> c.getParam("id")).containsExactly("123", null);
+    }
+
+    @Test
+    @DisplayName("统计 - 消息段派生的CQ字符串统计与消息段类型一致")
+    void testStatistics_MatchesStringPath() throws Exception {
+        MessageSegments segments = MessageSegments.fromArray(array("""
+            [{"type":"text","data":{"text":"你好😀"}},
+             {"type":"face","data":{"id":"1"}},
+             {"type":"face","data":{"id":"2"}},
+             {"type":"text","data":{"text":"ok"}},
+             {"type":"at","data":{"qq":"10001"}}]
+            """));
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CQCodeParser parser = new CQCodeParser(Caffeine.newBuilder().maximumSize(10).build(),
+            registry.counter("test.cqcode.parse"), registry.timer("test.cqcode.duration"),
+            registry.counter("test.cqcode.cache.hits"), registry.counter("test.cqcode.cache.misses"),
+            new AtomicInteger());
+        MessageStatisticsService service = new MessageStatisticsService(parser, null);
+        MessageStatistics statistics = service.calculate(segments.toCQString());
+
+        assertThat(statistics.characterCount()).isEqualTo(5);
+        assertThat(statistics.cqCodeCounts()).containsExactlyInAnyOrderEntriesOf(Map.of("face", 2, "at", 1));
+        assertThat(segments.countByType()).isEqualTo(statistics.cqCodeCounts());
+        assertThat(service.calculate(MessageSegments.of(List.of()).toCQString()).characterCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("接收消息 - 仅有消息段时延迟生成messageContent")
+    void testParseMessage_ArrayWithoutRawMessage() {
+        NapCatAdapter adapter = new NapCatAdapter(objectMapper);
+        MessageReceiveDTO dto = adapter.parseMessage("""
+            {"post_type":"message","message_type":"group","message_id":1,"group_id":123456,
+             "user_id":10001,"message":[{"type":"text","data":{"text":"hi "}},{"type":"at","data":{"qq":"10002"}}],
+             "sender":{"nickname":"tester"}}
+            """);
+
+        assertThat(dto).isNotNull();
+        assertThat(dto.getSegments()).isNotNull();
+        assertThat(new StatisticsMatcher().matchesMessage(dto, null)).isTrue();
+        assertThat(dto.getSegments().countByType()).containsEntry("at", 1);
+        assertThat(dto.getMessageContent()).isEqualTo("hi [CQ:at,qq=10002]");
+    }
+}
@@ -293,4 +293,32 @@ class MessageStatisticsServiceTest {
         assertThat(stats.getTotalCQCodeCount()).isEqualTo(50);
         assertThat(elapsedMs).isLessThan(50); // P95 target: <50ms
     }
+
+    @Test
+    @DisplayName("should_MatchTwoPassResult_When_FusedScan")
+    void should_MatchTwoPassResult_When_FusedScan() {
+        // Given: Surrogate pairs split by CQ codes, entities and an unknown type
+        String[] messages = {
+                "😀[CQ:face,id=1]😀&amp;&#91;x&#93;[CQ:custom,a=b][CQ:face,id=2]",
+                "\uD83D[CQ:at,qq=1]\uDE00 tail [CQ:bogus",
+                "[CQ:image,file=a.jpg][CQ:video,file=b.mp4][CQ:record,file=c.amr][CQ:reply,id=1]"
+        };
+
+        for (String message : messages) {
+            // When: Calculating statistics with the fused scan
+            MessageStatistics stats = service.calculate(message);
+
+            // Then: Same as stripping then counting code points and grouping parsed CQ codes
+            String plainText = parser.stripCQCodes(message);
+            assertThat(stats.characterCount()).isEqualTo(plainText.codePointCount(0, plainText.length()));
+            assertThat(stats.cqCodeCounts()).isEqualTo(parser.parse(message).stream()
+                    .collect(java.util.stream.Collectors.groupingBy(
+                            com.specqq.chatbot.parser.CQCode::type,
+                            java.util.stream.Collectors.summingInt(code -> 1))));
+        }
+
+        // Reused buffers do not leak between calls
+        assertThat(service.calculateAndFormat("[CQ:custom]")).isEqualTo("custom: 1个");
+        assertThat(service.calculateAndFormat("ab[CQ:face,id=1]")).isEqualTo("文字: 2字, 表情: 1个");
+    }
 }
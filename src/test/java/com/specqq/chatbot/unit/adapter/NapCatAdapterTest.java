@@ -2,19 +2,32 @@ package com.specqq.chatbot.unit.adapter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.specqq.chatbot.adapter.NapCatAdapter;
+import com.specqq.chatbot.adapter.RequestNotSentException;
+import com.specqq.chatbot.dto.ApiCallResponseDTO;
 import com.specqq.chatbot.dto.MessageReceiveDTO;
 import com.specqq.chatbot.dto.MessageReplyDTO;
+import com.specqq.chatbot.entity.ChatClient;
+import com.specqq.chatbot.websocket.NapCatWebSocketHandler;
+import com.specqq.chatbot.websocket.WebSocketSessionManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.*;
+import org.mockito.ArgumentCaptor;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
 
 /**
  * NapCatAdapter单元测试 (使用MockWebServer)
@@ -41,6 +54,7 @@ class NapCatAdapterTest {
         // 设置adapter的配置
         ReflectionTestUtils.setField(adapter, "napCatHttpUrl", mockWebServer.url("/").toString().replaceAll("/$", ""));
         ReflectionTestUtils.setField(adapter, "accessToken", "test-token");
+        ReflectionTestUtils.setField(adapter, "httpTimeout", 5000);
 
         // 初始化HTTP客户端
         adapter.init();
@@ -324,4 +338,261 @@ class NapCatAdapterTest {
             future.get(3, TimeUnit.SECONDS);
         });
     }
+
+    @Test
+    @DisplayName("超时配置 - 已发出后超时结果未知, 不返回false")
+    void testTimeout_UnknownOutcomePropagated() {
+        ReflectionTestUtils.setField(adapter, "httpTimeout", 300);
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .setBody("{\"status\":\"ok\",\"retcode\":0}")
+            .setHeadersDelay(2, TimeUnit.SECONDS));
+
+        MessageReplyDTO reply = MessageReplyDTO.builder()
+            .groupId("123456")
+            .replyContent("测试")
+            .build();
+
+        java.util.concurrent.ExecutionException ex = assertThrows(java.util.concurrent.ExecutionException.class,
+            () -> adapter.sendReply(reply).get(5, TimeUnit.SECONDS));
+        assertFalse(RequestNotSentException.isNotSent(ex));
+    }
+
+    // ==================== WebSocket降级与对冲测试 ====================
+
+    private NapCatWebSocketHandler connectedWebSocket() {
+        NapCatWebSocketHandler handler = mock(NapCatWebSocketHandler.class);
+        when(handler.isConnected(any())).thenReturn(true);
+        ReflectionTestUtils.setField(adapter, "webSocketHandler", handler);
+        ReflectionTestUtils.setField(adapter, "httpTimeout", 300);
+        return handler;
+    }
+
+    @Test
+    @DisplayName("降级 - WebSocket未发出时非幂等操作降级HTTP")
+    void testFallback_NotSentFallsBackToHttp() throws Exception {
+        NapCatWebSocketHandler handler = connectedWebSocket();
+        doThrow(new IllegalStateException("WebSocket not connected")).when(handler).sendMessage(any(), anyString(), anyString());
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .setBody("{\"status\":\"ok\",\"retcode\":0}"));
+
+        ApiCallResponseDTO response = adapter.sendGroupMessage(123456L, "hello").get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, response.getRetcode());
+        assertEquals(1, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    @DisplayName("降级 - 缓冲中被丢弃的请求视为未发出, 非幂等操作降级HTTP")
+    void testFallback_BufferedRequestDiscardedFallsBackToHttp() throws Exception {
+        NapCatWebSocketHandler handler = connectedWebSocket();
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .setBody("{\"status\":\"ok\",\"retcode\":0}"));
+
+        CompletableFuture<ApiCallResponseDTO> future = adapter.sendGroupMessage(123456L, "hello");
+        ArgumentCaptor<String> requestId = ArgumentCaptor.forClass(String.class);
+        verify(handler).sendMessage(any(), anyString(), requestId.capture());
+        adapter.handleWebSocketRequestDiscarded(requestId.getValue());
+
+        assertEquals(0, future.get(5, TimeUnit.SECONDS).getRetcode());
+        assertEquals(1, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    @DisplayName("降级 - WebSocket超时后非幂等操作不重复发送")
+    void testFallback_TimeoutSkipsHttpForNonIdempotent() {
+        connectedWebSocket();
+
+        CompletableFuture<ApiCallResponseDTO> future = adapter.sendGroupMessage(123456L, "hello");
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(java.util.concurrent.TimeoutException.class, ex.getCause());
+        assertEquals(0, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    @DisplayName("降级 - WebSocket写出中失败时非幂等操作不重复发送")
+    void testFallback_WriteFailureSkipsHttpForNonIdempotent() throws Exception {
+        NapCatWebSocketHandler handler = connectedWebSocket();
+        doThrow(new IOException("Broken pipe")).when(handler).sendMessage(any(), anyString(), anyString());
+
+        CompletableFuture<ApiCallResponseDTO> future = adapter.sendGroupMessage(123456L, "hello");
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertFalse(RequestNotSentException.isNotSent(ex));
+        assertEquals(0, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    @DisplayName("降级 - WebSocket超时后幂等操作降级HTTP")
+    void testFallback_TimeoutFallsBackForIdempotent() throws Exception {
+        connectedWebSocket();
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .setBody("{\"status\":\"ok\",\"retcode\":0,\"data\":{\"group_id\":123456}}"));
+
+        ApiCallResponseDTO response = adapter.getGroupInfo(123456L).get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, response.getRetcode());
+        assertEquals(1, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    @DisplayName("对冲 - WebSocket慢响应时HTTP先返回")
+    void testHedging_HttpWinsWhenWebSocketSlow() throws Exception {
+        connectedWebSocket();
+        ReflectionTestUtils.setField(adapter, "httpTimeout", 5000);
+        ReflectionTestUtils.setField(adapter, "hedgingEnabled", true);
+        ReflectionTestUtils.setField(adapter, "hedgingInitialDelayMs", 50L);
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .setBody("{\"status\":\"ok\",\"retcode\":0}"));
+
+        long start = System.currentTimeMillis();
+        ApiCallResponseDTO response = adapter.getLoginInfo().get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, response.getRetcode());
+        assertTrue(System.currentTimeMillis() - start < 2000);
+
+        // 胜出计数在结果完成后更新, 稍作等待
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!Long.valueOf(1L).equals(adapter.getApiMetrics().get("hedgeWins"))
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Map<String, Object> metrics = adapter.getApiMetrics();
+        assertEquals(1L, metrics.get("hedgedCalls"));
+        assertEquals(1L, metrics.get("hedgeWins"));
+    }
+
+    @Test
+    @DisplayName("对冲 - 非幂等操作不对冲")
+    void testHedging_NotAppliedToNonIdempotent() throws Exception {
+        NapCatWebSocketHandler handler = connectedWebSocket();
+        ReflectionTestUtils.setField(adapter, "httpTimeout", 5000);
+        ReflectionTestUtils.setField(adapter, "hedgingEnabled", true);
+        ReflectionTestUtils.setField(adapter, "hedgingInitialDelayMs", 20L);
+        doAnswer(invocation -> {
+            String json = invocation.getArgument(1);
+            String id = new ObjectMapper().readTree(json).get("id").asText();
+            CompletableFuture.runAsync(() -> adapter.handleWebSocketResponse(id, new ApiCallResponseDTO(0, "ok", 1L)),
+                CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+            return null;
+        }).when(handler).sendMessage(eq(123456L), anyString(), anyString());
+
+        ApiCallResponseDTO response = adapter.sendGroupMessage(123456L, "hello").get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, response.getRetcode());
+        assertEquals(0, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    @DisplayName("连接池 - 按配置构建并导出连接池指标")
+    void testConnectionPool_MetricsExported() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        adapter.destroy();
+        ReflectionTestUtils.setField(adapter, "meterRegistry", registry);
+        ReflectionTestUtils.setField(adapter, "httpTimeout", 5000);
+        ReflectionTestUtils.setField(adapter, "httpPoolMaxTotal", 8);
+        adapter.init();
+
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .setBody("{\"status\":\"ok\",\"retcode\":0,\"data\":{\"message_id\":1}}"));
+        adapter.sendGroupMessage(123456L, "hello").get(5, TimeUnit.SECONDS);
+
+        assertEquals(8.0, registry.get("napcat_http_pool_max_connections").gauge().value());
+        assertEquals(0.0, registry.get("napcat_http_pool_pending_requests").gauge().value());
+        assertNotNull(registry.get("napcat_http_pool_connections").tag("state", "leased").gauge());
+        // 请求完成后连接归还连接池(保活)
+        long deadline = System.currentTimeMillis() + 1000;
+        while (registry.get("napcat_http_pool_connections").tag("state", "available").gauge().value() < 1
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1.0, registry.get("napcat_http_pool_connections").tag("state", "available").gauge().value());
+    }
+
+    private WebSocketSessionManager ownedBy(long groupId, long clientId, Integer httpPort) {
+        ChatClient.ConnectionConfig config = new ChatClient.ConnectionConfig();
+        config.setHost("127.0.0.1");
+        config.setHttpPort(httpPort);
+        config.setAccessToken("bot-token");
+        ChatClient client = new ChatClient();
+        client.setId(clientId);
+        client.setConnectionConfig(config);
+
+        ReflectionTestUtils.setField(adapter, "httpTimeout", 5000);
+        WebSocketSessionManager sessionManager = mock(WebSocketSessionManager.class);
+        when(sessionManager.resolveClientId(groupId)).thenReturn(clientId);
+        when(sessionManager.getClient(clientId)).thenReturn(client);
+        return sessionManager;
+    }
+
+    @Test
+    @DisplayName("多账号 - HTTP请求发往群归属客户端自己的地址和令牌")
+    void testHttp_RoutedToOwningClient() throws Exception {
+        MockWebServer botServer = new MockWebServer();
+        botServer.start();
+        try {
+            ReflectionTestUtils.setField(adapter, "sessionManager", ownedBy(100L, 5L, botServer.getPort()));
+            botServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody("{\"status\":\"ok\",\"retcode\":0,\"data\":{\"message_id\":1}}"));
+
+            ApiCallResponseDTO response = adapter.sendGroupMessage(100L, "hello").get(5, TimeUnit.SECONDS);
+
+            assertEquals(0, response.getRetcode());
+            RecordedRequest request = botServer.takeRequest(1, TimeUnit.SECONDS);
+            assertNotNull(request);
+            assertEquals("/send_group_msg", request.getPath());
+            assertEquals("Bearer bot-token", request.getHeader("Authorization"));
+            assertEquals(0, mockWebServer.getRequestCount());
+        } finally {
+            botServer.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("多账号 - 群归属客户端无HTTP地址时失败, 不使用全局地址")
+    void testHttp_OwnerWithoutEndpointFails() {
+        ReflectionTestUtils.setField(adapter, "sessionManager", ownedBy(100L, 5L, null));
+
+        CompletableFuture<ApiCallResponseDTO> future = adapter.sendGroupMessage(100L, "hello");
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause().getMessage().contains("No HTTP endpoint"));
+        assertEquals(0, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    @DisplayName("多账号 - 降级HTTP的地址在调用线程解析, 不在超时线程查库")
+    void testFallback_EndpointResolvedOnCallerThread() throws Exception {
+        MockWebServer botServer = new MockWebServer();
+        botServer.start();
+        try {
+            WebSocketSessionManager sessionManager = ownedBy(100L, 5L, botServer.getPort());
+            Set<Thread> lookupThreads = ConcurrentHashMap.newKeySet();
+            when(sessionManager.resolveClientId(100L)).thenAnswer(invocation -> {
+                lookupThreads.add(Thread.currentThread());
+                return 5L;
+            });
+            ReflectionTestUtils.setField(adapter, "sessionManager", sessionManager);
+            connectedWebSocket();
+            botServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody("{\"status\":\"ok\",\"retcode\":0,\"data\":{\"group_id\":100}}"));
+
+            // WebSocket超时后由超时线程降级HTTP
+            ApiCallResponseDTO response = adapter.getGroupInfo(100L).get(5, TimeUnit.SECONDS);
+
+            assertEquals(0, response.getRetcode());
+            assertEquals(1, botServer.getRequestCount());
+            assertEquals(Set.of(Thread.currentThread()), lookupThreads);
+        } finally {
+            botServer.shutdown();
+        }
+    }
 }
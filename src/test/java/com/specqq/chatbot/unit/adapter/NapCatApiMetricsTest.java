@@ -0,0 +1,78 @@
+package com.specqq.chatbot.unit.adapter;
+
+import com.specqq.chatbot.adapter.NapCatApiMetrics;
+import com.specqq.chatbot.adapter.NapCatApiMetrics.Outcome;
+import com.specqq.chatbot.adapter.NapCatApiMetrics.Transport;
+import com.specqq.chatbot.dto.ApiCallResponseDTO;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NapCatApiMetrics单元测试
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("NapCat API指标测试")
+class NapCatApiMetricsTest {
+
+    @Test
+    @DisplayName("结果判定 - 响应码与异常类型")
+    void testOutcomeOf() {
+        assertEquals(Outcome.SUCCESS, Outcome.of(new ApiCallResponseDTO(0, "ok", 1L), null));
+        assertEquals(Outcome.ERROR, Outcome.of(new ApiCallResponseDTO(100, "failed", 1L), null));
+        assertEquals(Outcome.TIMEOUT, Outcome.of(null, new CompletionException(new TimeoutException())));
+        assertEquals(Outcome.CANCELLED, Outcome.of(null, new CancellationException()));
+        assertEquals(Outcome.FAILURE, Outcome.of(null, new IllegalStateException("closed")));
+    }
+
+    @Test
+    @DisplayName("耗时直方图 - 按action/transport/outcome分别计时")
+    void testRecord_TimerPerTags() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        NapCatApiMetrics metrics = new NapCatApiMetrics(0);
+        metrics.bindTo(registry);
+
+        metrics.record("send_group_msg", Transport.WEBSOCKET, Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.record("send_group_msg", Transport.WEBSOCKET, Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(40));
+        metrics.record("get_group_info", Transport.HTTP, Outcome.TIMEOUT, TimeUnit.MILLISECONDS.toNanos(10_000));
+
+        Timer sent = registry.get("napcat_api_call_duration_seconds")
+            .tags("action", "send_group_msg", "transport", "websocket", "outcome", "success")
+            .timer();
+        assertEquals(2, sent.count());
+        assertEquals(60.0, sent.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get("napcat_api_call_duration_seconds")
+            .tags("action", "get_group_info", "transport", "http", "outcome", "timeout")
+            .timer().count());
+    }
+
+    @Test
+    @DisplayName("汇总 - 成功率/超时率与平均耗时")
+    void testSummary() {
+        NapCatApiMetrics metrics = new NapCatApiMetrics(0);
+        metrics.record("send_group_msg", Transport.HTTP, Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(100));
+        metrics.record("send_group_msg", Transport.HTTP, Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(100));
+        metrics.record("send_group_msg", Transport.HTTP, Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(100));
+        metrics.record("send_group_msg", Transport.HTTP, Outcome.TIMEOUT, TimeUnit.MILLISECONDS.toNanos(100));
+
+        Map<String, Object> summary = metrics.summary();
+
+        assertEquals(4L, summary.get("totalCalls"));
+        assertEquals(3L, summary.get("successfulCalls"));
+        assertEquals(1L, summary.get("failedCalls"));
+        assertEquals(75.0, (double) summary.get("successRate"), 0.001);
+        assertEquals(25.0, (double) summary.get("timeoutRate"), 0.001);
+        assertEquals(100L, summary.get("averageExecutionTime"));
+        assertFalse(metrics.shouldLog());
+    }
+}
@@ -0,0 +1,189 @@
+package com.specqq.chatbot.unit.adapter;
+
+import com.specqq.chatbot.adapter.NapCatMetadataCache;
+import com.specqq.chatbot.dto.ApiCallResponseDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NapCatMetadataCache单元测试
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("NapCat元数据缓存测试")
+class NapCatMetadataCacheTest {
+
+    private final Map<String, AtomicInteger> loadCounts = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<ApiCallResponseDTO>> nextResponses = new ConcurrentHashMap<>();
+    private NapCatMetadataCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new NapCatMetadataCache(
+            Map.of(
+                NapCatMetadataCache.GET_GROUP_INFO, Duration.ofMinutes(5),
+                NapCatMetadataCache.GET_GROUP_MEMBER_INFO, Duration.ofMinutes(2),
+                NapCatMetadataCache.GET_GROUP_LIST, Duration.ofMinutes(5)),
+            0.8, 1000,
+            (action, key) -> {
+                loadCounts.computeIfAbsent(action, a -> new AtomicInteger()).incrementAndGet();
+                CompletableFuture<ApiCallResponseDTO> next = nextResponses.remove(action);
+                return next != null ? next : CompletableFuture.completedFuture(new ApiCallResponseDTO(0, "ok", 1L));
+            });
+    }
+
+    private int loads(String action) {
+        AtomicInteger count = loadCounts.get(action);
+        return count != null ? count.get() : 0;
+    }
+
+    private ApiCallResponseDTO get(String action, NapCatMetadataCache.Key key) throws Exception {
+        return cache.get(action, key, () -> CompletableFuture.failedFuture(new AssertionError("direct call")))
+            .get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("单飞 - 并发请求合并为一次调用")
+    void testSingleFlight() throws Exception {
+        CompletableFuture<ApiCallResponseDTO> pending = new CompletableFuture<>();
+        nextResponses.put(NapCatMetadataCache.GET_GROUP_INFO, pending);
+        NapCatMetadataCache.Key key = NapCatMetadataCache.Key.group(123456L);
+
+        CompletableFuture<ApiCallResponseDTO> first = cache.get(NapCatMetadataCache.GET_GROUP_INFO, key, null);
+        CompletableFuture<ApiCallResponseDTO> second = cache.get(NapCatMetadataCache.GET_GROUP_INFO, key, null);
+        pending.complete(new ApiCallResponseDTO(0, "ok", 1L));
+
+        assertSame(first.get(1, TimeUnit.SECONDS), second.get(1, TimeUnit.SECONDS));
+        assertEquals(1, loads(NapCatMetadataCache.GET_GROUP_INFO));
+
+        // 命中缓存
+        get(NapCatMetadataCache.GET_GROUP_INFO, key);
+        assertEquals(1, loads(NapCatMetadataCache.GET_GROUP_INFO));
+    }
+
+    @Test
+    @DisplayName("失败响应 - retcode非0原样返回但不缓存")
+    void testFailedResponseNotCached() throws Exception {
+        nextResponses.put(NapCatMetadataCache.GET_GROUP_INFO,
+            CompletableFuture.completedFuture(new ApiCallResponseDTO(100, "failed", 1L)));
+        NapCatMetadataCache.Key key = NapCatMetadataCache.Key.group(1L);
+
+        assertEquals(100, get(NapCatMetadataCache.GET_GROUP_INFO, key).getRetcode());
+        assertEquals(0, get(NapCatMetadataCache.GET_GROUP_INFO, key).getRetcode());
+        assertEquals(2, loads(NapCatMetadataCache.GET_GROUP_INFO));
+    }
+
+    @Test
+    @DisplayName("未配置TTL的action - 直接调用")
+    void testUncachedActionGoesDirect() throws Exception {
+        ApiCallResponseDTO direct = new ApiCallResponseDTO(0, "direct", 1L);
+
+        ApiCallResponseDTO response = cache.get(NapCatMetadataCache.GET_LOGIN_INFO, NapCatMetadataCache.Key.GLOBAL,
+            () -> CompletableFuture.completedFuture(direct)).get(1, TimeUnit.SECONDS);
+
+        assertSame(direct, response);
+        assertEquals(0, loads(NapCatMetadataCache.GET_LOGIN_INFO));
+    }
+
+    @Test
+    @DisplayName("通知失效 - 成员增加失效群信息与成员信息")
+    void testNoticeInvalidation_GroupIncrease() throws Exception {
+        NapCatMetadataCache.Key groupKey = NapCatMetadataCache.Key.group(123456L);
+        NapCatMetadataCache.Key memberKey = new NapCatMetadataCache.Key(123456L, 10001L);
+        get(NapCatMetadataCache.GET_GROUP_INFO, groupKey);
+        get(NapCatMetadataCache.GET_GROUP_MEMBER_INFO, memberKey);
+        get(NapCatMetadataCache.GET_GROUP_LIST, NapCatMetadataCache.Key.GLOBAL);
+
+        cache.onNotice(Map.of(
+            "post_type", "notice",
+            "notice_type", "group_increase",
+            "group_id", 123456L,
+            "user_id", 10001L,
+            "self_id", 99999L));
+
+        get(NapCatMetadataCache.GET_GROUP_INFO, groupKey);
+        get(NapCatMetadataCache.GET_GROUP_MEMBER_INFO, memberKey);
+        get(NapCatMetadataCache.GET_GROUP_LIST, NapCatMetadataCache.Key.GLOBAL);
+        assertEquals(2, loads(NapCatMetadataCache.GET_GROUP_INFO));
+        assertEquals(2, loads(NapCatMetadataCache.GET_GROUP_MEMBER_INFO));
+        // 非机器人自身进群, 群列表不受影响
+        assertEquals(1, loads(NapCatMetadataCache.GET_GROUP_LIST));
+    }
+
+    @Test
+    @DisplayName("通知失效 - 群名变更失效群信息与群列表")
+    void testNoticeInvalidation_GroupName() throws Exception {
+        NapCatMetadataCache.Key groupKey = NapCatMetadataCache.Key.group(123456L);
+        get(NapCatMetadataCache.GET_GROUP_INFO, groupKey);
+        get(NapCatMetadataCache.GET_GROUP_LIST, NapCatMetadataCache.Key.GLOBAL);
+
+        cache.onNotice(Map.of(
+            "post_type", "notice",
+            "notice_type", "notify",
+            "sub_type", "group_name",
+            "group_id", "123456"));
+
+        get(NapCatMetadataCache.GET_GROUP_INFO, groupKey);
+        get(NapCatMetadataCache.GET_GROUP_LIST, NapCatMetadataCache.Key.GLOBAL);
+        assertEquals(2, loads(NapCatMetadataCache.GET_GROUP_INFO));
+        assertEquals(2, loads(NapCatMetadataCache.GET_GROUP_LIST));
+    }
+
+    @Test
+    @DisplayName("多账号 - 按客户端分别缓存, 群维度失效覆盖所有客户端")
+    void testClientScopedKeys() throws Exception {
+        get(NapCatMetadataCache.GET_GROUP_LIST, NapCatMetadataCache.Key.global(1L));
+        get(NapCatMetadataCache.GET_GROUP_LIST, NapCatMetadataCache.Key.global(2L));
+        get(NapCatMetadataCache.GET_GROUP_LIST, NapCatMetadataCache.Key.global(1L));
+        assertEquals(2, loads(NapCatMetadataCache.GET_GROUP_LIST));
+
+        NapCatMetadataCache.Key botA = NapCatMetadataCache.Key.group(1L, 123456L);
+        NapCatMetadataCache.Key botB = NapCatMetadataCache.Key.group(2L, 123456L);
+        get(NapCatMetadataCache.GET_GROUP_INFO, botA);
+        get(NapCatMetadataCache.GET_GROUP_INFO, botB);
+        assertEquals(2, loads(NapCatMetadataCache.GET_GROUP_INFO));
+
+        // 机器人A收到的群名变更同样使机器人B缓存的群信息失效
+        cache.onNotice(Map.of(
+            "post_type", "notice",
+            "notice_type", "group_name",
+            "group_id", 123456L,
+            "self_id", 10001L));
+
+        get(NapCatMetadataCache.GET_GROUP_INFO, botA);
+        get(NapCatMetadataCache.GET_GROUP_INFO, botB);
+        assertEquals(4, loads(NapCatMetadataCache.GET_GROUP_INFO));
+    }
+
+    @Test
+    @DisplayName("通知失效 - 只失效事件涉及的成员, 其他成员与群不受影响")
+    void testNoticeInvalidation_OnlyAffectedKeys() throws Exception {
+        NapCatMetadataCache.Key member = new NapCatMetadataCache.Key(2L, 123456L, 10001L);
+        NapCatMetadataCache.Key otherMember = new NapCatMetadataCache.Key(2L, 123456L, 10002L);
+        NapCatMetadataCache.Key otherGroup = new NapCatMetadataCache.Key(2L, 654321L, 10001L);
+        get(NapCatMetadataCache.GET_GROUP_MEMBER_INFO, member);
+        get(NapCatMetadataCache.GET_GROUP_MEMBER_INFO, otherMember);
+        get(NapCatMetadataCache.GET_GROUP_MEMBER_INFO, otherGroup);
+
+        cache.onNotice(Map.of(
+            "post_type", "notice",
+            "notice_type", "group_card",
+            "group_id", 123456L,
+            "user_id", 10001L));
+
+        get(NapCatMetadataCache.GET_GROUP_MEMBER_INFO, member);
+        get(NapCatMetadataCache.GET_GROUP_MEMBER_INFO, otherMember);
+        get(NapCatMetadataCache.GET_GROUP_MEMBER_INFO, otherGroup);
+        assertEquals(4, loads(NapCatMetadataCache.GET_GROUP_MEMBER_INFO));
+    }
+}
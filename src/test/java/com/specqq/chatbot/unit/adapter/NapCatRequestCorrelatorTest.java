@@ -0,0 +1,132 @@
+package com.specqq.chatbot.unit.adapter;
+
+import com.specqq.chatbot.adapter.NapCatRequestCorrelator;
+import com.specqq.chatbot.dto.ApiCallResponseDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NapCatRequestCorrelator单元测试
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("NapCat请求关联器测试")
+class NapCatRequestCorrelatorTest {
+
+    private NapCatRequestCorrelator correlator;
+
+    @BeforeEach
+    void setUp() {
+        correlator = new NapCatRequestCorrelator(5, 64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        correlator.close();
+    }
+
+    @Test
+    @DisplayName("请求ID - 单调递增且从1开始")
+    void testNextId_Monotonic() {
+        long first = correlator.nextId();
+        long second = correlator.nextId();
+
+        assertEquals(1L, first);
+        assertEquals(2L, second);
+    }
+
+    @Test
+    @DisplayName("响应关联 - 字符串ID完成挂起请求")
+    void testComplete_ByStringId() throws Exception {
+        long id = correlator.nextId();
+        CompletableFuture<ApiCallResponseDTO> future = correlator.register(id, "get_login_info", 5000);
+        assertEquals(1, correlator.inFlight());
+
+        ApiCallResponseDTO response = new ApiCallResponseDTO(0, "ok", 3L);
+        assertTrue(correlator.complete(String.valueOf(id), response));
+
+        assertSame(response, future.get(1, TimeUnit.SECONDS));
+        assertEquals(0, correlator.inFlight());
+        assertFalse(correlator.complete(String.valueOf(id), response));
+        assertFalse(correlator.complete("not-a-number", response));
+    }
+
+    @Test
+    @DisplayName("超时 - 共享时间轮触发TimeoutException并按action计数")
+    void testTimeout_CountedByAction() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        correlator.bindMetrics(registry);
+
+        CompletableFuture<ApiCallResponseDTO> future =
+            correlator.register(correlator.nextId(), "get_group_info", 50);
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, ex.getCause());
+        assertEquals(0, correlator.inFlight());
+        assertEquals(1L, correlator.timeoutsByAction().get("get_group_info"));
+        assertEquals(1.0, registry.get("napcat_api_timeouts_total")
+            .tag("action", "get_group_info").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("超时 - 超过一圈的超时不会提前触发")
+    void testTimeout_MultipleRounds() throws Exception {
+        // 64槽 × 5ms = 320ms 一圈
+        CompletableFuture<ApiCallResponseDTO> future =
+            correlator.register(correlator.nextId(), "get_group_list", 800);
+
+        Thread.sleep(400);
+        assertFalse(future.isDone());
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, ex.getCause());
+    }
+
+    @Test
+    @DisplayName("挂起表 - 大量请求扩容与乱序完成")
+    void testPendingTable_ResizeAndRemove() {
+        List<Long> ids = new ArrayList<>();
+        List<CompletableFuture<ApiCallResponseDTO>> futures = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            long id = correlator.nextId();
+            ids.add(id);
+            futures.add(correlator.register(id, "send_group_msg", 10_000));
+        }
+        assertEquals(5000, correlator.inFlight());
+
+        // 先完成奇数位, 再完成偶数位, 覆盖删除后移
+        for (int i = 1; i < ids.size(); i += 2) {
+            assertTrue(correlator.complete(ids.get(i), new ApiCallResponseDTO()));
+        }
+        for (int i = 0; i < ids.size(); i += 2) {
+            assertTrue(correlator.complete(ids.get(i), new ApiCallResponseDTO()));
+        }
+
+        assertEquals(0, correlator.inFlight());
+        assertTrue(futures.stream().allMatch(f -> f.isDone() && !f.isCompletedExceptionally()));
+    }
+
+    @Test
+    @DisplayName("关闭 - 挂起请求以异常完成")
+    void testClose_FailsPending() {
+        CompletableFuture<ApiCallResponseDTO> future =
+            correlator.register(correlator.nextId(), "delete_msg", 10_000);
+
+        correlator.close();
+
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(0, correlator.inFlight());
+    }
+}
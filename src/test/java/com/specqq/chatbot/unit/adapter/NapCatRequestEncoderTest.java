@@ -0,0 +1,95 @@
+package com.specqq.chatbot.unit.adapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.specqq.chatbot.adapter.NapCatRequestEncoder;
+import com.specqq.chatbot.dto.ApiCallRequestDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NapCatRequestEncoder单元测试(与ObjectMapper输出逐字节比对)
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("NapCat出站请求编码器测试")
+class NapCatRequestEncoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String expected(long id, String action, Map<String, Object> params) throws Exception {
+        return objectMapper.writeValueAsString(new ApiCallRequestDTO(String.valueOf(id), action, params));
+    }
+
+    private Map<String, Object> groupMessage(Object groupId, String message) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("group_id", groupId);
+        params.put("message", message);
+        return params;
+    }
+
+    @Test
+    @DisplayName("热点action - 输出与ObjectMapper逐字节一致")
+    void testEncode_ByteIdentical() throws Exception {
+        List<String> messages = List.of(
+            "hello",
+            "",
+            "引号\"反斜杠\\斜杠/",
+            "换行\n回车\r制表\t退格\b换页\f",
+            "控制字符\u0000\u0001\u001f\u007f",
+            "[CQ:at,qq=123456] 你好 [CQ:face,id=178]",
+            "emoji 😀 and lone surrogate \ud83d",
+            "<script>alert('x')</script> &   ");
+
+        long id = 1;
+        for (String message : messages) {
+            for (String action : List.of("send_group_msg", "send_group_msg_async")) {
+                Map<String, Object> params = groupMessage(123456789L, message);
+                String json = NapCatRequestEncoder.encode(id, action, params);
+                assertEquals(expected(id, action, params), json);
+                assertArrayEquals(expected(id, action, params).getBytes(StandardCharsets.UTF_8),
+                    json.getBytes(StandardCharsets.UTF_8));
+                id++;
+            }
+        }
+
+        Map<String, Object> delete = new HashMap<>();
+        delete.put("message_id", 987654321L);
+        assertEquals(expected(42, "delete_msg", delete), NapCatRequestEncoder.encode(42, "delete_msg", delete));
+    }
+
+    @Test
+    @DisplayName("随机字符串 - 输出与ObjectMapper一致")
+    void testEncode_RandomStrings() throws Exception {
+        Random random = new Random(20260101L);
+        for (int i = 0; i < 500; i++) {
+            char[] chars = new char[random.nextInt(64)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) (random.nextBoolean() ? random.nextInt(0x80) : random.nextInt(0x10000));
+            }
+            Map<String, Object> params = groupMessage(random.nextInt(Integer.MAX_VALUE), new String(chars));
+            assertEquals(expected(i, "send_group_msg", params), NapCatRequestEncoder.encode(i, "send_group_msg", params));
+        }
+    }
+
+    @Test
+    @DisplayName("回退 - 非热点action或不支持的参数类型返回null")
+    void testEncode_Unsupported() {
+        assertNull(NapCatRequestEncoder.encode(1, "get_group_info", Map.of("group_id", 1L)));
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("group_id", 1L);
+        params.put("message", List.of(Map.of("type", "text")));
+        assertNull(NapCatRequestEncoder.encode(2, "send_group_msg", params));
+
+        // 回退后缓冲区可继续使用
+        assertNotNull(NapCatRequestEncoder.encode(3, "send_group_msg", groupMessage(1L, "ok")));
+    }
+}
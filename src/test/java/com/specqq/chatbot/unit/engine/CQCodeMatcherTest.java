@@ -0,0 +1,91 @@
+package com.specqq.chatbot.unit.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.specqq.chatbot.dto.MessageReceiveDTO;
+import com.specqq.chatbot.engine.CQCodeMatcher;
+import com.specqq.chatbot.parser.CQCodeParser;
+import com.specqq.chatbot.parser.MessageSegments;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CQCodeMatcher单元测试(结构化CQ码匹配)
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("结构化CQ码匹配器测试")
+class CQCodeMatcherTest {
+
+    private CQCodeMatcher cqCodeMatcher;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CQCodeParser parser = new CQCodeParser(Caffeine.newBuilder().maximumSize(10).build(),
+            registry.counter("test.cqcode.parse"), registry.timer("test.cqcode.duration"),
+            registry.counter("test.cqcode.cache.hits"), registry.counter("test.cqcode.cache.misses"),
+            new AtomicInteger());
+        cqCodeMatcher = new CQCodeMatcher(parser, new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("参数等值 - 不会跨CQ码误匹配")
+    void testParamEquals_NoCrossCodeFalsePositive() {
+        String pattern = "{\"type\":\"at\",\"params\":{\"qq\":\"123\"}}";
+
+        assertTrue(cqCodeMatcher.matches("hi [CQ:at,qq=123] there", pattern));
+        assertFalse(cqCodeMatcher.matches("[CQ:at,qq=1234]", pattern));
+        // 生成的正则 \[CQ:at,.*qq=123.*\] 会匹配这条消息(qq=123出现在后面的图片CQ码中)
+        assertFalse(cqCodeMatcher.matches("[CQ:at,qq=999] [CQ:image,file=qq=123.jpg]", pattern));
+    }
+
+    @Test
+    @DisplayName("参数包含与个数阈值")
+    void testContainsAndCountThreshold() {
+        String faces = "{\"type\":\"face\",\"min\":2,\"max\":3}";
+        assertFalse(cqCodeMatcher.matches("[CQ:face,id=1]", faces));
+        assertTrue(cqCodeMatcher.matches("[CQ:face,id=1][CQ:face,id=2]", faces));
+        assertFalse(cqCodeMatcher.matches("[CQ:face,id=1][CQ:face,id=2][CQ:face,id=3][CQ:face,id=4]", faces));
+
+        String gif = "{\"type\":\"image\",\"contains\":{\"file\":\".gif\"}}";
+        assertTrue(cqCodeMatcher.matches("[CQ:image,file=a.gif,url=x]", gif));
+        assertFalse(cqCodeMatcher.matches("[CQ:image,file=a.jpg]", gif));
+        assertTrue(cqCodeMatcher.matches("[CQ:record,file=a.amr]", "{}"));
+        assertFalse(cqCodeMatcher.matches("plain", "{}"));
+    }
+
+    @Test
+    @DisplayName("消息段 - 基于共享的CQ码列表匹配, 不生成CQ字符串")
+    void testMatchesMessage_SharedSegments() {
+        MessageReceiveDTO message = MessageReceiveDTO.builder()
+            .segments(MessageSegments.fromArray(List.of(
+                Map.of("type", "text", "data", Map.of("text", "hi")),
+                Map.of("type", "at", "data", Map.of("qq", 10001)))))
+            .build();
+
+        assertTrue(cqCodeMatcher.matchesMessage(message, "{\"type\":\"at\",\"params\":{\"qq\":\"10001\"}}"));
+        assertFalse(cqCodeMatcher.matchesMessage(message, "{\"type\":\"face\"}"));
+        assertSame(message.getCqCodes(), cqCodeMatcher.cqCodes(message));
+        assertEquals(1, message.getCqCodes().size());
+    }
+
+    @Test
+    @DisplayName("无效模式 - 校验失败且匹配返回false")
+    void testInvalidPattern() {
+        assertFalse(cqCodeMatcher.isValid("[CQ:at"));
+        assertFalse(cqCodeMatcher.isValid("{\"min\":3,\"max\":1}"));
+        assertFalse(cqCodeMatcher.isValid("{\"params\":\"qq\"}"));
+        assertTrue(cqCodeMatcher.isValid("{\"type\":\"at\"}"));
+        assertFalse(cqCodeMatcher.matches("[CQ:at,qq=1]", "not json"));
+        assertEquals("CQCODE", cqCodeMatcher.getType());
+    }
+}
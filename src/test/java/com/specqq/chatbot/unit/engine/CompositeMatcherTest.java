@@ -0,0 +1,106 @@
+package com.specqq.chatbot.unit.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.specqq.chatbot.engine.CQCodeMatcher;
+import com.specqq.chatbot.engine.CompositeMatcher;
+import com.specqq.chatbot.engine.ContainsMatcher;
+import com.specqq.chatbot.engine.ExactMatcher;
+import com.specqq.chatbot.engine.RegexMatcher;
+import com.specqq.chatbot.parser.CQCodeParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * CompositeMatcher单元测试(AND/OR/NOT组合规则)
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("组合规则匹配器测试")
+class CompositeMatcherTest {
+
+    private RegexMatcher regexMatcher;
+    private CompositeMatcher compositeMatcher;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CQCodeParser parser = new CQCodeParser(Caffeine.newBuilder().maximumSize(10).build(),
+            registry.counter("test.cqcode.parse"), registry.timer("test.cqcode.duration"),
+            registry.counter("test.cqcode.cache.hits"), registry.counter("test.cqcode.cache.misses"),
+            new AtomicInteger());
+        ObjectMapper objectMapper = new ObjectMapper();
+        regexMatcher = spy(new RegexMatcher(Caffeine.newBuilder().maximumSize(100).build()));
+        compositeMatcher = new CompositeMatcher(new ExactMatcher(), new ContainsMatcher(), regexMatcher,
+            new CQCodeMatcher(parser, objectMapper), objectMapper);
+    }
+
+    @Test
+    @DisplayName("AND/OR/NOT语义")
+    void testBooleanSemantics() {
+        String pattern = """
+            {"op":"AND","children":[
+              {"match":"CONTAINS","pattern":"签到"},
+              {"op":"OR","children":[
+                {"match":"CQ","pattern":{"type":"at"}},
+                {"match":"REGEX","pattern":"^/"}
+              ]},
+              {"op":"NOT","children":[{"match":"CONTAINS","pattern":"取消"}]}
+            ]}""";
+
+        assertTrue(compositeMatcher.matches("[CQ:at,qq=1] 签到", pattern));
+        assertTrue(compositeMatcher.matches("/签到", pattern));
+        assertFalse(compositeMatcher.matches("签到", pattern));
+        assertFalse(compositeMatcher.matches("/取消签到", pattern));
+        assertFalse(compositeMatcher.matches("[CQ:at,qq=1] 你好", pattern));
+    }
+
+    @Test
+    @DisplayName("短路求值 - 廉价条件不满足时不执行正则")
+    void testShortCircuit_SkipsRegex() {
+        // 正则写在前面, 编译时按估算代价排到最后
+        String pattern = "{\"op\":\"AND\",\"children\":["
+            + "{\"match\":\"REGEX\",\"pattern\":\"(a+)+b\"},"
+            + "{\"match\":\"CONTAINS\",\"pattern\":\"签到\"}]}";
+        assertEquals("AND(CONTAINS, REGEX)", compositeMatcher.compile(pattern).describe());
+        clearInvocations(regexMatcher);
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(compositeMatcher.matches("hello " + i, pattern));
+        }
+        verify(regexMatcher, never()).matches(anyString(), anyString());
+
+        assertTrue(compositeMatcher.matches("签到 aab", pattern));
+        verify(regexMatcher).matches("签到 aab", "(a+)+b");
+    }
+
+    @Test
+    @DisplayName("无效条件树")
+    void testInvalidPatterns() {
+        assertFalse(compositeMatcher.isValid(null));
+        assertFalse(compositeMatcher.isValid("not json"));
+        assertFalse(compositeMatcher.isValid("{\"op\":\"XOR\",\"children\":[{\"match\":\"EXACT\",\"pattern\":\"a\"}]}"));
+        assertFalse(compositeMatcher.isValid("{\"op\":\"AND\",\"children\":[]}"));
+        assertFalse(compositeMatcher.isValid("{\"op\":\"NOT\",\"children\":["
+            + "{\"match\":\"EXACT\",\"pattern\":\"a\"},{\"match\":\"EXACT\",\"pattern\":\"b\"}]}"));
+        assertFalse(compositeMatcher.isValid("{\"match\":\"REGEX\",\"pattern\":\"[\"}"));
+        assertFalse(compositeMatcher.isValid("{\"match\":\"CONTAINS\"}"));
+        assertFalse(compositeMatcher.matches("anything", "not json"));
+
+        StringBuilder deep = new StringBuilder("{\"match\":\"EXACT\",\"pattern\":\"a\"}");
+        for (int i = 0; i < 10; i++) {
+            deep.insert(0, "{\"op\":\"NOT\",\"children\":[").append("]}");
+        }
+        assertFalse(compositeMatcher.isValid(deep.toString()));
+
+        assertTrue(compositeMatcher.isValid("{\"match\":\"exact\",\"pattern\":\"a\"}"));
+    }
+}
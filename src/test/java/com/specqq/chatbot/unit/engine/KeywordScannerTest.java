@@ -0,0 +1,89 @@
+package com.specqq.chatbot.unit.engine;
+
+import com.specqq.chatbot.engine.ContainsMatcher;
+import com.specqq.chatbot.engine.KeywordScanner;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * KeywordScanner单元测试(不区分大小写的关键词扫描)
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("关键词扫描测试")
+class KeywordScannerTest {
+
+    @Test
+    @DisplayName("候选位置 - 大小写首字符交替出现")
+    void testIndexOfIgnoreCase() {
+        assertEquals(6, KeywordScanner.indexOfIgnoreCase("hello World", "wOrLd", 0));
+        assertEquals(4, KeywordScanner.indexOfIgnoreCase("aAaAab", "AB", 0));
+        assertEquals(-1, KeywordScanner.indexOfIgnoreCase("abc", "abcd", 0));
+        assertEquals(-1, KeywordScanner.indexOfIgnoreCase("ab ab", "ab", 4));
+        assertEquals(2, KeywordScanner.indexOfIgnoreCase("[CQ:face,id=1]签到Ok", "Q:FACE", 0));
+        assertEquals(14, KeywordScanner.indexOfIgnoreCase("[CQ:face,id=1]签到Ok", "签到ok", 0));
+        assertEquals(3, KeywordScanner.indexOfIgnoreCase("abc", "", 3));
+    }
+
+    @Test
+    @DisplayName("可折叠关键词 - ASCII与无大小写字符")
+    void testIsFoldable() {
+        assertTrue(KeywordScanner.isFoldable("Hello, 世界 😊"));
+        assertFalse(KeywordScanner.isFoldable("Straße"));
+        assertFalse(KeywordScanner.isFoldable("ΟΔΟΣ"));
+        assertFalse(KeywordScanner.isFoldable("\u212A"));
+        assertFalse(KeywordScanner.isFoldable("\uD801\uDC00"));
+    }
+
+    @Test
+    @DisplayName("消息含非ASCII大小写字母 - 回退小写副本, 结果一致")
+    void testNonAsciiCaseMappingMatchesLowerCasePath() {
+        ContainsMatcher fast = new ContainsMatcher();
+        ContainsMatcher copy = new ContainsMatcher();
+        ReflectionTestUtils.setField(fast, "fastScan", true);
+
+        // U+212A KELVIN SIGN 小写为 k; U+0130 小写为 i + U+0307; U+10400 小写为 U+10428
+        String[][] cases = {
+            {"\u212Aey", "key"},
+            {"\u0130stanbul", "i\u0307stanbul"},
+            {"\u0130", "i"},
+            {"\uD801\uDC00", "\uD801\uDC28"},
+            {"签到\u212A", "签到k"},
+        };
+        for (String[] c : cases) {
+            assertEquals(copy.matches(c[0], c[1]), fast.matches(c[0], c[1]),
+                () -> "message=" + c[0] + ", keyword=" + c[1]);
+        }
+        assertTrue(fast.matches("\u212Aey", "key"));
+    }
+
+    @Test
+    @DisplayName("与小写副本比较结果一致(随机消息)")
+    void testMatchesLowerCasePath() {
+        ContainsMatcher fast = new ContainsMatcher();
+        ContainsMatcher copy = new ContainsMatcher();
+        ReflectionTestUtils.setField(fast, "fastScan", true);
+
+        String alphabet = "aAbB[]签到:Ok😊 \u212A\u0130i\u0307";
+        Random random = new Random(42);
+        for (int n = 0; n < 5000; n++) {
+            String message = randomString(random, alphabet, random.nextInt(40));
+            String keyword = randomString(random, alphabet, 1 + random.nextInt(4));
+            assertEquals(copy.matches(message, keyword), fast.matches(message, keyword),
+                () -> "message=" + message + ", keyword=" + keyword);
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
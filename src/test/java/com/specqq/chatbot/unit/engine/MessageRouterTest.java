@@ -1,6 +1,7 @@
 package com.specqq.chatbot.unit.engine;
 
 import com.specqq.chatbot.adapter.ClientAdapter;
+import com.specqq.chatbot.adapter.RequestNotSentException;
 import com.specqq.chatbot.dto.MessageReceiveDTO;
 import com.specqq.chatbot.dto.MessageReplyDTO;
 import com.specqq.chatbot.engine.MessageRouter;
@@ -11,6 +12,7 @@ import com.specqq.chatbot.entity.MessageLog;
 import com.specqq.chatbot.entity.MessageRule;
 import com.specqq.chatbot.service.GroupService;
 import com.specqq.chatbot.service.MessageLogService;
+import com.specqq.chatbot.service.OutboundRetryService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -19,6 +21,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -28,6 +31,9 @@ import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -347,4 +353,42 @@ class MessageRouterTest {
             eq(1L), anyString(), anyInt(), eq(MessageLog.SendStatus.SUCCESS), isNull()
         );
     }
+
+    // ==================== 失败重试测试 ====================
+
+    private OutboundRetryService sendFailsWith(Throwable error) throws Exception {
+        OutboundRetryService outboundRetryService = mock(OutboundRetryService.class);
+        ReflectionTestUtils.setField(messageRouter, "outboundRetryService", outboundRetryService);
+        when(rateLimiter.tryAcquire("user001")).thenReturn(true);
+        when(ruleEngine.matchRules(testMessage)).thenReturn(Optional.of(testRule));
+        when(groupService.getGroupByGroupId("123456")).thenReturn(testGroup);
+        when(clientAdapter.sendReply(any())).thenReturn(CompletableFuture.failedFuture(error));
+        when(messageLogService.createLog(any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+            .thenReturn(new MessageLog());
+        when(messageLogService.saveAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertNotNull(messageRouter.routeMessage(testMessage).get(5, TimeUnit.SECONDS));
+        return outboundRetryService;
+    }
+
+    @Test
+    @DisplayName("发送失败 - 超时等结果未知的失败不重试(可能已送达)")
+    void testSendFailed_TimeoutNotRetried() throws Exception {
+        OutboundRetryService outboundRetryService =
+            sendFailsWith(new java.util.concurrent.TimeoutException("NapCat API call timeout"));
+
+        verify(messageLogService, timeout(1000)).createLog(
+            any(), any(), any(), any(), any(), any(), any(), anyInt(),
+            eq(MessageLog.SendStatus.FAILED), contains("未重试"));
+        verify(outboundRetryService, never()).enqueue(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("发送失败 - 确定未发出时加入重试队列")
+    void testSendFailed_NotSentRetried() throws Exception {
+        OutboundRetryService outboundRetryService =
+            sendFailsWith(new RequestNotSentException("connection refused", null));
+
+        verify(outboundRetryService, timeout(1000)).enqueue(eq(123456L), eq("msg123"), anyString());
+    }
 }
@@ -1,5 +1,6 @@
 package com.specqq.chatbot.unit.engine;
 
+import com.specqq.chatbot.adapter.NapCatAdapter;
 import com.specqq.chatbot.dto.MessageReceiveDTO;
 import com.specqq.chatbot.engine.*;
 import com.specqq.chatbot.entity.GroupChat;
@@ -53,6 +54,15 @@ class RuleEngineTest {
     @Mock
     private StatisticsMatcher statisticsMatcher;
 
+    @Mock
+    private CQCodeMatcher cqCodeMatcher;
+
+    @Mock
+    private CompositeMatcher compositeMatcher;
+
+    @Mock
+    private NapCatAdapter napCatAdapter;
+
     @InjectMocks
     private RuleEngine ruleEngine;
 
@@ -331,7 +341,8 @@ class RuleEngineTest {
     void testException_UnknownMatchType() {
         // 创建一个规则，但不初始化匹配器映射
         RuleEngine engineWithoutInit = new RuleEngine(
-            ruleService, groupService, exactMatcher, containsMatcher, regexMatcher, statisticsMatcher
+            ruleService, groupService, exactMatcher, containsMatcher, regexMatcher, statisticsMatcher,
+            cqCodeMatcher, compositeMatcher, napCatAdapter
         );
         // 不调用init()
 
@@ -354,7 +365,6 @@ class RuleEngineTest {
 
         when(groupService.getGroupByGroupId("123456")).thenReturn(testGroup);
         when(ruleService.getRulesByGroupId(1L)).thenReturn(rules);
-        when(exactMatcher.matches(null, "help")).thenReturn(false);
 
         Optional<MessageRule> result = ruleEngine.matchRules(testMessage);
 
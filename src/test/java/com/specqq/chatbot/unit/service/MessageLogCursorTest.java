@@ -0,0 +1,118 @@
+package com.specqq.chatbot.unit.service;
+
+import com.specqq.chatbot.dto.CursorPage;
+import com.specqq.chatbot.dto.LogCursor;
+import com.specqq.chatbot.entity.MessageLog;
+import com.specqq.chatbot.mapper.MessageLogMapper;
+import com.specqq.chatbot.service.MessageLogService;
+import com.specqq.chatbot.service.MessageLogWriter;
+import com.specqq.chatbot.service.OutboundRetryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * 消息日志游标分页测试
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("消息日志游标分页测试")
+class MessageLogCursorTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 3, 1, 12, 0, 0, 123_000_000);
+
+    private MessageLogMapper messageLogMapper;
+    private MessageLogService messageLogService;
+
+    @BeforeEach
+    void setUp() {
+        messageLogMapper = mock(MessageLogMapper.class);
+        messageLogService = new MessageLogService(messageLogMapper, mock(OutboundRetryService.class),
+            mock(MessageLogWriter.class));
+    }
+
+    private static List<MessageLog> rows(long fromId, int count) {
+        List<MessageLog> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MessageLog log = new MessageLog();
+            log.setId(fromId - i);
+            log.setTimestamp(BASE.minusSeconds(i / 2));
+            rows.add(log);
+        }
+        return rows;
+    }
+
+    @Test
+    @DisplayName("游标编码往返, 无效游标抛出IllegalArgumentException")
+    void testCursorRoundTrip() {
+        LogCursor cursor = new LogCursor(BASE, 42L);
+        assertEquals(cursor, LogCursor.decode(cursor.encode()));
+        assertFalse(cursor.encode().contains("="));
+
+        assertThrows(IllegalArgumentException.class, () -> LogCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> LogCursor.decode("YWJj"));
+    }
+
+    @Test
+    @DisplayName("多取一条判断下一页, 游标指向本页最后一条, 默认不计数")
+    void testNextCursorFromLastRecord() {
+        when(messageLogMapper.selectByCursor(eq(1L), isNull(), isNull(), isNull(), isNull(), isNull(),
+            isNull(), isNull(), isNull(), eq(21))).thenReturn(rows(100, 21));
+
+        CursorPage<MessageLog> page = messageLogService.listLogsByCursor(null, 20, 1L, " ", null, null,
+            null, null, "", CursorPage.CountMode.NONE);
+
+        assertEquals(20, page.getRecords().size());
+        assertTrue(page.isHasMore());
+        assertNull(page.getTotal());
+        LogCursor next = LogCursor.decode(page.getNextCursor());
+        assertEquals(81L, next.id());
+        assertEquals(page.getRecords().get(19).getTimestamp(), next.timestamp());
+        verify(messageLogMapper, never()).countLogs(any(), any(), any(), any(), any(), any(), any(), any());
+
+        // 下一页以游标的 (timestamp, id) 为起点
+        when(messageLogMapper.selectByCursor(eq(1L), isNull(), isNull(), isNull(), isNull(), isNull(),
+            isNull(), eq(next.timestamp()), eq(81L), eq(21))).thenReturn(rows(80, 5));
+
+        CursorPage<MessageLog> last = messageLogService.listLogsByCursor(page.getNextCursor(), 20, 1L, null,
+            null, null, null, null, null, CursorPage.CountMode.NONE);
+
+        assertEquals(5, last.getRecords().size());
+        assertFalse(last.isHasMore());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("CAPPED计数达到上限时标记为截断, EXACT不设上限")
+    void testCountModes() {
+        when(messageLogMapper.selectByCursor(any(), any(), any(), any(), any(), any(), any(), any(), any(), anyInt()))
+            .thenReturn(rows(10, 3));
+        when(messageLogMapper.countLogs(any(), any(), any(), any(), any(), any(), any(), eq(10000)))
+            .thenReturn(10000L);
+        when(messageLogMapper.countLogs(any(), any(), any(), any(), any(), any(), any(), isNull()))
+            .thenReturn(123456L);
+
+        CursorPage<MessageLog> capped = messageLogService.listLogsByCursor(null, 500, null, null, null,
+            "success", null, null, null, CursorPage.CountMode.CAPPED);
+        assertEquals(10000L, capped.getTotal());
+        assertTrue(capped.isTotalCapped());
+        verify(messageLogMapper).selectByCursor(isNull(), isNull(), isNull(), eq(MessageLog.SendStatus.SUCCESS),
+            isNull(), isNull(), isNull(), isNull(), isNull(), eq(201));
+
+        CursorPage<MessageLog> exact = messageLogService.listLogsByCursor(null, 20, null, null, null,
+            null, null, null, null, CursorPage.CountMode.EXACT);
+        assertEquals(123456L, exact.getTotal());
+        assertFalse(exact.isTotalCapped());
+    }
+}
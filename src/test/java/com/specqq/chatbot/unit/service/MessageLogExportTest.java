@@ -0,0 +1,159 @@
+package com.specqq.chatbot.unit.service;
+
+import com.specqq.chatbot.entity.MessageLog;
+import com.specqq.chatbot.mapper.MessageLogMapper;
+import com.specqq.chatbot.service.MessageLogService;
+import com.specqq.chatbot.service.MessageLogWriter;
+import com.specqq.chatbot.service.OutboundRetryService;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.mybatis.spring.MyBatisSystemException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * 消息日志CSV流式导出测试
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("消息日志流式导出测试")
+class MessageLogExportTest {
+
+    private static final int ROWS = 25_000;
+
+    private MessageLogMapper messageLogMapper;
+    private MessageLogService messageLogService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        messageLogMapper = mock(MessageLogMapper.class);
+        messageLogService = new MessageLogService(messageLogMapper, mock(OutboundRetryService.class),
+            mock(MessageLogWriter.class));
+
+        doAnswer(invocation -> {
+            ResultHandler<MessageLog> handler = invocation.getArgument(6);
+            DefaultResultContext<MessageLog> context = new DefaultResultContext<>();
+            for (long i = 1; i <= ROWS && !context.isStopped(); i++) {
+                context.nextResultObject(row(i));
+                handler.handleResult(context);
+            }
+            return null;
+        }).when(messageLogMapper).streamForExport(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    private static MessageLog row(long id) {
+        MessageLog log = new MessageLog();
+        log.setId(id);
+        log.setMessageId("m" + id);
+        log.setGroupId(1L);
+        log.setUserId("u1");
+        log.setUserNickname(id == 1 ? "昵称\"带引号\"" : "用户");
+        log.setMessageContent(id == 1 ? "a,b\nc" : "hello");
+        log.setSendStatus(MessageLog.SendStatus.SUCCESS);
+        log.setTimestamp(LocalDateTime.of(2026, 1, 1, 8, 30, 0));
+        return log;
+    }
+
+    @Test
+    @DisplayName("超过10000行不截断, 格式与转义保持不变")
+    void testExport_NoRowCap() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = messageLogService.exportLogsToCSV(1L, null, null, "success", null, null, out, false);
+
+        assertEquals(ROWS, rows);
+        verify(messageLogMapper).streamForExport(eq(1L), isNull(), isNull(), eq(MessageLog.SendStatus.SUCCESS),
+            isNull(), isNull(), any());
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.startsWith("\ufeffID,消息ID,"));
+        assertTrue(csv.contains("\n1,\"m1\",1,\"u1\",\"昵称\"\"带引号\"\"\",\"a,b\nc\",,\"\",0,SUCCESS,\"\",\"2026-01-01 08:30:00\"\n"));
+        assertTrue(csv.endsWith("\n25000,\"m25000\",1,\"u1\",\"用户\",\"hello\",,\"\",0,SUCCESS,\"\",\"2026-01-01 08:30:00\"\n"));
+    }
+
+    @Test
+    @DisplayName("gzip压缩输出")
+    void testExport_Gzip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        messageLogService.exportLogsToCSV(null, null, null, null, null, null, out, true);
+
+        byte[] plain;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            plain = in.readAllBytes();
+        }
+        assertTrue(out.size() < plain.length / 10);
+        String csv = new String(plain, StandardCharsets.UTF_8);
+        assertTrue(csv.startsWith("\ufeffID,消息ID,"));
+        assertTrue(csv.endsWith("\n25000,\"m25000\",1,\"u1\",\"用户\",\"hello\",,\"\",0,SUCCESS,\"\",\"2026-01-01 08:30:00\"\n"));
+    }
+
+    private static OutputStream brokenAfter(int okWrites, int[] writes) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (++writes[0] > okWrites) {
+                    throw new IOException("Broken pipe");
+                }
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("客户端断开 - 停止读取结果集并抛出IOException")
+    void testExport_ClientAbort_StopsCursor() {
+        int[] writes = new int[1];
+        OutputStream broken = brokenAfter(2, writes);
+
+        assertThrows(IOException.class,
+            () -> messageLogService.exportLogsToCSV(null, null, null, null, null, null, broken, false));
+        assertTrue(writes[0] <= 4);
+    }
+
+    @Test
+    @DisplayName("客户端断开 - MyBatis包装处理器异常时仍识别为IOException")
+    @SuppressWarnings("unchecked")
+    void testExport_ClientAbort_MyBatisWrapping() {
+        // 与MyBatis一致: ResultHandler抛出的运行时异常被包装为PersistenceException/MyBatisSystemException
+        doAnswer(invocation -> {
+            ResultHandler<MessageLog> handler = invocation.getArgument(6);
+            DefaultResultContext<MessageLog> context = new DefaultResultContext<>();
+            try {
+                for (long i = 1; i <= ROWS && !context.isStopped(); i++) {
+                    context.nextResultObject(row(i));
+                    handler.handleResult(context);
+                }
+            } catch (RuntimeException e) {
+                throw new MyBatisSystemException(new PersistenceException(e));
+            }
+            return null;
+        }).when(messageLogMapper).streamForExport(any(), any(), any(), any(), any(), any(), any());
+        int[] writes = new int[1];
+
+        IOException e = assertThrows(IOException.class, () -> messageLogService.exportLogsToCSV(
+            null, null, null, null, null, null, brokenAfter(2, writes), false));
+        assertEquals("Broken pipe", e.getMessage());
+        assertTrue(writes[0] <= 4);
+    }
+}
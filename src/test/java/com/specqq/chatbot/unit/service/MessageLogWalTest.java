@@ -0,0 +1,136 @@
+package com.specqq.chatbot.unit.service;
+
+import com.specqq.chatbot.entity.MessageLog;
+import com.specqq.chatbot.service.MessageLogWal;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MessageLogWal单元测试(分段追加、检查点与崩溃恢复)
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("消息日志WAL测试")
+class MessageLogWalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    private static MessageLog log(int i) {
+        MessageLog log = new MessageLog();
+        log.setMessageId("m" + i);
+        log.setGroupId(1000L + i);
+        log.setUserId("u" + i);
+        log.setMessageContent("消息内容 " + "x".repeat(i % 50));
+        log.setProcessingTimeMs(i % 2 == 0 ? i : null);
+        log.setSendStatus(MessageLog.SendStatus.SKIPPED);
+        log.setTimestamp(LocalDateTime.of(2026, 1, 1, 12, 0, 0, i * 1000));
+        return log;
+    }
+
+    private static List<MessageLog> logs(int from, int to) {
+        return IntStream.range(from, to).mapToObj(MessageLogWalTest::log).toList();
+    }
+
+    private List<MessageLog> replayAll(MessageLogWal wal) throws Exception {
+        List<MessageLog> replayed = new ArrayList<>();
+        while (wal.hasBacklog()) {
+            replayed.addAll(wal.readBatch(7));
+            wal.commit();
+        }
+        return replayed;
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".wal")).count();
+        }
+    }
+
+    @Test
+    @DisplayName("追加与回放 - 跨分段按顺序读出, 推进检查点后删除旧分段")
+    void testAppendReplay_RotatesSegments() throws Exception {
+        MessageLogWal wal = MessageLogWal.open(dir, SEGMENT_SIZE, 1 << 20, false);
+        assertEquals(100, wal.append(logs(0, 100)));
+        assertTrue(segmentCount() > 1);
+
+        List<MessageLog> first = wal.readBatch(10);
+        List<MessageLog> again = wal.readBatch(10);
+        assertEquals(first, again, "未提交时重复读取同一批");
+
+        List<MessageLog> replayed = replayAll(wal);
+        assertEquals(logs(0, 100), replayed);
+        assertFalse(wal.hasBacklog());
+        assertEquals(1, segmentCount());
+        wal.close();
+    }
+
+    @Test
+    @DisplayName("崩溃恢复 - 从检查点回放, 残缺尾部被截断")
+    void testRecovery_FromCheckpoint_TruncatesTornTail() throws Exception {
+        MessageLogWal wal = MessageLogWal.open(dir, SEGMENT_SIZE, 1 << 20, false);
+        wal.append(logs(0, 30));
+        wal.readBatch(10);
+        wal.commit();
+        // 未close, 模拟进程崩溃: 最后一条记录的负载损坏(CRC不匹配)
+        Path lastSegment;
+        try (Stream<Path> files = Files.list(dir)) {
+            lastSegment = files.filter(path -> path.getFileName().toString().endsWith(".wal")).sorted()
+                .reduce((a, b) -> b).orElseThrow();
+        }
+        wal.append(logs(30, 31));
+        try (RandomAccessFile file = new RandomAccessFile(lastSegment.toFile(), "rw")) {
+            long size = file.length();
+            byte[] content = new byte[(int) size];
+            file.readFully(content);
+            int end = 0;
+            for (int i = content.length - 1; i >= 0; i--) {
+                if (content[i] != 0) {
+                    end = i;
+                    break;
+                }
+            }
+            file.seek(end);
+            file.write(content[end] ^ 0x7f);
+        }
+
+        MessageLogWal recovered = MessageLogWal.open(dir, SEGMENT_SIZE, 1 << 20, false);
+        assertEquals(logs(10, 30), replayAll(recovered));
+
+        // 截断后可继续追加
+        assertEquals(2, recovered.append(logs(40, 42)));
+        assertEquals(logs(40, 42), replayAll(recovered));
+        recovered.close();
+
+        MessageLogWal reopened = MessageLogWal.open(dir, SEGMENT_SIZE, 1 << 20, false);
+        assertFalse(reopened.hasBacklog());
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("容量上限 - 未回放数据超过max-bytes时拒绝追加")
+    void testCapacityLimit() throws Exception {
+        MessageLogWal wal = MessageLogWal.open(dir, SEGMENT_SIZE, SEGMENT_SIZE * 2L, false);
+        int appended = wal.append(logs(0, 1000));
+        assertTrue(appended > 0 && appended < 1000, "appended=" + appended);
+        assertTrue(wal.backlogBytes() <= SEGMENT_SIZE * 2L);
+
+        assertEquals(logs(0, appended), replayAll(wal));
+        assertEquals(10, wal.append(logs(0, 10)));
+        wal.close();
+    }
+}
@@ -0,0 +1,241 @@
+package com.specqq.chatbot.unit.service;
+
+import com.specqq.chatbot.entity.MessageLog;
+import com.specqq.chatbot.mapper.MessageLogMapper;
+import com.specqq.chatbot.service.MessageLogWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * MessageLogWriter单元测试(无锁入队 + 单写线程批量写入)
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("消息日志写入器测试")
+class MessageLogWriterTest {
+
+    private MessageLogMapper messageLogMapper;
+    private MessageLogWriter writer;
+    private List<Integer> batchSizes;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        messageLogMapper = mock(MessageLogMapper.class);
+        batchSizes = new CopyOnWriteArrayList<>();
+        when(messageLogMapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            int size = invocation.<List<MessageLog>>getArgument(0).size();
+            batchSizes.add(size);
+            return size;
+        });
+        registry = new SimpleMeterRegistry();
+        writer = new MessageLogWriter(messageLogMapper);
+        ReflectionTestUtils.setField(writer, "batchSize", 50);
+        ReflectionTestUtils.setField(writer, "flushIntervalMs", 100L);
+        ReflectionTestUtils.setField(writer, "meterRegistry", registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.destroy();
+    }
+
+    private static MessageLog log(int i) {
+        MessageLog log = new MessageLog();
+        log.setMessageId("m" + i);
+        return log;
+    }
+
+    private void awaitWritten(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writer.getWrittenCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, writer.getWrittenCount());
+    }
+
+    @Test
+    @DisplayName("多生产者 - 按批次大小多行写入, 不丢失")
+    void testConcurrentProducers_BatchedWrites() throws Exception {
+        writer.init();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 500; i++) {
+                    assertTrue(writer.offer(log(i)));
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        awaitWritten(4000);
+        assertEquals(0, writer.getPendingCount());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 50));
+        assertTrue(batchSizes.size() < 4000 / 10, "writes should be batched: " + batchSizes.size());
+        assertEquals(batchSizes.size(), registry.get("message_log_flush_duration_seconds").timer().count());
+    }
+
+    @Test
+    @DisplayName("定时写出 - 未凑满一批的日志在间隔内写入")
+    void testFlushInterval_PartialBatch() throws Exception {
+        writer.init();
+        writer.offer(log(1));
+        writer.offer(log(2));
+
+        awaitWritten(2);
+        assertEquals(List.of(2), batchSizes);
+    }
+
+    @Test
+    @DisplayName("积压上限 - 超过max-pending时丢弃新日志, 写入失败后重试")
+    void testBackpressure_AndRetry() throws Exception {
+        ReflectionTestUtils.setField(writer, "maxPending", 3);
+        List<Integer> attempts = new ArrayList<>();
+        when(messageLogMapper.insertBatch(anyList()))
+            .thenAnswer(invocation -> {
+                attempts.add(1);
+                throw new IllegalStateException("db down");
+            })
+            .thenAnswer(invocation -> invocation.<List<MessageLog>>getArgument(0).size());
+        writer.init();
+
+        assertTrue(writer.offer(log(1)));
+        assertTrue(writer.offer(log(2)));
+        assertTrue(writer.offer(log(3)));
+        assertFalse(writer.offer(log(4)));
+        assertEquals(1, writer.getDroppedCount());
+
+        awaitWritten(3);
+        assertEquals(1, attempts.size());
+        verify(messageLogMapper, times(2)).insertBatch(anyList());
+        assertEquals(1.0, registry.get("message_log_flush_failures_total").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("WAL - 数据库故障期间日志落盘不占内存, 恢复后按顺序回放")
+    void testWal_SpillsDuringOutage_ThenReplays(@TempDir Path walDir) throws Exception {
+        AtomicBoolean databaseUp = new AtomicBoolean(false);
+        List<String> insertedIds = new CopyOnWriteArrayList<>();
+        when(messageLogMapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            if (!databaseUp.get()) {
+                throw new IllegalStateException("db down");
+            }
+            List<MessageLog> logs = invocation.getArgument(0);
+            logs.forEach(log -> insertedIds.add(log.getMessageId()));
+            return logs.size();
+        });
+        ReflectionTestUtils.setField(writer, "walEnabled", true);
+        ReflectionTestUtils.setField(writer, "walDir", walDir.toString());
+        ReflectionTestUtils.setField(writer, "walSegmentSize", 4096);
+        ReflectionTestUtils.setField(writer, "maxPending", 100);
+        writer.init();
+
+        for (int i = 0; i < 300; i++) {
+            assertTrue(writer.offer(log(i)), "offer " + i);
+            if (i % 50 == 49) {
+                Thread.sleep(150);
+            }
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writer.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, writer.getPendingCount());
+        assertEquals(0, writer.getDroppedCount());
+        assertTrue(writer.getWalBacklogBytes() > 0);
+
+        databaseUp.set(true);
+        awaitWritten(300);
+        assertEquals(0, writer.getWalBacklogBytes());
+        for (int i = 0; i < 300; i++) {
+            assertEquals("m" + i, insertedIds.get(i));
+        }
+    }
+
+    private void rejectNullMessageIds(List<String> insertedIds) {
+        when(messageLogMapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<MessageLog> logs = invocation.getArgument(0);
+            if (logs.stream().anyMatch(log -> log.getMessageId() == null)) {
+                throw new DataIntegrityViolationException("Column 'message_id' cannot be null");
+            }
+            logs.forEach(log -> insertedIds.add(log.getMessageId()));
+            return logs.size();
+        });
+    }
+
+    @Test
+    @DisplayName("坏数据 - 批次多次失败后逐条写入, 跳过被拒绝的行")
+    void testRejectedRow_SkippedAfterMaxAttempts() throws Exception {
+        List<String> insertedIds = new CopyOnWriteArrayList<>();
+        rejectNullMessageIds(insertedIds);
+        writer.init();
+
+        for (int i = 0; i < 10; i++) {
+            writer.offer(i == 4 ? new MessageLog() : log(i));
+        }
+
+        awaitWritten(9);
+        assertEquals(1, writer.getRejectedCount());
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(0, writer.getPendingCount());
+        assertEquals(List.of("m0", "m1", "m2", "m3", "m5", "m6", "m7", "m8", "m9"), insertedIds);
+        assertEquals(1.0, registry.get("message_log_rejected_total").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("WAL坏数据 - 被拒绝的行不阻塞回放, 后续日志按顺序写入")
+    void testWal_RejectedRowDoesNotBlockReplay(@TempDir Path walDir) throws Exception {
+        List<String> insertedIds = new CopyOnWriteArrayList<>();
+        rejectNullMessageIds(insertedIds);
+        ReflectionTestUtils.setField(writer, "walEnabled", true);
+        ReflectionTestUtils.setField(writer, "walDir", walDir.toString());
+        ReflectionTestUtils.setField(writer, "walSegmentSize", 4096);
+        writer.init();
+
+        for (int i = 0; i < 10; i++) {
+            writer.offer(i == 4 ? new MessageLog() : log(i));
+        }
+        awaitWritten(9);
+        for (int i = 10; i < 20; i++) {
+            writer.offer(log(i));
+        }
+
+        awaitWritten(19);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writer.getWalBacklogBytes() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, writer.getWalBacklogBytes());
+        assertEquals(1, writer.getRejectedCount());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            if (i != 4) {
+                expected.add("m" + i);
+            }
+        }
+        assertEquals(expected, insertedIds);
+    }
+}
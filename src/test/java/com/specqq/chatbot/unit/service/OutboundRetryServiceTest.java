@@ -0,0 +1,251 @@
+package com.specqq.chatbot.unit.service;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.specqq.chatbot.adapter.NapCatAdapter;
+import com.specqq.chatbot.adapter.RequestNotSentException;
+import com.specqq.chatbot.dto.ApiCallResponseDTO;
+import com.specqq.chatbot.entity.MessageLog;
+import com.specqq.chatbot.entity.OutboundRetry;
+import com.specqq.chatbot.mapper.GroupChatMapper;
+import com.specqq.chatbot.mapper.MessageLogMapper;
+import com.specqq.chatbot.mapper.OutboundRetryMapper;
+import com.specqq.chatbot.service.OutboundRetryService;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * OutboundRetryService单元测试
+ *
+ * @author Chatbot Router System
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("出站消息重试服务测试")
+class OutboundRetryServiceTest {
+
+    @Mock
+    private OutboundRetryMapper outboundRetryMapper;
+
+    @Mock
+    private MessageLogMapper messageLogMapper;
+
+    @Mock
+    private GroupChatMapper groupChatMapper;
+
+    @Mock
+    private NapCatAdapter napCatAdapter;
+
+    @InjectMocks
+    private OutboundRetryService outboundRetryService;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // 无Spring上下文时为LambdaUpdateWrapper初始化实体元数据
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        TableInfoHelper.initTableInfo(assistant, OutboundRetry.class);
+        TableInfoHelper.initTableInfo(assistant, MessageLog.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboundRetryService.destroy();
+    }
+
+    private OutboundRetry dueRetry(long id, long groupId, int attempts) {
+        OutboundRetry retry = new OutboundRetry();
+        retry.setId(id);
+        retry.setIdempotencyKey(OutboundRetryService.idempotencyKey(groupId, "msg" + id));
+        retry.setGroupId(groupId);
+        retry.setMessageId("msg" + id);
+        retry.setContent("reply");
+        retry.setAttempts(attempts);
+        retry.setStatus(OutboundRetry.RetryStatus.PENDING);
+        retry.setCreatedAt(LocalDateTime.now());
+        return retry;
+    }
+
+    private OutboundRetry captureUpdate() {
+        ArgumentCaptor<OutboundRetry> captor = ArgumentCaptor.forClass(OutboundRetry.class);
+        verify(outboundRetryMapper, timeout(1000)).update(captor.capture(), any());
+        return captor.getValue();
+    }
+
+    private void startPermits() {
+        ReflectionTestUtils.setField(outboundRetryService, "enabled", false);
+        outboundRetryService.init();
+    }
+
+    @Test
+    @DisplayName("入队 - 幂等键冲突时返回false")
+    void testEnqueue_Dedup() {
+        when(outboundRetryMapper.insertIgnore(any())).thenReturn(1, 0);
+
+        assertTrue(outboundRetryService.enqueue(123456L, "msg1", "reply"));
+        assertFalse(outboundRetryService.enqueue(123456L, "msg1", "reply"));
+
+        ArgumentCaptor<OutboundRetry> captor = ArgumentCaptor.forClass(OutboundRetry.class);
+        verify(outboundRetryMapper, times(2)).insertIgnore(captor.capture());
+        assertEquals("reply:123456:msg1", captor.getValue().getIdempotencyKey());
+        assertNotNull(captor.getValue().getNextAttemptAt());
+    }
+
+    @Test
+    @DisplayName("入队 - 消息ID为空时使用一次性幂等键, 不与其他回复冲突")
+    void testEnqueue_NullMessageIdGetsUniqueKey() {
+        when(outboundRetryMapper.insertIgnore(any())).thenReturn(1);
+
+        assertTrue(outboundRetryService.enqueue(123456L, null, "reply a"));
+        assertTrue(outboundRetryService.enqueue(123456L, null, "reply b"));
+
+        ArgumentCaptor<OutboundRetry> captor = ArgumentCaptor.forClass(OutboundRetry.class);
+        verify(outboundRetryMapper, times(2)).insertIgnore(captor.capture());
+        assertNotEquals(captor.getAllValues().get(0).getIdempotencyKey(),
+            captor.getAllValues().get(1).getIdempotencyKey());
+        assertFalse(captor.getValue().getIdempotencyKey().endsWith(":null"));
+        assertThrows(IllegalArgumentException.class, () -> OutboundRetryService.idempotencyKey(123456L, null));
+    }
+
+    @Test
+    @DisplayName("处理到期记录 - 发送成功标记SUCCESS")
+    void testDrain_SendSuccess() {
+        startPermits();
+        OutboundRetry retry = dueRetry(1L, 123456L, 0);
+        when(outboundRetryMapper.selectDue(any(), anyInt())).thenReturn(List.of(retry));
+        when(outboundRetryMapper.claim(eq(1L), any())).thenReturn(1);
+        when(outboundRetryMapper.update(any(), any())).thenReturn(1);
+        when(napCatAdapter.sendGroupMessage(123456L, "reply"))
+            .thenReturn(CompletableFuture.completedFuture(new ApiCallResponseDTO(0, "ok", 10L)));
+
+        outboundRetryService.drain();
+
+        assertEquals(OutboundRetry.RetryStatus.SUCCESS, captureUpdate().getStatus());
+        verify(messageLogMapper, timeout(1000)).update(isNull(), any());
+    }
+
+    @Test
+    @DisplayName("处理到期记录 - 租约已失效时丢弃迟到的结果")
+    void testDrain_LateCallbackDiscarded() {
+        startPermits();
+        OutboundRetry retry = dueRetry(6L, 123456L, 0);
+        when(outboundRetryMapper.selectDue(any(), anyInt())).thenReturn(List.of(retry));
+        when(outboundRetryMapper.claim(eq(6L), any())).thenReturn(1);
+        when(outboundRetryMapper.update(any(), any())).thenReturn(0);
+        when(napCatAdapter.sendGroupMessage(123456L, "reply"))
+            .thenReturn(CompletableFuture.completedFuture(new ApiCallResponseDTO(0, "ok", 10L)));
+
+        outboundRetryService.drain();
+
+        assertEquals(OutboundRetry.RetryStatus.SUCCESS, captureUpdate().getStatus());
+        verify(messageLogMapper, never()).update(any(), any());
+    }
+
+    @Test
+    @DisplayName("处理到期记录 - 确定未发出时按退避重新调度")
+    void testDrain_SendFailureReschedules() {
+        startPermits();
+        OutboundRetry retry = dueRetry(2L, 123456L, 0);
+        when(outboundRetryMapper.selectDue(any(), anyInt())).thenReturn(List.of(retry));
+        when(outboundRetryMapper.claim(eq(2L), any())).thenReturn(1);
+        when(outboundRetryMapper.update(any(), any())).thenReturn(1);
+        when(napCatAdapter.sendGroupMessage(123456L, "reply"))
+            .thenReturn(CompletableFuture.failedFuture(new RequestNotSentException("connection refused", null)));
+
+        outboundRetryService.drain();
+
+        OutboundRetry update = captureUpdate();
+        assertEquals(OutboundRetry.RetryStatus.PENDING, update.getStatus());
+        assertTrue(update.getNextAttemptAt().isAfter(LocalDateTime.now()));
+        assertTrue(update.getLastError().contains("connection refused"));
+    }
+
+    @Test
+    @DisplayName("处理到期记录 - 结果未知(超时)时标记DEAD且不重发")
+    void testDrain_UnknownOutcomeNotRescheduled() {
+        startPermits();
+        OutboundRetry retry = dueRetry(7L, 123456L, 0);
+        when(outboundRetryMapper.selectDue(any(), anyInt())).thenReturn(List.of(retry));
+        when(outboundRetryMapper.claim(eq(7L), any())).thenReturn(1);
+        when(outboundRetryMapper.update(any(), any())).thenReturn(1);
+        when(napCatAdapter.sendGroupMessage(123456L, "reply"))
+            .thenReturn(CompletableFuture.failedFuture(new TimeoutException("timeout")));
+
+        outboundRetryService.drain();
+
+        OutboundRetry update = captureUpdate();
+        assertEquals(OutboundRetry.RetryStatus.DEAD, update.getStatus());
+        assertNull(update.getNextAttemptAt());
+        assertTrue(update.getLastError().contains("人工确认"));
+    }
+
+    @Test
+    @DisplayName("处理到期记录 - 超过最大重试次数标记DEAD")
+    void testDrain_ExhaustedMarksDead() {
+        startPermits();
+        OutboundRetry retry = dueRetry(3L, 123456L, 4);
+        when(outboundRetryMapper.selectDue(any(), anyInt())).thenReturn(List.of(retry));
+        when(outboundRetryMapper.claim(eq(3L), any())).thenReturn(1);
+        when(outboundRetryMapper.update(any(), any())).thenReturn(1);
+        when(napCatAdapter.sendGroupMessage(123456L, "reply"))
+            .thenReturn(CompletableFuture.completedFuture(new ApiCallResponseDTO(100, "failed", 10L)));
+
+        outboundRetryService.drain();
+
+        OutboundRetry update = captureUpdate();
+        assertEquals(OutboundRetry.RetryStatus.DEAD, update.getStatus());
+        assertTrue(update.getLastError().contains("retcode=100"));
+    }
+
+    @Test
+    @DisplayName("处理到期记录 - 群预算耗尽时推迟且不发送")
+    void testDrain_GroupBudgetExhausted() {
+        ReflectionTestUtils.setField(outboundRetryService, "groupBudgetPerMinute", 1);
+        startPermits();
+        OutboundRetry first = dueRetry(4L, 123456L, 0);
+        OutboundRetry second = dueRetry(5L, 123456L, 0);
+        when(outboundRetryMapper.selectDue(any(), anyInt())).thenReturn(List.of(first, second));
+        when(outboundRetryMapper.claim(anyLong(), any())).thenReturn(1);
+        when(napCatAdapter.sendGroupMessage(anyLong(), anyString())).thenReturn(new CompletableFuture<>());
+
+        outboundRetryService.drain();
+
+        verify(outboundRetryMapper).claim(eq(4L), any());
+        verify(outboundRetryMapper, never()).claim(eq(5L), any());
+        verify(napCatAdapter, times(1)).sendGroupMessage(anyLong(), anyString());
+    }
+
+    @Test
+    @DisplayName("退避时间 - 指数增长且不超过上限")
+    void testComputeBackoff() {
+        ReflectionTestUtils.setField(outboundRetryService, "baseDelayMs", 1000L);
+        ReflectionTestUtils.setField(outboundRetryService, "maxDelayMs", 10000L);
+
+        long first = (long) ReflectionTestUtils.invokeMethod(outboundRetryService, "computeBackoffMs", 1);
+        long third = (long) ReflectionTestUtils.invokeMethod(outboundRetryService, "computeBackoffMs", 3);
+        long capped = (long) ReflectionTestUtils.invokeMethod(outboundRetryService, "computeBackoffMs", 20);
+
+        assertTrue(first >= 800 && first <= 1200);
+        assertTrue(third >= 3200 && third <= 4800);
+        assertTrue(capped >= 8000 && capped <= 12000);
+    }
+}
@@ -0,0 +1,122 @@
+package com.specqq.chatbot.unit.websocket;
+
+import com.specqq.chatbot.entity.ChatClient;
+import com.specqq.chatbot.websocket.NapCatHandshakeInterceptor;
+import com.specqq.chatbot.websocket.NapCatWebSocketHandler;
+import com.specqq.chatbot.websocket.WebSocketSessionManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * NapCatHandshakeInterceptor单元测试(反向WebSocket鉴权)
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("NapCat反向WebSocket握手测试")
+class NapCatHandshakeInterceptorTest {
+
+    private WebSocketSessionManager sessionManager;
+    private NapCatHandshakeInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        sessionManager = mock(WebSocketSessionManager.class);
+        interceptor = new NapCatHandshakeInterceptor(sessionManager);
+        ReflectionTestUtils.setField(interceptor, "defaultAccessToken", "default-token");
+
+        ChatClient.ConnectionConfig config = new ChatClient.ConnectionConfig();
+        config.setSelfId(10001L);
+        config.setAccessToken("bot-token");
+        ChatClient client = new ChatClient();
+        client.setId(7L);
+        client.setProtocolType("reverse_websocket");
+        client.setConnectionConfig(config);
+        when(sessionManager.findReverseClient(10001L)).thenReturn(client);
+
+        ChatClient noToken = new ChatClient();
+        noToken.setId(8L);
+        noToken.setConnectionConfig(new ChatClient.ConnectionConfig());
+        when(sessionManager.findReverseClient(10002L)).thenReturn(noToken);
+    }
+
+    private boolean handshake(MockHttpServletRequest request, MockHttpServletResponse response,
+                              Map<String, Object> attributes) {
+        return interceptor.beforeHandshake(new ServletServerHttpRequest(request),
+            new ServletServerHttpResponse(response), null, attributes);
+    }
+
+    @Test
+    @DisplayName("握手 - 令牌正确时按self_id关联客户端")
+    void testHandshake_Accepted() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/napcat");
+        request.addHeader("X-Self-ID", "10001");
+        request.addHeader("Authorization", "Bearer bot-token");
+        Map<String, Object> attributes = new HashMap<>();
+
+        assertTrue(handshake(request, new MockHttpServletResponse(), attributes));
+        assertEquals(7L, attributes.get(NapCatWebSocketHandler.CLIENT_ID_ATTRIBUTE));
+        assertNotNull(attributes.get(NapCatHandshakeInterceptor.CLIENT_ATTRIBUTE));
+    }
+
+    @Test
+    @DisplayName("握手 - 令牌错误拒绝")
+    void testHandshake_InvalidToken() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/napcat");
+        request.addHeader("X-Self-ID", "10001");
+        request.addHeader("Authorization", "Bearer default-token");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(handshake(request, response, new HashMap<>()));
+        assertEquals(HttpStatus.UNAUTHORIZED.value(), response.getStatus());
+    }
+
+    @Test
+    @DisplayName("握手 - 客户端未配置令牌时使用默认令牌(查询参数)")
+    void testHandshake_DefaultTokenFromQuery() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/napcat");
+        request.setQueryString("access_token=default-token");
+        request.addHeader("X-Self-ID", "10002");
+
+        assertTrue(handshake(request, new MockHttpServletResponse(), new HashMap<>()));
+    }
+
+    @Test
+    @DisplayName("握手 - 未登记的self_id拒绝")
+    void testHandshake_UnknownSelfId() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/napcat");
+        request.addHeader("X-Self-ID", "99999");
+        request.addHeader("Authorization", "Bearer bot-token");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(handshake(request, response, new HashMap<>()));
+        assertEquals(HttpStatus.FORBIDDEN.value(), response.getStatus());
+    }
+
+    @Test
+    @DisplayName("握手 - 未配置任何令牌时拒绝, 显式允许匿名时接受")
+    void testHandshake_NoTokenConfigured() {
+        ReflectionTestUtils.setField(interceptor, "defaultAccessToken", "");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/napcat");
+        request.addHeader("X-Self-ID", "10002");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(handshake(request, response, new HashMap<>()));
+        assertEquals(HttpStatus.UNAUTHORIZED.value(), response.getStatus());
+
+        ReflectionTestUtils.setField(interceptor, "allowAnonymous", true);
+        assertTrue(handshake(request, new MockHttpServletResponse(), new HashMap<>()));
+    }
+}
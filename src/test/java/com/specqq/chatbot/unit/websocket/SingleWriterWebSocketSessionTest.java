@@ -0,0 +1,193 @@
+package com.specqq.chatbot.unit.websocket;
+
+import com.specqq.chatbot.websocket.SingleWriterWebSocketSession;
+import com.specqq.chatbot.websocket.SingleWriterWebSocketSession.SlowConsumerReason;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * SingleWriterWebSocketSession单元测试(单写者队列与慢消费者保护)
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("WebSocket单写者会话测试")
+class SingleWriterWebSocketSessionTest {
+
+    private WebSocketSession delegate;
+    private List<String> written;
+    private List<SlowConsumerReason> slowEvents;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(WebSocketSession.class);
+        when(delegate.isOpen()).thenReturn(true);
+        when(delegate.getId()).thenReturn("s1");
+        written = new CopyOnWriteArrayList<>();
+        slowEvents = new CopyOnWriteArrayList<>();
+    }
+
+    private SingleWriterWebSocketSession writer(int sendTimeLimit, int bufferSizeLimit, OverflowStrategy strategy) {
+        return new SingleWriterWebSocketSession(delegate, sendTimeLimit, bufferSizeLimit, strategy, 0, slowEvents::add);
+    }
+
+    @Test
+    @DisplayName("并发发送 - 同一时刻只有一个线程写出, 消息不丢失")
+    void testSendMessage_SingleWriter() throws Exception {
+        AtomicInteger concurrentWriters = new AtomicInteger();
+        AtomicInteger maxConcurrentWriters = new AtomicInteger();
+        doAnswer(invocation -> {
+            int current = concurrentWriters.incrementAndGet();
+            maxConcurrentWriters.accumulateAndGet(current, Math::max);
+            Thread.sleep(1);
+            written.add(invocation.<TextMessage>getArgument(0).getPayload());
+            concurrentWriters.decrementAndGet();
+            return null;
+        }).when(delegate).sendMessage(any());
+
+        SingleWriterWebSocketSession session = writer(10_000, 1024 * 1024, OverflowStrategy.TERMINATE);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(200);
+        for (int i = 0; i < 200; i++) {
+            String payload = "m" + i;
+            executor.execute(() -> {
+                try {
+                    session.sendMessage(new TextMessage(payload));
+                } catch (Exception e) {
+                    fail(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(200, written.size());
+        assertEquals(1, maxConcurrentWriters.get());
+        assertEquals(0, session.getQueueDepth());
+        assertEquals(0, session.getBufferSize());
+    }
+
+    @Test
+    @DisplayName("慢消费者 - 写出超时后终止会话, 未写出的消息可取回")
+    void testSendTimeLimit_Terminates() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            blocked.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(delegate).sendMessage(any());
+
+        SingleWriterWebSocketSession session = writer(50, 1024 * 1024, OverflowStrategy.TERMINATE);
+        Thread writerThread = new Thread(() -> {
+            try {
+                session.sendMessage(new TextMessage("stuck"));
+            } catch (Exception ignored) {
+                // 释放后正常返回
+            }
+        });
+        writerThread.start();
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        // 其他线程入队后立即返回(不阻塞), 并检测到写出超时
+        assertThrows(SessionLimitExceededException.class, () -> session.sendMessage(new TextMessage("next")));
+        assertTrue(session.isLimitExceeded());
+        assertEquals(List.of(SlowConsumerReason.SEND_TIME_LIMIT), slowEvents);
+        assertFalse(session.enqueue(new TextMessage("after")));
+
+        release.countDown();
+        writerThread.join(5000);
+        assertEquals(List.of("next"), session.drainPending());
+    }
+
+    @Test
+    @DisplayName("取回未写出消息 - 保留最初的入队时间")
+    void testDrainPending_KeepsEnqueueTime() {
+        SingleWriterWebSocketSession session = writer(10_000, 1024 * 1024, OverflowStrategy.TERMINATE);
+        long enqueuedAt = System.nanoTime() - TimeUnit.MINUTES.toNanos(5);
+
+        assertTrue(session.enqueue(new TextMessage("old"), enqueuedAt));
+        assertTrue(session.enqueue(new TextMessage("new")));
+
+        List<SingleWriterWebSocketSession.PendingMessage> pending = session.drainPendingMessages();
+        assertEquals(2, pending.size());
+        assertEquals(new SingleWriterWebSocketSession.PendingMessage("old", enqueuedAt), pending.get(0));
+        assertEquals("new", pending.get(1).payload());
+        assertTrue(pending.get(1).enqueuedAt() > enqueuedAt);
+        assertEquals(0, session.getBufferSize());
+    }
+
+    @Test
+    @DisplayName("撤回 - 仅未被取出的帧可撤回")
+    void testWithdraw_OnlyQueuedFrames() throws Exception {
+        SingleWriterWebSocketSession session = writer(10_000, 1024 * 1024, OverflowStrategy.TERMINATE);
+        TextMessage sent = new TextMessage("sent");
+        session.sendMessage(sent);
+        TextMessage first = new TextMessage("first");
+        TextMessage second = new TextMessage("second");
+        session.enqueue(first);
+        session.enqueue(second);
+
+        assertFalse(session.withdraw(sent));
+        assertTrue(session.withdraw(second));
+        assertFalse(session.withdraw(new TextMessage("first")));
+        assertEquals(first.getPayloadLength(), session.getBufferSize());
+        assertEquals(List.of("first"), session.drainPending());
+    }
+
+    @Test
+    @DisplayName("缓冲上限 - DROP策略丢弃最早的消息")
+    void testBufferLimit_DropOldest() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            String payload = invocation.<TextMessage>getArgument(0).getPayload();
+            if ("first".equals(payload)) {
+                blocked.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            written.add(payload);
+            return null;
+        }).when(delegate).sendMessage(any());
+
+        SingleWriterWebSocketSession session = writer(10_000, 10, OverflowStrategy.DROP);
+        Thread writerThread = new Thread(() -> {
+            try {
+                session.sendMessage(new TextMessage("first"));
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        writerThread.start();
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        session.sendMessage(new TextMessage("aaaa"));
+        session.sendMessage(new TextMessage("bbbb"));
+        session.sendMessage(new TextMessage("cccc"));
+        assertEquals(2, session.getQueueDepth());
+        assertEquals(List.of(SlowConsumerReason.BUFFER_OVERFLOW), slowEvents);
+
+        release.countDown();
+        writerThread.join(5000);
+        assertEquals(List.of("first", "bbbb", "cccc"), written);
+    }
+}
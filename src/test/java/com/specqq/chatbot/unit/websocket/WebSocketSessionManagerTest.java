@@ -0,0 +1,325 @@
+package com.specqq.chatbot.unit.websocket;
+
+import com.specqq.chatbot.adapter.RequestNotSentException;
+import com.specqq.chatbot.entity.ChatClient;
+import com.specqq.chatbot.entity.GroupChat;
+import com.specqq.chatbot.mapper.GroupChatMapper;
+import com.specqq.chatbot.websocket.WebSocketSessionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * WebSocketSessionManager单元测试(多账号会话路由)
+ *
+ * @author Chatbot Router System
+ */
+@DisplayName("WebSocket会话管理器测试")
+class WebSocketSessionManagerTest {
+
+    private WebSocketSessionManager sessionManager;
+
+    @BeforeEach
+    void setUp() {
+        sessionManager = new WebSocketSessionManager();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionManager.destroy();
+    }
+
+    private WebSocketSession openSession(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+
+    private ChatClient client(long id) {
+        ChatClient client = new ChatClient();
+        client.setId(id);
+        client.setClientType("qq");
+        return client;
+    }
+
+    @Test
+    @DisplayName("路由 - 按群归属选择机器人会话")
+    void testRouteSession_ByGroupOwner() {
+        WebSocketSession botA = openSession("a");
+        WebSocketSession botB = openSession("b");
+        sessionManager.registerSession(1L, client(1L), botA);
+        sessionManager.registerSession(2L, client(2L), botB);
+
+        sessionManager.bindGroup(100L, 1L);
+        sessionManager.bindGroup(200L, 2L);
+
+        assertSame(botA, sessionManager.routeSession(100L));
+        assertSame(botB, sessionManager.routeSession(200L));
+        assertEquals(2, sessionManager.getActiveSessionCount());
+    }
+
+    @Test
+    @DisplayName("路由 - 归属机器人断开时不借用其他会话")
+    void testRouteSession_OwnerDisconnected() {
+        WebSocketSession botA = openSession("a");
+        WebSocketSession botB = openSession("b");
+        sessionManager.registerSession(1L, client(1L), botA);
+        sessionManager.registerSession(2L, client(2L), botB);
+        sessionManager.bindGroup(100L, 1L);
+
+        sessionManager.onSessionClosed(1L, botA);
+
+        assertNull(sessionManager.routeSession(100L));
+        // 无群维度的调用仍可使用其他会话
+        assertSame(botB, sessionManager.routeSession(null));
+    }
+
+    @Test
+    @DisplayName("路由 - 归属机器人尚未登记时不以其他账号发送")
+    void testSend_OwnerNotRegistered() throws Exception {
+        GroupChatMapper groupChatMapper = mock(GroupChatMapper.class);
+        GroupChat group = new GroupChat();
+        group.setClientId(2L);
+        when(groupChatMapper.selectOne(any())).thenReturn(group);
+        ReflectionTestUtils.setField(sessionManager, "groupChatMapper", groupChatMapper);
+        WebSocketSession botA = openSession("a");
+        sessionManager.registerSession(1L, client(1L), botA);
+
+        assertNull(sessionManager.routeSession(300L));
+        assertNull(sessionManager.resolveRouteClientId(300L));
+        assertThrows(IllegalStateException.class, () -> sessionManager.send(300L, "reply"));
+        verify(botA, never()).sendMessage(any());
+        // 无群维度的调用仍使用已连接会话
+        assertSame(botA, sessionManager.routeSession(null));
+    }
+
+    @Test
+    @DisplayName("路由 - 未知群回查group_chat表并缓存")
+    void testResolveClientId_FromGroupTable() {
+        GroupChatMapper groupChatMapper = mock(GroupChatMapper.class);
+        GroupChat group = new GroupChat();
+        group.setGroupId("300");
+        group.setClientId(2L);
+        when(groupChatMapper.selectOne(any())).thenReturn(group);
+        ReflectionTestUtils.setField(sessionManager, "groupChatMapper", groupChatMapper);
+
+        assertEquals(2L, sessionManager.resolveClientId(300L));
+        assertEquals(2L, sessionManager.resolveClientId(300L));
+        verify(groupChatMapper, times(1)).selectOne(any());
+    }
+
+    @Test
+    @DisplayName("路由 - group_chat表未命中同样缓存, 导入后失效")
+    void testResolveClientId_CachesMiss() {
+        GroupChatMapper groupChatMapper = mock(GroupChatMapper.class);
+        when(groupChatMapper.selectOne(any())).thenReturn(null);
+        ReflectionTestUtils.setField(sessionManager, "groupChatMapper", groupChatMapper);
+
+        assertNull(sessionManager.resolveClientId(300L));
+        assertNull(sessionManager.resolveClientId(300L));
+        verify(groupChatMapper, times(1)).selectOne(any());
+
+        GroupChat group = new GroupChat();
+        group.setClientId(2L);
+        when(groupChatMapper.selectOne(any())).thenReturn(group);
+        sessionManager.invalidateGroupOwner(300L);
+
+        assertEquals(2L, sessionManager.resolveClientId(300L));
+        verify(groupChatMapper, times(2)).selectOne(any());
+    }
+
+    @Test
+    @DisplayName("路由 - 两个机器人在同一群时归属不随事件切换, 归属断开后转移")
+    void testBindGroup_StickyUntilOwnerDisconnects() {
+        WebSocketSession botA = openSession("a");
+        WebSocketSession botB = openSession("b");
+        sessionManager.registerSession(1L, client(1L), botA);
+        sessionManager.registerSession(2L, client(2L), botB);
+
+        sessionManager.bindGroup(100L, 1L);
+        sessionManager.bindGroup(100L, 2L);
+        assertEquals(1L, sessionManager.resolveClientId(100L));
+
+        sessionManager.onSessionClosed(1L, botA);
+        sessionManager.bindGroup(100L, 2L);
+        assertEquals(2L, sessionManager.resolveClientId(100L));
+        assertSame(botB, sessionManager.routeSession(100L));
+    }
+
+    @Test
+    @DisplayName("注册 - 重连后复用会话信息并重置重连次数")
+    void testRegisterSession_ReusesSessionInfo() {
+        sessionManager.registerClient(1L, client(1L));
+        WebSocketSessionManager.SessionInfo info = sessionManager.getSessionInfo(1L);
+        assertFalse(info.isConnected());
+        info.incrementReconnectAttempts();
+
+        WebSocketSession session = openSession("a");
+        sessionManager.registerSession(1L, client(1L), session);
+
+        assertSame(info, sessionManager.getSessionInfo(1L));
+        assertTrue(info.isConnected());
+        assertEquals(0, info.getReconnectAttempts());
+    }
+
+    @Test
+    @DisplayName("缓冲 - 断线期间消息按顺序在重连后发送")
+    void testSend_BufferedUntilReconnect() throws Exception {
+        WebSocketSession first = openSession("a");
+        sessionManager.registerSession(1L, client(1L), first);
+        sessionManager.bindGroup(100L, 1L);
+        sessionManager.onSessionClosed(1L, first);
+
+        assertFalse(sessionManager.send(100L, "m1"));
+        assertFalse(sessionManager.send(100L, "m2"));
+        assertEquals(2, sessionManager.getBufferedCount(1L));
+
+        WebSocketSession second = openSession("b");
+        sessionManager.registerSession(1L, client(1L), second);
+        assertTrue(sessionManager.send(100L, "m3"));
+
+        InOrder inOrder = inOrder(second);
+        inOrder.verify(second).sendMessage(new TextMessage("m1"));
+        inOrder.verify(second).sendMessage(new TextMessage("m2"));
+        inOrder.verify(second).sendMessage(new TextMessage("m3"));
+        assertEquals(0, sessionManager.getBufferedCount(1L));
+        verify(first, never()).sendMessage(any());
+    }
+
+    @Test
+    @DisplayName("写出失败 - 未取出的帧撤回并标记为未发出")
+    void testSend_WriteFailureWithdrawsQueuedFrame() throws Exception {
+        sessionManager.registerClient(1L, client(1L));
+        sessionManager.bindGroup(100L, 1L);
+        sessionManager.send(100L, "m1");
+        sessionManager.send(100L, "m2");
+
+        // 重连时m1写出失败, m2留在写队列中
+        WebSocketSession session = openSession("a");
+        doThrow(new IOException("Broken pipe")).when(session).sendMessage(any());
+        sessionManager.registerSession(1L, client(1L), session);
+
+        // m2写出失败时m3仍在队列中: 撤回, 确定未发出
+        assertThrows(RequestNotSentException.class, () -> sessionManager.send(100L, "m3"));
+        verify(session, never()).sendMessage(new TextMessage("m3"));
+
+        // 本帧已被取出写出: 结果未知
+        IOException ex = assertThrows(IOException.class, () -> sessionManager.send(100L, "m4"));
+        assertFalse(RequestNotSentException.isNotSent(ex));
+        verify(session).sendMessage(new TextMessage("m4"));
+    }
+
+    @Test
+    @DisplayName("缓冲 - 溢出策略与过期丢弃")
+    void testSend_OverflowAndExpiry() throws Exception {
+        ReflectionTestUtils.setField(sessionManager, "outboundBufferCapacity", 2);
+        sessionManager.registerClient(1L, client(1L));
+
+        sessionManager.send(null, "m1");
+        sessionManager.send(null, "m2");
+        sessionManager.send(null, "m3");
+        WebSocketSession session = openSession("a");
+        sessionManager.registerSession(1L, client(1L), session);
+        verify(session, never()).sendMessage(new TextMessage("m1"));
+        verify(session).sendMessage(new TextMessage("m3"));
+
+        ReflectionTestUtils.setField(sessionManager, "outboundBufferOverflow", "reject");
+        ReflectionTestUtils.setField(sessionManager, "outboundBufferMaxAge", Duration.ofMillis(20));
+        sessionManager.init();
+        sessionManager.registerClient(2L, client(2L));
+        sessionManager.bindGroup(200L, 2L);
+        sessionManager.send(200L, "r1");
+        sessionManager.send(200L, "r2");
+        assertThrows(IllegalStateException.class, () -> sessionManager.send(200L, "r3"));
+
+        Thread.sleep(50);
+        sessionManager.send(200L, "r4");
+        assertEquals(1, sessionManager.getBufferedCount(2L));
+    }
+
+    @Test
+    @DisplayName("缓冲 - 溢出或过期丢弃的请求以请求ID通知")
+    void testSend_DiscardedRequestsNotified() throws Exception {
+        List<String> discarded = new ArrayList<>();
+        sessionManager.setDiscardListener(discarded::add);
+        ReflectionTestUtils.setField(sessionManager, "outboundBufferCapacity", 2);
+        ReflectionTestUtils.setField(sessionManager, "outboundBufferMaxAge", Duration.ofMillis(20));
+        sessionManager.init();
+        sessionManager.registerClient(1L, client(1L));
+
+        sessionManager.send(null, "m1", "1");
+        sessionManager.send(null, "m2", "2");
+        sessionManager.send(null, "m3", "3");
+        assertEquals(List.of("1"), discarded);
+
+        Thread.sleep(50);
+        sessionManager.send(null, "m4", "4");
+        assertEquals(List.of("1", "2", "3"), discarded);
+        assertEquals(1, sessionManager.getBufferedCount(1L));
+    }
+
+    @Test
+    @DisplayName("重连 - 指数退避带抖动且不设次数上限")
+    void testReconnectDelay_JitteredUnbounded() {
+        for (int attempts = 0; attempts < 100; attempts++) {
+            long expected = Math.min(60_000L, 1000L << Math.min(attempts, 20));
+            long delay = (long) ReflectionTestUtils.invokeMethod(sessionManager, "computeReconnectDelayMs", attempts);
+            assertTrue(delay <= expected && delay >= expected / 2, "attempts=" + attempts + ", delay=" + delay);
+        }
+    }
+
+    @Test
+    @DisplayName("缓冲 - 无已登记客户端时发送失败")
+    void testSend_NoClient() {
+        assertThrows(IllegalStateException.class, () -> sessionManager.send(null, "m1"));
+    }
+
+    @Test
+    @DisplayName("通道分离 - API调用只走API连接, 同群固定连接, 断开后顺延")
+    void testChannelSplit_ApiPool() throws Exception {
+        ReflectionTestUtils.setField(sessionManager, "channelSplit", true);
+        ReflectionTestUtils.setField(sessionManager, "apiPoolSize", 2);
+
+        WebSocketSession event = openSession("event");
+        sessionManager.registerSession(1L, client(1L), event);
+        sessionManager.bindGroup(100L, 1L);
+        assertNull(sessionManager.routeSession(100L));
+        assertFalse(sessionManager.send(100L, "buffered"));
+        assertEquals(List.of(0, 1), sessionManager.getSessionInfo(1L).getMissingApiChannels());
+
+        WebSocketSession api0 = openSession("api-0");
+        WebSocketSession api1 = openSession("api-1");
+        sessionManager.registerApiSession(1L, client(1L), 0, api0);
+        sessionManager.registerApiSession(1L, client(1L), 1, api1);
+        assertTrue(sessionManager.getSessionInfo(1L).isFullyConnected());
+
+        WebSocketSession owner = sessionManager.routeSession(100L);
+        assertTrue(owner == api0 || owner == api1);
+        assertTrue(sessionManager.send(100L, "m1"));
+        assertTrue(sessionManager.send(100L, "m2"));
+        verify(owner).sendMessage(new TextMessage("m1"));
+        verify(owner).sendMessage(new TextMessage("m2"));
+        verify(event, never()).sendMessage(any());
+
+        sessionManager.onSessionClosed(1L, owner);
+        WebSocketSession other = owner == api0 ? api1 : api0;
+        assertSame(other, sessionManager.routeSession(100L));
+        assertTrue(sessionManager.send(100L, "m3"));
+        verify(other).sendMessage(new TextMessage("m3"));
+    }
+}